@@ -39,8 +39,17 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import loci.common.DateTools;
+import loci.common.DebugTools;
 import loci.common.Location;
 import loci.common.Region;
 import loci.common.StatusEvent;
@@ -50,16 +59,19 @@ import loci.formats.FilePattern;
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
 import loci.formats.IFormatReader;
+import loci.formats.MinMaxCalculator;
 import loci.formats.Modulo;
 import loci.formats.meta.DummyMetadata;
 import loci.formats.meta.IMetadata;
 import loci.formats.meta.MetadataRetrieve;
 import loci.formats.meta.MetadataStore;
+import loci.plugins.BF;
 import loci.plugins.Slicer;
 import loci.plugins.util.BFVirtualStack;
 import loci.plugins.util.ImageProcessorReader;
 import loci.plugins.util.LociPrefs;
 import loci.plugins.util.LuraWave;
+import loci.plugins.util.ReaderCopier;
 import loci.plugins.util.VirtualImagePlus;
 import ome.units.UNITS;
 import ome.units.quantity.Time;
@@ -79,6 +91,12 @@ public class ImagePlusReader implements StatusReporter {
   /** Special property prefix for storing planar LUTs. */
   public static final String PROP_LUT = "LUT-";
 
+  /** Maximum number of threads used to read the planes of one series. */
+  private static final int MAX_PLANE_THREADS = 4;
+
+  /** Interval between progress updates when reading planes, in ms. */
+  private static final long PROGRESS_INTERVAL = 100;
+
   // -- Fields --
 
   /**
@@ -369,25 +387,36 @@ public class ImagePlusReader implements StatusReporter {
 
     // get list of planes to load
     final boolean[] load = getPlanesToLoad(s);
-    int current = 0, total = 0;
+    int total = 0;
     for (int j=0; j<load.length; j++) if (load[j]) total++;
+    final int[] indexes = new int[total];
+    for (int i=0, current=0; i<load.length; i++) {
+      if (load[i]) indexes[current++] = i;
+    }
 
     final List<ImageProcessor> procs = new ArrayList<ImageProcessor>();
     final List<String> labels = new ArrayList<String>();
 
     // read applicable image planes
     final Region region = process.getCropRegion(s);
-    for (int i=0; i<load.length; i++) {
-      if (!load[i]) continue;
-
-      // limit message update rate
-      updateTiming(s, current, current++, total);
+    ImageProcessor[][] planes = new ImageProcessor[total][];
+    if (!thumbnail && isParallel(process, total)) {
+      readPlanesInParallel(process, s, indexes, region, planes);
+    }
+    for (int current=0; current<total; current++) {
+      final int i = indexes[current];
 
       // get image processor for ith plane
-      final ImageProcessor[] p = readProcessors(process, i, region, thumbnail);
+      ImageProcessor[] p = planes[current];
+      if (p == null) {
+        // limit message update rate
+        updateTiming(s, current, current, total);
+        p = readProcessors(process, i, region, thumbnail);
+      }
       if (p == null || p.length == 0) {
         throw new FormatException("Cannot read plane #" + i);
       }
+      planes[current] = null;
       // generate a label for ith plane
       String label = constructSliceLabel(i, reader, meta, s, zCount, cCount, tCount);
 
@@ -400,6 +429,111 @@ public class ImagePlusReader implements StatusReporter {
     return createStack(procs, labels, luts);
   }
 
+  /**
+   * Checks whether the planes of the current series should be read by
+   * several threads, each with its own copy of the reader.
+   */
+  private boolean isParallel(ImportProcess process, int total) {
+    final ImporterOptions options = process.getOptions();
+    return options.isParallelPlanes() && options.isLocal() &&
+      process.getFileStitcher() == null && !options.doStitchTiles() &&
+      Math.min(total, Runtime.getRuntime().availableProcessors()) > 1;
+  }
+
+  /**
+   * Reads the given planes using several threads.  The first thread uses
+   * the import process's reader, and each of the others opens a copy of it.
+   * Planes are stored in the same order as their indexes; any plane that
+   * could not be read is left null, so that it can be read (and any error
+   * reported) by the calling thread.
+   */
+  private void readPlanesInParallel(ImportProcess process, int s,
+    int[] indexes, Region region, ImageProcessor[][] planes)
+    throws FormatException, IOException
+  {
+    final ImageProcessorReader reader = process.getReader();
+    final int threads = Math.min(MAX_PLANE_THREADS,
+      Math.min(indexes.length, Runtime.getRuntime().availableProcessors()));
+    final ReaderCopier copier =
+      new ReaderCopier(reader, process.getOptions().getId());
+    final ImageProcessorReader[] copies = new ImageProcessorReader[threads];
+    final AtomicInteger loaded = new AtomicInteger();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+    try {
+      for (int t=0; t<threads; t++) {
+        int start = (int) ((long) indexes.length * t / threads);
+        int end = (int) ((long) indexes.length * (t + 1) / threads);
+        tasks.add(executor.submit(new PlaneRunTask(t == 0 ? reader : null,
+          copier, copies, t, indexes, start, end, region, planes, loaded)));
+      }
+      for (Future<Void> task : tasks) {
+        while (!waitFor(task)) {
+          int current = loaded.get();
+          updateTiming(s, current, current, indexes.length);
+        }
+      }
+    }
+    finally {
+      // stop any remaining tasks and wait for them, so that the
+      // import process's reader is no longer in use
+      for (Future<Void> task : tasks) {
+        task.cancel(true);
+      }
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      // add the min/max values computed by each copy,
+      // and close the copies
+      final MinMaxCalculator minMax = process.getMinMaxCalculator();
+      for (ImageProcessorReader copy : copies) {
+        if (copy == null) continue;
+        try {
+          if (minMax != null) {
+            minMax.addMinMax(
+              (MinMaxCalculator) copy.unwrap(MinMaxCalculator.class, null));
+          }
+        }
+        finally {
+          copy.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits briefly for the given task to finish.
+   *
+   * @return true if the task has finished
+   */
+  private boolean waitFor(Future<Void> task)
+    throws FormatException, IOException
+  {
+    try {
+      task.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+      return true;
+    }
+    catch (TimeoutException e) {
+      return false;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading planes", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new FormatException(cause);
+    }
+  }
+
   /**
    * HACK: This method mainly exists to prompt the user for a missing
    * LuraWave license code, in the case of LWF-compressed Flex.
@@ -716,4 +850,67 @@ public class ImagePlusReader implements StatusReporter {
     }
   }
 
+  // -- Helper classes --
+
+  /**
+   * Reads a run of planes with one reader.  Distinct runs never share
+   * planes, so no synchronization is needed when storing the results.
+   */
+  private static class PlaneRunTask implements Callable<Void> {
+    private final ImageProcessorReader reader;
+    private final ReaderCopier copier;
+    private final ImageProcessorReader[] copies;
+    private final int thread;
+    private final int[] indexes;
+    private final int start, end;
+    private final Region region;
+    private final ImageProcessor[][] planes;
+    private final AtomicInteger loaded;
+
+    /**
+     * @param reader the reader to use, or null if a copy should be opened
+     *   and stored in the given array of copies
+     */
+    PlaneRunTask(ImageProcessorReader reader, ReaderCopier copier,
+      ImageProcessorReader[] copies, int thread, int[] indexes, int start,
+      int end, Region region, ImageProcessor[][] planes, AtomicInteger loaded)
+    {
+      this.reader = reader;
+      this.copier = copier;
+      this.copies = copies;
+      this.thread = thread;
+      this.indexes = indexes;
+      this.start = start;
+      this.end = end;
+      this.region = region;
+      this.planes = planes;
+      this.loaded = loaded;
+    }
+
+    @Override
+    public Void call() {
+      try {
+        ImageProcessorReader r = reader;
+        if (r == null) {
+          r = copier.open();
+          if (r == null) return null;
+          copies[thread] = r;
+        }
+        for (int p=start; p<end; p++) {
+          if (Thread.currentThread().isInterrupted()) break;
+          planes[p] = r.openProcessors(indexes[p],
+            region.x, region.y, region.width, region.height);
+          loaded.incrementAndGet();
+        }
+      }
+      catch (FormatException e) {
+        BF.debug(DebugTools.getStackTrace(e));
+      }
+      catch (IOException e) {
+        BF.debug(DebugTools.getStackTrace(e));
+      }
+      return null;
+    }
+  }
+
 }
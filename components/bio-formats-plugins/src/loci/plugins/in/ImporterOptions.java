@@ -78,6 +78,7 @@ public class ImporterOptions extends OptionsList {
   public static final String KEY_VIRTUAL         = "virtual";
   public static final String KEY_WINDOWLESS      = "windowless";
   public static final String KEY_STITCH_TILES    = "stitchTiles";
+  public static final String KEY_PARALLEL_PLANES = "parallelPlanes";
   public static final String KEY_MUST_GROUP    	 = "mustGroup";
   
   // possible values for colorMode
@@ -411,6 +412,15 @@ public class ImporterOptions extends OptionsList {
   public boolean doStitchTiles() { return isSet(KEY_STITCH_TILES); }
   public void setStitchTiles(boolean b) { setValue(KEY_STITCH_TILES, b); }
 
+  // parallelPlanes
+  public String getParallelPlanesInfo() {
+    return getInfo(KEY_PARALLEL_PLANES);
+  }
+  public boolean isParallelPlanes() { return isSet(KEY_PARALLEL_PLANES); }
+  public void setParallelPlanes(boolean b) {
+    setValue(KEY_PARALLEL_PLANES, b);
+  }
+
   // mustGroup
   public String getMustGroupInfo() { return getInfo(KEY_MUST_GROUP); }
   public boolean doMustGroup() { return isSet(KEY_MUST_GROUP); }
@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import loci.common.DebugTools;
 import loci.formats.ChannelMerger;
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
@@ -44,6 +45,7 @@ import loci.formats.cache.Cache;
 import loci.formats.cache.CacheException;
 import loci.formats.cache.CacheStrategy;
 import loci.formats.cache.CrosshairStrategy;
+import loci.plugins.BF;
 import loci.plugins.util.RecordedImageProcessor.MethodEntry;
 
 /**
@@ -58,6 +60,7 @@ public class BFVirtualStack extends VirtualStack {
   protected ImageProcessorReader reader;
   protected String id;
   protected Cache cache;
+  protected PlanePrefetcher prefetcher;
 
   private List<List<MethodEntry>> methodStacks;
   private int currentSlice = -1;
@@ -123,7 +126,19 @@ public class BFVirtualStack extends VirtualStack {
     len[len.length - 1] = r.getSizeT();
     CacheStrategy strategy = new CrosshairStrategy(len);
 
-    cache = new Cache(strategy, new ImageProcessorSource(r), true);
+    // planes are loaded in the background by the prefetcher instead of
+    // synchronously by the cache whenever the position changes
+    cache = new Cache(strategy, new ImageProcessorSource(r), false);
+    try {
+      prefetcher =
+        new PlanePrefetcher(reader, path, PlanePrefetcher.DEFAULT_MAX_BYTES);
+    }
+    catch (FormatException e) {
+      BF.debug(DebugTools.getStackTrace(e));
+    }
+    catch (IOException e) {
+      BF.debug(DebugTools.getStackTrace(e));
+    }
 
     methodStacks = new ArrayList<List<MethodEntry>>();
     for (int i=0; i<r.getImageCount(); i++) {
@@ -139,6 +154,8 @@ public class BFVirtualStack extends VirtualStack {
 
   public Cache getCache() { return cache; }
 
+  public PlanePrefetcher getPrefetcher() { return prefetcher; }
+
   public RecordedImageProcessor getRecordedProcessor() {
     return currentProcessor;
   }
@@ -152,6 +169,13 @@ public class BFVirtualStack extends VirtualStack {
     this.planeIndexes = planeIndexes;
   }
 
+  /** Stops loading planes in the background. */
+  public void close() {
+    if (prefetcher != null) {
+      prefetcher.close();
+    }
+  }
+
   // -- VirtualStack API methods --
 
   @Override
@@ -178,11 +202,12 @@ public class BFVirtualStack extends VirtualStack {
     catch (CacheException exc) {
       exc.printStackTrace();
     }
+    prefetch(n);
 
     // cache missed
     try {
       if (ip == null) {
-        ip = reader.openProcessors(reader.getIndex(pos[0], pos[1], pos[2]))[0];
+        ip = openProcessor(reader.getIndex(pos[0], pos[1], pos[2]));
       }
     }
     catch (FormatException exc) {
@@ -226,7 +251,7 @@ public class BFVirtualStack extends VirtualStack {
         if (otherChannels[i] == null) {
           try {
             int index = reader.getIndex(pos[0], channel, pos[2]);
-            otherChannels[i] = reader.openProcessors(index)[0];
+            otherChannels[i] = openProcessor(index);
           }
           catch (FormatException exc) {
             exc.printStackTrace();
@@ -283,4 +308,45 @@ public class BFVirtualStack extends VirtualStack {
     return planeIndexes == null ? reader.getImageCount() : planeIndexes.length;
   }
 
+  // -- Helper methods --
+
+  /**
+   * Returns the processor for the given plane index, from the prefetcher
+   * if it has already been loaded.
+   */
+  private ImageProcessor openProcessor(int index)
+    throws FormatException, IOException
+  {
+    ImageProcessor ip = null;
+    if (prefetcher != null) {
+      ip = prefetcher.get(index);
+    }
+    if (ip == null) {
+      ip = reader.openProcessors(index)[0];
+      if (prefetcher != null) {
+        prefetcher.put(index, ip);
+      }
+    }
+    return ip;
+  }
+
+  /** Starts loading the planes likely to follow the given stack position. */
+  private void prefetch(int n) {
+    if (prefetcher == null) return;
+    int[] positions = prefetcher.predict(n, getSize());
+    int channels = merge ? reader.getSizeC() : 1;
+    int[] indexes = new int[positions.length * channels];
+    for (int i=0; i<positions.length; i++) {
+      int sliceIndex = planeIndexes == null ?
+        positions[i] - 1 : planeIndexes[positions[i] - 1];
+      int[] pos = merge ? new ChannelMerger(reader).getZCTCoords(sliceIndex) :
+        reader.getZCTCoords(sliceIndex);
+      for (int c=0; c<channels; c++) {
+        indexes[i * channels + c] =
+          reader.getIndex(pos[0], merge ? c : pos[1], pos[2]);
+      }
+    }
+    prefetcher.prefetch(indexes);
+  }
+
 }
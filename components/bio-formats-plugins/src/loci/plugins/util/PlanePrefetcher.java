@@ -0,0 +1,317 @@
+/*
+ * #%L
+ * Bio-Formats Plugins for ImageJ: a collection of ImageJ plugins including the
+ * Bio-Formats Importer, Bio-Formats Exporter, Bio-Formats Macro Extensions,
+ * Data Browser and Stack Slicer.
+ * %%
+ * Copyright (C) 2006 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.plugins.util;
+
+import ij.process.ImageProcessor;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import loci.common.DebugTools;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.plugins.BF;
+
+/**
+ * Loads the planes of a {@link BFVirtualStack} ahead of the current position
+ * in a separate thread, using a separate reader.
+ *
+ * The direction, step and speed of navigation through the stack are used to
+ * predict which planes will be needed next.  Loaded planes are kept until
+ * the memory budget is exhausted, least recently used first.  When the
+ * position jumps or changes direction, planes that were queued but not yet
+ * loaded are dropped.
+ */
+public class PlanePrefetcher implements Runnable {
+
+  // -- Constants --
+
+  /** Default memory budget, in bytes. */
+  public static final long DEFAULT_MAX_BYTES =
+    Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+
+  /**
+   * Positions requested more than this many milliseconds apart are not
+   * treated as part of a continuous scroll.
+   */
+  private static final long SCROLL_TIMEOUT = 500;
+
+  /** Number of seconds of navigation for which planes are loaded ahead. */
+  private static final double LOOKAHEAD_TIME = 1.0;
+
+  /** Minimum number of positions to load ahead. */
+  private static final int MIN_LOOKAHEAD = 2;
+
+  // -- Fields --
+
+  /** Opens the reader used by the loader thread, when first needed. */
+  private ReaderCopier copier;
+
+  /** Reader used by the loader thread only. */
+  private ImageProcessorReader reader;
+
+  private final long maxBytes;
+  private final int maxLookahead;
+
+  /** Loaded planes, in order from least to most recently used. */
+  private final LinkedHashMap<Integer, ImageProcessor> planes =
+    new LinkedHashMap<Integer, ImageProcessor>(16, 0.75f, true);
+  private long size = 0;
+
+  /** Plane indexes to load, and the next one to consider. */
+  private int[] queue = new int[0];
+  private int queuePosition = 0;
+
+  private int lastPosition = -1;
+  private long lastTime;
+  private int step = 1;
+  private double speed = 0;
+
+  private boolean stop;
+  private Thread loader;
+
+  // -- Constructor --
+
+  /**
+   * Constructs a prefetcher for the current series of the given reader.
+   * A copy of the reader is opened in the loader thread when the first
+   * plane is requested; if the reader cannot be copied, or the copy does
+   * not match the original, nothing is prefetched.
+   *
+   * @param maxBytes the maximum total size of the loaded planes
+   */
+  public PlanePrefetcher(ImageProcessorReader r, String id, long maxBytes)
+    throws FormatException, IOException
+  {
+    copier = new ReaderCopier(r, id);
+
+    this.maxBytes = maxBytes;
+    long planeSize = Math.max(1, FormatTools.getPlaneSize(r));
+    maxLookahead = (int) Math.max(1,
+      Math.min(Integer.MAX_VALUE, maxBytes / (2 * planeSize)));
+  }
+
+  // -- PlanePrefetcher API methods --
+
+  /** Returns the loaded plane with the given index, or null. */
+  public synchronized ImageProcessor get(int index) {
+    return planes.get(index);
+  }
+
+  /** Adds a plane that was read elsewhere, so that it can be reused. */
+  public synchronized void put(int index, ImageProcessor ip) {
+    if (stop || ip == null || planes.containsKey(index)) return;
+    long bytes = getSize(ip);
+    Iterator<ImageProcessor> values = planes.values().iterator();
+    while (values.hasNext() && size + bytes > maxBytes) {
+      size -= getSize(values.next());
+      values.remove();
+    }
+    planes.put(index, ip);
+    size += bytes;
+  }
+
+  /**
+   * Records that the given stack position is being displayed, and returns
+   * the positions that are likely to be displayed next, nearest first.
+   *
+   * @param position the current 1-based stack position
+   * @param count the number of positions in the stack
+   */
+  public synchronized int[] predict(int position, int count) {
+    long now = System.currentTimeMillis();
+    int delta = position - lastPosition;
+    if (lastPosition < 0 || delta == 0) {
+      speed = 0;
+    }
+    else {
+      long elapsed = Math.max(1, now - lastTime);
+      int direction = delta > 0 ? 1 : -1;
+      if (elapsed > SCROLL_TIMEOUT || delta != step) {
+        // the first step of a new scroll, or a jump
+        speed = 0;
+      }
+      else {
+        double current = 1000.0 / elapsed;
+        speed = speed == 0 ? current : (speed + current) / 2;
+      }
+      step = Math.abs(delta) * direction;
+    }
+    lastPosition = position;
+    lastTime = now;
+
+    int ahead = (int) Math.ceil(speed * LOOKAHEAD_TIME);
+    ahead = Math.min(Math.max(ahead, MIN_LOOKAHEAD), maxLookahead);
+    int valid = 0;
+    int[] positions = new int[ahead];
+    for (int i=1; i<=ahead; i++) {
+      int next = position + i * step;
+      if (next < 1 || next > count) break;
+      positions[valid++] = next;
+    }
+    int[] rtn = new int[valid];
+    System.arraycopy(positions, 0, rtn, 0, valid);
+    return rtn;
+  }
+
+  /**
+   * Replaces the planes waiting to be loaded with the given plane indexes.
+   * A plane that is currently being loaded is still added when done.
+   */
+  public synchronized void prefetch(int[] indexes) {
+    if (stop || copier == null) return;
+    queue = indexes;
+    queuePosition = 0;
+    if (loader == null) {
+      loader = new Thread(this, "Bio-Formats-Plane-Prefetcher");
+      loader.setDaemon(true);
+      loader.setPriority(Thread.MIN_PRIORITY);
+      loader.start();
+    }
+    notifyAll();
+  }
+
+  /** Stops loading planes, and closes the prefetcher's reader. */
+  public void close() {
+    Thread t;
+    synchronized (this) {
+      stop = true;
+      queue = new int[0];
+      planes.clear();
+      size = 0;
+      t = loader;
+      loader = null;
+      notifyAll();
+    }
+    if (t != null) {
+      try {
+        t.join();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    else {
+      closeReader();
+    }
+  }
+
+  // -- Runnable API methods --
+
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        int index = nextIndex();
+        if (index < 0) break;
+        ImageProcessor ip = open(index);
+        if (ip == null) break;
+        put(index, ip);
+      }
+    }
+    catch (InterruptedException e) {
+      // stop loading
+    }
+    finally {
+      closeReader();
+    }
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Waits until there is a plane that needs to be loaded, and returns its
+   * index, or -1 if the prefetcher has been closed.
+   */
+  private synchronized int nextIndex() throws InterruptedException {
+    while (!stop) {
+      while (queuePosition < queue.length) {
+        int index = queue[queuePosition++];
+        if (!planes.containsKey(index)) {
+          return index;
+        }
+      }
+      wait();
+    }
+    return -1;
+  }
+
+  /** Reads a plane with the prefetcher's reader, or returns null on error. */
+  private ImageProcessor open(int index) {
+    ImageProcessorReader r;
+    ReaderCopier c;
+    synchronized (this) {
+      r = reader;
+      c = copier;
+    }
+    if (c == null) return null;
+    try {
+      if (r == null) {
+        r = c.open();
+        synchronized (this) {
+          reader = r;
+        }
+        if (r == null) {
+          BF.debug("Not prefetching planes: reader copy does not match");
+          return null;
+        }
+      }
+      return r.openProcessors(index)[0];
+    }
+    catch (FormatException e) {
+      BF.debug(DebugTools.getStackTrace(e));
+    }
+    catch (IOException e) {
+      BF.debug(DebugTools.getStackTrace(e));
+    }
+    return null;
+  }
+
+  private void closeReader() {
+    ImageProcessorReader r;
+    synchronized (this) {
+      r = reader;
+      reader = null;
+      copier = null;
+    }
+    if (r == null) return;
+    try {
+      r.close();
+    }
+    catch (IOException e) {
+      BF.debug(DebugTools.getStackTrace(e));
+    }
+  }
+
+  private static long getSize(ImageProcessor ip) {
+    int bitDepth = ip.getBitDepth();
+    return (long) ip.getPixelCount() * (bitDepth == 24 ? 4 : bitDepth / 8);
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * Bio-Formats Plugins for ImageJ: a collection of ImageJ plugins including the
+ * Bio-Formats Importer, Bio-Formats Exporter, Bio-Formats Macro Extensions,
+ * Data Browser and Stack Slicer.
+ * %%
+ * Copyright (C) 2006 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.plugins.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import loci.formats.DimensionSwapper;
+import loci.formats.FormatException;
+import loci.formats.IFormatReader;
+import loci.formats.ReaderWrapper;
+import loci.formats.in.MetadataOptions;
+import loci.plugins.BF;
+
+/**
+ * Opens copies of an {@link ImageProcessorReader}, so that planes from the
+ * current series can be read by other threads.
+ *
+ * The configuration of the original reader is recorded when the copier is
+ * constructed, including the input and output dimension orders of any
+ * {@link DimensionSwapper}; copies are then opened independently of the
+ * original reader.
+ */
+public class ReaderCopier {
+
+  // -- Fields --
+
+  /** Unopened copy of the original reader, from which copies are made. */
+  private final ReaderWrapper template;
+
+  private final String id;
+  private final int series;
+  private final MetadataOptions metadataOptions;
+  private final boolean groupFiles;
+  private final boolean flattenedResolutions;
+
+  /** Dimension orders of the original reader's {@link DimensionSwapper}. */
+  private final String inputOrder;
+  private final String outputOrder;
+
+  /** Dimensions of the original reader, used to validate each copy. */
+  private final String dimensionOrder;
+  private final int[] dimensions;
+
+  // -- Constructor --
+
+  /**
+   * Records the configuration of the given reader's current series.
+   *
+   * @param r the reader to copy, which must be initialized
+   * @param id the id with which to initialize each copy
+   */
+  public ReaderCopier(ImageProcessorReader r, String id)
+    throws FormatException, IOException
+  {
+    template = r.duplicate(null);
+    this.id = id;
+    series = r.getCoreIndex();
+    metadataOptions = r.getMetadataOptions();
+    groupFiles = r.isGroupFiles();
+    flattenedResolutions = r.hasFlattenedResolutions();
+
+    DimensionSwapper swapper =
+      (DimensionSwapper) r.unwrap(DimensionSwapper.class, null);
+    inputOrder = swapper == null ? null : swapper.getInputOrder();
+    outputOrder = swapper == null ? null : swapper.getDimensionOrder();
+
+    dimensionOrder = r.getDimensionOrder();
+    dimensions = getDimensions(r);
+  }
+
+  // -- ReaderCopier API methods --
+
+  /**
+   * Opens a new copy of the reader, set to the same series and dimension
+   * orders as the original.  The caller is responsible for closing it.
+   *
+   * @return the copy, or null if it does not match the original reader
+   */
+  public ImageProcessorReader open() throws FormatException, IOException {
+    ImageProcessorReader copy;
+    synchronized (template) {
+      copy = (ImageProcessorReader) template.duplicate(null);
+    }
+    copy.setMetadataOptions(metadataOptions);
+    copy.setGroupFiles(groupFiles);
+    copy.setFlattenedResolutions(flattenedResolutions);
+    copy.setOriginalMetadataPopulated(false);
+
+    boolean success = false;
+    try {
+      copy.setId(id);
+      copy.setCoreIndex(series);
+      if (outputOrder != null) {
+        DimensionSwapper swapper =
+          (DimensionSwapper) copy.unwrap(DimensionSwapper.class, null);
+        if (swapper == null) return null;
+        swapper.swapDimensions(inputOrder);
+        swapper.setOutputOrder(outputOrder);
+      }
+      if (!copy.getDimensionOrder().equals(dimensionOrder) ||
+        !Arrays.equals(getDimensions(copy), dimensions))
+      {
+        BF.debug("Reader copy does not match original reader");
+        return null;
+      }
+      success = true;
+      return copy;
+    }
+    finally {
+      if (!success) copy.close();
+    }
+  }
+
+  // -- Helper methods --
+
+  private static int[] getDimensions(IFormatReader r) {
+    return new int[] {r.getImageCount(), r.getSizeX(), r.getSizeY(),
+      r.getSizeZ(), r.getSizeC(), r.getSizeT(), r.getPixelType(),
+      r.getRGBChannelCount()};
+  }
+
+}
@@ -97,6 +97,9 @@ public class VirtualImagePlus extends ImagePlus {
 
   @Override
   public void close() {
+    if (getStack() instanceof BFVirtualStack) {
+      ((BFVirtualStack) getStack()).close();
+    }
     super.close();
     try {
       r.close();
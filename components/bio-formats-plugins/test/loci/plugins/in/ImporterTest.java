@@ -1740,6 +1740,62 @@ public class ImporterTest {
     croppedPixelsTest(imp,ox,cropSize);
   }
 
+  /** tests BF's options.setParallelPlanes() */
+  private void memoryParallelPlanesTester(int pixType, boolean autoscale)
+  {
+    final int sizeX = 60, sizeY = 30, sizeZ = 7, sizeC = 3, sizeT = 5;
+    final Region region = new Region(10, 5, 40, 20);
+
+    String path = constructFakeFilename("parallel", pixType,
+      sizeX, sizeY, sizeZ, sizeC, sizeT, -1, false, -1, false, -1);
+
+    ImagePlus serial = openParallelPlanes(path, false, autoscale, region);
+    ImagePlus parallel = openParallelPlanes(path, true, autoscale, region);
+
+    xyzctTest(parallel, region.width, region.height, sizeZ, sizeC, sizeT);
+
+    // planes, labels and display ranges must match those read serially
+    ImageStack expected = serial.getStack();
+    ImageStack actual = parallel.getStack();
+    assertEquals(actual.getSize(), expected.getSize());
+    for (int i=1; i<=expected.getSize(); i++) {
+      assertEquals(actual.getSliceLabel(i), expected.getSliceLabel(i));
+      ImageProcessor e = expected.getProcessor(i);
+      ImageProcessor a = actual.getProcessor(i);
+      for (int y=0; y<region.height; y++) {
+        for (int x=0; x<region.width; x++) {
+          assertEquals(a.getPixelValue(x, y), e.getPixelValue(x, y));
+        }
+      }
+    }
+    assertEquals(parallel.getDisplayRangeMin(), serial.getDisplayRangeMin());
+    assertEquals(parallel.getDisplayRangeMax(), serial.getDisplayRangeMax());
+  }
+
+  private ImagePlus openParallelPlanes(String path, boolean parallel,
+    boolean autoscale, Region region)
+  {
+    ImagePlus[] imps = null;
+    try {
+      ImporterOptions options = new ImporterOptions();
+      options.setAutoscale(autoscale);
+      options.setParallelPlanes(parallel);
+      options.setId(path);
+      options.setCrop(true);
+      options.setCropRegion(0, region);
+      imps = BF.openImagePlus(options);
+    }
+    catch (IOException e) {
+      fail(e.getMessage());
+    }
+    catch (FormatException e) {
+      fail(e.getMessage());
+    }
+
+    impsCountTest(imps,1);
+    return imps[0];
+  }
+
   /** tests BF's options.setSplitChannels() */
   private void splitChannelsTester()
   {
@@ -2386,6 +2442,18 @@ public class ImporterTest {
     memoryCropTester(100, 122, 0, 15, 3);
   }
 
+  @Test
+  public void testMemoryParallelPlanes()
+  {
+    // note - planes of a virtualStack are read on demand. no need to test it.
+
+    for (boolean autoscale : BOOLEAN_STATES) {
+      memoryParallelPlanesTester(FormatTools.UINT8, autoscale);
+      memoryParallelPlanesTester(FormatTools.UINT16, autoscale);
+    }
+    memoryParallelPlanesTester(FormatTools.FLOAT, true);
+  }
+
   @Test
   public void testSplitChannels()
   {
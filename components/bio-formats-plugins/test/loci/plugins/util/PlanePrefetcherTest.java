@@ -0,0 +1,156 @@
+/*
+ * #%L
+ * Bio-Formats Plugins for ImageJ: a collection of ImageJ plugins including the
+ * Bio-Formats Importer, Bio-Formats Exporter, Bio-Formats Macro Extensions,
+ * Data Browser and Stack Slicer.
+ * %%
+ * Copyright (C) 2006 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.plugins.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import ij.process.ImageProcessor;
+
+import loci.formats.in.FakeReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests background plane loading by {@link PlanePrefetcher}.
+ */
+public class PlanePrefetcherTest {
+
+  // -- Constants --
+
+  private static final String ID = "test&sizeX=64&sizeY=64&sizeT=50.fake";
+
+  /** Size in bytes of one plane. */
+  private static final long PLANE_SIZE = 64 * 64;
+
+  // -- Fields --
+
+  private ImageProcessorReader reader;
+  private PlanePrefetcher prefetcher;
+
+  // -- PlanePrefetcherTest methods --
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    reader = new ImageProcessorReader(new FakeReader());
+    reader.setId(ID);
+    prefetcher = new PlanePrefetcher(reader, ID, 20 * PLANE_SIZE);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    prefetcher.close();
+    reader.close();
+  }
+
+  @Test
+  public void testPredictDirection() {
+    assertEquals(prefetcher.predict(10, 50), new int[] {11, 12});
+    int[] ahead = prefetcher.predict(9, 50);
+    assertTrue(ahead.length >= 2);
+    assertEquals(ahead[0], 8);
+    assertEquals(ahead[1], 7);
+  }
+
+  @Test
+  public void testPredictStep() {
+    prefetcher.predict(1, 50);
+    int[] ahead = prefetcher.predict(4, 50);
+    assertEquals(ahead[0], 7);
+    assertEquals(ahead[1], 10);
+  }
+
+  @Test
+  public void testPredictStaysInStack() {
+    prefetcher.predict(48, 50);
+    for (int position : prefetcher.predict(49, 50)) {
+      assertEquals(position, 50);
+    }
+    prefetcher.predict(2, 50);
+    assertEquals(prefetcher.predict(1, 50).length, 0);
+  }
+
+  @Test
+  public void testPredictBoundedByMemory() {
+    // scroll quickly; at most half of the budget is used for lookahead
+    int[] ahead = null;
+    for (int i=1; i<40; i++) {
+      ahead = prefetcher.predict(i, 50);
+    }
+    assertTrue(ahead.length <= 10);
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    prefetcher.prefetch(new int[] {3, 4, 5});
+    for (int index=3; index<=5; index++) {
+      ImageProcessor ip = waitFor(index);
+      assertNotNull(ip);
+      assertEquals(ip.getPixels(), reader.openProcessors(index)[0].getPixels());
+    }
+  }
+
+  @Test
+  public void testMemoryBudget() throws Exception {
+    for (int i=0; i<25; i++) {
+      prefetcher.put(i, reader.openProcessors(i)[0]);
+    }
+    assertNull(prefetcher.get(0));
+    assertNull(prefetcher.get(4));
+    assertNotNull(prefetcher.get(5));
+    assertNotNull(prefetcher.get(24));
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    prefetcher.put(0, reader.openProcessors(0)[0]);
+    prefetcher.close();
+    assertNull(prefetcher.get(0));
+    prefetcher.prefetch(new int[] {1});
+    Thread.sleep(100);
+    assertNull(prefetcher.get(1));
+  }
+
+  // -- Helper methods --
+
+  private ImageProcessor waitFor(int index) throws InterruptedException {
+    for (int i=0; i<100; i++) {
+      ImageProcessor ip = prefetcher.get(index);
+      if (ip != null) {
+        return ip;
+      }
+      Thread.sleep(50);
+    }
+    return null;
+  }
+
+}
@@ -39,10 +39,18 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.TreeMap;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import loci.common.Constants;
 import loci.common.DataTools;
@@ -60,6 +68,7 @@ import loci.formats.FilePattern;
 import loci.formats.FileStitcher;
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
+import loci.formats.ICompressedTileReader;
 import loci.formats.IFormatReader;
 import loci.formats.IFormatWriter;
 import loci.formats.ImageReader;
@@ -99,6 +108,12 @@ public final class ImageConverter {
   private static final Logger LOGGER =
     LoggerFactory.getLogger(ImageConverter.class);
 
+  /**
+   * Maximum number of bytes read in one call when converting a plane
+   * one row of tiles at a time.
+   */
+  private static final long MAX_BATCH_BYTES = 64 * 1024 * 1024;
+
   // -- Fields --
 
   private String in = null, out = null;
@@ -110,6 +125,7 @@ public final class ImageConverter {
   private boolean printVersion = false;
   private boolean lookup = true;
   private boolean autoscale = false;
+  private int autoscaleThreads = 0;
   private Boolean overwrite = null;
   private int series = -1;
   private int firstPlane = 0;
@@ -132,6 +148,18 @@ public final class ImageConverter {
   private boolean firstTile = true;
   private DynamicMetadataOptions options = new DynamicMetadataOptions();
 
+  private long bytesRead = 0, bytesWritten = 0;
+  private long readNanos = 0, writeNanos = 0;
+
+  /** Buffers for batches of tiles, reused across tile rows and planes. */
+  private byte[][] batchBuffers = new byte[2][];
+
+  /** Tile buffers, reused across tiles and planes of the same size. */
+  private HashMap<Integer, byte[]> tileBuffers = new HashMap<Integer, byte[]>();
+
+  /** Reads the next batch of tiles while the current one is written. */
+  private ExecutorService readExecutor;
+
   // -- Constructor --
 
   public ImageConverter() { }
@@ -163,6 +191,18 @@ public final class ImageConverter {
         else if (args[i].equals("-nogroup")) group = false;
         else if (args[i].equals("-nolookup")) lookup = false;
         else if (args[i].equals("-autoscale")) autoscale = true;
+        else if (args[i].equals("-autoscale-threads")) {
+          try {
+            autoscaleThreads = Integer.parseInt(args[++i]);
+            if (autoscaleThreads <= 0) {
+              LOGGER.error("Invalid autoscale thread count: {}",
+                autoscaleThreads);
+              return false;
+            }
+            autoscale = true;
+          }
+          catch (NumberFormatException e) { }
+        }
         else if (args[i].equals("-novalid")) validate = false;
         else if (args[i].equals("-validate")) validate = true;
         else if (args[i].equals("-padded")) zeroPadding = true;
@@ -315,7 +355,8 @@ public final class ImageConverter {
       "    [-cache] [-cache-dir dir] [-no-sas]",
       "    [-map id] [-range start end] [-crop x,y,w,h]",
       "    [-channel channel] [-z Z] [-timepoint timepoint] [-nogroup]",
-      "    [-nolookup] [-autoscale] [-version] [-no-upgrade] [-padded]",
+      "    [-nolookup] [-autoscale] [-autoscale-threads threads]",
+      "    [-version] [-no-upgrade] [-padded]",
       "    [-option key value] [-novalid] [-validate] [-tilex tileSizeX]", 
       "    [-tiley tileSizeY] [-pyramid-scale scale]", 
       "    [-pyramid-resolutions numResolutionLevels] in_file out_file",
@@ -345,6 +386,9 @@ public final class ImageConverter {
       "          -autoscale: automatically adjust brightness and contrast before",
       "                      converting; this may mean that the original pixel",
       "                      values are not preserved",
+      "  -autoscale-threads: implies -autoscale; compute the min/max values of",
+      "                      every plane up front, reading planes with the",
+      "                      given number of threads (use with -cache)",
       "          -overwrite: always overwrite the output file, if it already exists",
       "        -nooverwrite: never overwrite the output file, if it already exists",
       "               -crop: crop images before converting; argument is 'x,y,w,h'",
@@ -454,6 +498,10 @@ public final class ImageConverter {
     if (map != null) Location.mapId(in, map);
 
     long start = System.currentTimeMillis();
+    bytesRead = 0;
+    bytesWritten = 0;
+    readNanos = 0;
+    writeNanos = 0;
     LOGGER.info(in);
     reader = new ImageReader();
     if (stitch) {
@@ -471,6 +519,13 @@ public final class ImageConverter {
     if (separate) reader = new ChannelSeparator(reader);
     if (merge) reader = new ChannelMerger(reader);
     if (fill) reader = new ChannelFiller(reader);
+    // the min/max calculator goes inside the memoizer, so that computed
+    // values are saved in the memo file
+    minMax = null;
+    if (autoscale) {
+      reader = new MinMaxCalculator(reader);
+      minMax = (MinMaxCalculator) reader;
+    }
     if (useMemoizer) {
       if (cacheDir != null) {
         reader = new Memoizer(reader, 0, new File(cacheDir));
@@ -479,11 +534,6 @@ public final class ImageConverter {
         reader = new Memoizer(reader, 0);
       }
     }
-    minMax = null;
-    if (autoscale) {
-      reader = new MinMaxCalculator(reader);
-      minMax = (MinMaxCalculator) reader;
-    }
 
     reader.setMetadataOptions(options);
     reader.setGroupFiles(group);
@@ -505,6 +555,11 @@ public final class ImageConverter {
 
     reader.setId(in);
 
+    if (minMax != null && reader instanceof Memoizer) {
+      // the memoizer replaces the wrapped reader when loading a memo file
+      minMax = (MinMaxCalculator) ((Memoizer) reader).getReader();
+    }
+
     MetadataStore store = reader.getMetadataStore();
 
     MetadataTools.populatePixels(store, reader, false, false);
@@ -660,6 +715,10 @@ public final class ImageConverter {
         writer.setSeries(writerSeries);
         writer.setResolution(res);
         writer.setInterleaved(reader.isInterleaved() && !autoscale);
+        if (autoscaleThreads > 0) {
+          // planes whose values are already known are not read again
+          minMax.populateMinMax(autoscaleThreads);
+        }
         writer.setValidBitsPerPixel(reader.getBitsPerPixel());
         int numImages = writer.canDoStacks() ? reader.getImageCount() : 1;
 
@@ -748,6 +807,18 @@ public final class ImageConverter {
       }
     }
     writer.close();
+    if (readExecutor != null) {
+      readExecutor.shutdown();
+      readExecutor = null;
+    }
+    batchBuffers = new byte[2][];
+    tileBuffers.clear();
+    if (minMax != null && reader instanceof Memoizer) {
+      Memoizer memoizer = (Memoizer) reader;
+      if (memoizer.isLoadedFromMemo() || memoizer.isSavedToMemo()) {
+        memoizer.saveMemo();
+      }
+    }
     long end = System.currentTimeMillis();
     LOGGER.info("[done]");
 
@@ -758,6 +829,11 @@ public final class ImageConverter {
     float writeAvg = (float) write / total;
     LOGGER.info("{}s elapsed ({}+{}ms per plane, {}ms overhead)",
       new Object[] {sec, readAvg, writeAvg, initial});
+    if (readNanos > 0 && writeNanos > 0) {
+      LOGGER.info("read {} MB ({} MB/s), wrote {} MB ({} MB/s)",
+        new Object[] {toMB(bytesRead), toMBPerSecond(bytesRead, readNanos),
+        toMB(bytesWritten), toMBPerSecond(bytesWritten, writeNanos)});
+    }
 
     return true;
   }
@@ -798,7 +874,9 @@ public final class ImageConverter {
     autoscalePlane(buf, index);
     applyLUT(writer);
     long m = System.currentTimeMillis();
+    long start = System.nanoTime();
     writer.saveBytes(outputIndex, buf);
+    recordWrite(start, buf.length);
     return m;
   }
 
@@ -825,8 +903,23 @@ public final class ImageConverter {
       h = saveTileHeight;
     }
 
+    IFormatWriter baseWriter = writer;
+    if (writer instanceof ImageWriter) {
+      baseWriter = ((ImageWriter) writer).getWriter(out);
+    }
+    ICompressedTileReader tileReader =
+      getCompressedTileReader(baseWriter, index, currentFile, w, h);
+    boolean interleaved = writer.isInterleaved();
+    if (tileReader != null) {
+      // compressed tiles are always stored with interleaved samples
+      writer.setInterleaved(true);
+    }
+
     if (firstTile) {
       LOGGER.info("Tile size = {} x {}", w, h);
+      if (tileReader != null) {
+        LOGGER.info("Copying compressed tiles without recompression");
+      }
       firstTile = false;
     }
 
@@ -844,6 +937,15 @@ public final class ImageConverter {
     ifd.put(IFD.TILE_WIDTH, w);
     ifd.put(IFD.TILE_LENGTH, h);
 
+    if (tileReader == null &&
+      canBatchTiles(baseWriter, writer.getResolution(), currentFile, w, h))
+    {
+      long m = convertTileRows((TiffWriter) baseWriter, index, outputIndex,
+        ifd, w, h, nXTiles, nYTiles);
+      writer.setInterleaved(interleaved);
+      return m;
+    }
+
     Long m = null;
     for (int y=0; y<nYTiles; y++) {
       for (int x=0; x<nXTiles; x++) {
@@ -851,6 +953,36 @@ public final class ImageConverter {
         int tileY = yCoordinate + y * h;
         int tileWidth = x < nXTiles - 1 ? w : width - (w * x);
         int tileHeight = y < nYTiles - 1 ? h : height - (h * y);
+
+        if (tileReader != null) {
+          long start = System.nanoTime();
+          byte[] tile = tileReader.openCompressedBytes(index, x, y);
+          if (tile != null) {
+            recordRead(start, tile.length);
+          }
+          applyLUT(writer);
+          if (m == null) {
+            m = System.currentTimeMillis();
+          }
+          if (tile != null) {
+            start = System.nanoTime();
+            ((TiffWriter) baseWriter).saveCompressedBytes(outputIndex, tile,
+              ifd, x * w, y * h, tileWidth, tileHeight);
+            recordWrite(start, tile.length);
+          }
+          else {
+            // the tile is not stored in the file, so write decoded pixels
+            byte[] buf = interleave(getTile(reader, writer.getResolution(),
+              index, tileX, tileY, tileWidth, tileHeight),
+              tileWidth, tileHeight);
+            start = System.nanoTime();
+            ((TiffWriter) baseWriter).saveBytes(outputIndex, buf, ifd,
+              x * w, y * h, tileWidth, tileHeight);
+            recordWrite(start, buf.length);
+          }
+          continue;
+        }
+
         byte[] buf = getTile(reader, writer.getResolution(),
           index, tileX, tileY, tileWidth, tileHeight);
 
@@ -913,22 +1045,288 @@ public final class ImageConverter {
           outputY = 0;
         }
         
-        if (writer instanceof TiffWriter) {
-          ((TiffWriter) writer).saveBytes(outputIndex, buf,
-            ifd, outputX, outputY, tileWidth, tileHeight);
+        if (baseWriter instanceof TiffWriter) {
+          long start = System.nanoTime();
+          ((TiffWriter) baseWriter).saveBytes(outputIndex, buf, ifd,
+            outputX, outputY, tileWidth, tileHeight);
+          recordWrite(start, buf.length);
         }
-        else if (writer instanceof ImageWriter) {
-          IFormatWriter baseWriter = ((ImageWriter) writer).getWriter(out);
-          if (baseWriter instanceof TiffWriter) {
-            ((TiffWriter) baseWriter).saveBytes(outputIndex, buf, ifd,
-              outputX, outputY, tileWidth, tileHeight);
-          }
+      }
+    }
+    writer.setInterleaved(interleaved);
+    return m;
+  }
+
+  /**
+   * Returns true if the given plane can be converted one row of tiles at a
+   * time by {@link #convertTileRows}.  This requires a single output file
+   * and no pixel transformations other than cropping.
+   */
+  private boolean canBatchTiles(IFormatWriter writer, int resolution,
+    String currentFile, int tileWidth, int tileHeight)
+  {
+    long tileBytes = (long) tileWidth * tileHeight *
+      reader.getRGBChannelCount() *
+      FormatTools.getBytesPerPixel(reader.getPixelType());
+    return writer instanceof TiffWriter && !autoscale &&
+      resolution < reader.getResolutionCount() &&
+      tileBytes <= Integer.MAX_VALUE &&
+      currentFile.equals(FormatTools.getTileFilename(0, 0, 0, currentFile));
+  }
+
+  /**
+   * Convert the specified plane by reading batches of adjacent tiles from
+   * each row of tiles, up to {@link #MAX_BATCH_BYTES} at a time.  The next
+   * batch is read in the background while the tiles in the current batch
+   * are written, and all buffers are reused.
+   * @return the time at which writing started, in milliseconds
+   */
+  private long convertTileRows(TiffWriter writer, final int index,
+    int outputIndex, IFD ifd, int w, int h, int nXTiles, int nYTiles)
+    throws FormatException, IOException
+  {
+    reader.setResolution(writer.getResolution());
+    applyLUT(writer);
+
+    int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+    int channels = reader.getRGBChannelCount();
+    boolean interleaved = reader.isInterleaved();
+    long tileBytes = (long) w * h * channels * bpp;
+    int tilesPerBatch =
+      (int) Math.max(1, Math.min(nXTiles, MAX_BATCH_BYTES / tileBytes));
+
+    // each region is {x, y, width, height} in input pixel coordinates
+    List<int[]> regions = new ArrayList<int[]>();
+    for (int y=0; y<nYTiles; y++) {
+      int tileHeight = y < nYTiles - 1 ? h : height - (h * y);
+      for (int x=0; x<nXTiles; x+=tilesPerBatch) {
+        int regionWidth = Math.min(tilesPerBatch * w, width - (w * x));
+        regions.add(new int[] {xCoordinate + x * w, yCoordinate + y * h,
+          regionWidth, tileHeight});
+      }
+    }
+
+    int bufferSize = (int) Math.min(Integer.MAX_VALUE,
+      (long) Math.min(tilesPerBatch * w, width) * h * channels * bpp);
+    for (int i=0; i<batchBuffers.length; i++) {
+      if (batchBuffers[i] == null || batchBuffers[i].length < bufferSize) {
+        batchBuffers[i] = new byte[bufferSize];
+      }
+    }
+    if (readExecutor == null) {
+      readExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "ImageConverter-Read");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+
+    Long m = null;
+    Future<Long> next = readRegion(index, batchBuffers[0], regions.get(0));
+    try {
+      for (int r=0; r<regions.size(); r++) {
+        int[] region = regions.get(r);
+        byte[] batch = batchBuffers[r % 2];
+        readNanos += waitForRead(next);
+        next = null;
+        bytesRead += (long) region[2] * region[3] * channels * bpp;
+        if (r < regions.size() - 1) {
+          next = readRegion(index, batchBuffers[(r + 1) % 2],
+            regions.get(r + 1));
+        }
+
+        if (m == null) {
+          m = System.currentTimeMillis();
+        }
+        int outputX = region[0] - xCoordinate;
+        int outputY = region[1] - yCoordinate;
+        for (int x=0; x<region[2]; x+=w) {
+          int tileWidth = Math.min(w, region[2] - x);
+          byte[] tile = copyTile(batch, region[2], region[3], x, tileWidth,
+            channels * bpp, interleaved ? 1 : channels);
+          long start = System.nanoTime();
+          writer.saveBytes(outputIndex, tile, ifd,
+            outputX + x, outputY, tileWidth, region[3]);
+          recordWrite(start, tile.length);
+        }
+      }
+    }
+    finally {
+      if (next != null) {
+        // the reader must be idle before anything else uses it
+        next.cancel(false);
+        try {
+          waitForRead(next);
+        }
+        catch (Exception e) {
+          LOGGER.debug("Ignoring failed read", e);
         }
       }
     }
     return m;
   }
 
+  /** Read the given region of a plane in the background. */
+  private Future<Long> readRegion(final int index, final byte[] buf,
+    final int[] region)
+  {
+    return readExecutor.submit(new Callable<Long>() {
+      @Override
+      public Long call() throws FormatException, IOException {
+        long start = System.nanoTime();
+        reader.openBytes(index, buf, region[0], region[1],
+          region[2], region[3]);
+        return System.nanoTime() - start;
+      }
+    });
+  }
+
+  /**
+   * Wait for a background read to finish.
+   * @return the time spent reading, in nanoseconds
+   */
+  private long waitForRead(Future<Long> read)
+    throws FormatException, IOException
+  {
+    try {
+      return read.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading tiles", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) {
+        throw (FormatException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new FormatException(cause);
+    }
+  }
+
+  /**
+   * Copy one tile out of a batch of tiles read from the same tile row.
+   * @param batch pixels for the whole batch, as returned by openBytes
+   * @param batchWidth width of the batch in pixels
+   * @param tileHeight height of the batch and tile in pixels
+   * @param x X coordinate of the tile within the batch
+   * @param tileWidth width of the tile in pixels
+   * @param pixelBytes bytes per pixel, including all interleaved channels
+   * @param planes the number of separate channel planes
+   * @return a reused buffer containing the tile
+   */
+  private byte[] copyTile(byte[] batch, int batchWidth, int tileHeight,
+    int x, int tileWidth, int pixelBytes, int planes)
+  {
+    int planeBytes = pixelBytes / planes;
+    int rowBytes = tileWidth * planeBytes;
+    int batchRowBytes = batchWidth * planeBytes;
+    int length = rowBytes * tileHeight * planes;
+    byte[] tile = tileBuffers.get(length);
+    if (tile == null) {
+      tile = new byte[length];
+      tileBuffers.put(length, tile);
+    }
+    for (int p=0; p<planes; p++) {
+      int src = p * batchRowBytes * tileHeight + x * planeBytes;
+      int dest = p * rowBytes * tileHeight;
+      for (int row=0; row<tileHeight; row++) {
+        System.arraycopy(batch, src, tile, dest, rowBytes);
+        src += batchRowBytes;
+        dest += rowBytes;
+      }
+    }
+    return tile;
+  }
+
+  private void recordRead(long start, long bytes) {
+    readNanos += System.nanoTime() - start;
+    bytesRead += bytes;
+  }
+
+  private void recordWrite(long start, long bytes) {
+    writeNanos += System.nanoTime() - start;
+    bytesWritten += bytes;
+  }
+
+  private static String toMB(long bytes) {
+    return String.format("%.1f", bytes / (1024.0 * 1024.0));
+  }
+
+  private static String toMBPerSecond(long bytes, long nanos) {
+    return String.format("%.1f", (bytes / (1024.0 * 1024.0)) / (nanos / 1e9));
+  }
+
+  /**
+   * Returns the reader from which the stored tiles of the given plane can be
+   * copied to the writer without being decoded and re-encoded, or null if
+   * the plane must be converted normally.  Tiles are only copied if no
+   * pixel transformations were requested, and the input and output have the
+   * same compression and tile size.
+   */
+  private ICompressedTileReader getCompressedTileReader(IFormatWriter writer,
+    int index, String currentFile, int tileWidth, int tileHeight)
+    throws FormatException, IOException
+  {
+    if (!(writer instanceof TiffWriter) || autoscale ||
+      xCoordinate != 0 || yCoordinate != 0 ||
+      width != reader.getSizeX() || height != reader.getSizeY() ||
+      writer.getResolution() >= reader.getResolutionCount() ||
+      !currentFile.equals(FormatTools.getTileFilename(0, 0, 0, currentFile)))
+    {
+      return null;
+    }
+
+    // only unwrap readers that do not transform pixel data
+    IFormatReader base = reader;
+    if (base instanceof Memoizer) {
+      base = ((Memoizer) base).getReader();
+    }
+    if (base instanceof ImageReader) {
+      base = ((ImageReader) base).getReader();
+    }
+    if (!(base instanceof ICompressedTileReader)) {
+      return null;
+    }
+
+    ICompressedTileReader tileReader = (ICompressedTileReader) base;
+    reader.setResolution(writer.getResolution());
+    String codec = tileReader.getTileCodec(index);
+    if (codec == null || !codec.equals(writer.getCompression()) ||
+      tileReader.getCompressedTileWidth(index) != tileWidth ||
+      tileReader.getCompressedTileHeight(index) != tileHeight)
+    {
+      return null;
+    }
+    return tileReader;
+  }
+
+  /**
+   * Converts a tile from the reader's channel order to interleaved samples.
+   */
+  private byte[] interleave(byte[] buf, int w, int h) {
+    int c = reader.getRGBChannelCount();
+    if (c == 1 || reader.isInterleaved()) {
+      return buf;
+    }
+    int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+    int planeSize = w * h * bpp;
+    byte[] interleaved = new byte[buf.length];
+    for (int i=0; i<w*h; i++) {
+      for (int ch=0; ch<c; ch++) {
+        System.arraycopy(buf, ch * planeSize + i * bpp,
+          interleaved, (i * c + ch) * bpp, bpp);
+      }
+    }
+    return interleaved;
+  }
+
   /**
    * Calculate the number of vertical tiles represented by the given file name pattern.
    * @param outputName the output file name pattern
@@ -1072,15 +1470,19 @@ public final class ImageConverter {
     int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    long start = System.nanoTime();
     if (resolution < reader.getResolutionCount()) {
       reader.setResolution(resolution);
-      return reader.openBytes(no, x, y, w, h);
+      byte[] tile = reader.openBytes(no, x, y, w, h);
+      recordRead(start, tile.length);
+      return tile;
     }
     reader.setResolution(0);
     IImageScaler scaler = new SimpleImageScaler();
     int scale = (int) Math.pow(pyramidScale, resolution);
     byte[] tile =
       reader.openBytes(no, x * scale, y * scale, w * scale, h * scale);
+    recordRead(start, tile.length);
     int type = reader.getPixelType();
     return scaler.downsample(tile, w * scale, h * scale, scale,
       FormatTools.getBytesPerPixel(type), reader.isLittleEndian(),
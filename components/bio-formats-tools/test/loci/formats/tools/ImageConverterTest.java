@@ -42,6 +42,7 @@ import java.security.Permission;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import loci.formats.ChannelSeparator;
 import loci.formats.IFormatReader;
 import loci.formats.ImageReader;
 import loci.formats.ImageWriter;
@@ -308,4 +309,85 @@ public class ImageConverterTest {
     File outFileToCheck = outFile = tempDir.resolve("seperate-tiles_0_0_0.ome.tiff").toFile();
     assertConversion(argsList.toArray(args), outFileToCheck.getAbsolutePath(), 256);
   }
+
+  @DataProvider(name = "tiledPixels")
+  public Object[][] createTiledPixels() {
+    return new Object[][] {
+      {"test&sizeX=300&sizeY=200&sizeC=3&rgb=3&interleaved=true.fake", null},
+      {"test&sizeX=300&sizeY=200&sizeC=3&rgb=3&interleaved=false.fake", null},
+      {"test&sizeX=300&sizeY=200&pixelType=uint16&sizeC=2.fake", null},
+      {"test&sizeX=300&sizeY=200&sizeC=3&rgb=3.fake", "17,9,251,170"},
+    };
+  }
+
+  @Test(dataProvider = "tiledPixels")
+  public void testTiledPixels(String input, String crop)
+    throws FormatException, IOException
+  {
+    outFile = tempDir.resolve("tiled-pixels.ome.tiff").toFile();
+    outFile.deleteOnExit();
+    ArrayList<String> argsList = new ArrayList<String>();
+    argsList.addAll(Arrays.asList("-overwrite", "-tilex", "64", "-tiley", "48"));
+    int x = 0, y = 0;
+    if (crop != null) {
+      argsList.add("-crop");
+      argsList.add(crop);
+      String[] region = crop.split(",");
+      x = Integer.parseInt(region[0]);
+      y = Integer.parseInt(region[1]);
+    }
+    argsList.add(input);
+    argsList.add(outFile.getAbsolutePath());
+    String[] args = new String[argsList.size()];
+    assertTrue(new ImageConverter().testConvert(
+      new ImageWriter(), argsList.toArray(args)));
+
+    // interleaved RGB OME-TIFFs are read as planar, so compare channels
+    IFormatReader original = new ChannelSeparator(new ImageReader());
+    IFormatReader converted = new ChannelSeparator(new ImageReader());
+    try {
+      original.setId(input);
+      converted.setId(outFile.getAbsolutePath());
+      assertEquals(converted.getImageCount(), original.getImageCount());
+      for (int i=0; i<original.getImageCount(); i++) {
+        byte[] expected = original.openBytes(i, x, y,
+          converted.getSizeX(), converted.getSizeY());
+        assertEquals(converted.openBytes(i), expected);
+      }
+    }
+    finally {
+      original.close();
+      converted.close();
+    }
+  }
+
+  @Test
+  public void testAutoscaleThreads() throws FormatException, IOException {
+    String input = "test&pixelType=uint16&sizeZ=3&sizeT=2.fake";
+    File expectedFile = tempDir.resolve("autoscale.ome.tiff").toFile();
+    File threadedFile = tempDir.resolve("autoscale-threads.ome.tiff").toFile();
+    expectedFile.deleteOnExit();
+    threadedFile.deleteOnExit();
+    assertTrue(new ImageConverter().testConvert(new ImageWriter(),
+      new String[] {"-overwrite", "-autoscale", input,
+      expectedFile.getAbsolutePath()}));
+    assertTrue(new ImageConverter().testConvert(new ImageWriter(),
+      new String[] {"-overwrite", "-autoscale-threads", "2", input,
+      threadedFile.getAbsolutePath()}));
+
+    IFormatReader expected = new ImageReader();
+    IFormatReader threaded = new ImageReader();
+    try {
+      expected.setId(expectedFile.getAbsolutePath());
+      threaded.setId(threadedFile.getAbsolutePath());
+      assertEquals(threaded.getImageCount(), expected.getImageCount());
+      for (int i=0; i<expected.getImageCount(); i++) {
+        assertEquals(threaded.openBytes(i), expected.openBytes(i));
+      }
+    }
+    finally {
+      expected.close();
+      threaded.close();
+    }
+  }
 }
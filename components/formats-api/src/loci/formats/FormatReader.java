@@ -32,7 +32,12 @@
 
 package loci.formats;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.Hashtable;
@@ -40,14 +45,24 @@ import java.util.List;
 import java.util.Set;
 import java.util.Vector;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import loci.common.DataTools;
+import loci.common.IRandomAccess;
 import loci.common.Location;
+import loci.common.NIOFileHandle;
 import loci.common.RandomAccessInputStream;
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
 import loci.common.services.ServiceFactory;
+import loci.formats.in.DynamicMetadataOptions;
 import loci.formats.in.MetadataLevel;
+import loci.formats.in.MetadataOptions;
 import loci.formats.meta.DummyMetadata;
 import loci.formats.meta.FilterMetadata;
 import loci.formats.meta.IMetadata;
@@ -121,6 +136,11 @@ public abstract class FormatReader extends FormatHandler
   /** Default thumbnail width and height. */
   protected static final int THUMBNAIL_DIMENSION = 128;
 
+  /** Sequences removed from filtered metadata to prevent XML errors. */
+  private static final String[] INVALID_SEQUENCES = {
+    "&lt;", "&gt;", "&amp;", "<", ">", "&"
+  };
+
   // -- Fields --
 
   /** Current file. */
@@ -189,6 +209,30 @@ public abstract class FormatReader extends FormatHandler
   private ServiceFactory factory;
   private OMEXMLService service;
 
+  /** Channel used by {@link #mapPlane} to memory-map raw pixel data. */
+  private transient FileChannel mappedChannel;
+
+  /** Path of the file backing {@link #mappedChannel}. */
+  private transient String mappedChannelFile;
+
+  /** Whether a metadata table holds a list that has not been flattened. */
+  private boolean metadataListsPending = false;
+
+  /** Whether original metadata is not being collected during setId. */
+  private boolean originalMetadataSkipped = false;
+
+  /** Whether skipped original metadata should be collected on request. */
+  private boolean originalMetadataDeferred = false;
+
+  /** Whether original metadata must be collected, even if lazy. */
+  private boolean originalMetadataRequired = false;
+
+  /**
+   * Core indexes of the series that have not been initialized yet, or null
+   * if every series was initialized by {@link #initFile(String)}.
+   */
+  private boolean[] pendingSeries;
+
   // -- Constructors --
 
   /** Constructs a format reader with the given name and default suffix. */
@@ -233,11 +277,16 @@ public abstract class FormatReader extends FormatHandler
     close();
     currentId = id;
     metadata = new Hashtable<String, Object>();
+    metadataListsPending = false;
+    originalMetadataSkipped = !originalMetadataRequired &&
+      !saveOriginalMetadata && isOriginalMetadataLazy();
+    originalMetadataDeferred = false;
 
     core = new ArrayList<CoreMetadata>();
     CoreMetadata core0 = new CoreMetadata();
     core.add(core0);
     core0.orderCertain = true;
+    pendingSeries = null;
 
     // reinitialize the MetadataStore
     // NB: critical for metadata conversion to work properly!
@@ -259,7 +308,7 @@ public abstract class FormatReader extends FormatHandler
   protected void addMeta(String key, Object value,
     Hashtable<String, Object> meta)
   {
-    if (key == null || value == null ||
+    if (key == null || value == null || originalMetadataSkipped ||
       getMetadataOptions().getMetadataLevel() == MetadataLevel.MINIMUM)
     {
       return;
@@ -287,24 +336,15 @@ public abstract class FormatReader extends FormatHandler
       if (string && val.length() > maxLen) return;
 
       // remove all non-printable characters
-      key = DataTools.sanitize(key);
-      if (string) val = DataTools.sanitize(val);
+      key = sanitize(key);
+      if (string) val = sanitize(val);
 
       // verify key contains at least one alphabetic character
-      if (!key.matches(".*[a-zA-Z].*")) return;
+      if (!hasLetter(key)) return;
 
       // remove &lt;, &gt; and &amp; to prevent XML parsing errors
-      String[] invalidSequences = new String[] {
-        "&lt;", "&gt;", "&amp;", "<", ">", "&"
-      };
-      for (int i=0; i<invalidSequences.length; i++) {
-        if (key.indexOf(invalidSequences[i]) >= 0) {
-          key = key.replaceAll(invalidSequences[i], "");
-        }
-        if (string && val.indexOf(invalidSequences[i]) >= 0) {
-          val = val.replaceAll(invalidSequences[i], "");
-        }
-      }
+      key = removeInvalidSequences(key);
+      if (string) val = removeInvalidSequences(val);
 
       // verify key & value are not empty
       if (key.length() == 0) return;
@@ -387,6 +427,7 @@ public abstract class FormatReader extends FormatHandler
 
       list.add(newValue);
       meta.put(key, list);
+      metadataListsPending = true;
     }
     else if (list != null) {
       meta.put(key, list);
@@ -454,6 +495,378 @@ public abstract class FormatReader extends FormatHandler
     }
   }
 
+  /** Flattens the metadata tables if a list was added since the last call. */
+  private void flattenPendingLists() {
+    if (metadataListsPending) {
+      metadataListsPending = false;
+      flattenHashtables();
+    }
+  }
+
+  /**
+   * Returns true if series may be initialized the first time that they are
+   * selected, instead of by {@link #initFile(String)}; see
+   * {@link DynamicMetadataOptions#SERIES_LAZY_KEY}.
+   */
+  protected boolean isSeriesLazy() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getBoolean(
+        DynamicMetadataOptions.SERIES_LAZY_KEY,
+        DynamicMetadataOptions.SERIES_LAZY_DEFAULT);
+    }
+    return DynamicMetadataOptions.SERIES_LAZY_DEFAULT;
+  }
+
+  /**
+   * Marks a series as not yet initialized.  Readers that support lazy
+   * series initialization call this from {@link #initFile(String)} for
+   * each series that they do not populate; the core metadata of such a
+   * series is a placeholder until {@link #initSeries(int)} is called, the
+   * first time that the series is selected.
+   *
+   * @param coreIndex the core index of a series without sub-resolutions
+   */
+  protected void deferSeries(int coreIndex) {
+    if (core.get(coreIndex).resolutionCount > 1) {
+      throw new IllegalArgumentException(
+        "Series with sub-resolutions cannot be deferred: " + coreIndex);
+    }
+    if (pendingSeries == null) {
+      pendingSeries = new boolean[core.size()];
+    }
+    else if (pendingSeries.length < core.size()) {
+      pendingSeries = Arrays.copyOf(pendingSeries, core.size());
+    }
+    pendingSeries[coreIndex] = true;
+  }
+
+  /**
+   * Populates the core metadata of a series that was deferred by
+   * {@link #deferSeries(int)}.  The series is selected when this method is
+   * called; its metadata store entries are then populated by
+   * {@link #initSeriesMetadata(int, MetadataStore)}.
+   *
+   * @param coreIndex the core index of the series to initialize
+   * @throws FormatException if the reader does not support lazy series
+   *   initialization, or if the series metadata could not be parsed
+   * @throws IOException if there was a problem reading the file
+   */
+  protected void initSeries(int coreIndex)
+    throws FormatException, IOException
+  {
+    throw new FormatException(getFormat() +
+      " does not support lazy series initialization");
+  }
+
+  /**
+   * Populates the metadata store entries of a series that was deferred by
+   * {@link #deferSeries(int)}, once {@link #initSeries(int)} has populated
+   * its core metadata.  The series is selected when this method is called.
+   *
+   * The same series may be written to more than one store (see
+   * {@link #copySeriesMetadata(int, MetadataStore)}), so implementations
+   * must only write the entries of the given series, and must not change
+   * the state of the reader.
+   *
+   * @param coreIndex the core index of the series to populate
+   * @param store the store to populate
+   * @throws FormatException if the series metadata could not be parsed
+   * @throws IOException if there was a problem reading the file
+   */
+  protected void initSeriesMetadata(int coreIndex, MetadataStore store)
+    throws FormatException, IOException
+  {
+  }
+
+  /**
+   * Writes the metadata store entries of a series that was deferred and
+   * has since been initialized to the given store.  Wrappers whose
+   * caller's store is not the store that this reader populates, such as
+   * the Memoizer, use this to copy only the series that was initialized
+   * instead of converting the whole store.
+   *
+   * @param coreIndex the core index of an initialized series
+   * @param store the store to populate
+   * @throws FormatException if the series metadata could not be parsed
+   * @throws IOException if there was a problem reading the file
+   */
+  public void copySeriesMetadata(int coreIndex, MetadataStore store)
+    throws FormatException, IOException
+  {
+    if (!isSeriesInitialized(coreIndex)) {
+      throw new IllegalStateException("Series is not initialized: " +
+        coreIndex);
+    }
+    int currentIndex = getCoreIndex();
+    setCoreIndex(coreIndex);
+    try {
+      populateSeriesMetadata(coreIndex, store);
+    }
+    finally {
+      setCoreIndex(currentIndex);
+    }
+  }
+
+  /**
+   * Returns true if the series with the given core index has been
+   * initialized; series are only left uninitialized if
+   * {@link DynamicMetadataOptions#SERIES_LAZY_KEY} is set and the reader
+   * supports it.  Selecting a series initializes it.
+   */
+  public boolean isSeriesInitialized(int coreIndex) {
+    return pendingSeries == null || coreIndex >= pendingSeries.length ||
+      !pendingSeries[coreIndex];
+  }
+
+  /**
+   * Populates the store entries of the current series, which was deferred,
+   * including its modulo annotations.
+   */
+  private void populateSeriesMetadata(int index, MetadataStore store)
+    throws FormatException, IOException
+  {
+    initSeriesMetadata(index, new FilterMetadata(store, isMetadataFiltered()));
+    if (store instanceof OMEXMLMetadata) {
+      setupService();
+      addModuloAlong(store);
+    }
+  }
+
+  /** Initializes the current series, if it was deferred. */
+  private void initPendingSeries() {
+    int index = coreIndex;
+    if (isSeriesInitialized(index)) {
+      return;
+    }
+    pendingSeries[index] = false;
+    int currentSeries = series;
+    int currentResolution = resolution;
+    try {
+      initSeries(index);
+      populateSeriesMetadata(index, getMetadataStore());
+    }
+    catch (FormatException | IOException e) {
+      pendingSeries[index] = true;
+      throw new IllegalStateException("Could not initialize series " +
+        currentSeries, e);
+    }
+    finally {
+      coreIndex = index;
+      series = currentSeries;
+      resolution = currentResolution;
+    }
+  }
+
+  /**
+   * Runs independent initialization tasks, such as parsing the metadata of
+   * each series or of each file in a dataset, on up to
+   * {@link DynamicMetadataOptions#INIT_THREADS_KEY} threads.
+   *
+   * Tasks must not modify the state of this reader.  Instead, each task
+   * returns its result, and the results are returned in the same order as
+   * the tasks, so that the caller can merge them into the core metadata
+   * and metadata store in a deterministic order.  If only one thread is
+   * allowed, the tasks are run in order on the calling thread.
+   *
+   * @param tasks the tasks to run
+   * @return the result of each task, in the order of <code>tasks</code>
+   * @throws FormatException if a task threw a FormatException
+   * @throws IOException if a task threw an IOException, or if the calling
+   *   thread was interrupted
+   */
+  protected <T> List<T> runInitTasks(List<? extends Callable<T>> tasks)
+    throws FormatException, IOException
+  {
+    List<T> results = new ArrayList<T>(tasks.size());
+    int threads = Math.min(getInitThreads(), tasks.size());
+    if (threads <= 1) {
+      for (Callable<T> task : tasks) {
+        try {
+          results.add(task.call());
+        }
+        catch (Exception e) {
+          throw rethrowInitException(e);
+        }
+      }
+      return results;
+    }
+
+    LOGGER.debug("Running {} initialization tasks on {} threads",
+      tasks.size(), threads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+    try {
+      for (Callable<T> task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      for (Future<T> future : futures) {
+        try {
+          results.add(future.get());
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while initializing " +
+            currentId, e);
+        }
+        catch (ExecutionException e) {
+          throw rethrowInitException(e.getCause());
+        }
+      }
+    }
+    finally {
+      // stop any remaining tasks and wait for them, so that no task is
+      // still running once this method returns
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns the maximum number of threads to use for initialization; see
+   * {@link DynamicMetadataOptions#INIT_THREADS_KEY}.
+   */
+  protected int getInitThreads() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      Integer threads = ((DynamicMetadataOptions) options).getInteger(
+        DynamicMetadataOptions.INIT_THREADS_KEY,
+        DynamicMetadataOptions.INIT_THREADS_DEFAULT);
+      if (threads != null) return Math.max(1, threads);
+    }
+    return DynamicMetadataOptions.INIT_THREADS_DEFAULT;
+  }
+
+  /**
+   * Rethrows an exception thrown by an initialization task as one of the
+   * exception types declared by {@link #runInitTasks(List)}.
+   */
+  private FormatException rethrowInitException(Throwable cause)
+    throws FormatException, IOException
+  {
+    if (cause instanceof FormatException) throw (FormatException) cause;
+    if (cause instanceof IOException) throw (IOException) cause;
+    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+    if (cause instanceof Error) throw (Error) cause;
+    return new FormatException(cause);
+  }
+
+  /**
+   * Returns true if original metadata should only be collected when it is
+   * requested; see {@link DynamicMetadataOptions#ORIGINAL_METADATA_LAZY_KEY}.
+   */
+  private boolean isOriginalMetadataLazy() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getBoolean(
+        DynamicMetadataOptions.ORIGINAL_METADATA_LAZY_KEY,
+        DynamicMetadataOptions.ORIGINAL_METADATA_LAZY_DEFAULT);
+    }
+    return false;
+  }
+
+  /**
+   * Collects the original metadata that was skipped during initialization,
+   * by initializing a second reader for the same file.  This is only done
+   * once, the first time that original metadata is requested.
+   */
+  private void loadOriginalMetadata() {
+    if (!originalMetadataDeferred) {
+      return;
+    }
+    originalMetadataDeferred = false;
+    originalMetadataSkipped = false;
+
+    FormatReader reader;
+    try {
+      reader = getClass().newInstance();
+    }
+    catch (InstantiationException | IllegalAccessException e) {
+      LOGGER.warn("Could not collect original metadata", e);
+      return;
+    }
+    reader.originalMetadataRequired = true;
+    reader.setMetadataOptions(getMetadataOptions());
+    reader.setGroupFiles(isGroupFiles());
+    reader.setFlattenedResolutions(hasFlattenedResolutions());
+    reader.setMetadataFiltered(isMetadataFiltered());
+    int currentIndex = getCoreIndex();
+    try {
+      reader.setId(currentId);
+      metadata.putAll(reader.getGlobalMetadata());
+      int count = Math.min(reader.getCoreMetadataList().size(),
+        getCoreMetadataList().size());
+      for (int i=0; i<count; i++) {
+        reader.setCoreIndex(i);
+        setCoreIndex(i);
+        getCurrentCore().seriesMetadata.putAll(reader.getSeriesMetadata());
+      }
+    }
+    catch (FormatException | IOException e) {
+      LOGGER.warn("Could not collect original metadata", e);
+    }
+    finally {
+      setCoreIndex(currentIndex);
+      try {
+        reader.close();
+      }
+      catch (IOException e) {
+        LOGGER.debug("Could not close reader", e);
+      }
+    }
+  }
+
+  /** Removes ISO control characters other than tab and newline. */
+  private static String sanitize(String s) {
+    for (int i=0; i<s.length(); i++) {
+      char c = s.charAt(i);
+      if (c != '\t' && c != '\n' && Character.isISOControl(c)) {
+        return DataTools.sanitize(s);
+      }
+    }
+    return s;
+  }
+
+  /**
+   * Returns true if the given key contains an alphabetic character and
+   * no line terminators; equivalent to matching ".*[a-zA-Z].*".
+   */
+  private static boolean hasLetter(String key) {
+    boolean letter = false;
+    for (int i=0; i<key.length(); i++) {
+      char c = key.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' ||
+        c == '\u2028' || c == '\u2029')
+      {
+        return false;
+      }
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+        letter = true;
+      }
+    }
+    return letter;
+  }
+
+  /** Removes the sequences listed in {@link #INVALID_SEQUENCES}. */
+  private static String removeInvalidSequences(String s) {
+    if (s.indexOf('&') < 0 && s.indexOf('<') < 0 && s.indexOf('>') < 0) {
+      return s;
+    }
+    for (String sequence : INVALID_SEQUENCES) {
+      s = s.replace(sequence, "");
+    }
+    return s;
+  }
+
   /** Adds an entry to the metadata table for the current series. */
   protected void addSeriesMeta(String key, Object value) {
     addMeta(key, value, getCurrentCore().seriesMetadata);
@@ -540,39 +953,158 @@ public abstract class FormatReader extends FormatHandler
       }
     }
     else {
-      int scanlineWidth = getSizeX() + scanlinePad;
+      // let the read planner merge rows into larger reads
+      long start = s.getFilePointer();
+      long scanlineWidth = getSizeX() + scanlinePad;
       if (isInterleaved()) {
-        s.skipBytes(y * scanlineWidth * bpp * c);
-        for (int row=0; row<h; row++) {
-          s.skipBytes(x * bpp * c);
-          s.read(buf, row * w * bpp * c, w * bpp * c);
-          if (row < h - 1) {
-            // no need to skip bytes after reading final row
-            s.skipBytes(bpp * c * (scanlineWidth - w - x));
-          }
-        }
+        long stride = scanlineWidth * bpp * c;
+        ReadPlanner.readRows(s, start + y * stride + (long) x * bpp * c,
+          w * bpp * c, stride, h, buf, 0, w * bpp * c);
       }
       else {
+        long stride = scanlineWidth * bpp;
         for (int channel=0; channel<c; channel++) {
-          s.skipBytes(y * scanlineWidth * bpp);
-          for (int row=0; row<h; row++) {
-            s.skipBytes(x * bpp);
-            s.read(buf, channel * w * h * bpp + row * w * bpp, w * bpp);
-            if (row < h - 1 || channel < c - 1) {
-              // no need to skip bytes after reading final row of final channel
-              s.skipBytes(bpp * (scanlineWidth - w - x));
-            }
-          }
-          if (channel < c - 1) {
-            // no need to skip bytes after reading final channel
-            s.skipBytes(scanlineWidth * bpp * (getSizeY() - y - h));
-          }
+          long channelStart = start + channel * stride * getSizeY();
+          ReadPlanner.readRows(s, channelStart + y * stride + (long) x * bpp,
+            w * bpp, stride, h, buf, channel * w * h * bpp, w * bpp);
         }
       }
     }
     return buf;
   }
 
+  /**
+   * Returns a read-only view of a region of an uncompressed plane, without
+   * copying pixel data if possible.  The plane must be stored contiguously
+   * in the given file starting at the given offset, with the same layout
+   * expected by {@link #readPlane(RandomAccessInputStream, int, int, int, int,
+   * byte[])}.  If the region is not contiguous on disk or the file cannot be
+   * memory-mapped, the region is read with
+   * {@link #openBytes(int, int, int, int, int)} and copied instead.
+   *
+   * @param file the file containing the plane, or null if the plane is not
+   *   stored as raw pixels and must always be copied
+   * @param bottomUp true if rows are stored bottom-to-top in the file; rows
+   *   in the returned buffer are then also ordered bottom-to-top
+   * @see IMappedReader
+   */
+  protected ByteBuffer mapPlane(String file, long offset, int no,
+    int x, int y, int w, int h, boolean bottomUp)
+    throws FormatException, IOException
+  {
+    FormatTools.checkPlaneParameters(this, no, -1, x, y, w, h);
+
+    int c = getRGBChannelCount();
+    int bpp = FormatTools.getBytesPerPixel(getPixelType());
+    boolean interleaved = isInterleaved();
+    boolean fullPlane =
+      x == 0 && y == 0 && w == getSizeX() && h == getSizeY();
+    boolean fullRows = x == 0 && w == getSizeX() && (c == 1 || interleaved);
+
+    ByteBuffer view = null;
+    if (file != null && (fullPlane || fullRows)) {
+      long rowLen = (long) getSizeX() * bpp * (interleaved ? c : 1);
+      long fileY = bottomUp ? getSizeY() - y - h : y;
+      long length = h * rowLen * (interleaved ? 1 : c);
+      view = mapRegion(file, offset + fileY * rowLen, length);
+    }
+
+    if (view == null) {
+      byte[] buf = openBytes(no, x, y, w, h);
+      if (bottomUp) {
+        // openBytes always returns rows top-to-bottom
+        int rowLen = w * bpp * (interleaved ? c : 1);
+        int planes = interleaved ? 1 : c;
+        byte[] tmp = new byte[rowLen];
+        for (int p=0; p<planes; p++) {
+          int base = p * h * rowLen;
+          for (int row=0; row<h/2; row++) {
+            int src = base + row * rowLen;
+            int dest = base + (h - row - 1) * rowLen;
+            System.arraycopy(buf, src, tmp, 0, rowLen);
+            System.arraycopy(buf, dest, buf, src, rowLen);
+            System.arraycopy(tmp, 0, buf, dest, rowLen);
+          }
+        }
+      }
+      view = ByteBuffer.wrap(buf).asReadOnlyBuffer();
+    }
+    return view.order(
+      isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Returns true if the given byte range of the given file is stored on
+   * a local filesystem and can be memory-mapped by {@link #mapPlane}.
+   */
+  protected boolean isMappable(String file, long offset, long length) {
+    if (offset < 0 || length > Integer.MAX_VALUE) {
+      return false;
+    }
+    try {
+      FileChannel channel = getMappedChannel(file);
+      return channel != null && offset + length <= channel.size();
+    }
+    catch (IOException e) {
+      LOGGER.debug("Could not open " + file + " for mapping", e);
+      return false;
+    }
+  }
+
+  /**
+   * Memory-maps the given byte range of the given file.
+   * Returns null if the range cannot be mapped.
+   */
+  private ByteBuffer mapRegion(String file, long offset, long length)
+    throws IOException
+  {
+    if (!isMappable(file, offset, length)) {
+      return null;
+    }
+    return mappedChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+  }
+
+  /**
+   * Returns a channel for the given file, reusing the existing channel if
+   * possible.  Returns null if the file is not an uncompressed regular file
+   * on disk.
+   */
+  private FileChannel getMappedChannel(String file) throws IOException {
+    if (Location.getMappedFile(file) != null) {
+      return null;
+    }
+    String path = Location.getMappedId(file);
+    if (mappedChannel == null || !path.equals(mappedChannelFile)) {
+      File f = new File(path);
+      if (!f.isFile()) {
+        return null;
+      }
+      // compressed files are transparently decompressed by
+      // RandomAccessInputStream, so the raw bytes cannot be mapped
+      IRandomAccess handle = Location.getHandle(file, false, true);
+      try {
+        if (!(handle instanceof NIOFileHandle)) {
+          return null;
+        }
+      }
+      finally {
+        handle.close();
+      }
+      closeMappedChannel();
+      mappedChannel = new RandomAccessFile(f, "r").getChannel();
+      mappedChannelFile = path;
+    }
+    return mappedChannel;
+  }
+
+  private void closeMappedChannel() throws IOException {
+    if (mappedChannel != null) {
+      mappedChannel.close();
+    }
+    mappedChannel = null;
+    mappedChannelFile = null;
+  }
+
   /** Return a properly configured loci.formats.meta.FilterMetadata. */
   protected MetadataStore makeFilterMetadata() {
     return new FilterMetadata(getMetadataStore(), isMetadataFiltered());
@@ -862,6 +1394,7 @@ public abstract class FormatReader extends FormatHandler
   public byte[] openBytes(int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    FormatTools.checkMemoryBudget(this, w, h);
     int ch = getRGBChannelCount();
     int bpp = FormatTools.getBytesPerPixel(getPixelType());
     byte[] newBuffer;
@@ -899,15 +1432,34 @@ public abstract class FormatReader extends FormatHandler
     return FormatTools.openThumbBytes(this, no);
   }
 
+  /* @see IFormatReader#openPlanes() */
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    FormatTools.assertId(currentId, true, 1);
+    return new PlaneIterator(this);
+  }
+
+  /* @see IFormatReader#openRegions(List) */
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    FormatTools.assertId(currentId, true, 1);
+    FormatTools.openRegions(this, requests);
+  }
+
   /* @see IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
     if (in != null) in.close();
+    closeMappedChannel();
     if (!fileOnly) {
       in = null;
       currentId = null;
       resolution = 0;
       core = null;
+      originalMetadataDeferred = false;
+      pendingSeries = null;
     }
   }
 
@@ -928,6 +1480,7 @@ public abstract class FormatReader extends FormatHandler
     coreIndex = seriesToCoreIndex(no);
     series = no;
     resolution = 0;
+    initPendingSeries();
   }
 
   /* @see IFormatReader#getSeries() */
@@ -1099,7 +1652,8 @@ public abstract class FormatReader extends FormatHandler
   @Override
   public Object getMetadataValue(String field) {
     FormatTools.assertId(currentId, true, 1);
-    flattenHashtables();
+    loadOriginalMetadata();
+    flattenPendingLists();
     return getGlobalMeta(field);
   }
 
@@ -1107,7 +1661,8 @@ public abstract class FormatReader extends FormatHandler
   @Override
   public Object getSeriesMetadataValue(String field) {
     FormatTools.assertId(currentId, true, 1);
-    flattenHashtables();
+    loadOriginalMetadata();
+    flattenPendingLists();
     return getSeriesMeta(field);
   }
 
@@ -1115,7 +1670,8 @@ public abstract class FormatReader extends FormatHandler
   @Override
   public Hashtable<String, Object> getGlobalMetadata() {
     FormatTools.assertId(currentId, true, 1);
-    flattenHashtables();
+    loadOriginalMetadata();
+    flattenPendingLists();
     return metadata;
   }
 
@@ -1123,8 +1679,9 @@ public abstract class FormatReader extends FormatHandler
   @Override
   public Hashtable<String, Object> getSeriesMetadata() {
     FormatTools.assertId(currentId, true, 1);
+    loadOriginalMetadata();
     if (getCurrentCore().seriesMetadata.size() > 0) {
-      flattenHashtables();
+      flattenPendingLists();
     }
     return getCurrentCore().seriesMetadata;
   }
@@ -1358,6 +1915,7 @@ public abstract class FormatReader extends FormatHandler
     series = coreIndexToSeries(no);
     coreIndex = no;
     resolution = no - seriesToCoreIndex(series);
+    initPendingSeries();
   }
 
   // -- IFormatHandler API methods --
@@ -1387,6 +1945,7 @@ public abstract class FormatReader extends FormatHandler
       new Location(currentId).getAbsolutePath()))
     {
       initFile(id);
+      originalMetadataDeferred = originalMetadataSkipped;
 
       MetadataStore store = getMetadataStore();
       if (saveOriginalMetadata) {
@@ -1396,6 +1955,9 @@ public abstract class FormatReader extends FormatHandler
             new Hashtable<>(metadata);
 
           for (int series=0; series<getSeriesCount(); series++) {
+            if (!isSeriesInitialized(seriesToCoreIndex(series))) {
+              continue;
+            }
             String name = "Series " + series;
             try {
               String realName = ((IMetadata) store).getImageName(series);
@@ -1427,20 +1989,31 @@ public abstract class FormatReader extends FormatHandler
         }
 
         for (int series=0; series<getSeriesCount(); series++) {
-          setSeries(series);
-
-          if (getModuloZ().length() > 1 || getModuloC().length() > 1 ||
-            getModuloT().length() > 1)
-          {
-            service.addModuloAlong(
-              (OMEXMLMetadata) store, getCurrentCore(), series);
+          if (!isSeriesInitialized(seriesToCoreIndex(series))) {
+            continue;
           }
+          setSeries(series);
+          addModuloAlong(store);
         }
         setSeries(0);
       }
     }
   }
 
+  /**
+   * Adds modulo annotations for the current series to the given store,
+   * if the series has any modulo dimensions.
+   */
+  private void addModuloAlong(MetadataStore store) {
+    if (service != null && store instanceof OMEXMLMetadata &&
+      (getModuloZ().length() > 1 || getModuloC().length() > 1 ||
+      getModuloT().length() > 1))
+    {
+      service.addModuloAlong(
+        (OMEXMLMetadata) store, getCurrentCore(), getSeries());
+    }
+  }
+
   /** Initialize the OMEXMLService needed by {@link #setId(String)} */
   private void setupService() {
     try {
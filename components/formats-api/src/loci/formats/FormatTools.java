@@ -37,6 +37,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
 import java.util.jar.Attributes;
@@ -48,12 +52,12 @@ import loci.common.Constants;
 import loci.common.DataTools;
 import loci.common.DateTools;
 import loci.common.RandomAccessInputStream;
-import loci.common.ReflectException;
-import loci.common.ReflectedUniverse;
 
 import loci.common.services.DependencyException;
 import loci.common.services.ServiceException;
 import loci.common.services.ServiceFactory;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.MetadataOptions;
 import loci.formats.meta.DummyMetadata;
 import loci.formats.meta.MetadataRetrieve;
 import loci.formats.meta.MetadataStore;
@@ -208,6 +212,13 @@ public final class FormatTools {
   public static final String TILE_Y = "%y";
   public static final String TILE_NUM = "%m";
 
+  /**
+   * Maximum size in bytes of the bounding box read on behalf of several
+   * nearby regions by {@link #openRegions(IFormatReader, List, int[])}.
+   * A smaller reader memory budget takes precedence.
+   */
+  public static final int MAX_MERGED_REGION_SIZE = 64 * 1024 * 1024;
+
   // -- Constants - versioning --
 
   public static final Properties VERSION_PROPERTIES = null;
@@ -1071,6 +1082,44 @@ public final class FormatTools {
     return w * h * r.getRGBChannelCount() * getBytesPerPixel(r.getPixelType());
   }
 
+  // -- Utility methods - memory budget --
+
+  /**
+   * Returns the number of bytes that the given reader may allocate for a
+   * single pixel buffer or cache, as set by
+   * {@link DynamicMetadataOptions#MEMORY_BUDGET_KEY}.
+   *
+   * @return the budget in bytes, or Long.MAX_VALUE if no budget is set
+   */
+  public static long getMemoryBudget(IFormatReader r) {
+    MetadataOptions options = r.getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      Long budget = ((DynamicMetadataOptions) options).getLong(
+        DynamicMetadataOptions.MEMORY_BUDGET_KEY,
+        DynamicMetadataOptions.MEMORY_BUDGET_DEFAULT);
+      if (budget != null && budget > 0) return budget;
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Checks that a buffer for a w * h tile fits within the given reader's
+   * memory budget.
+   * @throws FormatException if the buffer would exceed the budget
+   */
+  public static void checkMemoryBudget(IFormatReader r, int w, int h)
+    throws FormatException
+  {
+    long size = (long) w * h * r.getRGBChannelCount() *
+      getBytesPerPixel(r.getPixelType());
+    long budget = getMemoryBudget(r);
+    if (size > budget) {
+      throw new FormatException("Image plane of " + size + " bytes " +
+        "exceeds the memory budget of " + budget + " bytes; read smaller " +
+        "tiles with openBytes(int, byte[], int, int, int, int) instead");
+    }
+  }
+
   // -- Utility methods -- export
 
   public static String getTileFilename(int tileX, int tileY,
@@ -1278,74 +1327,186 @@ public final class FormatTools {
   /**
    * Default implementation for {@link IFormatReader#openThumbBytes}.
    *
-   * At the moment, it uses {@link java.awt.image.BufferedImage} objects
-   * to resize thumbnails, so it is not safe for use in headless contexts.
-   * In the future, we may reimplement the image scaling logic purely with
-   * byte arrays, but handling every case would be substantial effort, so
-   * doing so is currently a low priority item.
+   * The thumbnail is calculated by {@link ThumbnailGenerator}, which reads
+   * the smallest adequate resolution tile by tile and does not depend
+   * upon AWT, so this is safe for use in headless contexts.
    */
   public static byte[] openThumbBytes(IFormatReader reader, int no)
     throws FormatException, IOException
   {
-    // NB: Dependency on AWT here is unfortunate, but very difficult to
-    // eliminate in general. We use reflection to limit class loading
-    // problems with AWT on Mac OS X.
-    ReflectedUniverse r = new ReflectedUniverse();
-    byte[][] bytes = null;
-    try {
-      r.exec("import loci.formats.gui.AWTImageTools");
-
-      int planeSize = getPlaneSize(reader);
-      byte[] plane = null;
-      if (planeSize < 0) {
-        int width = reader.getThumbSizeX() * 4;
-        int height = reader.getThumbSizeY() * 4;
-        int x = (reader.getSizeX() - width) / 2;
-        int y = (reader.getSizeY() - height) / 2;
-        plane = reader.openBytes(no, x, y, width, height);
-      }
-      else {
-        plane = reader.openBytes(no);
-      }
+    return new ThumbnailGenerator(reader).openThumbBytes(no);
+  }
+
+  /**
+   * Default implementation for {@link IFormatReader#openRegions(List)}.
+   * Each region is read with a separate call to
+   * {@link IFormatReader#openBytes(int, byte[], int, int, int, int)},
+   * in the order in which the regions were requested.
+   */
+  public static void openRegions(IFormatReader reader,
+    List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    for (RegionRequest request : requests) {
+      reader.openBytes(request.getPlane(), getBuffer(reader, request),
+        request.getX(), request.getY(), request.getWidth(),
+        request.getHeight());
+    }
+  }
 
-      r.setVar("plane", plane);
-      r.setVar("reader", reader);
-      r.setVar("sizeX", reader.getSizeX());
-      r.setVar("sizeY", reader.getSizeY());
-      r.setVar("thumbSizeX", reader.getThumbSizeX());
-      r.setVar("thumbSizeY", reader.getThumbSizeY());
-      r.setVar("little", reader.isLittleEndian());
+  /**
+   * Reads a batch of regions, visiting planes in the given order.  Nearby
+   * regions of the same plane are read with a single call to
+   * {@link IFormatReader#openBytes(int, byte[], int, int, int, int)} for
+   * their bounding box, so that tiles shared between regions are only
+   * decoded once.
+   *
+   * @param order plane indexes in the order in which they should be read,
+   *   typically increasing file offset; if null, planes are read in index
+   *   order
+   */
+  public static void openRegions(IFormatReader reader,
+    List<RegionRequest> requests, int[] order)
+    throws FormatException, IOException
+  {
+    // check everything before reading anything
+    for (RegionRequest r : requests) {
+      checkPlaneParameters(reader, r.getPlane(),
+        getBuffer(reader, r).length, r.getX(), r.getY(),
+        r.getWidth(), r.getHeight());
+    }
 
-      // always normalize floating point images, otherwise scaling will fail
-      r.setVar("normal", true);
-      r.exec("img = AWTImageTools.openImage(plane, reader, sizeX, sizeY, normal)");
-      r.exec("img = AWTImageTools.makeUnsigned(img)");
-      r.exec("thumb = AWTImageTools.scale(img, thumbSizeX, thumbSizeY, false)");
-      bytes = (byte[][]) r.exec("AWTImageTools.getPixelBytes(thumb, little)");
+    final int[] rank = new int[reader.getImageCount()];
+    for (int i=0; i<rank.length; i++) {
+      rank[i] = order == null || order.length != rank.length ? i : -1;
     }
-    catch (ReflectException exc) {
-      throw new FormatException(exc);
+    if (order != null && order.length == rank.length) {
+      for (int i=0; i<order.length; i++) {
+        rank[order[i]] = i;
+      }
     }
+    List<RegionRequest> sorted = new ArrayList<RegionRequest>(requests);
+    Collections.sort(sorted, new Comparator<RegionRequest>() {
+      @Override
+      public int compare(RegionRequest a, RegionRequest b) {
+        int cmp = Integer.compare(rank[a.getPlane()], rank[b.getPlane()]);
+        if (cmp == 0) {
+          cmp = Integer.compare(a.getY(), b.getY());
+        }
+        if (cmp == 0) {
+          cmp = Integer.compare(a.getX(), b.getX());
+        }
+        return cmp;
+      }
+    });
+
+    long maxMergedSize =
+      Math.min(MAX_MERGED_REGION_SIZE, getMemoryBudget(reader));
+    List<RegionRequest> group = new ArrayList<RegionRequest>();
+    int minX = 0, minY = 0, maxX = 0, maxY = 0;
+    long area = 0;
+    byte[] staging = null;
+    for (RegionRequest r : sorted) {
+      if (group.size() > 0) {
+        int x0 = Math.min(minX, r.getX());
+        int y0 = Math.min(minY, r.getY());
+        int x1 = Math.max(maxX, r.getX() + r.getWidth());
+        int y1 = Math.max(maxY, r.getY() + r.getHeight());
+        long boxArea = (long) (x1 - x0) * (y1 - y0);
+        long newArea = area + (long) r.getWidth() * r.getHeight();
+        if (r.getPlane() == group.get(0).getPlane() &&
+          boxArea <= 2 * newArea &&
+          boxArea * getPlaneSize(reader, 1, 1) <= maxMergedSize)
+        {
+          group.add(r);
+          minX = x0;
+          minY = y0;
+          maxX = x1;
+          maxY = y1;
+          area = newArea;
+          continue;
+        }
+        staging = readRegionGroup(reader, group,
+          minX, minY, maxX - minX, maxY - minY, staging);
+        group.clear();
+      }
+      group.add(r);
+      minX = r.getX();
+      minY = r.getY();
+      maxX = minX + r.getWidth();
+      maxY = minY + r.getHeight();
+      area = (long) r.getWidth() * r.getHeight();
+    }
+    if (group.size() > 0) {
+      readRegionGroup(reader, group,
+        minX, minY, maxX - minX, maxY - minY, staging);
+    }
+  }
 
-    if (bytes.length == 1) return bytes[0];
-    int rgbChannelCount = reader.getRGBChannelCount();
-    byte[] rtn = new byte[rgbChannelCount * bytes[0].length];
+  /**
+   * Returns the plane indexes of the reader's current series in the order
+   * used by {@link IFormatReader#openPlanes()}.
+   */
+  public static int[] getPlaneOrder(IFormatReader reader)
+    throws FormatException, IOException
+  {
+    try (PlaneIterator planes = reader.openPlanes()) {
+      return planes.getOrder();
+    }
+  }
 
-    if (!reader.isInterleaved()) {
-      for (int i=0; i<rgbChannelCount; i++) {
-        System.arraycopy(bytes[i], 0, rtn, bytes[0].length * i, bytes[i].length);
-      }
+  /** Returns the request's buffer, allocating it if necessary. */
+  private static byte[] getBuffer(IFormatReader reader, RegionRequest r) {
+    if (r.getBuffer() == null) {
+      r.setBuffer(new byte[getPlaneSize(reader, r.getWidth(), r.getHeight())]);
     }
-    else {
-      int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+    return r.getBuffer();
+  }
 
-      for (int i=0; i<bytes[0].length; i+=bpp) {
-        for (int j=0; j<rgbChannelCount; j++) {
-          System.arraycopy(bytes[j], i, rtn, (i * rgbChannelCount) + j * bpp, bpp);
+  /**
+   * Reads a group of regions from the same plane, either directly or by
+   * copying from their bounding box.
+   *
+   * @return the staging buffer, which may be reused for the next group
+   */
+  private static byte[] readRegionGroup(IFormatReader reader,
+    List<RegionRequest> group, int x, int y, int w, int h, byte[] staging)
+    throws FormatException, IOException
+  {
+    int no = group.get(0).getPlane();
+    if (group.size() == 1) {
+      RegionRequest r = group.get(0);
+      reader.openBytes(no, r.getBuffer(), r.getX(), r.getY(),
+        r.getWidth(), r.getHeight());
+      return staging;
+    }
+
+    int size = getPlaneSize(reader, w, h);
+    if (staging == null || staging.length < size) {
+      staging = new byte[size];
+    }
+    reader.openBytes(no, staging, x, y, w, h);
+
+    int bpp = getBytesPerPixel(reader.getPixelType());
+    int c = reader.getRGBChannelCount();
+    boolean interleaved = reader.isInterleaved() || c == 1;
+    int pixel = interleaved ? bpp * c : bpp;
+    int channels = interleaved ? 1 : c;
+    for (RegionRequest r : group) {
+      byte[] buf = r.getBuffer();
+      int rowLen = r.getWidth() * pixel;
+      for (int ch=0; ch<channels; ch++) {
+        int src = ch * w * h * bpp + (r.getY() - y) * w * pixel +
+          (r.getX() - x) * pixel;
+        int dest = ch * r.getWidth() * r.getHeight() * bpp;
+        for (int row=0; row<r.getHeight(); row++) {
+          System.arraycopy(staging, src, buf, dest, rowLen);
+          src += w * pixel;
+          dest += rowLen;
         }
       }
     }
-    return rtn;
+    return staging;
   }
 
   // -- Conversion convenience methods --
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+
+/**
+ * Interface for readers that can return the stored, still-compressed bytes
+ * of individual tiles.  Together with {@link ICompressedTileWriter} this
+ * allows tiles to be copied between files without being decoded and
+ * re-encoded, which is both faster and avoids generation loss for lossy
+ * codecs.
+ *
+ * Tiles are addressed by column and row within the tile grid of the
+ * current series and resolution.  Edge tiles are always full-size, as
+ * they are stored in the file.
+ */
+public interface ICompressedTileReader {
+
+  /**
+   * Returns the compression applied to the stored tiles of the given plane,
+   * using the names returned by {@link IFormatWriter#getCompressionTypes()}
+   * (e.g. "JPEG").
+   *
+   * @param no the image index within the current series.
+   * @return the compression name, or null if the stored tiles cannot be
+   *   copied without changing how they would be decoded
+   * @throws FormatException if there was a problem parsing the metadata of the
+   *   file.
+   * @throws IOException if there was a problem reading the file.
+   */
+  String getTileCodec(int no) throws FormatException, IOException;
+
+  /** Returns the width in pixels of the stored tiles of the given plane. */
+  int getCompressedTileWidth(int no) throws FormatException, IOException;
+
+  /** Returns the height in pixels of the stored tiles of the given plane. */
+  int getCompressedTileHeight(int no) throws FormatException, IOException;
+
+  /**
+   * Obtains the stored bytes of the specified tile.  For JPEG tiles, any
+   * shared tables are merged into the returned stream, so that each tile is
+   * a complete JPEG image.
+   *
+   * @param no the image index within the current series.
+   * @param x the column index of the tile
+   * @param y the row index of the tile
+   * @return the compressed tile, or null if the tile is not present in the
+   *   file and must be read via {@link IFormatReader#openBytes(int)}
+   * @throws FormatException if {@link #getTileCodec(int)} returns null for
+   *   this plane, or the tile indices are invalid.
+   * @throws IOException if there was a problem reading the file.
+   */
+  byte[] openCompressedBytes(int no, int x, int y)
+    throws FormatException, IOException;
+
+}
@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+
+/**
+ * Interface for writers that can store tiles which have already been
+ * compressed, e.g. tiles obtained from an {@link ICompressedTileReader}.
+ */
+public interface ICompressedTileWriter {
+
+  /**
+   * Saves a single tile that has already been compressed using the
+   * compression returned by {@link IFormatWriter#getCompression()}.
+   * The tile must be stored with interleaved samples, and must contain a
+   * full tile of pixels even if it lies on the edge of the image.
+   *
+   * @param no the image index within the current file, starting from 0.
+   * @param buf the compressed tile.
+   * @param x the X coordinate of the upper-left corner of the tile; must
+   *   be a multiple of the tile width.
+   * @param y the Y coordinate of the upper-left corner of the tile; must
+   *   be a multiple of the tile height.
+   * @param w the width of the tile, clipped to the image width.
+   * @param h the height of the tile, clipped to the image height.
+   * @throws FormatException if the writer is not configured to write tiles
+   *   of this size, or if one of the parameters is invalid.
+   * @throws IOException if there was a problem writing to the file.
+   */
+  void saveCompressedBytes(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException;
+
+}
@@ -304,6 +304,36 @@ public interface IFormatReader extends IFormatHandler, IPyramidHandler {
    */
   byte[] openThumbBytes(int no) throws FormatException, IOException;
 
+  /**
+   * Obtains an iterator over every image plane in the current series.
+   * Planes may be delivered in any order, typically the order in which they
+   * are stored in the file; see {@link PlaneIterator#getIndex()}.
+   * The reader must not be used for anything else until the iterator
+   * has been closed.
+   *
+   * @throws FormatException if there was a problem parsing the metadata of the
+   *   file.
+   * @throws IOException if there was a problem reading the file.
+   */
+  PlaneIterator openPlanes() throws FormatException, IOException;
+
+  /**
+   * Obtains a batch of regions from the current series.  Each request's
+   * region is stored in its buffer; if a request has no buffer, one is
+   * allocated and set on the request.
+   * Regions may be read in any order, and regions that overlap or lie
+   * close together may be read at the same time, so this is usually
+   * faster than calling {@link #openBytes(int, byte[], int, int, int, int)}
+   * once per region.
+   *
+   * @param requests the regions to read
+   * @throws FormatException if there was a problem parsing the metadata of the
+   *   file, or if any request is invalid.
+   * @throws IOException if there was a problem reading the file.
+   */
+  void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException;
+
   /**
    * Closes the currently open file. If the flag is set, this is all that
    * happens; if unset, it is equivalent to calling
@@ -314,7 +344,17 @@ public interface IFormatReader extends IFormatHandler, IPyramidHandler {
   /** Gets the number of series in this file. */
   int getSeriesCount();
 
-  /** Activates the specified series. This also resets the resolution to 0. */
+  /**
+   * Activates the specified series. This also resets the resolution to 0.
+   *
+   * If the series was not initialized when the file was opened (see
+   * {@link loci.formats.in.DynamicMetadataOptions#SERIES_LAZY_KEY}), it is
+   * initialized now.
+   *
+   * @throws IllegalStateException if the series could not be initialized;
+   *   the cause is the underlying FormatException or IOException, and the
+   *   series remains uninitialized
+   */
   void setSeries(int no);
 
   /** Gets the currently active series. */
@@ -617,6 +657,8 @@ public interface IFormatReader extends IFormatHandler, IPyramidHandler {
    * Equivalent to setSeries, but with flattened resolutions always
    * set to false.
    *
+   * @throws IllegalStateException if the series could not be initialized;
+   *   see {@link #setSeries(int)}
    * @deprecated This method is no longer required for sub-resolution support.
    */
   @Deprecated
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for readers that can return uncompressed planes as
+ * {@link ByteBuffer} views over the underlying file, without copying
+ * the pixel data into a byte array.
+ *
+ * Buffers returned by this interface are always read-only and use the
+ * byte order given by {@link IFormatReader#isLittleEndian()}.  If a plane
+ * or region cannot be mapped (e.g. the region is not contiguous on disk,
+ * or the file is not on a local filesystem), the pixels are copied into a
+ * heap buffer instead, so callers never need to handle both cases.
+ */
+public interface IMappedReader {
+
+  /**
+   * Returns true if the given plane of the current series is stored
+   * uncompressed and contiguously, so that
+   * {@link #openPlaneBuffer(int)} will not copy pixel data.
+   */
+  boolean isPlaneMappable(int no);
+
+  /**
+   * Returns true if rows in buffers returned by this reader are stored
+   * bottom-to-top, i.e. the first row of a buffer is the last row of the
+   * equivalent {@link IFormatReader#openBytes(int)} array.
+   */
+  boolean isBottomUp();
+
+  /**
+   * Obtains the specified image plane as a read-only buffer.
+   *
+   * @param no the image index within the current series.
+   * @return a read-only view of the plane, or a copy if the plane
+   *   cannot be mapped
+   * @throws FormatException if there was a problem parsing the metadata of the
+   *   file.
+   * @throws IOException if there was a problem reading the file.
+   */
+  ByteBuffer openPlaneBuffer(int no) throws FormatException, IOException;
+
+  /**
+   * Obtains a sub-image of the specified image plane as a read-only buffer.
+   * Regions that span the full width of the image are mapped without copying;
+   * other regions are copied.
+   *
+   * @param no the image index within the current series.
+   * @param x X coordinate of the upper-left corner of the sub-image
+   * @param y Y coordinate of the upper-left corner of the sub-image
+   * @param w width of the sub-image
+   * @param h height of the sub-image
+   * @return a read-only view of the sub-image, or a copy if the sub-image
+   *   cannot be mapped
+   * @throws FormatException if there was a problem parsing the metadata of the
+   *   file.
+   * @throws IOException if there was a problem reading the file.
+   */
+  ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException;
+
+}
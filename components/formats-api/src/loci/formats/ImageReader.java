@@ -34,6 +34,8 @@ package loci.formats;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -59,7 +61,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Curtis Rueden ctrueden at wisc.edu
  */
-public class ImageReader implements IFormatReader {
+public class ImageReader implements IFormatReader, IMappedReader {
 
   // -- Constants --
 
@@ -246,6 +248,45 @@ public class ImageReader implements IFormatReader {
     }
   }
 
+  // -- IMappedReader API methods --
+
+  /* @see IMappedReader#isPlaneMappable(int) */
+  @Override
+  public boolean isPlaneMappable(int no) {
+    IFormatReader r = getReader();
+    return r instanceof IMappedReader &&
+      ((IMappedReader) r).isPlaneMappable(no);
+  }
+
+  /* @see IMappedReader#isBottomUp() */
+  @Override
+  public boolean isBottomUp() {
+    IFormatReader r = getReader();
+    return r instanceof IMappedReader && ((IMappedReader) r).isBottomUp();
+  }
+
+  /* @see IMappedReader#openPlaneBuffer(int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no)
+    throws FormatException, IOException
+  {
+    return openPlaneBuffer(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see IMappedReader#openPlaneBuffer(int, int, int, int, int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    IFormatReader r = getReader();
+    if (r instanceof IMappedReader) {
+      return ((IMappedReader) r).openPlaneBuffer(no, x, y, w, h);
+    }
+    ByteBuffer copy = ByteBuffer.wrap(r.openBytes(no, x, y, w, h));
+    return copy.asReadOnlyBuffer().order(
+      r.isLittleEndian() ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+  }
+
   // -- IFormatReader API methods --
 
   /* @see IFormatReader#isThisType(String, boolean) */
@@ -475,6 +516,20 @@ public class ImageReader implements IFormatReader {
     return getReader().openThumbBytes(no);
   }
 
+  /* @see IFormatReader#openPlanes() */
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    return getReader().openPlanes();
+  }
+
+  /* @see IFormatReader#openRegions(List) */
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    getReader().openRegions(requests);
+  }
+
   /* @see IFormatReader#getSeriesCount() */
   @Override
   public int getSeriesCount() {
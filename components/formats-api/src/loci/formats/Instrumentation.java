@@ -0,0 +1,308 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lightweight, process-wide collection of counters and latency histograms
+ * for hot-path operations such as plane reads, tile reads and codec calls.
+ *
+ * Collection is disabled by default, in which case each instrumentation
+ * point costs a single volatile read.  It can be enabled by setting the
+ * {@value #ENABLED_PROPERTY} system property to "true", or at runtime via
+ * {@link #setEnabled(boolean)} or the JMX bean registered by
+ * {@link #registerMBean()}.
+ *
+ * Instrumentation points follow the pattern:
+ * <pre>
+ * long start = Instrumentation.start();
+ * ... operation ...
+ * Instrumentation.stop(getClass(), "decompress", start, buf.length);
+ * </pre>
+ */
+public final class Instrumentation {
+
+  // -- Constants --
+
+  /** System property used to enable statistics collection at startup. */
+  public static final String ENABLED_PROPERTY = "bioformats.instrumentation";
+
+  /** Name under which the JMX bean is registered. */
+  public static final String MBEAN_NAME = "loci.formats:type=Instrumentation";
+
+  /** Value returned by {@link #start()} when collection is disabled. */
+  private static final long DISABLED = Long.MIN_VALUE;
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(Instrumentation.class);
+
+  // -- Static fields --
+
+  private static volatile boolean enabled =
+    Boolean.getBoolean(ENABLED_PROPERTY);
+
+  private static final ConcurrentHashMap<String, OperationStatistics>
+    STATISTICS =
+    new ConcurrentHashMap<String, OperationStatistics>();
+
+  private static Timer logTimer;
+
+  // -- Constructor --
+
+  private Instrumentation() { }
+
+  // -- Instrumentation API methods --
+
+  /** Returns true if statistics are currently being collected. */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Enables or disables statistics collection. */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /**
+   * Marks the start of an instrumented operation.
+   *
+   * @return a timestamp to pass to
+   *   {@link #stop(Class, String, long, long)}
+   */
+  public static long start() {
+    return enabled ? System.nanoTime() : DISABLED;
+  }
+
+  /**
+   * Marks the end of an instrumented operation.  Does nothing if collection
+   * was disabled when the matching {@link #start()} was called.
+   *
+   * @param source class performing the operation
+   * @param operation name of the operation
+   * @param start value returned by {@link #start()}
+   * @param bytes number of bytes processed, or 0 if not applicable
+   */
+  public static void stop(Class<?> source, String operation, long start,
+    long bytes)
+  {
+    if (start != DISABLED) {
+      record(source.getSimpleName(), operation, System.nanoTime() - start,
+        bytes);
+    }
+  }
+
+  /**
+   * Marks the end of an instrumented operation.  Does nothing if collection
+   * was disabled when the matching {@link #start()} was called.
+   *
+   * @param source name of the reader, writer or codec
+   * @param operation name of the operation
+   * @param start value returned by {@link #start()}
+   * @param bytes number of bytes processed, or 0 if not applicable
+   */
+  public static void stop(String source, String operation, long start,
+    long bytes)
+  {
+    if (start != DISABLED) {
+      record(source, operation, System.nanoTime() - start, bytes);
+    }
+  }
+
+  /** Records a single invocation of the given operation. */
+  public static void record(String source, String operation, long nanos,
+    long bytes)
+  {
+    String key = source + "." + operation;
+    OperationStatistics stats = STATISTICS.get(key);
+    if (stats == null) {
+      stats = new OperationStatistics(source, operation);
+      OperationStatistics existing = STATISTICS.putIfAbsent(key, stats);
+      if (existing != null) {
+        stats = existing;
+      }
+    }
+    stats.record(nanos, bytes);
+  }
+
+  /**
+   * Returns the statistics for the given operation, or null if it has not
+   * been recorded.
+   */
+  public static OperationStatistics getStatistics(String source,
+    String operation)
+  {
+    return STATISTICS.get(source + "." + operation);
+  }
+
+  /**
+   * Returns a snapshot of all recorded statistics, ordered by decreasing
+   * total time.
+   */
+  public static List<OperationStatistics> getStatistics() {
+    List<OperationStatistics> list =
+      new ArrayList<OperationStatistics>(STATISTICS.values());
+    Collections.sort(list, new Comparator<OperationStatistics>() {
+      @Override
+      public int compare(OperationStatistics a, OperationStatistics b) {
+        return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+      }
+    });
+    return list;
+  }
+
+  /** Discards all recorded statistics. */
+  public static void reset() {
+    STATISTICS.clear();
+  }
+
+  /** Returns a multi-line summary of all recorded statistics. */
+  public static String getSummary() {
+    StringBuilder sb = new StringBuilder("Bio-Formats instrumentation:");
+    for (OperationStatistics stats : getStatistics()) {
+      sb.append(System.getProperty("line.separator"));
+      sb.append("  ");
+      sb.append(stats);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Logs a summary of the recorded statistics at INFO level every
+   * <code>periodMillis</code> milliseconds, replacing any previously
+   * scheduled logging.
+   */
+  public static synchronized void startLogging(long periodMillis) {
+    stopLogging();
+    logTimer = new Timer("Bio-Formats instrumentation", true);
+    logTimer.scheduleAtFixedRate(new TimerTask() {
+      @Override
+      public void run() {
+        if (enabled && !STATISTICS.isEmpty()) {
+          LOGGER.info(getSummary());
+        }
+      }
+    }, periodMillis, periodMillis);
+  }
+
+  /** Cancels periodic logging started by {@link #startLogging(long)}. */
+  public static synchronized void stopLogging() {
+    if (logTimer != null) {
+      logTimer.cancel();
+      logTimer = null;
+    }
+  }
+
+  /**
+   * Registers a JMX bean named {@value #MBEAN_NAME} with the platform
+   * MBean server, if it is not already registered.
+   */
+  public static synchronized void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new StandardMBean(new Bean(),
+          InstrumentationMBean.class), name);
+      }
+    }
+    catch (JMException e) {
+      LOGGER.warn("Could not register instrumentation MBean", e);
+    }
+  }
+
+  /** Removes the JMX bean registered by {@link #registerMBean()}. */
+  public static synchronized void unregisterMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    }
+    catch (JMException e) {
+      LOGGER.warn("Could not unregister instrumentation MBean", e);
+    }
+  }
+
+  // -- Helper classes --
+
+  /** JMX view of the static instrumentation state. */
+  private static class Bean implements InstrumentationMBean {
+    @Override
+    public boolean isEnabled() {
+      return Instrumentation.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+      Instrumentation.setEnabled(enabled);
+    }
+
+    @Override
+    public void reset() {
+      Instrumentation.reset();
+    }
+
+    @Override
+    public String getSummary() {
+      return Instrumentation.getSummary();
+    }
+
+    @Override
+    public String[] getOperations() {
+      List<OperationStatistics> list = getStatistics();
+      String[] operations = new String[list.size()];
+      for (int i=0; i<operations.length; i++) {
+        operations[i] = list.get(i).toString();
+      }
+      return operations;
+    }
+  }
+
+}
@@ -132,72 +132,88 @@ public final class MetadataTools {
     boolean doPlane, boolean doImageName)
   {
     if (store == null || r == null) return;
-    int oldSeries = r.getSeries();
-
     for (int i=0; i<r.getSeriesCount(); i++) {
-      r.setSeries(i);
+      populatePixels(store, r, i, doPlane, doImageName);
+    }
+  }
+
+  /**
+   * Populates the Pixels element of the given metadata store for a single
+   * series, using core metadata from the given reader.
+   *
+   * @param store       The metadata store whose Pixels should be populated
+   * @param r           The format reader whose core metadata should be used
+   * @param i           The index of the series to populate
+   * @param doPlane     Specifies whether Plane elements should be populated
+   * @param doImageName Specifies whether the Image name should be populated
+   */
+  public static void populatePixels(MetadataStore store, IFormatReader r,
+    int i, boolean doPlane, boolean doImageName)
+  {
+    if (store == null || r == null) return;
+    int oldSeries = r.getSeries();
+    r.setSeries(i);
 
-      String imageName = null;
-      if (doImageName) {
-        Location f = new Location(r.getCurrentFile());
-        imageName = f.getName();
+    String imageName = null;
+    if (doImageName) {
+      Location f = new Location(r.getCurrentFile());
+      imageName = f.getName();
 
-        if (r.getSeriesCount() > 1) {
-          imageName += " #" + (i + 1);
-        }
+      if (r.getSeriesCount() > 1) {
+        imageName += " #" + (i + 1);
       }
-      String pixelType = FormatTools.getPixelTypeString(r.getPixelType());
+    }
+    String pixelType = FormatTools.getPixelTypeString(r.getPixelType());
 
-      populateMetadata(store, r.getCurrentFile(), i, imageName,
-        r.isLittleEndian(), r.getDimensionOrder(), pixelType, r.getSizeX(),
-        r.getSizeY(), r.getSizeZ(), r.getSizeC(), r.getSizeT(),
-        r.getRGBChannelCount());
+    populateMetadata(store, r.getCurrentFile(), i, imageName,
+      r.isLittleEndian(), r.getDimensionOrder(), pixelType, r.getSizeX(),
+      r.getSizeY(), r.getSizeZ(), r.getSizeC(), r.getSizeT(),
+      r.getRGBChannelCount());
 
-      store.setPixelsInterleaved(r.isInterleaved(), i);
-      store.setPixelsSignificantBits(
-        new PositiveInteger(r.getBitsPerPixel()), i);
+    store.setPixelsInterleaved(r.isInterleaved(), i);
+    store.setPixelsSignificantBits(
+      new PositiveInteger(r.getBitsPerPixel()), i);
 
-      if (store instanceof IPyramidStore) {
-        for (int res=1; res<r.getResolutionCount(); res++) {
-          r.setResolution(res);
-          ((IPyramidStore) store).setResolutionSizeX(
-            new PositiveInteger(r.getSizeX()), i, res);
-          ((IPyramidStore) store).setResolutionSizeY(
-            new PositiveInteger(r.getSizeY()), i, res);
-        }
-        r.setResolution(0);
+    if (store instanceof IPyramidStore) {
+      for (int res=1; res<r.getResolutionCount(); res++) {
+        r.setResolution(res);
+        ((IPyramidStore) store).setResolutionSizeX(
+          new PositiveInteger(r.getSizeX()), i, res);
+        ((IPyramidStore) store).setResolutionSizeY(
+          new PositiveInteger(r.getSizeY()), i, res);
       }
+      r.setResolution(0);
+    }
 
-      try {
-        OMEXMLService service =
-          new ServiceFactory().getInstance(OMEXMLService.class);
-        if (service.isOMEXMLRoot(store.getRoot())) {
-          MetadataStore baseStore = r.getMetadataStore();
-          if (service.isOMEXMLMetadata(baseStore)) {
-            OMEXMLMetadata omeMeta;
-            try {
-              omeMeta = service.getOMEMetadata(service.asRetrieve(baseStore));
-              if (omeMeta.getTiffDataCount(i) == 0 && omeMeta.getPixelsBinDataCount(i) == 0) {
-                service.addMetadataOnly(omeMeta, i, i == 0);
-              }
-            }
-            catch (ServiceException e) {
-              LOGGER.warn("Failed to add MetadataOnly", e);
+    try {
+      OMEXMLService service =
+        new ServiceFactory().getInstance(OMEXMLService.class);
+      if (service.isOMEXMLRoot(store.getRoot())) {
+        MetadataStore baseStore = r.getMetadataStore();
+        if (service.isOMEXMLMetadata(baseStore)) {
+          OMEXMLMetadata omeMeta;
+          try {
+            omeMeta = service.getOMEMetadata(service.asRetrieve(baseStore));
+            if (omeMeta.getTiffDataCount(i) == 0 && omeMeta.getPixelsBinDataCount(i) == 0) {
+              service.addMetadataOnly(omeMeta, i, i == 0);
             }
           }
+          catch (ServiceException e) {
+            LOGGER.warn("Failed to add MetadataOnly", e);
+          }
         }
       }
-      catch (DependencyException exc) {
-        LOGGER.warn("Failed to add MetadataOnly", exc);
-      }
+    }
+    catch (DependencyException exc) {
+      LOGGER.warn("Failed to add MetadataOnly", exc);
+    }
 
-      if (doPlane) {
-        for (int q=0; q<r.getImageCount(); q++) {
-          int[] coords = r.getZCTCoords(q);
-          store.setPlaneTheZ(new NonNegativeInteger(coords[0]), i, q);
-          store.setPlaneTheC(new NonNegativeInteger(coords[1]), i, q);
-          store.setPlaneTheT(new NonNegativeInteger(coords[2]), i, q);
-        }
+    if (doPlane) {
+      for (int q=0; q<r.getImageCount(); q++) {
+        int[] coords = r.getZCTCoords(q);
+        store.setPlaneTheZ(new NonNegativeInteger(coords[0]), i, q);
+        store.setPlaneTheC(new NonNegativeInteger(coords[1]), i, q);
+        store.setPlaneTheT(new NonNegativeInteger(coords[2]), i, q);
       }
     }
     r.setSeries(oldSeries);
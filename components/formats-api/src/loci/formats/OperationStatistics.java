@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and a latency histogram for a single instrumented operation,
+ * e.g. "openBytes" calls on a particular reader class or "decompress"
+ * calls on a particular codec.
+ *
+ * Latencies are recorded in power-of-two microsecond buckets, so
+ * percentiles are accurate to within a factor of two.
+ *
+ * @see Instrumentation
+ */
+public class OperationStatistics {
+
+  // -- Constants --
+
+  /** Number of histogram buckets; the last bucket is unbounded. */
+  private static final int BUCKETS = 40;
+
+  // -- Fields --
+
+  private final String source;
+  private final String operation;
+
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+  // -- Constructor --
+
+  /**
+   * Constructs statistics for the given operation.
+   *
+   * @param source name of the reader, writer or codec class
+   * @param operation name of the operation, e.g. "openBytes"
+   */
+  public OperationStatistics(String source, String operation) {
+    this.source = source;
+    this.operation = operation;
+  }
+
+  // -- OperationStatistics API methods --
+
+  /**
+   * Records a single invocation of this operation.
+   *
+   * @param nanos elapsed time in nanoseconds
+   * @param byteCount number of bytes processed, or 0 if not applicable
+   */
+  public void record(long nanos, long byteCount) {
+    count.incrementAndGet();
+    bytes.addAndGet(byteCount);
+    totalNanos.addAndGet(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+    histogram.incrementAndGet(getBucket(nanos));
+  }
+
+  /** Returns the name of the instrumented class. */
+  public String getSource() {
+    return source;
+  }
+
+  /** Returns the name of the instrumented operation. */
+  public String getOperation() {
+    return operation;
+  }
+
+  /** Returns the number of recorded invocations. */
+  public long getCount() {
+    return count.get();
+  }
+
+  /** Returns the total number of bytes processed. */
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  /** Returns the total time spent in this operation, in nanoseconds. */
+  public long getTotalNanos() {
+    return totalNanos.get();
+  }
+
+  /** Returns the longest recorded invocation, in nanoseconds. */
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  /** Returns the mean invocation time, in nanoseconds. */
+  public long getMeanNanos() {
+    long n = getCount();
+    return n == 0 ? 0 : getTotalNanos() / n;
+  }
+
+  /**
+   * Returns an upper bound for the given latency percentile, in nanoseconds.
+   *
+   * @param percentile a value between 0 and 100
+   */
+  public long getPercentileNanos(double percentile) {
+    long n = getCount();
+    if (n == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(n * Math.min(percentile, 100) / 100);
+    long seen = 0;
+    for (int i=0; i<BUCKETS; i++) {
+      seen += histogram.get(i);
+      if (seen >= Math.max(target, 1)) {
+        return Math.min(TimeUnit.MICROSECONDS.toNanos(1L << i), getMaxNanos());
+      }
+    }
+    return getMaxNanos();
+  }
+
+  /** Returns the number of invocations in each latency bucket. */
+  public long[] getHistogram() {
+    long[] values = new long[BUCKETS];
+    for (int i=0; i<BUCKETS; i++) {
+      values[i] = histogram.get(i);
+    }
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "%s.%s count=%d bytes=%d total=%.3fms mean=%.3fms " +
+      "p50=%.3fms p99=%.3fms max=%.3fms",
+      source, operation, getCount(), getBytes(), toMillis(getTotalNanos()),
+      toMillis(getMeanNanos()), toMillis(getPercentileNanos(50)),
+      toMillis(getPercentileNanos(99)), toMillis(getMaxNanos()));
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Returns the index of the bucket for the given latency.  Bucket i holds
+   * latencies shorter than 2^i microseconds.
+   */
+  private static int getBucket(long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    int bucket = 64 - Long.numberOfLeadingZeros(micros);
+    return Math.min(bucket, BUCKETS - 1);
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1000000.0;
+  }
+
+}
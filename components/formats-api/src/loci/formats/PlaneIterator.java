@@ -0,0 +1,317 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Iterates over every plane in the current series of a reader, for
+ * batch jobs that need to see each plane exactly once but do not care
+ * about the order in which planes are delivered.
+ *
+ * Readers that know where planes are stored can return an iterator
+ * from {@link IFormatReader#openPlanes()} that visits planes in file order,
+ * so that a scan over a whole dataset becomes a single forward pass over
+ * the file.  Such iterators may also read the next plane on a background
+ * thread while the caller is processing the current one.
+ *
+ * The array returned by {@link #next()} is owned by the iterator and is
+ * only valid until the following call to {@link #next()}.  The reader must
+ * not be used by the caller (and the series must not be changed) until the
+ * iterator has been closed.
+ */
+public class PlaneIterator implements Closeable {
+
+  // -- Constants --
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(PlaneIterator.class);
+
+  // -- Fields --
+
+  private final IFormatReader reader;
+
+  /** Plane indexes, in the order in which they will be delivered. */
+  private final int[] order;
+
+  private final boolean prefetch;
+
+  /** Position within {@link #order} of the next plane to deliver. */
+  private int position = 0;
+
+  /** Index of the plane most recently returned by {@link #next()}. */
+  private int index = -1;
+
+  private byte[][] buffers;
+  private int currentBuffer = 0;
+
+  private ExecutorService executor;
+  private Future<byte[]> pending;
+
+  // -- Constructors --
+
+  /**
+   * Constructs an iterator that reads the planes of the reader's current
+   * series in index order, on the calling thread.
+   */
+  public PlaneIterator(IFormatReader reader) {
+    this(reader, null, false);
+  }
+
+  /**
+   * Constructs an iterator that reads the planes of the reader's current
+   * series in the given order.
+   *
+   * @param reader the initialized reader from which to read planes
+   * @param order the plane indexes to deliver, in delivery order; if null,
+   *   all planes are delivered in index order
+   * @param prefetch true if each plane should be read on a background thread
+   *   while the previous plane is being processed; ignored if two planes
+   *   do not fit within the reader's memory budget
+   */
+  public PlaneIterator(IFormatReader reader, int[] order, boolean prefetch) {
+    this.reader = reader;
+    int imageCount = reader.getImageCount();
+    if (order == null) {
+      order = new int[imageCount];
+      for (int i=0; i<order.length; i++) {
+        order[i] = i;
+      }
+    }
+    for (int no : order) {
+      if (no < 0 || no >= imageCount) {
+        throw new IllegalArgumentException("Invalid plane index: " + no);
+      }
+    }
+    this.order = order;
+    this.prefetch = prefetch && 2L * FormatTools.getPlaneSize(reader) <=
+      FormatTools.getMemoryBudget(reader);
+  }
+
+  // -- Static utility methods --
+
+  /**
+   * Returns the plane indexes sorted by increasing file offset.  Planes with
+   * the same offset remain in index order.
+   *
+   * @param offsets the file offset of each plane, indexed by plane number
+   */
+  public static int[] getFileOrder(final long[] offsets) {
+    Integer[] sorted = new Integer[offsets.length];
+    for (int i=0; i<sorted.length; i++) {
+      sorted[i] = i;
+    }
+    Arrays.sort(sorted, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Long.compare(offsets[a], offsets[b]);
+      }
+    });
+    int[] order = new int[sorted.length];
+    for (int i=0; i<order.length; i++) {
+      order[i] = sorted[i];
+    }
+    return order;
+  }
+
+  // -- PlaneIterator API methods --
+
+  /** Returns the total number of planes that this iterator will deliver. */
+  public int getPlaneCount() {
+    return order.length;
+  }
+
+  /** Returns the plane indexes in the order in which they are delivered. */
+  public int[] getOrder() {
+    return order.clone();
+  }
+
+  /** Returns true if planes are read ahead on a background thread. */
+  public boolean isPrefetching() {
+    return prefetch;
+  }
+
+  /** Returns true if there are planes that have not yet been delivered. */
+  public boolean hasNext() {
+    return position < order.length;
+  }
+
+  /**
+   * Returns the index of the plane most recently returned by
+   * {@link #next()}, or -1 if no planes have been read.
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Reads the next plane.  Use {@link #getIndex()} to find which plane was
+   * returned.
+   *
+   * @return a buffer containing the plane, which is reused by subsequent
+   *   calls to this method
+   * @throws NoSuchElementException if all planes have been delivered
+   * @throws FormatException if there was a problem parsing the metadata of the
+   *   file.
+   * @throws IOException if there was a problem reading the file.
+   */
+  public byte[] next() throws FormatException, IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    if (buffers == null) {
+      int planeSize = FormatTools.getPlaneSize(reader);
+      if (planeSize < 0) {
+        throw new FormatException("Image plane too large to read in full");
+      }
+      FormatTools.checkMemoryBudget(reader, reader.getSizeX(),
+        reader.getSizeY());
+      buffers = new byte[prefetch ? 2 : 1][planeSize];
+    }
+
+    byte[] plane;
+    if (prefetch) {
+      if (pending == null) {
+        pending = submit(order[position], buffers[currentBuffer]);
+      }
+      plane = waitForPending();
+      currentBuffer = 1 - currentBuffer;
+      if (position + 1 < order.length) {
+        pending = submit(order[position + 1], buffers[currentBuffer]);
+      }
+    }
+    else {
+      plane = readPlane(order[position], buffers[0]);
+    }
+    index = order[position++];
+    return plane;
+  }
+
+  // -- Closeable API methods --
+
+  /**
+   * Stops any background reads and releases the plane buffers.  The reader
+   * itself is not closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (pending != null) {
+      // wait for the background read to finish, so that the reader
+      // is no longer in use once this method returns
+      try {
+        pending.get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      catch (ExecutionException e) {
+        LOGGER.debug("Discarding failed read of plane {}",
+          order[position], e.getCause());
+      }
+      pending = null;
+    }
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+    buffers = null;
+    position = order.length;
+  }
+
+  // -- Internal PlaneIterator API methods --
+
+  /**
+   * Reads the given plane into the buffer.  This may be called from a
+   * background thread, but never concurrently with itself.
+   */
+  protected byte[] readPlane(int no, byte[] buf)
+    throws FormatException, IOException
+  {
+    return reader.openBytes(no, buf);
+  }
+
+  // -- Helper methods --
+
+  private Future<byte[]> submit(final int no, final byte[] buf) {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "PlaneIterator-Prefetch");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return executor.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws FormatException, IOException {
+        return readPlane(no, buf);
+      }
+    });
+  }
+
+  private byte[] waitForPending() throws FormatException, IOException {
+    Future<byte[]> f = pending;
+    pending = null;
+    try {
+      return f.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading plane", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) throw (FormatException) cause;
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new FormatException(cause);
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+
+import loci.common.RandomAccessInputStream;
+
+/**
+ * Plans the reads needed to copy a rectangular region out of a raw plane.
+ *
+ * Reading a region row by row costs one seek and one read per row, which
+ * is slow when each read is a round trip to network storage.  When the
+ * gap between consecutive rows is small, rows are instead read in large
+ * contiguous blocks and copied out of a staging buffer.
+ */
+public final class ReadPlanner {
+
+  // -- Constants --
+
+  /**
+   * Maximum number of unused bytes between two rows for the rows to be
+   * read with a single request.
+   */
+  public static final int MAX_GAP = 64 * 1024;
+
+  /** Maximum size in bytes of a single coalesced read. */
+  public static final int MAX_READ_SIZE = 4 * 1024 * 1024;
+
+  // -- Constructor --
+
+  private ReadPlanner() { }
+
+  // -- ReadPlanner API methods --
+
+  /**
+   * Reads a series of equally spaced rows from the given stream.
+   * The stream is left positioned at the end of the last row.
+   *
+   * @param s the stream from which to read
+   * @param offset the file offset of the first byte of the first row
+   * @param rowLength the number of bytes to read from each row
+   * @param stride the number of bytes between the start of consecutive rows
+   * @param count the number of rows to read
+   * @param buf the buffer in which to store the rows
+   * @param bufOffset the index in buf at which to store the first row
+   * @param bufStride the number of bytes between consecutive rows in buf
+   */
+  public static void readRows(RandomAccessInputStream s, long offset,
+    int rowLength, long stride, int count, byte[] buf, int bufOffset,
+    int bufStride)
+    throws IOException
+  {
+    if (count <= 0 || rowLength <= 0) {
+      s.seek(offset);
+      return;
+    }
+    long gap = stride - rowLength;
+    if (count == 1 || gap < 0 || gap > MAX_GAP ||
+      rowLength + stride > MAX_READ_SIZE)
+    {
+      for (int row=0; row<count; row++) {
+        s.seek(offset + row * stride);
+        s.read(buf, bufOffset + row * bufStride, rowLength);
+      }
+      return;
+    }
+    if (gap == 0 && bufStride == rowLength) {
+      s.seek(offset);
+      s.read(buf, bufOffset, count * rowLength);
+      return;
+    }
+
+    int rowsPerRead = (int) Math.min(count,
+      (MAX_READ_SIZE - rowLength) / stride + 1);
+    byte[] staging = new byte[(int) ((rowsPerRead - 1) * stride + rowLength)];
+    for (int row=0; row<count; row+=rowsPerRead) {
+      int rows = Math.min(rowsPerRead, count - row);
+      int span = (int) ((rows - 1) * stride + rowLength);
+      s.seek(offset + row * stride);
+      int n = readFully(s, staging, span);
+      for (int r=0; r<rows; r++) {
+        int start = (int) (r * stride);
+        int length = Math.min(rowLength, n - start);
+        if (length <= 0) {
+          break;
+        }
+        System.arraycopy(staging, start,
+          buf, bufOffset + (row + r) * bufStride, length);
+      }
+      if (n < span) {
+        // end of file
+        return;
+      }
+    }
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Reads up to the given number of bytes, stopping early only at the
+   * end of the stream.
+   *
+   * @return the number of bytes read
+   */
+  private static int readFully(RandomAccessInputStream s, byte[] b,
+    int length)
+    throws IOException
+  {
+    int total = 0;
+    while (total < length) {
+      int n = s.read(b, total, length - total);
+      if (n <= 0) {
+        break;
+      }
+      total += n;
+    }
+    return total;
+  }
+
+}
@@ -360,6 +360,28 @@ public abstract class ReaderWrapper implements IFormatReader {
     return reader.openThumbBytes(no);
   }
 
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    // planes must be read through this wrapper, but the wrapped reader
+    // still knows the most efficient order in which to read them
+    PlaneIterator planes = reader.openPlanes();
+    int[] order = planes.getOrder();
+    boolean prefetch = planes.isPrefetching();
+    planes.close();
+    if (order.length != getImageCount()) {
+      return new PlaneIterator(this);
+    }
+    return new PlaneIterator(this, order, prefetch);
+  }
+
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    // regions must be read through this wrapper
+    FormatTools.openRegions(this, requests, FormatTools.getPlaneOrder(this));
+  }
+
   @Override
   public void close(boolean fileOnly) throws IOException {
     reader.close(fileOnly);
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+/**
+ * A request for one rectangular region of one plane, used to read many
+ * regions with a single call to
+ * {@link IFormatReader#openRegions(java.util.List)}.
+ */
+public class RegionRequest {
+
+  // -- Fields --
+
+  private final int plane;
+  private final int x;
+  private final int y;
+  private final int width;
+  private final int height;
+  private byte[] buffer;
+
+  // -- Constructors --
+
+  /**
+   * Constructs a request for the given region, for which a buffer will be
+   * allocated when the region is read.
+   */
+  public RegionRequest(int plane, int x, int y, int width, int height) {
+    this(plane, x, y, width, height, null);
+  }
+
+  /**
+   * Constructs a request for the given region.
+   *
+   * @param plane the plane index within the reader's current series
+   * @param buffer the buffer in which to store the region, or null if a
+   *   buffer should be allocated
+   */
+  public RegionRequest(int plane, int x, int y, int width, int height,
+    byte[] buffer)
+  {
+    this.plane = plane;
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+    this.buffer = buffer;
+  }
+
+  // -- RegionRequest API methods --
+
+  public int getPlane() {
+    return plane;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the buffer holding the region, or null if the region has not
+   * been read and no buffer was supplied.
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+  public void setBuffer(byte[] buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public String toString() {
+    return "plane=" + plane + ", x=" + x + ", y=" + y + ", w=" + width +
+      ", h=" + height;
+  }
+
+}
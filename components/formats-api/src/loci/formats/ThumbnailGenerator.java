@@ -0,0 +1,353 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import loci.common.DataTools;
+
+/**
+ * Builds thumbnails without AWT, by streaming tiles from the smallest
+ * resolution that is at least as large as the thumbnail and averaging
+ * each block of source pixels into one thumbnail pixel.
+ *
+ * Thumbnails have the same pixel type, channel layout and byte order as
+ * the planes returned by the reader, so that they can be handled in the
+ * same way as the result of {@link IFormatReader#openBytes(int)}.
+ * Indexed images are subsampled instead of averaged, so that each
+ * thumbnail pixel is a valid index into the lookup table.
+ *
+ * As with the AWT-based thumbnails that this class replaces, signed integer
+ * samples are averaged as unsigned values, and floating point thumbnails are
+ * normalized to the range [0, 1] using the minimum and maximum finite values
+ * in the plane.  Positive and negative infinity are normalized to 1 and 0.
+ *
+ * The reader's current series and resolution are restored before each
+ * method returns.
+ */
+public class ThumbnailGenerator {
+
+  // -- Constants --
+
+  /** Upper bound on the size of the buffer used for each tile. */
+  private static final long MAX_TILE_BYTES = 16L * 1024 * 1024;
+
+  // -- Fields --
+
+  private final IFormatReader reader;
+
+  // -- Constructor --
+
+  /**
+   * Constructs a thumbnail generator for the given initialized reader.
+   */
+  public ThumbnailGenerator(IFormatReader reader) {
+    this.reader = reader;
+  }
+
+  // -- ThumbnailGenerator API methods --
+
+  /**
+   * Obtains a thumbnail for the specified plane of the current series
+   * and resolution, with dimensions {@link IFormatReader#getThumbSizeX()}
+   * by {@link IFormatReader#getThumbSizeY()}.
+   */
+  public byte[] openThumbBytes(int no) throws FormatException, IOException {
+    FormatTools.assertId(reader.getCurrentFile(), true, 1);
+    int coreIndex = reader.getCoreIndex();
+    try {
+      int thumbX = reader.getThumbSizeX();
+      int thumbY = reader.getThumbSizeY();
+      int source = getSourceIndex(coreIndex, no, thumbX, thumbY);
+      return openThumbBytes(source, no, thumbX, thumbY);
+    }
+    finally {
+      reader.setCoreIndex(coreIndex);
+    }
+  }
+
+  /**
+   * Obtains a thumbnail for the first plane of every series.  When several
+   * series are resolutions of the same pyramid, their thumbnails are
+   * calculated from a single pass over the pyramid's smallest adequate
+   * resolution.
+   *
+   * @return one thumbnail per series, indexed by series
+   */
+  public byte[][] openSeriesThumbBytes() throws FormatException, IOException {
+    FormatTools.assertId(reader.getCurrentFile(), true, 1);
+    int coreIndex = reader.getCoreIndex();
+    byte[][] thumbs = new byte[reader.getSeriesCount()][];
+    Map<String, byte[]> cache = new HashMap<String, byte[]>();
+    try {
+      for (int s=0; s<thumbs.length; s++) {
+        reader.setCoreIndex(reader.seriesToCoreIndex(s));
+        int thumbX = reader.getThumbSizeX();
+        int thumbY = reader.getThumbSizeY();
+        int source = getSourceIndex(reader.getCoreIndex(), 0, thumbX, thumbY);
+
+        String key = source + ":" + thumbX + "x" + thumbY;
+        byte[] thumb = cache.get(key);
+        if (thumb == null) {
+          thumb = openThumbBytes(source, 0, thumbX, thumbY);
+          cache.put(key, thumb);
+          thumbs[s] = thumb;
+        }
+        else {
+          thumbs[s] = thumb.clone();
+        }
+      }
+    }
+    finally {
+      reader.setCoreIndex(coreIndex);
+    }
+    return thumbs;
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Finds the smallest resolution in the same pyramid as the given core
+   * index that covers the thumbnail and stores pixels in the same way.
+   */
+  private int getSourceIndex(int coreIndex, int no, int thumbX, int thumbY)
+    throws FormatException
+  {
+    List<CoreMetadata> core = reader.getCoreMetadataList();
+    int start = 0;
+    while (start < core.size()) {
+      int count = Math.max(1, core.get(start).resolutionCount);
+      if (start + count > coreIndex) {
+        break;
+      }
+      start += count;
+    }
+    if (start >= core.size()) {
+      return coreIndex;
+    }
+    int end = start + Math.max(1, core.get(start).resolutionCount);
+
+    int pixelType = reader.getPixelType();
+    int channels = reader.getRGBChannelCount();
+    boolean indexed = reader.isIndexed();
+
+    for (int level=end-1; level>coreIndex; level--) {
+      reader.setCoreIndex(level);
+      if (reader.getSizeX() >= thumbX && reader.getSizeY() >= thumbY &&
+        reader.getPixelType() == pixelType &&
+        reader.getRGBChannelCount() == channels &&
+        reader.isIndexed() == indexed && no < reader.getImageCount())
+      {
+        return level;
+      }
+    }
+    return coreIndex;
+  }
+
+  /**
+   * Reads the given plane of the given core index one tile at a time and
+   * scales it down to the requested thumbnail size.
+   */
+  private byte[] openThumbBytes(int coreIndex, int no, int thumbX, int thumbY)
+    throws FormatException, IOException
+  {
+    reader.setCoreIndex(coreIndex);
+
+    int sizeX = reader.getSizeX();
+    int sizeY = reader.getSizeY();
+    int pixelType = reader.getPixelType();
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    int channels = reader.getRGBChannelCount();
+    boolean interleaved = reader.isInterleaved();
+    boolean little = reader.isLittleEndian();
+    boolean subsample = reader.isIndexed();
+    boolean floating = FormatTools.isFloatingPoint(pixelType);
+    int valueType = floating ? pixelType : getUnsignedType(pixelType);
+
+    int pixelBytes = channels * bpp;
+    int tileWidth = Math.min(sizeX, reader.getOptimalTileWidth());
+    int tileHeight = Math.min(sizeY, reader.getOptimalTileHeight());
+    long maxTileBytes =
+      Math.min(MAX_TILE_BYTES, FormatTools.getMemoryBudget(reader));
+    tileWidth = (int) Math.max(1,
+      Math.min(tileWidth, maxTileBytes / pixelBytes));
+    tileHeight = (int) Math.max(1,
+      Math.min(tileHeight, maxTileBytes / ((long) tileWidth * pixelBytes)));
+
+    int[] xMap = new int[sizeX];
+    for (int x=0; x<sizeX; x++) {
+      xMap[x] = (int) ((long) x * thumbX / sizeX);
+    }
+
+    int thumbPixels = thumbX * thumbY;
+    double[] sums = new double[thumbPixels * channels];
+    int[] counts = new int[thumbPixels];
+    // infinite values are counted separately so that they can be
+    // normalized without knowing the minimum and maximum in advance
+    int[] highs = floating ? new int[sums.length] : null;
+    int[] lows = floating ? new int[sums.length] : null;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    byte[] tile = new byte[tileWidth * tileHeight * pixelBytes];
+
+    for (int y=0; y<sizeY; y+=tileHeight) {
+      int h = Math.min(tileHeight, sizeY - y);
+      for (int x=0; x<sizeX; x+=tileWidth) {
+        int w = Math.min(tileWidth, sizeX - x);
+        reader.openBytes(no, tile, x, y, w, h);
+
+        int planeSize = w * h;
+        for (int row=0; row<h; row++) {
+          int thumbRow = (int) ((long) (y + row) * thumbY / sizeY) * thumbX;
+          for (int col=0; col<w; col++) {
+            int target = thumbRow + xMap[x + col];
+            if (subsample && counts[target] > 0) {
+              continue;
+            }
+            counts[target]++;
+            int pixel = row * w + col;
+            for (int c=0; c<channels; c++) {
+              int index = interleaved ?
+                pixel * channels + c : c * planeSize + pixel;
+              double value = getValue(tile, index, valueType, bpp, little);
+              int sample = target * channels + c;
+              if (floating && Double.isInfinite(value)) {
+                if (value > 0) highs[sample]++;
+                else lows[sample]++;
+                continue;
+              }
+              if (value < min) min = value;
+              if (value > max) max = value;
+              sums[sample] += value;
+            }
+          }
+        }
+      }
+    }
+
+    byte[] thumb = new byte[thumbPixels * pixelBytes];
+    for (int ty=0; ty<thumbY; ty++) {
+      for (int tx=0; tx<thumbX; tx++) {
+        int target = ty * thumbX + tx;
+        int source = target;
+        if (counts[source] == 0) {
+          // thumbnail is larger than the image; use the nearest pixel
+          int sx = (int) ((long) tx * sizeX / thumbX);
+          int sy = (int) ((long) ty * sizeY / thumbY);
+          source = (int) ((long) sy * thumbY / sizeY) * thumbX + xMap[sx];
+        }
+        for (int c=0; c<channels; c++) {
+          int sample = source * channels + c;
+          double value = sums[sample] / counts[source];
+          if (floating) {
+            double range = max > min ? max - min : 1;
+            int finite = counts[source] - highs[sample] - lows[sample];
+            double offset = finite == 0 ? 0 : sums[sample] - finite * min;
+            value = (offset / range + highs[sample]) / counts[source];
+          }
+          int index = interleaved ?
+            target * channels + c : c * thumbPixels + target;
+          setValue(thumb, index, value, valueType, bpp, little);
+        }
+      }
+    }
+    return thumb;
+  }
+
+  /**
+   * Returns the unsigned pixel type with the same number of bytes as
+   * the given integer pixel type.
+   */
+  private static int getUnsignedType(int pixelType) {
+    switch (pixelType) {
+      case FormatTools.INT8:
+        return FormatTools.UINT8;
+      case FormatTools.INT16:
+        return FormatTools.UINT16;
+      case FormatTools.INT32:
+        return FormatTools.UINT32;
+      default:
+        return pixelType;
+    }
+  }
+
+  /** Reads the pixel value at the given sample index. */
+  private static double getValue(byte[] buf, int index, int pixelType,
+    int bpp, boolean little)
+  {
+    int offset = index * bpp;
+    switch (pixelType) {
+      case FormatTools.INT8:
+        return buf[offset];
+      case FormatTools.INT16:
+        return DataTools.bytesToShort(buf, offset, 2, little);
+      case FormatTools.UINT16:
+        return DataTools.bytesToShort(buf, offset, 2, little) & 0xffff;
+      case FormatTools.INT32:
+        return DataTools.bytesToInt(buf, offset, 4, little);
+      case FormatTools.UINT32:
+        return DataTools.bytesToInt(buf, offset, 4, little) & 0xffffffffL;
+      case FormatTools.FLOAT:
+        return Float.intBitsToFloat(
+          DataTools.bytesToInt(buf, offset, 4, little));
+      case FormatTools.DOUBLE:
+        return Double.longBitsToDouble(
+          DataTools.bytesToLong(buf, offset, 8, little));
+      default:
+        return buf[offset] & 0xff;
+    }
+  }
+
+  /** Stores a pixel value at the given sample index. */
+  private static void setValue(byte[] buf, int index, double value,
+    int pixelType, int bpp, boolean little)
+  {
+    int offset = index * bpp;
+    switch (pixelType) {
+      case FormatTools.FLOAT:
+        DataTools.unpackBytes(Float.floatToIntBits((float) value),
+          buf, offset, bpp, little);
+        break;
+      case FormatTools.DOUBLE:
+        DataTools.unpackBytes(Double.doubleToLongBits(value),
+          buf, offset, bpp, little);
+        break;
+      default:
+        DataTools.unpackBytes(Math.round(value), buf, offset, bpp, little);
+    }
+  }
+
+}
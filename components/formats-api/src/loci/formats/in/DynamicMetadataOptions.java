@@ -47,6 +47,42 @@ public class DynamicMetadataOptions implements MetadataOptions {
   public static final String READER_VALIDATE_KEY = "reader.validate.input";
   public static final boolean READER_VALIDATE_DEFAULT = false;
 
+  /**
+   * If true, original metadata is not collected while a file is
+   * initialized, but by re-reading the file the first time that global
+   * or series metadata is requested.  Metadata that is never requested
+   * then costs nothing.
+   */
+  public static final String ORIGINAL_METADATA_LAZY_KEY =
+    "metadata.original.lazy";
+  public static final boolean ORIGINAL_METADATA_LAZY_DEFAULT = false;
+
+  /**
+   * Maximum number of bytes that a reader and its wrappers should allocate
+   * for a single pixel buffer or internal cache.  Planes larger than the
+   * budget must be read as tiles into a caller-supplied buffer.  A value
+   * of 0 or less means that no budget is enforced.
+   */
+  public static final String MEMORY_BUDGET_KEY = "memory.budget";
+  public static final long MEMORY_BUDGET_DEFAULT = 0;
+
+  /**
+   * Maximum number of threads on which a reader may parse independent
+   * series or files while it is being initialized.  Readers that do not
+   * support concurrent initialization ignore this setting.
+   */
+  public static final String INIT_THREADS_KEY = "init.threads";
+  public static final int INIT_THREADS_DEFAULT = 1;
+
+  /**
+   * If true, readers that support it only determine the number of series
+   * (and, for plates, the plate layout) while a file is initialized.  The
+   * core metadata and metadata store entries of each remaining series are
+   * populated the first time that the series is selected.
+   */
+  public static final String SERIES_LAZY_KEY = "series.lazy";
+  public static final boolean SERIES_LAZY_DEFAULT = false;
+
   private Properties props;
 
   /**
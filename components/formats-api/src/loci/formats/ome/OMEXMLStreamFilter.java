@@ -0,0 +1,304 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.ome;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import loci.common.xml.XMLTools;
+import loci.formats.meta.MetadataRetrieve;
+import loci.formats.services.OMEXMLServiceImpl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes a single streaming pass over an OME-XML document before it is
+ * parsed into a DOM, removing elements that are expensive to parse.
+ *
+ * TiffData elements are always removed, and recorded in a
+ * {@link TiffDataIndex}.  ROIs, ROI references and original metadata
+ * annotations can optionally be removed as well.
+ *
+ * Only documents using the latest schema are filtered; anything else is
+ * returned unchanged so that it can be upgraded by the usual XSLT
+ * transforms, and {@link #getTiffDataIndex(MetadataRetrieve)} then reads
+ * the TiffData from the parsed metadata instead.
+ */
+public class OMEXMLStreamFilter {
+
+  // -- Constants --
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(OMEXMLStreamFilter.class);
+
+  private static final String NAMESPACE =
+    "http://www.openmicroscopy.org/Schemas/OME/" +
+    OMEXMLServiceImpl.LATEST_VERSION;
+
+  private static final String ORIGINAL_METADATA_NS =
+    "openmicroscopy.org/OriginalMetadata";
+
+  // -- Fields --
+
+  private boolean skipAnnotations = false;
+
+  private TiffDataIndex index;
+
+  // -- OMEXMLStreamFilter API methods --
+
+  /**
+   * Set whether ROIs and original metadata annotations should be removed.
+   */
+  public void setSkipAnnotations(boolean skip) {
+    skipAnnotations = skip;
+  }
+
+  /**
+   * @return true if ROIs and original metadata annotations are removed
+   */
+  public boolean isSkippingAnnotations() {
+    return skipAnnotations;
+  }
+
+  /**
+   * Removes TiffData (and optionally annotation) elements from the given
+   * OME-XML document.
+   *
+   * @return the filtered document, or the original document if it could
+   *   not be filtered
+   */
+  public String filter(String xml) {
+    index = null;
+    if (xml == null) {
+      return null;
+    }
+    xml = XMLTools.sanitizeXML(xml);
+    try {
+      return stream(xml);
+    }
+    catch (XMLStreamException e) {
+      // leave error reporting to the DOM parser
+      LOGGER.debug("Could not stream OME-XML", e);
+      index = null;
+      return xml;
+    }
+  }
+
+  /**
+   * @param parsed the metadata parsed from the result of
+   *   {@link #filter(String)}
+   * @return the TiffData recorded by the most recent call to
+   *   {@link #filter(String)}, or the TiffData in the parsed metadata
+   *   if the document was not filtered
+   */
+  public TiffDataIndex getTiffDataIndex(MetadataRetrieve parsed) {
+    if (index != null) {
+      return index;
+    }
+    return TiffDataIndex.fromMetadata(parsed);
+  }
+
+  // -- Helper methods --
+
+  private String stream(String xml) throws XMLStreamException {
+    XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    inputFactory.setProperty(
+      XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    XMLEventReader reader =
+      inputFactory.createXMLEventReader(new StringReader(xml));
+    StringWriter out = new StringWriter(xml.length());
+    XMLEventWriter writer =
+      XMLOutputFactory.newInstance().createXMLEventWriter(out);
+
+    List<int[]> values = new ArrayList<int[]>();
+    List<String[]> uuids = new ArrayList<String[]>();
+    List<String[]> fileNames = new ArrayList<String[]>();
+    int[] currentValues = null;
+    String[] currentUUIDs = null;
+    String[] currentFileNames = null;
+    int tiffDataCount = 0;
+
+    boolean root = true;
+    int skipDepth = 0;
+    boolean inTiffData = false;
+    StringBuilder uuid = null;
+
+    try {
+      while (reader.hasNext()) {
+        XMLEvent event = reader.nextEvent();
+
+        if (event.isStartElement()) {
+          StartElement start = event.asStartElement();
+          QName name = start.getName();
+          if (root) {
+            if (!NAMESPACE.equals(name.getNamespaceURI())) {
+              return xml;
+            }
+            root = false;
+          }
+          if (skipDepth > 0) {
+            skipDepth++;
+            continue;
+          }
+
+          String element = name.getLocalPart();
+          boolean ome = NAMESPACE.equals(name.getNamespaceURI());
+          if (ome && element.equals("Image")) {
+            if (currentValues != null) {
+              values.add(Arrays.copyOf(
+                currentValues, tiffDataCount * TiffDataIndex.FIELDS));
+              uuids.add(Arrays.copyOf(currentUUIDs, tiffDataCount));
+              fileNames.add(Arrays.copyOf(currentFileNames, tiffDataCount));
+            }
+            currentValues = new int[16 * TiffDataIndex.FIELDS];
+            currentUUIDs = new String[16];
+            currentFileNames = new String[16];
+            tiffDataCount = 0;
+          }
+          else if (ome && element.equals("TiffData") && currentValues != null) {
+            if (tiffDataCount == currentUUIDs.length) {
+              int size = tiffDataCount * 2;
+              currentValues =
+                Arrays.copyOf(currentValues, size * TiffDataIndex.FIELDS);
+              currentUUIDs = Arrays.copyOf(currentUUIDs, size);
+              currentFileNames = Arrays.copyOf(currentFileNames, size);
+            }
+            int offset = tiffDataCount * TiffDataIndex.FIELDS;
+            currentValues[offset] = getInt(start, "IFD");
+            currentValues[offset + 1] = getInt(start, "PlaneCount");
+            currentValues[offset + 2] = getInt(start, "FirstZ");
+            currentValues[offset + 3] = getInt(start, "FirstC");
+            currentValues[offset + 4] = getInt(start, "FirstT");
+            tiffDataCount++;
+            inTiffData = true;
+            continue;
+          }
+          else if (inTiffData) {
+            if (element.equals("UUID")) {
+              currentFileNames[tiffDataCount - 1] =
+                getString(start, "FileName");
+              uuid = new StringBuilder();
+            }
+            continue;
+          }
+          else if (skipAnnotations && ome && (element.equals("ROI") ||
+            element.equals("ROIRef") || (element.equals("XMLAnnotation") &&
+            ORIGINAL_METADATA_NS.equals(getString(start, "Namespace")))))
+          {
+            skipDepth = 1;
+            continue;
+          }
+        }
+        else if (event.isEndElement()) {
+          if (skipDepth > 0) {
+            skipDepth--;
+            continue;
+          }
+          if (inTiffData) {
+            String element = event.asEndElement().getName().getLocalPart();
+            if (element.equals("UUID") && uuid != null) {
+              currentUUIDs[tiffDataCount - 1] = uuid.toString().trim();
+              uuid = null;
+            }
+            else if (element.equals("TiffData")) {
+              inTiffData = false;
+            }
+            continue;
+          }
+        }
+        else if (skipDepth > 0) {
+          continue;
+        }
+        else if (inTiffData) {
+          if (uuid != null && event.isCharacters()) {
+            uuid.append(event.asCharacters().getData());
+          }
+          continue;
+        }
+        writer.add(event);
+      }
+      writer.flush();
+    }
+    finally {
+      reader.close();
+      writer.close();
+    }
+
+    if (currentValues != null) {
+      values.add(Arrays.copyOf(
+        currentValues, tiffDataCount * TiffDataIndex.FIELDS));
+      uuids.add(Arrays.copyOf(currentUUIDs, tiffDataCount));
+      fileNames.add(Arrays.copyOf(currentFileNames, tiffDataCount));
+    }
+    index = new TiffDataIndex(values.toArray(new int[values.size()][]),
+      uuids.toArray(new String[uuids.size()][]),
+      fileNames.toArray(new String[fileNames.size()][]), true);
+    return out.toString();
+  }
+
+  private static String getString(StartElement element, String name) {
+    Attribute attribute = element.getAttributeByName(new QName(name));
+    return attribute == null ? null : attribute.getValue();
+  }
+
+  private static int getInt(StartElement element, String name)
+    throws XMLStreamException
+  {
+    String value = getString(element, name);
+    if (value == null) {
+      return -1;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    }
+    catch (NumberFormatException e) {
+      throw new XMLStreamException("Invalid " + name + ": " + value);
+    }
+  }
+
+}
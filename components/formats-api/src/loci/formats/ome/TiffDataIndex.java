@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.ome;
+
+import loci.formats.meta.MetadataRetrieve;
+import loci.formats.meta.MetadataStore;
+
+import ome.xml.model.primitives.NonNegativeInteger;
+
+/**
+ * Compact copy of the TiffData elements in an OME-XML document.
+ *
+ * OME-TIFF datasets may contain one TiffData element per plane, which
+ * is expensive to hold as DOM nodes and model objects.  This class keeps
+ * the same information in one int array and two String arrays per Image,
+ * with -1 recorded for any attribute that was not set.
+ */
+public class TiffDataIndex {
+
+  // -- Constants --
+
+  private static final int IFD = 0;
+  private static final int PLANE_COUNT = 1;
+  private static final int FIRST_Z = 2;
+  private static final int FIRST_C = 3;
+  private static final int FIRST_T = 4;
+
+  /** Number of int values stored for each TiffData. */
+  static final int FIELDS = 5;
+
+  // -- Fields --
+
+  /** IFD, PlaneCount, FirstZ, FirstC and FirstT for each TiffData. */
+  private int[][] values;
+
+  private String[][] uuids;
+  private String[][] fileNames;
+
+  /** True if the TiffData elements were removed from the OME-XML. */
+  private boolean detached;
+
+  // -- Constructors --
+
+  /** Constructs an empty index. */
+  public TiffDataIndex() {
+    this(new int[0][], new String[0][], new String[0][], false);
+  }
+
+  TiffDataIndex(int[][] values, String[][] uuids, String[][] fileNames,
+    boolean detached)
+  {
+    this.values = values;
+    this.uuids = uuids;
+    this.fileNames = fileNames;
+    this.detached = detached;
+  }
+
+  // -- TiffDataIndex API methods --
+
+  /**
+   * Copies the TiffData elements of every Image in the given metadata.
+   */
+  public static TiffDataIndex fromMetadata(MetadataRetrieve meta) {
+    int imageCount = meta.getImageCount();
+    int[][] values = new int[imageCount][];
+    String[][] uuids = new String[imageCount][];
+    String[][] fileNames = new String[imageCount][];
+    for (int i=0; i<imageCount; i++) {
+      int count = meta.getTiffDataCount(i);
+      values[i] = new int[count * FIELDS];
+      uuids[i] = new String[count];
+      fileNames[i] = new String[count];
+      for (int td=0; td<count; td++) {
+        int offset = td * FIELDS;
+        values[i][offset + IFD] = getValue(meta.getTiffDataIFD(i, td));
+        values[i][offset + PLANE_COUNT] =
+          getValue(meta.getTiffDataPlaneCount(i, td));
+        values[i][offset + FIRST_Z] = getValue(meta.getTiffDataFirstZ(i, td));
+        values[i][offset + FIRST_C] = getValue(meta.getTiffDataFirstC(i, td));
+        values[i][offset + FIRST_T] = getValue(meta.getTiffDataFirstT(i, td));
+        try {
+          uuids[i][td] = meta.getUUIDValue(i, td);
+        }
+        catch (NullPointerException e) { }
+        try {
+          fileNames[i][td] = meta.getUUIDFileName(i, td);
+        }
+        catch (NullPointerException e) { }
+      }
+    }
+    return new TiffDataIndex(values, uuids, fileNames, false);
+  }
+
+  /**
+   * @return true if the TiffData elements are only stored in this index,
+   *   and were not parsed into the OME-XML model
+   */
+  public boolean isDetached() {
+    return detached;
+  }
+
+  /** @return the number of Images for which TiffData were recorded */
+  public int getImageCount() {
+    return values.length;
+  }
+
+  /** @return the number of TiffData elements in the given Image */
+  public int getTiffDataCount(int image) {
+    return image < values.length ? values[image].length / FIELDS : 0;
+  }
+
+  /** @return the IFD attribute, or -1 if it was not set */
+  public int getIFD(int image, int tiffData) {
+    return values[image][tiffData * FIELDS + IFD];
+  }
+
+  /** @return the PlaneCount attribute, or -1 if it was not set */
+  public int getPlaneCount(int image, int tiffData) {
+    return values[image][tiffData * FIELDS + PLANE_COUNT];
+  }
+
+  /** @return the FirstZ attribute, or -1 if it was not set */
+  public int getFirstZ(int image, int tiffData) {
+    return values[image][tiffData * FIELDS + FIRST_Z];
+  }
+
+  /** @return the FirstC attribute, or -1 if it was not set */
+  public int getFirstC(int image, int tiffData) {
+    return values[image][tiffData * FIELDS + FIRST_C];
+  }
+
+  /** @return the FirstT attribute, or -1 if it was not set */
+  public int getFirstT(int image, int tiffData) {
+    return values[image][tiffData * FIELDS + FIRST_T];
+  }
+
+  /** @return the value of the UUID child element, or null */
+  public String getUUID(int image, int tiffData) {
+    return uuids[image][tiffData];
+  }
+
+  /** @return the FileName attribute of the UUID child element, or null */
+  public String getUUIDFileName(int image, int tiffData) {
+    return fileNames[image][tiffData];
+  }
+
+  /**
+   * Stores the TiffData elements of one Image in the given metadata store.
+   *
+   * @param store the destination metadata store
+   * @param image the index of the Image in this index
+   * @param storeImage the index of the Image in the store
+   */
+  public void populate(MetadataStore store, int image, int storeImage) {
+    for (int td=0; td<getTiffDataCount(image); td++) {
+      int ifd = getIFD(image, td);
+      if (ifd >= 0) {
+        store.setTiffDataIFD(new NonNegativeInteger(ifd), storeImage, td);
+      }
+      int planeCount = getPlaneCount(image, td);
+      if (planeCount >= 0) {
+        store.setTiffDataPlaneCount(
+          new NonNegativeInteger(planeCount), storeImage, td);
+      }
+      int z = getFirstZ(image, td);
+      int c = getFirstC(image, td);
+      int t = getFirstT(image, td);
+      if (z >= 0) {
+        store.setTiffDataFirstZ(new NonNegativeInteger(z), storeImage, td);
+      }
+      if (c >= 0) {
+        store.setTiffDataFirstC(new NonNegativeInteger(c), storeImage, td);
+      }
+      if (t >= 0) {
+        store.setTiffDataFirstT(new NonNegativeInteger(t), storeImage, td);
+      }
+      if (getUUID(image, td) != null) {
+        store.setUUIDValue(getUUID(image, td), storeImage, td);
+      }
+      if (getUUIDFileName(image, td) != null) {
+        store.setUUIDFileName(getUUIDFileName(image, td), storeImage, td);
+      }
+    }
+  }
+
+  // -- Helper methods --
+
+  private static int getValue(NonNegativeInteger value) {
+    return value == null ? -1 : value.getValue();
+  }
+
+}
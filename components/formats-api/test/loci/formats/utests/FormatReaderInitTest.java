@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import loci.formats.CoreMetadata;
+import loci.formats.FormatException;
+import loci.formats.FormatReader;
+import loci.formats.FormatTools;
+import loci.formats.in.DynamicMetadataOptions;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for concurrent initialization tasks in
+ * {@link loci.formats.FormatReader}.
+ */
+public class FormatReaderInitTest {
+
+  private static final int SERIES_COUNT = 12;
+
+  private SeriesReader reader;
+
+  /** Reader that initializes each series in a separate task. */
+  public static class SeriesReader extends FormatReader {
+
+    /** Series for which the task fails, or -1. */
+    private int failingSeries = -1;
+
+    private final Set<Thread> threads =
+      Collections.synchronizedSet(new HashSet<Thread>());
+
+    public SeriesReader() {
+      super("Series test", "series");
+    }
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
+      return buf;
+    }
+
+    @Override
+    protected void initFile(String id) throws FormatException, IOException {
+      super.initFile(id);
+
+      List<Callable<CoreMetadata>> tasks =
+        new ArrayList<Callable<CoreMetadata>>();
+      for (int s=0; s<SERIES_COUNT; s++) {
+        final int series = s;
+        tasks.add(new Callable<CoreMetadata>() {
+          @Override
+          public CoreMetadata call() throws Exception {
+            threads.add(Thread.currentThread());
+            // later series finish first when run concurrently
+            Thread.sleep(SERIES_COUNT - series);
+            if (series == failingSeries) {
+              throw new FormatException("Series " + series);
+            }
+            CoreMetadata m = new CoreMetadata();
+            m.sizeX = series + 1;
+            m.sizeY = 1;
+            m.sizeZ = 1;
+            m.sizeC = 1;
+            m.sizeT = 1;
+            m.imageCount = 1;
+            m.pixelType = FormatTools.UINT8;
+            m.dimensionOrder = "XYZCT";
+            return m;
+          }
+        });
+      }
+
+      core.clear();
+      for (CoreMetadata m : runInitTasks(tasks)) {
+        core.add(m);
+      }
+    }
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    reader = new SeriesReader();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    reader.close();
+  }
+
+  @Test
+  public void testSequential() throws Exception {
+    reader.setId("test.series");
+    assertSeries();
+    assertEquals(reader.threads.size(), 1);
+    assertTrue(reader.threads.contains(Thread.currentThread()));
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    reader.setMetadataOptions(getOptions(4));
+    reader.setId("test.series");
+    assertSeries();
+    assertTrue(reader.threads.size() > 1);
+    assertTrue(reader.threads.size() <= 4);
+    assertTrue(!reader.threads.contains(Thread.currentThread()));
+  }
+
+  @Test(expectedExceptions = FormatException.class)
+  public void testSequentialFailure() throws Exception {
+    reader.failingSeries = 5;
+    reader.setId("test.series");
+  }
+
+  @Test(expectedExceptions = FormatException.class)
+  public void testParallelFailure() throws Exception {
+    reader.setMetadataOptions(getOptions(4));
+    reader.failingSeries = 5;
+    reader.setId("test.series");
+  }
+
+  // -- Helper methods --
+
+  private DynamicMetadataOptions getOptions(int threads) {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(DynamicMetadataOptions.INIT_THREADS_KEY, threads);
+    return options;
+  }
+
+  private void assertSeries() {
+    assertEquals(reader.getSeriesCount(), SERIES_COUNT);
+    for (int s=0; s<SERIES_COUNT; s++) {
+      reader.setSeries(s);
+      assertEquals(reader.getSizeX(), s + 1);
+    }
+  }
+
+}
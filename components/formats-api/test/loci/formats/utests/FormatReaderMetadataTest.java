@@ -0,0 +1,172 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import java.io.IOException;
+import java.util.Hashtable;
+
+import loci.formats.FormatException;
+import loci.formats.FormatReader;
+import loci.formats.FormatTools;
+import loci.formats.in.DynamicMetadataOptions;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for the original metadata handling in
+ * {@link loci.formats.FormatReader}.
+ */
+public class FormatReaderMetadataTest {
+
+  private static final String ID = "test.meta";
+
+  private static int initCount;
+
+  private MetaReader reader;
+
+  /** Reader that adds a fixed set of original metadata. */
+  public static class MetaReader extends FormatReader {
+
+    public MetaReader() {
+      super("Metadata test", "meta");
+    }
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
+      return buf;
+    }
+
+    @Override
+    protected void initFile(String id) throws FormatException, IOException {
+      super.initFile(id);
+      initCount++;
+
+      core.get(0).sizeX = 2;
+      core.get(0).sizeY = 2;
+      core.get(0).sizeZ = 1;
+      core.get(0).sizeC = 1;
+      core.get(0).sizeT = 1;
+      core.get(0).imageCount = 1;
+      core.get(0).pixelType = FormatTools.UINT8;
+      core.get(0).dimensionOrder = "XYZCT";
+
+      addGlobalMeta("Name", "a&lt;b");
+      addGlobalMeta("Bad\nKey", "value");
+      addGlobalMeta("123", "no letters");
+      addGlobalMetaList("Channel", "red");
+      addGlobalMetaList("Channel", "green");
+      addSeriesMeta("Exposure", 10);
+    }
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    initCount = 0;
+    reader = new MetaReader();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    reader.close();
+  }
+
+  @Test
+  public void testEagerMetadata() throws Exception {
+    reader.setId(ID);
+    assertMetadata(reader.getGlobalMetadata(), reader.getSeriesMetadata());
+    assertEquals(initCount, 1);
+  }
+
+  @Test
+  public void testFilteredMetadata() throws Exception {
+    reader.setMetadataFiltered(true);
+    reader.setId(ID);
+    Hashtable<String, Object> global = reader.getGlobalMetadata();
+    assertEquals(global.get("Name"), "ab");
+    assertFalse(global.containsKey("Bad\nKey"));
+    assertFalse(global.containsKey("123"));
+    assertEquals(global.get("Channel #1"), "red");
+  }
+
+  @Test
+  public void testLazyMetadata() throws Exception {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setBoolean(DynamicMetadataOptions.ORIGINAL_METADATA_LAZY_KEY, true);
+    reader.setMetadataOptions(options);
+    reader.setId(ID);
+    assertEquals(initCount, 1);
+
+    assertEquals(reader.getSizeX(), 2);
+    assertEquals(initCount, 1);
+
+    assertEquals(reader.getMetadataValue("Channel #2"), "green");
+    assertEquals(initCount, 2);
+    assertMetadata(reader.getGlobalMetadata(), reader.getSeriesMetadata());
+    assertEquals(initCount, 2);
+  }
+
+  @Test
+  public void testLazyMetadataReset() throws Exception {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setBoolean(DynamicMetadataOptions.ORIGINAL_METADATA_LAZY_KEY, true);
+    reader.setMetadataOptions(options);
+    reader.setId(ID);
+    reader.close();
+    reader.setId(ID);
+    assertEquals(initCount, 2);
+    assertNull(reader.getSeriesMetadataValue("Missing"));
+    assertEquals(initCount, 3);
+  }
+
+  private void assertMetadata(Hashtable<String, Object> global,
+    Hashtable<String, Object> series)
+  {
+    assertEquals(global.get("Name"), "a&lt;b");
+    assertEquals(global.get("Channel #1"), "red");
+    assertEquals(global.get("Channel #2"), "green");
+    assertFalse(global.containsKey("Channel"));
+    assertEquals(series.get("Exposure"), 10);
+    assertTrue(global.size() >= 3);
+  }
+
+}
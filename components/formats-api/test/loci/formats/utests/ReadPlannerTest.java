@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * Top-level reader and writer APIs
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import loci.common.RandomAccessInputStream;
+import loci.formats.ReadPlanner;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link loci.formats.ReadPlanner}.
+ */
+public class ReadPlannerTest {
+
+  @DataProvider(name = "layouts")
+  public Object[][] mkLayouts() {
+    // row length, stride, row count
+    return new Object[][] {
+      {16, 16, 10},
+      {16, 100, 10},
+      {1, ReadPlanner.MAX_GAP + 2, 3},
+      {1000, 3000, ReadPlanner.MAX_READ_SIZE / 3000 + 5},
+    };
+  }
+
+  @Test(dataProvider = "layouts")
+  public void testReadRows(int rowLength, int stride, int count)
+    throws IOException
+  {
+    long offset = 7;
+    byte[] file = makeFile((int) (offset + (long) stride * count));
+    int bufStride = rowLength + 3;
+    byte[] buf = new byte[bufStride * count];
+    try (RandomAccessInputStream s = new RandomAccessInputStream(file)) {
+      ReadPlanner.readRows(s, offset, rowLength, stride, count,
+        buf, 0, bufStride);
+      assertEquals(s.getFilePointer(),
+        offset + (long) (count - 1) * stride + rowLength);
+    }
+    for (int row=0; row<count; row++) {
+      int start = (int) (offset + (long) row * stride);
+      assertEquals(Arrays.copyOfRange(buf, row * bufStride,
+        row * bufStride + rowLength),
+        Arrays.copyOfRange(file, start, start + rowLength));
+    }
+  }
+
+  @Test
+  public void testTruncatedFile() throws IOException {
+    byte[] file = makeFile(250);
+    byte[] buf = new byte[10 * 20];
+    try (RandomAccessInputStream s = new RandomAccessInputStream(file)) {
+      ReadPlanner.readRows(s, 0, 20, 30, 10, buf, 0, 20);
+    }
+    for (int row=0; row<10; row++) {
+      for (int i=0; i<20; i++) {
+        int index = row * 30 + i;
+        byte expected = index < file.length ? file[index] : 0;
+        assertEquals(buf[row * 20 + i], expected);
+      }
+    }
+  }
+
+  private byte[] makeFile(int length) {
+    byte[] file = new byte[length];
+    for (int i=0; i<file.length; i++) {
+      file[i] = (byte) (i * 31 + (i >> 8));
+    }
+    return file;
+  }
+
+}
@@ -65,6 +65,9 @@ public class ChannelFiller extends ReaderWrapper {
   /** Number of LUT components. */
   protected int lutLength;
 
+  /** Buffer for the color table indices of the most recent plane. */
+  private byte[] indices;
+
   // -- Constructors --
 
   /** Constructs a ChannelFiller around a new image reader. */
@@ -143,6 +146,7 @@ public class ChannelFiller extends ReaderWrapper {
   public byte[] openBytes(int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    FormatTools.checkMemoryBudget(this, w, h);
     byte[] buf = DataTools.allocate(w, h, getRGBChannelCount(),
       FormatTools.getBytesPerPixel(getPixelType()));
     return openBytes(no, buf, x, y, w, h);
@@ -161,54 +165,43 @@ public class ChannelFiller extends ReaderWrapper {
     // uint16 but we are filling with an 8-bit color table, the pixel type
     // should change to uint8.
 
-    // TODO: This logic below is opaque and could use some comments.
-
-    byte[] pix = reader.openBytes(no, x, y, w, h);
+    // each channel of the color table is written directly into the
+    // caller's buffer; channel 'c' starts at 'c * planeLength', and
+    // consecutive values of a channel are 'stride' bytes apart.
+    // If there is more than one index per pixel, every index is looked
+    // up, so the color table channels of each sample are adjacent if
+    // interleaved, and each color table channel holds every sample if not
+
+    indices = openIndices(no, indices, x, y, w, h);
+    int n = w * h * reader.getRGBChannelCount();
+    int bpp = FormatTools.getBytesPerPixel(getPixelType());
+    int planeLength = isInterleaved() ? bpp : n * bpp;
     if (getPixelType() == FormatTools.UINT8) {
-      byte[][] b = ImageTools.indexedToRGB(reader.get8BitLookupTable(), pix);
-      if (isInterleaved()) {
-        int pt = 0;
-        for (int i=0; i<b[0].length; i++) {
-          for (int j=0; j<b.length; j++) {
-            buf[pt++] = b[j][i];
-          }
-        }
-      }
-      else {
-        for (int i=0; i<b.length; i++) {
-          System.arraycopy(b[i], 0, buf, i*b[i].length, b[i].length);
-        }
+      byte[][] lut = reader.get8BitLookupTable();
+      int stride = isInterleaved() ? lut.length * bpp : bpp;
+      for (int c=0; c<lut.length; c++) {
+        fillChannel(lut, indices, 0, 1, n, c, buf, c * planeLength, stride);
       }
       return buf;
     }
-    short[][] s = ImageTools.indexedToRGB(reader.get16BitLookupTable(),
-      pix, isLittleEndian());
-
-    if (isInterleaved()) {
-      int pt = 0;
-      for (int i=0; i<s[0].length; i++) {
-        for (int j=0; j<s.length; j++) {
-          buf[pt++] = (byte) (isLittleEndian() ?
-            (s[j][i] & 0xff) : (s[j][i] >> 8));
-          buf[pt++] = (byte) (isLittleEndian() ?
-            (s[j][i] >> 8) : (s[j][i] & 0xff));
-        }
-      }
-    }
-    else {
-      int pt = 0;
-      for (int i=0; i<s.length; i++) {
-        for (int j=0; j<s[i].length; j++) {
-          buf[pt++] = (byte) (isLittleEndian() ?
-            (s[i][j] & 0xff) : (s[i][j] >> 8));
-          buf[pt++] = (byte) (isLittleEndian() ?
-            (s[i][j] >> 8) : (s[i][j] & 0xff));
-        }
-      }
+    short[][] lut = reader.get16BitLookupTable();
+    int stride = isInterleaved() ? lut.length * bpp : bpp;
+    for (int c=0; c<lut.length; c++) {
+      fillChannel(lut, indices, 0, 1, n, c, isLittleEndian(), buf,
+        c * planeLength, stride);
     }
     return buf;
   }
 
+  /* @see IFormatReader#close(boolean) */
+  @Override
+  public void close(boolean fileOnly) throws IOException {
+    super.close(fileOnly);
+    if (!fileOnly) {
+      indices = null;
+    }
+  }
+
   // -- IFormatHandler API methods --
 
   /* @see IFormatHandler#getNativeDataType() */
@@ -227,6 +220,58 @@ public class ChannelFiller extends ReaderWrapper {
     MetadataTools.populatePixelsOnly(store, this);
   }
 
+  // -- Package-private methods --
+
+  /**
+   * Reads the color table indices for the given region of the given plane,
+   * reusing the given buffer if it is large enough.
+   * Used by {@link ChannelSeparator} to expand a single channel without
+   * filling the others.
+   */
+  byte[] openIndices(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    int size = FormatTools.getPlaneSize(reader, w, h);
+    if (buf == null || buf.length < size) {
+      buf = new byte[size];
+    }
+    return reader.openBytes(no, buf, x, y, w, h);
+  }
+
+  /**
+   * Looks up one channel of an 8-bit color table for 'n' indices, taking
+   * every 'step'th index from 'start', and writing the values 'stride'
+   * bytes apart starting at 'offset' in 'buf'.
+   */
+  static void fillChannel(byte[][] lut, byte[] indices, int start, int step,
+    int n, int channel, byte[] buf, int offset, int stride)
+  {
+    byte[] table = lut[channel];
+    for (int i=0; i<n; i++) {
+      buf[offset] = table[indices[start + i * step] & 0xff];
+      offset += stride;
+    }
+  }
+
+  /**
+   * Looks up one channel of a 16-bit color table for 'n' 16-bit indices,
+   * taking every 'step'th index from 'start', and writing the values
+   * 'stride' bytes apart starting at 'offset' in 'buf'.
+   */
+  static void fillChannel(short[][] lut, byte[] indices, int start, int step,
+    int n, int channel, boolean little, byte[] buf, int offset, int stride)
+  {
+    short[] table = lut[channel];
+    for (int i=0; i<n; i++) {
+      int index =
+        DataTools.bytesToInt(indices, (start + i * step) * 2, 2, little);
+      short value = table[index];
+      buf[offset] = (byte) (little ? (value & 0xff) : (value >> 8));
+      buf[offset + 1] = (byte) (little ? (value >> 8) : (value & 0xff));
+      offset += stride;
+    }
+  }
+
   // -- Helper methods --
 
   /** Gets the number of color components in the lookup table. */
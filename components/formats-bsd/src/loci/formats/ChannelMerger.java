@@ -152,6 +152,7 @@ public class ChannelMerger extends ReaderWrapper {
   public byte[] openBytes(int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    FormatTools.checkMemoryBudget(this, w, h);
     int bpp = FormatTools.getBytesPerPixel(getPixelType());
     int ch = getRGBChannelCount();
     byte[] newBuffer = DataTools.allocate(w, h, ch, bpp);
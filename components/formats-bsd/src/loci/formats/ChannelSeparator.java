@@ -33,6 +33,8 @@
 package loci.formats;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 import loci.common.DataTools;
 import loci.formats.meta.MetadataRetrieve;
@@ -53,28 +55,29 @@ public class ChannelSeparator extends ReaderWrapper {
     return new ChannelSeparator(r);
   }
 
-  // -- Fields --
-
-  /** Last image opened. */
-  private byte[] lastImage;
+  // -- Constants --
 
-  /** Index of last image opened. */
-  private int lastImageIndex = -1;
+  /** Maximum number of source planes kept in memory. */
+  private static final int MAX_CACHED_PLANES = 4;
 
-  /** Series of last image opened. */
-  private int lastImageSeries = -1;
-
-  /** X index of last image opened. */
-  private int lastImageX = -1;
+  /**
+   * Maximum total size in bytes of the cached source planes.
+   * A smaller reader memory budget takes precedence.
+   */
+  private static final long MAX_CACHE_SIZE = 64 * 1024 * 1024;
 
-  /** Y index of last image opened. */
-  private int lastImageY = -1;
+  // -- Fields --
 
-  /** Width of last image opened. */
-  private int lastImageWidth = -1;
+  /**
+   * Most recently used source planes, so that each channel of an RGB plane
+   * can be returned without reading the plane again.
+   * Ordered from least to most recently used.
+   */
+  private final LinkedHashMap<PlaneKey, SourcePlane> cache =
+    new LinkedHashMap<PlaneKey, SourcePlane>(16, 0.75f, true);
 
-  /** Height of last image opened. */
-  private int lastImageHeight = -1;
+  /** Total size in bytes of the cached source planes. */
+  private long cacheSize = 0;
 
   // -- Constructors --
 
@@ -156,6 +159,7 @@ public class ChannelSeparator extends ReaderWrapper {
   public byte[] openBytes(int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    FormatTools.checkMemoryBudget(this, w, h);
     byte[] buf =
       DataTools.allocate(w, h, FormatTools.getBytesPerPixel(getPixelType()));
     return openBytes(no, buf, x, y, w, h);
@@ -173,57 +177,53 @@ public class ChannelSeparator extends ReaderWrapper {
       int c = getSizeC() / reader.getEffectiveSizeC();
       int source = getOriginalIndex(no);
       int channel = no % c;
-      int series = getCoreIndex();
       int bpp = FormatTools.getBytesPerPixel(getPixelType());
 
-      if (source != lastImageIndex || series != lastImageSeries ||
-        x != lastImageX || y != lastImageY || w != lastImageWidth ||
-        h != lastImageHeight)
-      {
-        int strips = 1;
-
+      PlaneKey key = new PlaneKey(getCoreIndex(), source, x, y, w, h);
+      SourcePlane plane = cache.get(key);
+      if (plane == null) {
         // check how big the original image is; if it's larger than the
-        // available memory, we will need to split it into strips
+        // memory budget or the available memory, we will need to split it
+        // into strips
 
         Runtime rt = Runtime.getRuntime();
         long availableMemory = rt.freeMemory();
         long planeSize = DataTools.safeMultiply64(w, h, bpp, c);
 
-        if (availableMemory < planeSize || planeSize > Integer.MAX_VALUE) {
-          strips = (int) Math.sqrt(h);
+        if (planeSize > FormatTools.getMemoryBudget(this) ||
+          availableMemory < planeSize || planeSize > Integer.MAX_VALUE)
+        {
+          openStrips(source, channel, c, bpp, buf, x, y, w, h);
+          return buf;
         }
+        plane = openSourcePlane(key, (int) planeSize);
+      }
 
-        int stripHeight = h / strips;
-        int lastStripHeight = stripHeight + (h - (stripHeight * strips));
-        byte[] strip = strips == 1 ? buf : new byte[stripHeight * w * bpp];
-        for (int i=0; i<strips; i++) {
-          lastImage = reader.openBytes(source, x, y + i * stripHeight, w,
-            i == strips - 1 ? lastStripHeight : stripHeight);
-          lastImageIndex = source;
-          lastImageSeries = series;
-          lastImageX = x;
-          lastImageY = y + i * stripHeight;
-          lastImageWidth = w;
-          lastImageHeight = i == strips - 1 ? lastStripHeight : stripHeight;
-
-          if (strips != 1 && lastStripHeight != stripHeight && i == strips - 1)
-          {
-            strip = new byte[lastStripHeight * w * bpp];
-          }
-
-          ImageTools.splitChannels(lastImage, strip, channel, c, bpp,
-            false, isInterleaved(), strips == 1 ? w * h * bpp : strip.length);
-          if (strips != 1) {
-            System.arraycopy(strip, 0, buf, i * stripHeight * w * bpp,
-              strip.length);
-          }
+      if (plane.lut8 != null || plane.lut16 != null) {
+        // split the channel into an index sample and a color table channel,
+        // in the order that ChannelFiller writes them
+        int lutLength =
+          plane.lut8 != null ? plane.lut8.length : plane.lut16.length;
+        int samples = c / lutLength;
+        int lutChannel = isInterleaved() ? channel % lutLength :
+          channel / samples;
+        int sample = isInterleaved() ? channel / lutLength :
+          channel % samples;
+        int start = isInterleaved() ? sample : sample * w * h;
+        int step = isInterleaved() ? samples : 1;
+        if (plane.lut8 != null) {
+          ChannelFiller.fillChannel(plane.lut8, plane.data, start, step,
+            w * h, lutChannel, buf, 0, bpp);
+        }
+        else {
+          ChannelFiller.fillChannel(plane.lut16, plane.data, start, step,
+            w * h, lutChannel, isLittleEndian(), buf, 0, bpp);
         }
       }
       else {
-        ImageTools.splitChannels(lastImage, buf, channel, c, bpp,
+        ImageTools.splitChannels(plane.data, buf, channel, c, bpp,
           false, isInterleaved(), w * h * bpp);
       }
-
       return buf;
     }
     return reader.openBytes(no, buf, x, y, w, h);
@@ -249,13 +249,7 @@ public class ChannelSeparator extends ReaderWrapper {
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
     if (!fileOnly) {
-      lastImage = null;
-      lastImageIndex = -1;
-      lastImageSeries = -1;
-      lastImageX = -1;
-      lastImageY = -1;
-      lastImageWidth = -1;
-      lastImageHeight = -1;
+      clearCache();
     }
   }
 
@@ -292,14 +286,7 @@ public class ChannelSeparator extends ReaderWrapper {
   public void setId(String id) throws FormatException, IOException {
     super.setId(id);
 
-    // clear last image cache
-    lastImage = null;
-    lastImageIndex = -1;
-    lastImageSeries = -1;
-    lastImageX = -1;
-    lastImageY = -1;
-    lastImageWidth = -1;
-    lastImageHeight = -1;
+    clearCache();
 
     MetadataStore store = getMetadataStore();
     boolean pixelsPopulated = false;
@@ -330,4 +317,148 @@ public class ChannelSeparator extends ReaderWrapper {
     }
   }
 
+  // -- Helper methods --
+
+  /**
+   * Reads the given region of a source plane and adds it to the cache.
+   * If the wrapped reader is a {@link ChannelFiller}, only the color table
+   * indices are cached, and each channel is filled on demand.
+   */
+  private SourcePlane openSourcePlane(PlaneKey key, int planeSize)
+    throws FormatException, IOException
+  {
+    ChannelFiller filler = null;
+    if (reader instanceof ChannelFiller &&
+      ((ChannelFiller) reader).isFilled())
+    {
+      filler = (ChannelFiller) reader;
+      planeSize = FormatTools.getPlaneSize(filler.getReader(), key.w, key.h);
+    }
+
+    // make room, reusing the least recently used buffer if possible
+    byte[] data = null;
+    Iterator<SourcePlane> planes = cache.values().iterator();
+    long maxCacheSize =
+      Math.min(MAX_CACHE_SIZE, FormatTools.getMemoryBudget(this));
+    while (planes.hasNext() && (cache.size() >= MAX_CACHED_PLANES ||
+      cacheSize + planeSize > maxCacheSize))
+    {
+      SourcePlane eldest = planes.next();
+      planes.remove();
+      cacheSize -= eldest.data.length;
+      if (eldest.data.length == planeSize) {
+        data = eldest.data;
+      }
+    }
+    if (data == null) {
+      data = new byte[planeSize];
+    }
+
+    SourcePlane plane = new SourcePlane();
+    if (filler != null) {
+      plane.data = filler.openIndices(key.no, data, key.x, key.y, key.w, key.h);
+      if (filler.getPixelType() == FormatTools.UINT8) {
+        plane.lut8 = filler.getReader().get8BitLookupTable();
+      }
+      else {
+        plane.lut16 = filler.getReader().get16BitLookupTable();
+      }
+    }
+    else {
+      plane.data = reader.openBytes(key.no, data, key.x, key.y, key.w, key.h);
+    }
+    cache.put(key, plane);
+    cacheSize += plane.data.length;
+    return plane;
+  }
+
+  /**
+   * Reads one channel of a source plane that is too large to hold in
+   * memory, a few rows at a time.  If a memory budget is set, each strip
+   * is as tall as the budget allows.
+   */
+  private void openStrips(int source, int channel, int c, int bpp,
+    byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    long budget = FormatTools.getMemoryBudget(this);
+    int stripHeight;
+    if (budget < Long.MAX_VALUE) {
+      // each strip needs room for all of its channels, plus one channel
+      long rowSize = (long) w * bpp * (c + 1);
+      stripHeight = (int) Math.max(1, Math.min(h, budget / rowSize));
+    }
+    else {
+      stripHeight = h / Math.max(1, (int) Math.sqrt(h));
+    }
+    stripHeight = Math.max(1, stripHeight);
+
+    byte[] image = new byte[stripHeight * w * bpp * c];
+    byte[] strip = new byte[stripHeight * w * bpp];
+    for (int row=0; row<h; row+=stripHeight) {
+      int height = Math.min(stripHeight, h - row);
+      if (height != stripHeight) {
+        image = new byte[height * w * bpp * c];
+        strip = new byte[height * w * bpp];
+      }
+      reader.openBytes(source, image, x, y + row, w, height);
+      ImageTools.splitChannels(image, strip, channel, c, bpp,
+        false, isInterleaved(), strip.length);
+      System.arraycopy(strip, 0, buf, row * w * bpp, strip.length);
+    }
+  }
+
+  private void clearCache() {
+    cache.clear();
+    cacheSize = 0;
+  }
+
+  // -- Helper classes --
+
+  /** Identifies a region of a source plane. */
+  private static class PlaneKey {
+    public final int coreIndex;
+    public final int no;
+    public final int x, y, w, h;
+
+    public PlaneKey(int coreIndex, int no, int x, int y, int w, int h) {
+      this.coreIndex = coreIndex;
+      this.no = no;
+      this.x = x;
+      this.y = y;
+      this.w = w;
+      this.h = h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PlaneKey)) {
+        return false;
+      }
+      PlaneKey k = (PlaneKey) o;
+      return coreIndex == k.coreIndex && no == k.no && x == k.x &&
+        y == k.y && w == k.w && h == k.h;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = coreIndex;
+      hash = 31 * hash + no;
+      hash = 31 * hash + x;
+      hash = 31 * hash + y;
+      hash = 31 * hash + w;
+      return 31 * hash + h;
+    }
+  }
+
+  /**
+   * A cached source plane, holding either the pixel data or the color
+   * table indices and the color table that they refer to.
+   */
+  private static class SourcePlane {
+    public byte[] data;
+    public byte[][] lut8;
+    public short[][] lut16;
+  }
+
 }
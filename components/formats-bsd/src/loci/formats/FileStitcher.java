@@ -461,6 +461,7 @@ public class FileStitcher extends ReaderWrapper {
   public byte[] openBytes(int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    FormatTools.checkMemoryBudget(this, w, h);
     int bpp = FormatTools.getBytesPerPixel(getPixelType());
     int ch = getRGBChannelCount();
     byte[] buf = DataTools.allocate(w, h, ch, bpp);
@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2005 - 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats;
+
+import java.io.IOException;
+
+/**
+ * Records per-reader statistics for {@link #setId(String)} and
+ * {@link #openBytes(int, byte[], int, int, int, int)} via
+ * {@link Instrumentation}.  Statistics are keyed by the class of the
+ * innermost wrapped reader, so e.g. all TIFF reads are grouped under
+ * "TiffReader" regardless of how the reader stack was assembled.
+ *
+ * When instrumentation is disabled this wrapper adds no measurable overhead.
+ */
+public class InstrumentedReader extends ReaderWrapper {
+
+  // -- Fields --
+
+  /** Name under which statistics are recorded. */
+  private String source;
+
+  // -- Constructors --
+
+  /** Constructs an InstrumentedReader around a new image reader. */
+  public InstrumentedReader() { super(); }
+
+  /** Constructs an InstrumentedReader with the given reader. */
+  public InstrumentedReader(IFormatReader r) { super(r); }
+
+  // -- IFormatReader API methods --
+
+  @Override
+  public byte[] openBytes(int no) throws FormatException, IOException {
+    return openBytes(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  @Override
+  public byte[] openBytes(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    long start = Instrumentation.start();
+    byte[] buf = reader.openBytes(no, x, y, w, h);
+    Instrumentation.stop(getSource(), "openBytes", start, buf.length);
+    return buf;
+  }
+
+  @Override
+  public byte[] openBytes(int no, byte[] buf)
+    throws FormatException, IOException
+  {
+    return openBytes(no, buf, 0, 0, getSizeX(), getSizeY());
+  }
+
+  @Override
+  public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    long start = Instrumentation.start();
+    byte[] b = reader.openBytes(no, buf, x, y, w, h);
+    Instrumentation.stop(getSource(), "openBytes", start, b.length);
+    return b;
+  }
+
+  @Override
+  public void close(boolean fileOnly) throws IOException {
+    super.close(fileOnly);
+    if (!fileOnly) {
+      source = null;
+    }
+  }
+
+  // -- IFormatHandler API methods --
+
+  @Override
+  public void setId(String id) throws FormatException, IOException {
+    source = null;
+    long start = Instrumentation.start();
+    super.setId(id);
+    Instrumentation.stop(getSource(), "setId", start, 0);
+  }
+
+  @Override
+  public void close() throws IOException {
+    super.close();
+    source = null;
+  }
+
+  // -- Helper methods --
+
+  /** Returns the simple class name of the innermost wrapped reader. */
+  private String getSource() {
+    if (source == null) {
+      IFormatReader r;
+      try {
+        r = unwrap();
+      }
+      catch (FormatException e) {
+        r = reader;
+      }
+      catch (IOException e) {
+        r = reader;
+      }
+      source = r.getClass().getSimpleName();
+    }
+    return source;
+  }
+
+}
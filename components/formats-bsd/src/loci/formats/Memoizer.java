@@ -84,6 +84,11 @@ import org.objenesis.strategy.StdInstantiatorStrategy;
  *
  * In essence, the speed-up gained from memoization will happen only after the
  * first initialization of the reader for a particular file.
+ *
+ * If the delegate initializes series lazily (see
+ * {@link loci.formats.in.DynamicMetadataOptions#SERIES_LAZY_KEY}), series
+ * that were initialized after the memo file was loaded or saved are added to
+ * the memo file when the Memoizer is closed.
  */
 public class Memoizer extends ReaderWrapper {
 
@@ -420,6 +425,12 @@ public class Memoizer extends ReaderWrapper {
    */
   private MetadataStore replacementMetadataStore = null;
 
+  /**
+   * Number of initialized series of the {@link #reader} delegate when it was
+   * last loaded from or saved to the memo file.
+   */
+  private int memoizedSeries = 0;
+
   // -- Constructors --
 
   /**
@@ -630,6 +641,7 @@ public class Memoizer extends ReaderWrapper {
   @Override
   public void close() throws IOException {
     try {
+      updateMemo();
       cleanup();
     } finally {
       super.close();
@@ -639,17 +651,40 @@ public class Memoizer extends ReaderWrapper {
   @Override
   public void close(boolean fileOnly) throws IOException {
     try {
+      updateMemo();
       cleanup();
     } finally {
       super.close(fileOnly);
     }
   }
 
+  @Override
+  public void setSeries(int no) {
+    FormatReader base = getLazyReader();
+    int coreIndex = base == null ? -1 : seriesToCoreIndex(no);
+    boolean pending = base != null && !base.isSeriesInitialized(coreIndex);
+    super.setSeries(no);
+    if (pending) {
+      updateUserMetadataStore(base, coreIndex);
+    }
+  }
+
+  @Override
+  public void setCoreIndex(int no) {
+    FormatReader base = getLazyReader();
+    boolean pending = base != null && !base.isSeriesInitialized(no);
+    super.setCoreIndex(no);
+    if (pending) {
+      updateUserMetadataStore(base, no);
+    }
+  }
+
   // -- ReaderWrapper API methods --
 
   @Override
   public void setId(String id) throws FormatException, IOException {
     StopWatch sw = stopWatch();
+    long setIdStart = Instrumentation.start();
     try {
       realFile = new Location(id);
       memoFile = getMemoFile(id);
@@ -674,6 +709,7 @@ public class Memoizer extends ReaderWrapper {
           loadedFromMemo = true;
           reader = memo;
           reader.reopenFile();
+          memoizedSeries = getInitializedSeriesCount();
         } catch (FileNotFoundException e) {
           LOGGER.info("could not reopen file - deleting invalid memo file: {}", memoFile);
           deleteQuietly(memoFile);
@@ -690,6 +726,7 @@ public class Memoizer extends ReaderWrapper {
         super.setId(id);
         long elapsed = System.currentTimeMillis() - start;
         handleMetadataStore(null); // Between setId and saveMemo
+        memoizedSeries = getInitializedSeriesCount();
         if (elapsed < minimumElapsed) {
           LOGGER.debug("skipping save memo. elapsed millis: {}", elapsed);
           return; // EARLY EXIT!
@@ -700,6 +737,8 @@ public class Memoizer extends ReaderWrapper {
       LOGGER.error("Could not create OMEXMLMetadata", e);
     } finally {
       sw.stop("loci.formats.Memoizer.setId");
+      Instrumentation.stop(Memoizer.class,
+        loadedFromMemo ? "memoHit" : "memoMiss", setIdStart, 0);
     }
   }
 
@@ -718,6 +757,91 @@ public class Memoizer extends ReaderWrapper {
 
   //-- Helper methods --
 
+  /**
+   * Returns the number of series of the {@link #reader} delegate that have
+   * been initialized.
+   *
+   * @see FormatReader#isSeriesInitialized(int)
+   */
+  private int getInitializedSeriesCount() {
+    FormatReader base;
+    try {
+      base = (FormatReader) unwrap(FormatReader.class, null);
+    }
+    catch (FormatException | IOException e) {
+      return 0;
+    }
+    if (base == null || base.getCurrentFile() == null) {
+      return 0;
+    }
+    int count = 0;
+    int seriesCount = base.getCoreMetadataList().size();
+    for (int i=0; i<seriesCount; i++) {
+      if (base.isSeriesInitialized(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Saves the memo file again if series have been initialized since it was
+   * loaded or saved, so that they do not need to be initialized the next
+   * time that the file is opened.
+   */
+  private void updateMemo() {
+    if (memoFile == null || !(loadedFromMemo || savedToMemo) ||
+      reader.getCurrentFile() == null)
+    {
+      return;
+    }
+    int count = getInitializedSeriesCount();
+    if (count > memoizedSeries) {
+      LOGGER.debug("{} series initialized since memo was saved",
+        count - memoizedSeries);
+      memoizedSeries = count;
+      savedToMemo = saveMemo();
+    }
+  }
+
+  /**
+   * Returns the {@link FormatReader} at the bottom of the {@link #reader}
+   * stack if series that it initializes after {@link #setId(String)} must
+   * be copied into the {@link MetadataStore} set by the caller, i.e. if the
+   * memo file is in use; returns null otherwise.
+   */
+  private FormatReader getLazyReader() {
+    if (userMetadataStore == null || memoFile == null ||
+      reader.getCurrentFile() == null)
+    {
+      return null;
+    }
+    try {
+      return (FormatReader) unwrap(FormatReader.class, null);
+    }
+    catch (FormatException | IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Copies the metadata of a series that was initialized after
+   * {@link #setId(String)} into the {@link MetadataStore} set by the caller.
+   * Only the given series is copied, so selecting every series of a lazily
+   * initialized dataset does not repeatedly convert the whole store.
+   */
+  private void updateUserMetadataStore(FormatReader base, int coreIndex) {
+    if (!base.isSeriesInitialized(coreIndex)) {
+      return;
+    }
+    try {
+      base.copySeriesMetadata(coreIndex, userMetadataStore);
+    }
+    catch (FormatException | IOException e) {
+      LOGGER.warn("Could not update metadata store", e);
+    }
+  }
+
   /**
    * Attempts to delete an existing file, logging at
    * warn if the deletion returns false or at error
@@ -33,9 +33,16 @@
 package loci.formats;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import loci.common.DataTools;
 import loci.formats.meta.IMinMaxStore;
 
 /**
@@ -234,6 +241,170 @@ public class MinMaxCalculator extends ReaderWrapper {
     return minMaxDone != null && minMaxDone[getCoreIndex()] == getImageCount();
   }
 
+  /**
+   * Computes min/max values for every plane in the current series that has
+   * not already been read, so that {@link #isMinMaxPopulated()} returns true.
+   * Unlike reading each plane via {@link #openBytes(int)}, the values
+   * returned by {@link #getPlaneMinimum(int)} and
+   * {@link #getPlaneMaximum(int)} are those of each individual plane.
+   *
+   * If more than one thread is requested, the remaining planes are split
+   * into contiguous runs (in the order given by
+   * {@link IFormatReader#openPlanes()}) and each run is read by a separate
+   * copy of the wrapped reader.  Each copy is initialized on the current
+   * file, so wrapping a {@link Memoizer} is recommended.  Planes larger
+   * than the reader's memory budget are always read in strips, even if
+   * only one thread is requested.
+   *
+   * Computed values are part of this reader's state; if this calculator is
+   * itself wrapped by a {@link Memoizer}, calling
+   * {@link Memoizer#saveMemo()} afterwards persists them, so that later
+   * initializations from the memo file do not need to read any pixels.
+   *
+   * @param threads the number of planes to read concurrently
+   */
+  public void populateMinMax(int threads) throws FormatException, IOException {
+    FormatTools.assertId(getCurrentFile(), true, 2);
+    initMinMax();
+
+    int series = getCoreIndex();
+    int numRGB = getRGBChannelCount();
+    int imageCount = getImageCount();
+    boolean strips = (long) getSizeY() * FormatTools.getPlaneSize(this,
+      getSizeX(), 1) > FormatTools.getMemoryBudget(this);
+
+    // find the remaining planes, in the most efficient order
+    int[] order;
+    boolean prefetch;
+    PlaneIterator planes = reader.openPlanes();
+    try {
+      order = planes.getOrder();
+      prefetch = planes.isPrefetching();
+    }
+    finally {
+      planes.close();
+    }
+
+    int remaining = 0;
+    for (int no : order) {
+      if (Double.isNaN(planeMin[series][no * numRGB])) {
+        order[remaining++] = no;
+      }
+    }
+    order = Arrays.copyOf(order, remaining);
+
+    if (strips) {
+      threads = Math.max(1, threads);
+    }
+    else if (threads <= 1 && remaining > 0) {
+      double[] min = new double[numRGB];
+      double[] max = new double[numRGB];
+      planes = new PlaneIterator(reader, order, prefetch);
+      try {
+        while (planes.hasNext()) {
+          byte[] buf = planes.next();
+          int no = planes.getIndex();
+          computeMinMax(buf, buf.length, getPixelType(), isLittleEndian(),
+            isInterleaved(), min, max);
+          System.arraycopy(min, 0, planeMin[series], no * numRGB, numRGB);
+          System.arraycopy(max, 0, planeMax[series], no * numRGB, numRGB);
+        }
+      }
+      finally {
+        planes.close();
+      }
+      remaining = 0;
+    }
+
+    if (remaining > 0) {
+      threads = Math.min(threads, remaining);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      List<Future<Void>> tasks = new ArrayList<Future<Void>>();
+      try {
+        for (int t=0; t<threads; t++) {
+          int start = (int) ((long) remaining * t / threads);
+          int end = (int) ((long) remaining * (t + 1) / threads);
+          int[] run = Arrays.copyOfRange(order, start, end);
+          tasks.add(executor.submit(new PlaneRunTask(run, t == 0)));
+        }
+        for (Future<Void> task : tasks) {
+          waitFor(task);
+        }
+      }
+      finally {
+        // stop any remaining tasks and wait for them, so that the wrapped
+        // reader is no longer in use once this method returns
+        for (Future<Void> task : tasks) {
+          task.cancel(true);
+        }
+        executor.shutdown();
+        try {
+          executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    // reduce plane values into channel values
+    for (int no=0; no<imageCount; no++) {
+      int cBase = getZCTCoords(no)[1] * numRGB;
+      int pBase = no * numRGB;
+      for (int c=0; c<numRGB; c++) {
+        chanMin[series][cBase + c] =
+          Math.min(chanMin[series][cBase + c], planeMin[series][pBase + c]);
+        chanMax[series][cBase + c] =
+          Math.max(chanMax[series][cBase + c], planeMax[series][pBase + c]);
+      }
+    }
+    minMaxDone[series] = imageCount;
+    storeGlobalMinMax();
+  }
+
+  /**
+   * Adds the min/max values computed by another calculator, typically one
+   * wrapping a copy of this reader that was used to read planes on another
+   * thread.  Values are merged from the other calculator's current series
+   * into this calculator's current series; planes for which this
+   * calculator already has values are left unchanged.
+   *
+   * @param other a calculator for the same file
+   */
+  public void addMinMax(MinMaxCalculator other)
+    throws FormatException, IOException
+  {
+    FormatTools.assertId(getCurrentFile(), true, 2);
+    if (other.minMaxDone == null) return;
+    initMinMax();
+
+    int series = getCoreIndex();
+    int otherSeries = other.getCoreIndex();
+    double[] otherPlaneMin = other.planeMin[otherSeries];
+    double[] otherPlaneMax = other.planeMax[otherSeries];
+    if (otherPlaneMin.length != planeMin[series].length) {
+      throw new FormatException("Plane count mismatch");
+    }
+    for (int i=0; i<otherPlaneMin.length; i++) {
+      if (Double.isNaN(planeMin[series][i])) {
+        planeMin[series][i] = otherPlaneMin[i];
+        planeMax[series][i] = otherPlaneMax[i];
+      }
+    }
+    for (int c=0; c<chanMin[series].length; c++) {
+      chanMin[series][c] =
+        Math.min(chanMin[series][c], other.chanMin[otherSeries][c]);
+      chanMax[series][c] =
+        Math.max(chanMax[series][c], other.chanMax[otherSeries][c]);
+    }
+    minMaxDone[series] =
+      Math.max(minMaxDone[series], other.minMaxDone[otherSeries]);
+
+    if (minMaxDone[series] == getImageCount()) {
+      storeGlobalMinMax();
+    }
+  }
+
   // -- IFormatReader API methods --
 
   /* @see IFormatReader#openBytes(int) */
@@ -255,6 +426,7 @@ public class MinMaxCalculator extends ReaderWrapper {
   public byte[] openBytes(int no, int x, int y, int w, int h)
     throws FormatException, IOException
   {
+    FormatTools.checkMemoryBudget(this, w, h);
     byte[] buf = new byte[w * h * getRGBChannelCount() *
       FormatTools.getBytesPerPixel(getPixelType())];
     return openBytes(no, buf, x, y, w, h);
@@ -318,43 +490,22 @@ public class MinMaxCalculator extends ReaderWrapper {
     if (len == planeSize
         && !Double.isNaN(planeMin[series][no * numRGB])) return;
 
-    boolean little = isLittleEndian();
-    
-    int pixels = len / (bpp * numRGB);
-    boolean interleaved = isInterleaved();
-
     int[] coords = getZCTCoords(no);
     int cBase = coords[1] * numRGB;
     int pBase = no * numRGB;
+
+    double[] min = new double[numRGB];
+    double[] max = new double[numRGB];
+    computeMinMax(buf, len, pixelType, isLittleEndian(), isInterleaved(),
+      min, max);
     for (int c=0; c<numRGB; c++) {
       planeMin[series][pBase + c] = Double.POSITIVE_INFINITY;
       planeMax[series][pBase + c] = Double.NEGATIVE_INFINITY;
-    }
-
-    boolean signed = FormatTools.isSigned(pixelType);
-
-    long threshold = (long) Math.pow(2, bpp * 8 - 1);
-    for (int i=0; i<pixels; i++) {
-      for (int c=0; c<numRGB; c++) {
-        int idx = bpp * (interleaved ? i * numRGB + c : c * pixels + i);
-        long bits = DataTools.bytesToLong(buf, idx, bpp, little);
-        if (signed) {
-          if (bits >= threshold) bits -= 2*threshold;
-        }
-        double v = bits;
-        if (pixelType == FormatTools.FLOAT) {
-          v = Float.intBitsToFloat((int) bits);
-        }
-        else if (pixelType == FormatTools.DOUBLE) {
-          v = Double.longBitsToDouble(bits);
-        }
-
-        if (v > chanMax[series][cBase + c]) {
-          chanMax[series][cBase + c] = v;
-        }
-        if (v < chanMin[series][cBase + c]) {
-          chanMin[series][cBase + c] = v;
-        }
+      if (max[c] > chanMax[series][cBase + c]) {
+        chanMax[series][cBase + c] = max[c];
+      }
+      if (min[c] < chanMin[series][cBase + c]) {
+        chanMin[series][cBase + c] = min[c];
       }
     }
 
@@ -368,7 +519,126 @@ public class MinMaxCalculator extends ReaderWrapper {
     }
     minMaxDone[series] = Math.max(minMaxDone[series], no + 1);
 
-    if (minMaxDone[getCoreIndex()] == getImageCount() && minMaxStore != null) {
+    if (minMaxDone[getCoreIndex()] == getImageCount()) {
+      storeGlobalMinMax();
+    }
+  }
+
+  /**
+   * Computes the minimum and maximum of each channel in the given pixels.
+   *
+   * @param buf the pixel data
+   * @param len the length (in bytes) of the valid pixel data
+   * @param pixelType the pixel type, as defined in {@link FormatTools}
+   * @param little true if the pixels are little-endian
+   * @param interleaved true if the channels are interleaved
+   * @param min array in which to store the minimum of each channel
+   * @param max array in which to store the maximum of each channel
+   */
+  private static void computeMinMax(byte[] buf, int len, int pixelType,
+    boolean little, boolean interleaved, double[] min, double[] max)
+  {
+    int numRGB = min.length;
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    int pixels = len / (bpp * numRGB);
+
+    for (int c=0; c<numRGB; c++) {
+      // offsets and strides are in bytes
+      int offset = bpp * (interleaved ? c : c * pixels);
+      int stride = bpp * (interleaved ? numRGB : 1);
+      int end = offset + stride * pixels;
+
+      // each pixel type gets its own loop, so that no per-pixel conversion
+      // decisions are made
+      switch (pixelType) {
+        case FormatTools.INT8: {
+          int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+          for (int i=offset; i<end; i+=stride) {
+            int v = buf[i];
+            if (v < lo) lo = v;
+            if (v > hi) hi = v;
+          }
+          min[c] = lo;
+          max[c] = hi;
+          break;
+        }
+        case FormatTools.INT16:
+        case FormatTools.UINT16: {
+          boolean signed = pixelType == FormatTools.INT16;
+          int first = little ? 1 : 0;
+          int second = little ? 0 : 1;
+          int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+          for (int i=offset; i<end; i+=stride) {
+            int v = ((buf[i + first] & 0xff) << 8) | (buf[i + second] & 0xff);
+            if (signed) v = (short) v;
+            if (v < lo) lo = v;
+            if (v > hi) hi = v;
+          }
+          min[c] = lo;
+          max[c] = hi;
+          break;
+        }
+        case FormatTools.INT32:
+        case FormatTools.UINT32:
+        case FormatTools.FLOAT: {
+          double lo = Double.POSITIVE_INFINITY;
+          double hi = Double.NEGATIVE_INFINITY;
+          for (int i=offset; i<end; i+=stride) {
+            int bits = little ?
+              (buf[i] & 0xff) | ((buf[i + 1] & 0xff) << 8) |
+              ((buf[i + 2] & 0xff) << 16) | (buf[i + 3] << 24) :
+              (buf[i] << 24) | ((buf[i + 1] & 0xff) << 16) |
+              ((buf[i + 2] & 0xff) << 8) | (buf[i + 3] & 0xff);
+            double v;
+            if (pixelType == FormatTools.INT32) v = bits;
+            else if (pixelType == FormatTools.UINT32) v = bits & 0xffffffffL;
+            else v = Float.intBitsToFloat(bits);
+            if (v < lo) lo = v;
+            if (v > hi) hi = v;
+          }
+          min[c] = lo;
+          max[c] = hi;
+          break;
+        }
+        case FormatTools.DOUBLE: {
+          double lo = Double.POSITIVE_INFINITY;
+          double hi = Double.NEGATIVE_INFINITY;
+          for (int i=offset; i<end; i+=stride) {
+            long bits = 0;
+            for (int b=0; b<8; b++) {
+              int shift = 8 * (little ? b : 7 - b);
+              bits |= (buf[i + b] & 0xffL) << shift;
+            }
+            double v = Double.longBitsToDouble(bits);
+            if (v < lo) lo = v;
+            if (v > hi) hi = v;
+          }
+          min[c] = lo;
+          max[c] = hi;
+          break;
+        }
+        default: {
+          // UINT8 and BIT
+          int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+          for (int i=offset; i<end; i+=stride) {
+            int v = buf[i] & 0xff;
+            if (v < lo) lo = v;
+            if (v > hi) hi = v;
+          }
+          min[c] = lo;
+          max[c] = hi;
+        }
+      }
+      if (pixels == 0) {
+        min[c] = Double.POSITIVE_INFINITY;
+        max[c] = Double.NEGATIVE_INFINITY;
+      }
+    }
+  }
+
+  /** Passes the current series' channel minima and maxima to the store. */
+  private void storeGlobalMinMax() {
+    if (minMaxStore != null) {
       for (int c=0; c<getSizeC(); c++) {
         minMaxStore.setChannelGlobalMinMax(c, chanMin[getCoreIndex()][c],
           chanMax[getCoreIndex()][c], getSeries());
@@ -376,6 +646,24 @@ public class MinMaxCalculator extends ReaderWrapper {
     }
   }
 
+  private void waitFor(Future<Void> task) throws FormatException, IOException {
+    try {
+      task.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while computing min/max values", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) throw (FormatException) cause;
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new FormatException(cause);
+    }
+  }
+
   /**
    * Ensures internal min/max variables are initialized properly. 
    *
@@ -428,4 +716,101 @@ public class MinMaxCalculator extends ReaderWrapper {
     if (minMaxDone == null) minMaxDone = new int[seriesCount];
   }
 
+  // -- Helper classes --
+
+  /**
+   * Reads a run of planes and records the min/max values of each one.
+   * Distinct runs never share planes, so no synchronization is needed
+   * when storing the results.  Planes larger than the reader's memory
+   * budget are read in strips of whole rows.
+   */
+  private class PlaneRunTask implements Callable<Void> {
+    private final int[] run;
+    private final ReaderWrapper copy;
+    private final String id;
+    private final int series;
+    private final int numRGB;
+    private final int pixelType;
+    private final boolean little;
+    private final boolean interleaved;
+    private final int sizeX;
+    private final int sizeY;
+    private final int rowSize;
+    private final int stripHeight;
+
+    /**
+     * Creates a task for the given run of planes.  All reader state is
+     * captured here, on the calling thread.
+     *
+     * @param run the plane indexes to read
+     * @param useWrappedReader true if the run should be read with the
+     *   wrapped reader; otherwise a copy of the wrapped reader is used
+     */
+    PlaneRunTask(int[] run, boolean useWrappedReader) throws FormatException {
+      this.run = run;
+      id = getCurrentFile();
+      series = getCoreIndex();
+      numRGB = getRGBChannelCount();
+      pixelType = getPixelType();
+      little = isLittleEndian();
+      interleaved = isInterleaved();
+      sizeX = getSizeX();
+      sizeY = getSizeY();
+      rowSize = FormatTools.getPlaneSize(MinMaxCalculator.this, sizeX, 1);
+      long budget = FormatTools.getMemoryBudget(MinMaxCalculator.this);
+      stripHeight = (int) Math.max(1,
+        Math.min(sizeY, budget / Math.max(1, rowSize)));
+      if (useWrappedReader) {
+        copy = null;
+      }
+      else {
+        copy = duplicate(null);
+        copy.setMetadataOptions(getMetadataOptions());
+        copy.setGroupFiles(isGroupFiles());
+        copy.setFlattenedResolutions(hasFlattenedResolutions());
+        copy.setOriginalMetadataPopulated(false);
+      }
+    }
+
+    @Override
+    public Void call() throws FormatException, IOException {
+      IFormatReader planeReader = reader;
+      if (copy != null) {
+        copy.setId(id);
+        copy.setCoreIndex(series);
+        planeReader = copy.getReader();
+      }
+      try {
+        byte[] buf = new byte[rowSize * stripHeight];
+        double[] min = new double[numRGB];
+        double[] max = new double[numRGB];
+        double[] stripMin = new double[numRGB];
+        double[] stripMax = new double[numRGB];
+        for (int no : run) {
+          if (Thread.currentThread().isInterrupted()) {
+            break;
+          }
+          for (int y=0; y<sizeY; y+=stripHeight) {
+            int h = Math.min(stripHeight, sizeY - y);
+            planeReader.openBytes(no, buf, 0, y, sizeX, h);
+            computeMinMax(buf, rowSize * h, pixelType, little, interleaved,
+              stripMin, stripMax);
+            for (int c=0; c<numRGB; c++) {
+              min[c] = y == 0 ? stripMin[c] : Math.min(min[c], stripMin[c]);
+              max[c] = y == 0 ? stripMax[c] : Math.max(max[c], stripMax[c]);
+            }
+          }
+          System.arraycopy(min, 0, planeMin[series], no * numRGB, numRGB);
+          System.arraycopy(max, 0, planeMax[series], no * numRGB, numRGB);
+        }
+      }
+      finally {
+        if (copy != null) {
+          copy.close();
+        }
+      }
+      return null;
+    }
+  }
+
 }
@@ -37,6 +37,7 @@ import java.util.Random;
 
 import loci.common.RandomAccessInputStream;
 import loci.formats.FormatException;
+import loci.formats.Instrumentation;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -174,14 +175,46 @@ public abstract class BaseCodec implements Codec {
   public byte[] decompress(byte[] data, CodecOptions options)
     throws FormatException
   {
+    long start = Instrumentation.start();
     try (RandomAccessInputStream r = new RandomAccessInputStream(data)) {
-      return decompress(r, options);
+      byte[] decompressed = decompress(r, options);
+      Instrumentation.stop(getClass(), "decompress", start,
+        decompressed == null ? 0 : decompressed.length);
+      return decompressed;
     }
     catch (IOException e) {
       throw new FormatException(e);
     }
   }
 
+  /**
+   * Decompresses a block of data into the given buffer.
+   * This default implementation copies the result of
+   * {@link #decompress(byte[], CodecOptions)}; codecs that can write
+   * directly into the buffer override it to avoid the intermediate array.
+   *
+   * @param data the data to be decompressed
+   * @param buf the buffer in which to store the decompressed data
+   * @param options Options to be used during decompression.
+   * @return the number of decompressed bytes stored in buf
+   * @throws FormatException If data is not valid, or if buf is too small
+   *   to hold the decompressed data.
+   */
+  public int decompress(byte[] data, byte[] buf, CodecOptions options)
+    throws FormatException
+  {
+    byte[] decompressed = decompress(data, options);
+    if (decompressed == null) {
+      return 0;
+    }
+    if (decompressed.length > buf.length) {
+      throw new FormatException("Decompressed data (" + decompressed.length +
+        " bytes) does not fit in buffer (" + buf.length + " bytes)");
+    }
+    System.arraycopy(decompressed, 0, buf, 0, decompressed.length);
+    return decompressed.length;
+  }
+
   /* @see Codec#decompress(RandomAccessInputStream, CodecOptions) */
   @Override
   public abstract byte[] decompress(RandomAccessInputStream in,
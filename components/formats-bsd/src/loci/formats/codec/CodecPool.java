@@ -0,0 +1,170 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2026 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import loci.formats.FormatException;
+
+/**
+ * Provides reusable codec instances and byte arrays, so that readers which
+ * decode many tiles do not need to allocate a new codec and new buffers
+ * for each tile.
+ *
+ * Codec instances are cached per thread, so a codec obtained from
+ * {@link #getCodec(Class)} must not be passed to another thread.
+ * Buffers are shared between threads; a buffer passed to
+ * {@link #releaseBuffer(byte[])} must no longer be used by the caller.
+ */
+public final class CodecPool {
+
+  // -- Constants --
+
+  /** Maximum total size in bytes of the pooled buffers. */
+  private static final long MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+  /** Maximum number of pooled buffers of a single length. */
+  private static final int MAX_BUFFERS_PER_LENGTH =
+    Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final ThreadLocal<Map<Class<?>, Codec>> CODECS =
+    new ThreadLocal<Map<Class<?>, Codec>>() {
+      @Override
+      protected Map<Class<?>, Codec> initialValue() {
+        return new HashMap<Class<?>, Codec>();
+      }
+    };
+
+  private static final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<byte[]>>
+    BUFFERS = new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<byte[]>>();
+
+  private static final AtomicLong POOLED_BYTES = new AtomicLong();
+
+  // -- Constructor --
+
+  private CodecPool() { }
+
+  // -- CodecPool API methods --
+
+  /**
+   * Retrieves this thread's instance of the given codec class,
+   * creating it if necessary.
+   *
+   * @param codecClass the codec class, which must have a public
+   *   no-argument constructor
+   * @return a codec instance that may be reused by the calling thread
+   * @throws FormatException if the codec could not be created
+   */
+  public static <T extends Codec> T getCodec(Class<T> codecClass)
+    throws FormatException
+  {
+    Map<Class<?>, Codec> codecs = CODECS.get();
+    Codec codec = codecs.get(codecClass);
+    if (codec == null) {
+      try {
+        codec = codecClass.newInstance();
+      }
+      catch (InstantiationException | IllegalAccessException e) {
+        throw new FormatException("Could not create " +
+          codecClass.getName(), e);
+      }
+      codecs.put(codecClass, codec);
+    }
+    return codecClass.cast(codec);
+  }
+
+  /**
+   * Retrieves a byte array of exactly the given length, either from
+   * the pool or newly allocated.  The contents of the array are undefined.
+   *
+   * @param length the required array length
+   * @return an array that can be returned to the pool with
+   *   {@link #releaseBuffer(byte[])}
+   */
+  public static byte[] acquireBuffer(int length) {
+    ConcurrentLinkedQueue<byte[]> queue = BUFFERS.get(length);
+    if (queue != null) {
+      byte[] buf = queue.poll();
+      if (buf != null) {
+        POOLED_BYTES.addAndGet(-buf.length);
+        return buf;
+      }
+    }
+    return new byte[length];
+  }
+
+  /**
+   * Returns a byte array to the pool, so that it can be reused by a later
+   * call to {@link #acquireBuffer(int)}.  The array is discarded if the
+   * pool is full.
+   *
+   * @param buf the array to release; null is ignored
+   */
+  public static void releaseBuffer(byte[] buf) {
+    if (buf == null || buf.length == 0) {
+      return;
+    }
+    if (POOLED_BYTES.addAndGet(buf.length) > MAX_POOLED_BYTES) {
+      POOLED_BYTES.addAndGet(-buf.length);
+      return;
+    }
+    ConcurrentLinkedQueue<byte[]> queue = BUFFERS.get(buf.length);
+    if (queue == null) {
+      ConcurrentLinkedQueue<byte[]> newQueue =
+        new ConcurrentLinkedQueue<byte[]>();
+      queue = BUFFERS.putIfAbsent(buf.length, newQueue);
+      if (queue == null) {
+        queue = newQueue;
+      }
+    }
+    if (queue.size() >= MAX_BUFFERS_PER_LENGTH) {
+      POOLED_BYTES.addAndGet(-buf.length);
+      return;
+    }
+    queue.offer(buf);
+  }
+
+  /**
+   * Discards all pooled buffers, and this thread's codec instances.
+   */
+  public static void clear() {
+    CODECS.remove();
+    BUFFERS.clear();
+    POOLED_BYTES.set(0);
+  }
+
+}
@@ -45,4 +45,17 @@ public class PassthroughCodec extends WrappedCodec {
   public PassthroughCodec() {
     super(new ome.codecs.PassthroughCodec());
   }
+
+  /* @see BaseCodec#decompress(byte[], byte[], CodecOptions) */
+  @Override
+  public int decompress(byte[] data, byte[] buf, CodecOptions options)
+    throws FormatException
+  {
+    if (data.length > buf.length) {
+      throw new FormatException("Data (" + data.length +
+        " bytes) does not fit in buffer (" + buf.length + " bytes)");
+    }
+    System.arraycopy(data, 0, buf, 0, data.length);
+    return data.length;
+  }
 }
@@ -36,6 +36,7 @@ import java.io.IOException;
 
 import loci.common.RandomAccessInputStream;
 import loci.formats.FormatException;
+import loci.formats.Instrumentation;
 
 /**
  * Generic wrapper for codecs from ome-codecs.  Individual wrapper
@@ -59,8 +60,11 @@ class WrappedCodec extends BaseCodec {
   @Override
   public byte[] compress(byte[] data, CodecOptions options) throws FormatException
   {
+    long start = Instrumentation.start();
     try {
-      return codec.compress(data, getOptions(options));
+      byte[] compressed = codec.compress(data, getOptions(options));
+      Instrumentation.stop(getClass(), "compress", start, data.length);
+      return compressed;
     }
     catch (ome.codecs.CodecException e) {
       throw unwrapCodecException(e);
@@ -82,8 +86,12 @@ class WrappedCodec extends BaseCodec {
   /* @see Codec#decompress(byte[], CodecOptions) */
   public byte[] decompress(byte[] data, CodecOptions options) throws FormatException
   {
+    long start = Instrumentation.start();
     try {
-      return codec.decompress(data, getOptions(options));
+      byte[] decompressed = codec.decompress(data, getOptions(options));
+      Instrumentation.stop(getClass(), "decompress", start,
+        decompressed == null ? 0 : decompressed.length);
+      return decompressed;
     }
     catch (ome.codecs.CodecException e) {
       throw unwrapCodecException(e);
@@ -128,8 +136,12 @@ class WrappedCodec extends BaseCodec {
   public byte[] decompress(RandomAccessInputStream in, CodecOptions options)
     throws FormatException, IOException
   {
+    long start = Instrumentation.start();
     try {
-      return codec.decompress(in, getOptions(options));
+      byte[] decompressed = codec.decompress(in, getOptions(options));
+      Instrumentation.stop(getClass(), "decompress", start,
+        decompressed == null ? 0 : decompressed.length);
+      return decompressed;
     }
     catch (ome.codecs.CodecException e) {
       throw unwrapCodecException(e);
@@ -34,11 +34,14 @@ package loci.formats.codec;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import loci.common.RandomAccessInputStream;
 import loci.formats.FormatException;
+import loci.formats.Instrumentation;
 
 /**
  * This class implements ZLIB decompression.
@@ -46,7 +49,59 @@ import loci.formats.FormatException;
  * @author Melissa Linkert melissa at glencoesoftware.com
  */
 public class ZlibCodec extends WrappedCodec {
+
+  /** Per-thread inflater, reset before each use. */
+  private static final ThreadLocal<Inflater> INFLATER =
+    new ThreadLocal<Inflater>() {
+      @Override
+      protected Inflater initialValue() {
+        return new Inflater();
+      }
+    };
+
   public ZlibCodec() {
     super(new ome.codecs.ZlibCodec());
   }
+
+  /**
+   * Inflates the data directly into the given buffer, reusing an
+   * inflater owned by the calling thread.  As with
+   * {@link #decompress(byte[], CodecOptions)}, truncated data is
+   * decompressed as far as possible.
+   *
+   * @see BaseCodec#decompress(byte[], byte[], CodecOptions)
+   */
+  @Override
+  public int decompress(byte[] data, byte[] buf, CodecOptions options)
+    throws FormatException
+  {
+    long start = Instrumentation.start();
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    inflater.setInput(data);
+    int length = 0;
+    try {
+      while (!inflater.finished() && length < buf.length) {
+        int n = inflater.inflate(buf, length, buf.length - length);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += n;
+      }
+      if (!inflater.finished() && !inflater.needsInput() &&
+        inflater.inflate(new byte[1]) > 0)
+      {
+        throw new FormatException("Decompressed data does not fit in " +
+          "buffer (" + buf.length + " bytes)");
+      }
+    }
+    catch (DataFormatException e) {
+      throw new FormatException(e);
+    }
+    finally {
+      inflater.reset();
+    }
+    Instrumentation.stop(getClass(), "decompress", start, length);
+    return length;
+  }
 }
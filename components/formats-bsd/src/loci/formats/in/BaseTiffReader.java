@@ -90,6 +90,19 @@ public abstract class BaseTiffReader extends MinimalTiffReader {
     super(name, suffixes);
   }
 
+  // -- Internal MinimalTiffReader API methods --
+
+  /**
+   * Most subclasses override openBytes, so stored tiles are only
+   * returned by readers that explicitly allow it.
+   *
+   * @see MinimalTiffReader#canReturnCompressedTiles()
+   */
+  @Override
+  protected boolean canReturnCompressedTiles() {
+    return false;
+  }
+
   // -- Internal BaseTiffReader API methods --
 
   /** Populates the metadata hashtable and metadata store. */
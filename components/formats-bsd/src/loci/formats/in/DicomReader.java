@@ -36,10 +36,18 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
@@ -51,9 +59,9 @@ import loci.common.RandomAccessInputStream;
 import loci.formats.CoreMetadata;
 import loci.formats.FilePattern;
 import loci.formats.FormatException;
-import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
+import loci.formats.SubResolutionFormatReader;
 import loci.formats.UnsupportedCompressionException;
 import loci.formats.codec.Codec;
 import loci.formats.codec.CodecOptions;
@@ -70,7 +78,7 @@ import ome.units.UNITS;
  * Much of this code is adapted from ImageJ's DICOM reader; see
  * http://rsb.info.nih.gov/ij/developer/source/ij/plugin/DICOM.java.html
  */
-public class DicomReader extends FormatReader {
+public class DicomReader extends SubResolutionFormatReader {
 
   // -- Constants --
 
@@ -103,6 +111,9 @@ public class DicomReader extends FormatReader {
   private static final int ITEM_DELIMINATION = 0xFFFEE00D;
   private static final int SEQUENCE_DELIMINATION = 0xFFFEE0DD;
   private static final int PIXEL_DATA = 0x7FE00010;
+  private static final int DIMENSION_ORGANIZATION_TYPE = 0x00209311;
+  private static final int TOTAL_PIXEL_MATRIX_COLUMNS = 0x00480006;
+  private static final int TOTAL_PIXEL_MATRIX_ROWS = 0x00480007;
 
   private static final int AE = 0x4145, AS = 0x4153, AT = 0x4154, CS = 0x4353;
   private static final int DA = 0x4441, DS = 0x4453, DT = 0x4454, FD = 0x4644;
@@ -114,6 +125,10 @@ public class DicomReader extends FormatReader {
 
   private static final int IMPLICIT_VR = 0x2d2d;
 
+  /** Number of threads used to decode the frames covering a region. */
+  private static final int DECODE_THREADS =
+    Runtime.getRuntime().availableProcessors();
+
   // -- Fields --
 
   /** Bits per pixel. */
@@ -157,6 +172,28 @@ public class DicomReader extends FormatReader {
 
   private List<String> companionFiles = new ArrayList<String>();
 
+  /** Frame (tile) dimensions for each core index, if frames are tiled. */
+  private int[] tileWidths, tileHeights;
+  private int totalColumns, totalRows;
+  private String dimensionOrganization;
+  private String seriesInstanceUID;
+
+  /** Offset to the Pixel Data element. */
+  private long pixelDataOffset = -1;
+
+  /** Offset and length of each fragment of encapsulated pixel data. */
+  private long[] fragmentOffsets;
+  private int[] fragmentLengths;
+
+  /** Index of the first fragment in each frame. */
+  private int[] frameFragments;
+
+  /** Files containing each core index of a tiled pyramid. */
+  private String[] tiledFiles;
+  private transient DicomReader[] tiledReaders;
+
+  private transient ExecutorService decodeExecutor;
+
   // -- Constructor --
 
   /** Constructs a new DICOM reader. */
@@ -240,6 +277,19 @@ public class DicomReader extends FormatReader {
   public String[] getSeriesUsedFiles(boolean noPixels) {
     FormatTools.assertId(currentId, true, 1);
     if (noPixels || fileList == null) return null;
+    if (tiledFiles != null) {
+      final List<String> files = new ArrayList<String>();
+      if (hasFlattenedResolutions()) {
+        files.add(tiledFiles[getCoreIndex()]);
+      }
+      else {
+        for (int r=0; r<core.size(series); r++) {
+          files.add(tiledFiles[core.flattenedIndex(series, r)]);
+        }
+      }
+      files.addAll(companionFiles);
+      return files.toArray(new String[files.size()]);
+    }
     Integer[] keys = fileList.keySet().toArray(new Integer[0]);
     Arrays.sort(keys);
     final List<String> files = fileList.get(keys[getSeries()]);
@@ -265,6 +315,26 @@ public class DicomReader extends FormatReader {
     return CAN_GROUP;
   }
 
+  /* @see loci.formats.IFormatReader#getOptimalTileWidth() */
+  @Override
+  public int getOptimalTileWidth() {
+    FormatTools.assertId(currentId, true, 1);
+    if (tileWidths != null && tileWidths[getCoreIndex()] > 0) {
+      return tileWidths[getCoreIndex()];
+    }
+    return super.getOptimalTileWidth();
+  }
+
+  /* @see loci.formats.IFormatReader#getOptimalTileHeight() */
+  @Override
+  public int getOptimalTileHeight() {
+    FormatTools.assertId(currentId, true, 1);
+    if (tileHeights != null && tileHeights[getCoreIndex()] > 0) {
+      return tileHeights[getCoreIndex()];
+    }
+    return super.getOptimalTileHeight();
+  }
+
   /**
    * @see loci.formats.IFormatReader#openBytes(int, byte[], int, int, int, int)
    */
@@ -274,6 +344,10 @@ public class DicomReader extends FormatReader {
   {
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
+    if (tiledFiles != null) {
+      return getTiledReader(getCoreIndex()).openBytes(no, buf, x, y, w, h);
+    }
+
     Integer[] keys = fileList.keySet().toArray(new Integer[0]);
     Arrays.sort(keys);
     if (fileList.size() > 1 || fileList.get(keys[getSeries()]).size() > 1) {
@@ -295,7 +369,11 @@ public class DicomReader extends FormatReader {
     }
     in.seek(offsets[no]);
 
-    if (isRLE) {
+    if (tileWidths != null) {
+      // only read and decode the frames that intersect the region
+      readTiledRegion(no, buf, x, y, w, h);
+    }
+    else if (isRLE) {
       // plane is compressed using run-length encoding
       CodecOptions options = new CodecOptions();
       options.maxBytes = getSizeX() * getSizeY();
@@ -361,39 +439,8 @@ public class DicomReader extends FormatReader {
     }
     else if (isJPEG || isJP2K) {
       // plane is compressed using JPEG or JPEG-2000
-      long end = no < offsets.length - 1 ? offsets[no + 1] : in.length();
-      byte[] b = new byte[(int) (end - in.getFilePointer())];
-      in.read(b);
-
-      if (b[2] != (byte) 0xff) {
-        byte[] tmp = new byte[b.length + 1];
-        tmp[0] = b[0];
-        tmp[1] = b[1];
-        tmp[2] = (byte) 0xff;
-        System.arraycopy(b, 2, tmp, 3, b.length - 2);
-        b = tmp;
-      }
-      if ((b[3] & 0xff) >= 0xf0) {
-        b[3] -= (byte) 0x30;
-      }
-
-      int pt = b.length - 2;
-      while (pt >= 0 && b[pt] != (byte) 0xff || b[pt + 1] != (byte) 0xd9) {
-        pt--;
-      }
-      if (pt < b.length - 2) {
-        byte[] tmp = b;
-        b = new byte[pt + 2];
-        System.arraycopy(tmp, 0, b, 0, b.length);
-      }
-
-      Codec codec = null;
-      CodecOptions options = new CodecOptions();
-      options.littleEndian = isLittleEndian();
-      options.interleaved = isInterleaved();
-      if (isJPEG) codec = new JPEGCodec();
-      else codec = new JPEG2000Codec();
-      b = codec.decompress(b, options);
+      byte[] b = readFrame(no, bytes);
+      b = createCodec().decompress(b, getFrameCodecOptions());
 
       int rowLen = w * bpp;
       int srcRowLen = getSizeX() * bpp;
@@ -448,6 +495,15 @@ public class DicomReader extends FormatReader {
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
     if (helper != null) helper.close(fileOnly);
+    if (tiledReaders != null) {
+      // reopened as needed
+      for (DicomReader reader : tiledReaders) {
+        if (reader != null) {
+          reader.close();
+        }
+      }
+      tiledReaders = null;
+    }
     if (!fileOnly) {
       bitsPerPixel = location = elementLength = vr = 0;
       oddLocations = inSequence = bigEndianTransferSyntax = false;
@@ -474,6 +530,20 @@ public class DicomReader extends FormatReader {
       positionX.clear();
       positionY.clear();
       positionZ.clear();
+      tileWidths = null;
+      tileHeights = null;
+      totalColumns = totalRows = 0;
+      dimensionOrganization = null;
+      seriesInstanceUID = null;
+      pixelDataOffset = -1;
+      fragmentOffsets = null;
+      fragmentLengths = null;
+      frameFragments = null;
+      tiledFiles = null;
+      if (decodeExecutor != null) {
+        decodeExecutor.shutdown();
+        decodeExecutor = null;
+      }
     }
   }
 
@@ -488,7 +558,7 @@ public class DicomReader extends FormatReader {
     }
     in = new RandomAccessInputStream(id);
     in.order(true);
-    CoreMetadata m = core.get(0);
+    CoreMetadata m = core.get(0, 0);
 
     // look for companion files
     attachCompanionFiles();
@@ -509,6 +579,7 @@ public class DicomReader extends FormatReader {
     lut = null;
     offsets = null;
     inverted = false;
+    pixelDataOffset = -1;
 
     // some DICOM files have a 128 byte header followed by a 4 byte identifier
 
@@ -539,7 +610,8 @@ public class DicomReader extends FormatReader {
       if (in.getFilePointer() + 4 >= in.length()) {
         break;
       }
-      LOGGER.debug("Reading tag from {}", in.getFilePointer());
+      long tagOffset = in.getFilePointer();
+      LOGGER.debug("Reading tag from {}", tagOffset);
       int tag = getNextTag(in);
 
       if (elementLength <= 0) continue;
@@ -642,10 +714,21 @@ public class DicomReader extends FormatReader {
           }
           addInfo(tag, t);
           break;
+        case TOTAL_PIXEL_MATRIX_COLUMNS:
+          totalColumns = in.readInt();
+          addInfo(tag, totalColumns);
+          break;
+        case TOTAL_PIXEL_MATRIX_ROWS:
+          totalRows = in.readInt();
+          addInfo(tag, totalRows);
+          break;
         case PIXEL_DATA:
         case ITEM:
         case 0xffee000:
           if (elementLength != 0) {
+            if (tag == PIXEL_DATA) {
+              pixelDataOffset = tagOffset;
+            }
             baseOffset = in.getFilePointer();
             addInfo(tag, location);
             decodingTags = false;
@@ -744,56 +827,86 @@ public class DicomReader extends FormatReader {
       }
     }
 
+    // whole slide images store each plane as a grid of tiled frames
+    int framesPerPlane = 0;
+    if (totalColumns > 0 && totalRows > 0 && !isRLE && !isDeflate &&
+      !"TILED_SPARSE".equals(dimensionOrganization) &&
+      (totalColumns != getSizeX() || totalRows != getSizeY()))
+    {
+      int tilesX = (totalColumns + getSizeX() - 1) / getSizeX();
+      int tilesY = (totalRows + getSizeY() - 1) / getSizeY();
+      if (imagesPerFile % (tilesX * tilesY) == 0) {
+        framesPerPlane = tilesX * tilesY;
+      }
+    }
+
     offsets = new long[imagesPerFile];
-    for (int i=0; i<imagesPerFile; i++) {
-      if (isRLE) {
-        if (i == 0) in.seek(baseOffset);
-        else {
-          in.seek(offsets[i - 1]);
-          CodecOptions options = new CodecOptions();
-          options.maxBytes = plane / bpp;
-          for (int q=0; q<bpp; q++) {
-            new PackbitsCodec().decompress(in, options);
-            while (in.read() == 0);
-            in.seek(in.getFilePointer() - 1);
+    if (framesPerPlane > 0 && (isJPEG || isJP2K) &&
+      buildFrameIndex(imagesPerFile))
+    {
+      for (int i=0; i<imagesPerFile; i++) {
+        offsets[i] = fragmentOffsets[frameFragments[i]];
+      }
+    }
+    else {
+      for (int i=0; i<imagesPerFile; i++) {
+        if (isRLE) {
+          if (i == 0) in.seek(baseOffset);
+          else {
+            in.seek(offsets[i - 1]);
+            CodecOptions options = new CodecOptions();
+            options.maxBytes = plane / bpp;
+            for (int q=0; q<bpp; q++) {
+              new PackbitsCodec().decompress(in, options);
+              while (in.read() == 0);
+              in.seek(in.getFilePointer() - 1);
+            }
           }
+          in.skipBytes(i == 0 ? 64 : 53);
+          while (in.read() == 0);
+          offsets[i] = in.getFilePointer() - 1;
         }
-        in.skipBytes(i == 0 ? 64 : 53);
-        while (in.read() == 0);
-        offsets[i] = in.getFilePointer() - 1;
-      }
-      else if (isJPEG || isJP2K) {
-        // scan for next JPEG magic byte sequence
-        if (i == 0) offsets[i] = baseOffset;
-        else offsets[i] = offsets[i - 1] + 3;
-
-        byte secondCheck = isJPEG ? (byte) 0xd8 : (byte) 0x4f;
-
-        in.seek(offsets[i]);
-        byte[] buf = new byte[8192];
-        int n = in.read(buf);
-        boolean found = false;
-        while (!found) {
-          for (int q=0; q<n-2; q++) {
-            if (buf[q] == (byte) 0xff && buf[q + 1] == secondCheck &&
-              buf[q + 2] == (byte) 0xff)
-            {
-              if (isJPEG || (isJP2K && buf[q + 3] == 0x51)) {
-                found = true;
-                offsets[i] = in.getFilePointer() + q - n;
-                break;
+        else if (isJPEG || isJP2K) {
+          // scan for next JPEG magic byte sequence
+          if (i == 0) offsets[i] = baseOffset;
+          else offsets[i] = offsets[i - 1] + 3;
+
+          byte secondCheck = isJPEG ? (byte) 0xd8 : (byte) 0x4f;
+
+          in.seek(offsets[i]);
+          byte[] buf = new byte[8192];
+          int n = in.read(buf);
+          boolean found = false;
+          while (!found) {
+            for (int q=0; q<n-2; q++) {
+              if (buf[q] == (byte) 0xff && buf[q + 1] == secondCheck &&
+                buf[q + 2] == (byte) 0xff)
+              {
+                if (isJPEG || (isJP2K && buf[q + 3] == 0x51)) {
+                  found = true;
+                  offsets[i] = in.getFilePointer() + q - n;
+                  break;
+                }
               }
             }
-          }
-          if (!found) {
-            for (int q=0; q<4; q++) {
-              buf[q] = buf[buf.length + q - 4];
+            if (!found) {
+              for (int q=0; q<4; q++) {
+                buf[q] = buf[buf.length + q - 4];
+              }
+              n = in.read(buf, 4, buf.length - 4) + 4;
             }
-            n = in.read(buf, 4, buf.length - 4) + 4;
           }
         }
+        else offsets[i] = baseOffset + plane*i;
       }
-      else offsets[i] = baseOffset + plane*i;
+    }
+
+    if (framesPerPlane > 0) {
+      tileWidths = new int[] {getSizeX()};
+      tileHeights = new int[] {getSizeY()};
+      m.sizeX = totalColumns;
+      m.sizeY = totalRows;
+      imagesPerFile /= framesPerPlane;
     }
 
     makeFileList();
@@ -805,30 +918,47 @@ public class DicomReader extends FormatReader {
     Integer[] keys = fileList.keySet().toArray(new Integer[0]);
     Arrays.sort(keys);
 
-    if (seriesCount > 1) {
-      core.clear();
+    if (tileWidths != null && isGroupFiles()) {
+      // the other files may hold the rest of the whole slide image pyramid
+      List<String> files = new ArrayList<String>();
+      for (Integer key : keys) {
+        for (String file : fileList.get(key)) {
+          if (file != null && !files.contains(file)) {
+            files.add(file);
+          }
+        }
+      }
+      if (files.size() > 1) {
+        groupTiledFiles(files);
+      }
     }
 
-    for (int i=0; i<seriesCount; i++) {
-      if (seriesCount == 1) {
-        CoreMetadata ms = core.get(i);
-        ms.sizeZ = imagesPerFile * fileList.get(keys[i]).size();
-        if (ms.sizeC == 0) ms.sizeC = 1;
-        ms.rgb = ms.sizeC > 1;
-        ms.sizeT = 1;
-        ms.dimensionOrder = "XYCZT";
-        ms.metadataComplete = true;
-        ms.falseColor = false;
-        if (isRLE) core.get(i).interleaved = false;
-        ms.imageCount = ms.sizeZ;
+    if (tiledFiles == null) {
+      if (seriesCount > 1) {
+        core.clear();
       }
-      else {
-        helper.close();
-        helper.setId(fileList.get(keys[i]).get(0));
-        CoreMetadata ms = helper.getCoreMetadataList().get(0);
-        ms.sizeZ *= fileList.get(keys[i]).size();
-        ms.imageCount = ms.sizeZ;
-        core.add(ms);
+
+      for (int i=0; i<seriesCount; i++) {
+        if (seriesCount == 1) {
+          CoreMetadata ms = core.get(i, 0);
+          ms.sizeZ = imagesPerFile * fileList.get(keys[i]).size();
+          if (ms.sizeC == 0) ms.sizeC = 1;
+          ms.rgb = ms.sizeC > 1;
+          ms.sizeT = 1;
+          ms.dimensionOrder = "XYCZT";
+          ms.metadataComplete = true;
+          ms.falseColor = false;
+          if (isRLE) core.get(i, 0).interleaved = false;
+          ms.imageCount = ms.sizeZ;
+        }
+        else {
+          helper.close();
+          helper.setId(fileList.get(keys[i]).get(0));
+          CoreMetadata ms = helper.getCoreMetadataList().get(0);
+          ms.sizeZ *= fileList.get(keys[i]).size();
+          ms.imageCount = ms.sizeZ;
+          core.add(ms);
+        }
       }
     }
 
@@ -845,24 +975,28 @@ public class DicomReader extends FormatReader {
 
     if (stamp == null || stamp.trim().equals("")) stamp = null;
 
-    for (int i=0; i<core.size(); i++) {
+    for (int i=0; i<getSeriesCount(); i++) {
       if (stamp != null) store.setImageAcquisitionDate(new Timestamp(stamp), i);
       store.setImageName("Series " + i, i);
     }
 
     if (level != MetadataLevel.MINIMUM) {
-      for (int i=0; i<core.size(); i++) {
-        store.setImageDescription(imageType, i);
+      for (int i=0; i<getSeriesCount(); i++) {
+        DicomReader source = this;
+        if (tiledFiles != null) {
+          source = getTiledReader(seriesToCoreIndex(i));
+        }
+        store.setImageDescription(source.imageType, i);
 
         // all physical sizes were stored in mm, so must be converted to um
-        if (pixelSizeX != null) {
-          Length x = FormatTools.getPhysicalSizeX(new Double(pixelSizeX), UNITS.MILLIMETER);
+        if (source.pixelSizeX != null) {
+          Length x = FormatTools.getPhysicalSizeX(new Double(source.pixelSizeX), UNITS.MILLIMETER);
           if (x != null) {
             store.setPixelsPhysicalSizeX(x, i);
           }
         }
-        if (pixelSizeY != null) {
-          Length y = FormatTools.getPhysicalSizeY(new Double(pixelSizeY), UNITS.MILLIMETER);
+        if (source.pixelSizeY != null) {
+          Length y = FormatTools.getPhysicalSizeY(new Double(source.pixelSizeY), UNITS.MILLIMETER);
           if (y != null) {
             store.setPixelsPhysicalSizeY(y, i);
           }
@@ -909,7 +1043,7 @@ public class DicomReader extends FormatReader {
   private void addInfo(int tag, String value) throws IOException {
     String oldValue = value;
     String info = getHeaderInfo(tag, value);
-    CoreMetadata m = core.get(0);
+    CoreMetadata m = core.get(0, 0);
 
     if (info != null && tag != ITEM) {
       info = info.trim();
@@ -964,6 +1098,14 @@ public class DicomReader extends FormatReader {
       else if (key.equals("Content Time")) time = info;
       else if (key.equals("Content Date")) date = info;
       else if (key.equals("Image Type")) imageType = info;
+      else if (key.equals("Dimension Organization Type")) {
+        dimensionOrganization = info;
+      }
+      else if (key.equals("Series Instance UID")) {
+        if (seriesInstanceUID == null) {
+          seriesInstanceUID = info;
+        }
+      }
       else if (key.equals("Rescale Intercept")) {
         rescaleIntercept = Double.parseDouble(info);
       }
@@ -1201,7 +1343,7 @@ public class DicomReader extends FormatReader {
     int groupWord = stream.readShort() & 0xffff;
     if (groupWord == 0x0800 && bigEndianTransferSyntax) {
       if (setMetadata) {
-        core.get(0).littleEndian = false;
+        core.get(0, 0).littleEndian = false;
       }
       groupWord = 0x0008;
       stream.order(false);
@@ -1218,9 +1360,9 @@ public class DicomReader extends FormatReader {
     if (elementLength > stream.length()) {
       stream.seek(fp);
 
-      stream.order(!core.get(0).littleEndian);
+      stream.order(!core.get(0, 0).littleEndian);
       if (setMetadata) {
-        core.get(0).littleEndian = !core.get(0).littleEndian;
+        core.get(0, 0).littleEndian = !core.get(0, 0).littleEndian;
       }
 
       groupWord = stream.readShort() & 0xffff;
@@ -1320,6 +1462,387 @@ public class DicomReader extends FormatReader {
     }
   }
 
+  /**
+   * Index the fragments of encapsulated (compressed) pixel data, so that
+   * any frame can be read without scanning the frames that precede it.
+   *
+   * @return false if the fragments could not be matched to frames
+   */
+  private boolean buildFrameIndex(int frames) throws IOException {
+    if (pixelDataOffset < 0) {
+      return false;
+    }
+    in.seek(pixelDataOffset + 4);
+    String vrName = in.readString(2);
+    if (vrName.equals("OB") || vrName.equals("OW")) {
+      in.skipBytes(2);
+    }
+    else {
+      in.seek(pixelDataOffset + 4);
+    }
+    if (in.readInt() != -1) {
+      return false;
+    }
+
+    // the first item is the basic offset table, followed by the fragments
+    long[] itemOffsets = new long[frames + 1];
+    int[] itemLengths = new int[frames + 1];
+    int items = 0;
+    while (in.getFilePointer() + 8 <= in.length()) {
+      int group = in.readShort() & 0xffff;
+      int element = in.readShort() & 0xffff;
+      int length = in.readInt();
+      if (group != 0xfffe) {
+        return false;
+      }
+      if (element == 0xe0dd) {
+        break;
+      }
+      if (element != 0xe000 || length < 0 ||
+        in.getFilePointer() + length > in.length())
+      {
+        return false;
+      }
+      if (items == itemOffsets.length) {
+        itemOffsets = Arrays.copyOf(itemOffsets, items * 2);
+        itemLengths = Arrays.copyOf(itemLengths, items * 2);
+      }
+      itemOffsets[items] = in.getFilePointer();
+      itemLengths[items] = length;
+      items++;
+      in.seek(in.getFilePointer() + length);
+    }
+
+    int fragments = items - 1;
+    if (fragments < frames) {
+      return false;
+    }
+    int[] firstFragments = new int[frames + 1];
+    if (fragments == frames) {
+      for (int i=0; i<frames; i++) {
+        firstFragments[i] = i;
+      }
+    }
+    else {
+      // frames are split across fragments, so the basic offset table
+      // is needed to find where each frame starts
+      if (itemLengths[0] != frames * 4) {
+        return false;
+      }
+      in.seek(itemOffsets[0]);
+      long firstItem = itemOffsets[1] - 8;
+      int fragment = 0;
+      for (int i=0; i<frames; i++) {
+        long frameStart = firstItem + (in.readInt() & 0xffffffffL);
+        while (fragment < fragments &&
+          itemOffsets[fragment + 1] - 8 < frameStart)
+        {
+          fragment++;
+        }
+        if (fragment == fragments ||
+          itemOffsets[fragment + 1] - 8 != frameStart)
+        {
+          return false;
+        }
+        firstFragments[i] = fragment;
+      }
+    }
+    firstFragments[frames] = fragments;
+
+    frameFragments = firstFragments;
+    fragmentOffsets = Arrays.copyOfRange(itemOffsets, 1, items);
+    fragmentLengths = Arrays.copyOfRange(itemLengths, 1, items);
+    return true;
+  }
+
+  /**
+   * Read the stored (possibly compressed) bytes of the given frame.
+   *
+   * @param frameBytes the number of bytes in an uncompressed frame
+   */
+  private byte[] readFrame(int frame, int frameBytes) throws IOException {
+    if (frameFragments != null) {
+      int first = frameFragments[frame];
+      int last = frameFragments[frame + 1];
+      int length = 0;
+      for (int i=first; i<last; i++) {
+        length += fragmentLengths[i];
+      }
+      byte[] b = new byte[length];
+      int pos = 0;
+      for (int i=first; i<last; i++) {
+        in.seek(fragmentOffsets[i]);
+        in.readFully(b, pos, fragmentLengths[i]);
+        pos += fragmentLengths[i];
+      }
+      return b;
+    }
+
+    in.seek(offsets[frame]);
+    if (!isJPEG && !isJP2K) {
+      byte[] b = new byte[frameBytes];
+      in.read(b);
+      return b;
+    }
+
+    long end = frame < offsets.length - 1 ? offsets[frame + 1] : in.length();
+    byte[] b = new byte[(int) (end - in.getFilePointer())];
+    in.read(b);
+
+    if (b[2] != (byte) 0xff) {
+      byte[] tmp = new byte[b.length + 1];
+      tmp[0] = b[0];
+      tmp[1] = b[1];
+      tmp[2] = (byte) 0xff;
+      System.arraycopy(b, 2, tmp, 3, b.length - 2);
+      b = tmp;
+    }
+    if ((b[3] & 0xff) >= 0xf0) {
+      b[3] -= (byte) 0x30;
+    }
+
+    int pt = b.length - 2;
+    while (pt >= 0 && b[pt] != (byte) 0xff || b[pt + 1] != (byte) 0xd9) {
+      pt--;
+    }
+    if (pt < b.length - 2) {
+      byte[] tmp = b;
+      b = new byte[pt + 2];
+      System.arraycopy(tmp, 0, b, 0, b.length);
+    }
+    return b;
+  }
+
+  private Codec createCodec() {
+    if (isJPEG) {
+      return new JPEGCodec();
+    }
+    return new JPEG2000Codec();
+  }
+
+  private CodecOptions getFrameCodecOptions() {
+    CodecOptions options = new CodecOptions();
+    options.littleEndian = isLittleEndian();
+    options.interleaved = isInterleaved();
+    return options;
+  }
+
+  /**
+   * Read a region of a plane that is stored as a grid of tiled frames.
+   * Only the frames that intersect the region are read, and compressed
+   * frames are decoded in parallel.
+   */
+  private void readTiledRegion(int no, byte[] buf, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    int tileWidth = tileWidths[0];
+    int tileHeight = tileHeights[0];
+    int ec = isIndexed() ? 1 : getSizeC();
+    int bpp = FormatTools.getBytesPerPixel(getPixelType());
+    int tilesX = (getSizeX() + tileWidth - 1) / tileWidth;
+    int tilesY = (getSizeY() + tileHeight - 1) / tileHeight;
+
+    int firstColumn = x / tileWidth;
+    int firstRow = y / tileHeight;
+    int columns = (x + w - 1) / tileWidth - firstColumn + 1;
+    int rows = (y + h - 1) / tileHeight - firstRow + 1;
+
+    // frames are read sequentially, as the input stream cannot be shared
+    byte[][] frames = new byte[columns * rows][];
+    for (int row=0; row<rows; row++) {
+      for (int col=0; col<columns; col++) {
+        int frame = no * tilesX * tilesY +
+          (firstRow + row) * tilesX + firstColumn + col;
+        frames[row * columns + col] =
+          readFrame(frame, tileWidth * tileHeight * ec * bpp);
+      }
+    }
+    if (isJPEG || isJP2K) {
+      decodeFrames(frames);
+    }
+
+    boolean interleaved = isInterleaved() && ec > 1;
+    int pixel = interleaved ? ec * bpp : bpp;
+    int planes = interleaved ? 1 : ec;
+    for (int row=0; row<rows; row++) {
+      int tileY = (firstRow + row) * tileHeight;
+      int startY = Math.max(y, tileY);
+      int endY = Math.min(y + h, tileY + tileHeight);
+      for (int col=0; col<columns; col++) {
+        byte[] frame = frames[row * columns + col];
+        int tileX = (firstColumn + col) * tileWidth;
+        int startX = Math.max(x, tileX);
+        int len = (Math.min(x + w, tileX + tileWidth) - startX) * pixel;
+        for (int c=0; c<planes; c++) {
+          int srcPlane = c * tileWidth * tileHeight * bpp;
+          int destPlane = c * w * h * bpp;
+          for (int yy=startY; yy<endY; yy++) {
+            int src = srcPlane +
+              ((yy - tileY) * tileWidth + startX - tileX) * pixel;
+            if (src + len > frame.length) {
+              break;
+            }
+            int dest = destPlane + ((yy - y) * w + startX - x) * pixel;
+            System.arraycopy(frame, src, buf, dest, len);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Decompress each of the given frames in place.
+   */
+  private void decodeFrames(final byte[][] frames)
+    throws FormatException, IOException
+  {
+    final CodecOptions options = getFrameCodecOptions();
+    if (frames.length == 1) {
+      frames[0] = createCodec().decompress(frames[0], options);
+      return;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (int i=0; i<frames.length; i++) {
+      final int index = i;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws FormatException {
+          frames[index] = createCodec().decompress(frames[index], options);
+          return null;
+        }
+      });
+    }
+
+    if (decodeExecutor == null) {
+      decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS,
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "DICOM-Decode");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    }
+
+    try {
+      for (Future<Void> result : decodeExecutor.invokeAll(tasks)) {
+        result.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while decoding frames", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof FormatException) {
+        throw (FormatException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause.getMessage(), cause);
+    }
+  }
+
+  /**
+   * Assemble the given whole slide image files into a pyramid.  Each file
+   * holds either one pyramid level, or a label or overview image that is
+   * stored as a separate series.  Files from a different DICOM series, or
+   * with different pixel types, are ignored.
+   */
+  private void groupTiledFiles(List<String> files)
+    throws FormatException, IOException
+  {
+    List<DicomReader> levels = new ArrayList<DicomReader>();
+    List<DicomReader> images = new ArrayList<DicomReader>();
+    int sizeC = Math.max(getSizeC(), 1);
+    for (String file : files) {
+      DicomReader reader = new DicomReader();
+      reader.setGroupFiles(false);
+      reader.setMetadataOptions(getMetadataOptions());
+      reader.setId(file);
+      String type = reader.imageType;
+      if ((seriesInstanceUID != null &&
+        !seriesInstanceUID.equals(reader.seriesInstanceUID)) ||
+        reader.getPixelType() != getPixelType() || reader.getSizeC() != sizeC)
+      {
+        reader.close();
+      }
+      else if (type != null &&
+        (type.indexOf("LABEL") >= 0 || type.indexOf("OVERVIEW") >= 0))
+      {
+        images.add(reader);
+      }
+      else if (reader.imagesPerFile == imagesPerFile) {
+        levels.add(reader);
+      }
+      else {
+        images.add(reader);
+      }
+    }
+    if (levels.size() == 0) {
+      for (DicomReader reader : images) {
+        reader.close();
+      }
+      return;
+    }
+
+    Collections.sort(levels, new Comparator<DicomReader>() {
+      @Override
+      public int compare(DicomReader r1, DicomReader r2) {
+        return r2.getSizeX() - r1.getSizeX();
+      }
+    });
+    int resolutions = levels.size();
+    levels.addAll(images);
+
+    core.clear();
+    tiledFiles = new String[levels.size()];
+    tiledReaders = new DicomReader[levels.size()];
+    tileWidths = new int[levels.size()];
+    tileHeights = new int[levels.size()];
+    for (int i=0; i<levels.size(); i++) {
+      DicomReader reader = levels.get(i);
+      CoreMetadata ms = new CoreMetadata(reader.core.get(0, 0));
+      ms.resolutionCount = 1;
+      ms.thumbnail = false;
+      if (i > 0 && i < resolutions) {
+        core.add(0, ms);
+      }
+      else {
+        core.add(ms);
+      }
+      tiledFiles[i] = reader.getCurrentFile();
+      tiledReaders[i] = reader;
+      if (reader.tileWidths != null) {
+        tileWidths[i] = reader.tileWidths[0];
+        tileHeights[i] = reader.tileHeights[0];
+      }
+    }
+  }
+
+  /**
+   * @return the reader for the file containing the given core index
+   */
+  private DicomReader getTiledReader(int coreIndex)
+    throws FormatException, IOException
+  {
+    if (tiledReaders == null) {
+      tiledReaders = new DicomReader[tiledFiles.length];
+    }
+    if (tiledReaders[coreIndex] == null) {
+      DicomReader reader = new DicomReader();
+      reader.setGroupFiles(false);
+      reader.setMetadataOptions(getMetadataOptions());
+      reader.setId(tiledFiles[coreIndex]);
+      tiledReaders[coreIndex] = reader;
+    }
+    return tiledReaders[coreIndex];
+  }
+
   // -- Utility methods --
 
   /**
@@ -2030,6 +2553,7 @@ public class DicomReader extends FormatReader {
     dict.put(new Integer(0x00201001), "Acquisitions in Series");
     dict.put(new Integer(0x00201020), "Reference");
     dict.put(new Integer(0x00201041), "Slice Location");
+    dict.put(new Integer(0x00209311), "Dimension Organization Type");
     // skipped a bunch of stuff here - not used
     dict.put(new Integer(0x00280002), "Samples per pixel");
     dict.put(new Integer(0x00280003), "Samples per pixel used");
@@ -2116,6 +2640,8 @@ public class DicomReader extends FormatReader {
     dict.put(new Integer(0x00289145), "Pixel Value Transformation Sequence");
     dict.put(new Integer(0x00289235), "Signal Domain Rows");
     // skipping some more stuff
+    dict.put(new Integer(0x00480006), "Total Pixel Matrix Columns");
+    dict.put(new Integer(0x00480007), "Total Pixel Matrix Rows");
     dict.put(new Integer(0x00540011), "Number of Energy Windows");
     dict.put(new Integer(0x00540021), "Number of Detectors");
     dict.put(new Integer(0x00540051), "Number of Rotations");
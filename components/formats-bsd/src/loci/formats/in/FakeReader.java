@@ -213,6 +213,14 @@ public class FakeReader extends FormatReader {
   private transient int fields = 0;
   private transient int plateAcqs = 0;
 
+  /* values used to populate the OME metadata of each series */
+  private String seriesName;
+  private String seriesAcquisitionDate;
+  private Integer seriesDefaultColor;
+  private List<Integer> seriesColors;
+  private List<IniTable> seriesTableList;
+  private boolean seriesPlaneInfo;
+
   // Misc. debugging
   private int sleepOpenBytes = 0;
   private int sleepInitFile = 0;
@@ -508,6 +516,14 @@ public class FakeReader extends FormatReader {
     plateCols = 0;
     fields = 0;
     plateAcqs = 0;
+    if (!fileOnly) {
+      seriesName = null;
+      seriesAcquisitionDate = null;
+      seriesDefaultColor = null;
+      seriesColors = null;
+      seriesTableList = null;
+      seriesPlaneInfo = false;
+    }
     super.close(fileOnly);
   }
 
@@ -815,10 +831,16 @@ public class FakeReader extends FormatReader {
       else hasSPW = false; // failed to generate SPW metadata
     }
 
-    // populate core metadata
+    // populate core metadata; if series are lazy, only the first series
+    // is populated here, and the others are populated by initSeries
+    boolean lazy = isSeriesLazy() && resolutionCount == 1;
     int effSizeC = sizeC / rgb;
     core.clear();
     for (int s=0; s<seriesCount; s++) {
+      if (lazy && s > 0) {
+        core.add(new CoreMetadata());
+        continue;
+      }
       CoreMetadata ms = new CoreMetadata();
       ms.resolutionCount = resolutionCount;
       core.add(ms);
@@ -852,28 +874,19 @@ public class FakeReader extends FormatReader {
     }
 
     // populate OME metadata
-    boolean planeInfo = (exposureTime != null) || seriesTables.size() > 0;
+    seriesName = name;
+    seriesAcquisitionDate = acquisitionDate;
+    seriesDefaultColor = defaultColor;
+    seriesColors = color;
+    seriesTableList = seriesTables;
+    seriesPlaneInfo = (exposureTime != null) || seriesTables.size() > 0;
 
-    MetadataTools.populatePixels(store, this, planeInfo);
-    fillExposureTime(store);
-    fillPhysicalSizes(store);
     for (int currentImageIndex=0; currentImageIndex<seriesCount; currentImageIndex++) {
-      if (currentImageIndex < seriesTables.size()) {
-        parseSeriesTable(seriesTables.get(currentImageIndex), store, currentImageIndex);
+      if (lazy && currentImageIndex > 0) {
+        deferSeries(currentImageIndex);
       }
-
-      String imageName = currentImageIndex > 0 ? name + " " + (currentImageIndex + 1) : name;
-      store.setImageName(imageName, currentImageIndex);
-      fillAcquisitionDate(store, acquisitionDate, currentImageIndex);
-
-      for (int c=0; c<getEffectiveSizeC(); c++) {
-        Color channel = defaultColor == null ? null: new Color(defaultColor);
-        if (c < color.size() && color.get(c) != null) {
-          channel = new Color(color.get(c));
-        }
-        if (channel != null) {
-          store.setChannelColor(channel, currentImageIndex, c);
-        }
+      else {
+        populateSeries(store, currentImageIndex);
       }
       fillAnnotations(store, currentImageIndex);
       fillRegions(store, currentImageIndex);
@@ -917,27 +930,64 @@ public class FakeReader extends FormatReader {
   public void reopenFile() throws IOException {
   }
 
-  private void fillPhysicalSizes(MetadataStore store) {
-    if (physicalSizeX == null && physicalSizeY == null && physicalSizeZ == null) return;
-    for (int s=0; s<getSeriesCount(); s++) {
-      store.setPixelsPhysicalSizeX(physicalSizeX, s);
-      store.setPixelsPhysicalSizeY(physicalSizeY, s);
-      store.setPixelsPhysicalSizeZ(physicalSizeZ, s);
-    }
+  /* @see loci.formats.FormatReader#initSeries(int) */
+  @Override
+  protected void initSeries(int coreIndex)
+    throws FormatException, IOException
+  {
+    CoreMetadata ms = new CoreMetadata(core.get(0));
+    ms.seriesMetadata.clear();
+    core.set(coreIndex, ms);
   }
 
-  private void fillExposureTime(MetadataStore store) {
-    if (exposureTime == null) return;
+  /* @see loci.formats.FormatReader#initSeriesMetadata(int, MetadataStore) */
+  @Override
+  protected void initSeriesMetadata(int coreIndex, MetadataStore store) {
+    populateSeries(store, coreIndex);
+  }
+
+  /** Populates the OME metadata of the given series. */
+  private void populateSeries(MetadataStore store, int s) {
     int oldSeries = getSeries();
-    for (int s=0; s<getSeriesCount(); s++) {
-      setSeries(s);
-      for (int i=0; i<getImageCount(); i++) {
-        store.setPlaneExposureTime(exposureTime, s, i);
+    setSeries(s);
+    MetadataTools.populatePixels(store, this, s, seriesPlaneInfo, true);
+    fillExposureTime(store, s);
+    fillPhysicalSizes(store, s);
+    if (s < seriesTableList.size()) {
+      parseSeriesTable(seriesTableList.get(s), store, s);
+    }
+
+    String imageName = s > 0 ? seriesName + " " + (s + 1) : seriesName;
+    store.setImageName(imageName, s);
+    fillAcquisitionDate(store, seriesAcquisitionDate, s);
+
+    for (int c=0; c<getEffectiveSizeC(); c++) {
+      Color channel =
+        seriesDefaultColor == null ? null : new Color(seriesDefaultColor);
+      if (c < seriesColors.size() && seriesColors.get(c) != null) {
+        channel = new Color(seriesColors.get(c));
+      }
+      if (channel != null) {
+        store.setChannelColor(channel, s, c);
       }
     }
     setSeries(oldSeries);
   }
 
+  private void fillPhysicalSizes(MetadataStore store, int s) {
+    if (physicalSizeX == null && physicalSizeY == null && physicalSizeZ == null) return;
+    store.setPixelsPhysicalSizeX(physicalSizeX, s);
+    store.setPixelsPhysicalSizeY(physicalSizeY, s);
+    store.setPixelsPhysicalSizeZ(physicalSizeZ, s);
+  }
+
+  private void fillExposureTime(MetadataStore store, int s) {
+    if (exposureTime == null) return;
+    for (int i=0; i<getImageCount(); i++) {
+      store.setPlaneExposureTime(exposureTime, s, i);
+    }
+  }
+
   private void fillAcquisitionDate(MetadataStore store, String date, int imageIndex) {
     if (date == null) return;
     if(DateTools.getTime(date, DateTools.FILENAME_FORMAT) != -1) {
@@ -33,6 +33,7 @@
 package loci.formats.in;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import loci.common.DataTools;
 import loci.common.RandomAccessInputStream;
@@ -40,6 +41,7 @@ import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
+import loci.formats.IMappedReader;
 import loci.formats.MetadataTools;
 import loci.formats.meta.MetadataStore;
 
@@ -49,7 +51,7 @@ import loci.formats.meta.MetadataStore;
  *
  * Much of this code was adapted from ImageJ (http://rsb.info.nih.gov/ij).
  */
-public class FitsReader extends FormatReader {
+public class FitsReader extends FormatReader implements IMappedReader {
 
   // -- Constants --
 
@@ -79,7 +81,7 @@ public class FitsReader extends FormatReader {
   {
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
-    in.seek(pixelOffset + no * FormatTools.getPlaneSize(this));
+    in.seek(getPlaneOffset(no));
     readPlane(in, x, y, w, h, buf);
     return buf;
   }
@@ -91,6 +93,37 @@ public class FitsReader extends FormatReader {
     if (!fileOnly) pixelOffset = 0;
   }
 
+  // -- IMappedReader API methods --
+
+  /* @see loci.formats.IMappedReader#isPlaneMappable(int) */
+  @Override
+  public boolean isPlaneMappable(int no) {
+    return isMappable(currentId, getPlaneOffset(no),
+      FormatTools.getPlaneSize(this));
+  }
+
+  /* @see loci.formats.IMappedReader#isBottomUp() */
+  @Override
+  public boolean isBottomUp() {
+    return false;
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no)
+    throws FormatException, IOException
+  {
+    return openPlaneBuffer(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int, int, int, int, int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    return mapPlane(currentId, getPlaneOffset(no), no, x, y, w, h, false);
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
@@ -168,4 +201,11 @@ public class FitsReader extends FormatReader {
     MetadataTools.populatePixels(store, this);
   }
 
+  // -- Helper methods --
+
+  /** Returns the offset to the first byte of the given plane. */
+  private long getPlaneOffset(int no) {
+    return pixelOffset + no * (long) FormatTools.getPlaneSize(this);
+  }
+
 }
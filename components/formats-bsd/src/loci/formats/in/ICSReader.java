@@ -34,6 +34,7 @@ package loci.formats.in;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Hashtable;
@@ -49,6 +50,7 @@ import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
+import loci.formats.IMappedReader;
 import loci.formats.MetadataTools;
 import loci.formats.meta.MetadataStore;
 
@@ -69,7 +71,7 @@ import ome.units.UNITS;
  *
  * @author Melissa Linkert melissa at glencoesoftware.com
  */
-public class ICSReader extends FormatReader {
+public class ICSReader extends FormatReader implements IMappedReader {
 
   // -- Constants --
 
@@ -617,7 +619,7 @@ public class ICSReader extends FormatReader {
     int[] prevCoordinates = getZCTCoords(prevImage);
 
     if (!gzip) {
-      in.seek(offset + no * (long) len);
+      in.seek(getPlaneOffset(no));
     }
     else {
       long toSkip = (no - prevImage - 1) * (long) len;
@@ -758,6 +760,38 @@ public class ICSReader extends FormatReader {
     in.order(isLittleEndian());
   }
 
+  // -- IMappedReader API methods --
+
+  /* @see loci.formats.IMappedReader#isPlaneMappable(int) */
+  @Override
+  public boolean isPlaneMappable(int no) {
+    return isRawPlane() && isMappable(getPixelsFile(), getPlaneOffset(no),
+      FormatTools.getPlaneSize(this));
+  }
+
+  /* @see loci.formats.IMappedReader#isBottomUp() */
+  @Override
+  public boolean isBottomUp() {
+    return invertY;
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no)
+    throws FormatException, IOException
+  {
+    return openPlaneBuffer(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int, int, int, int, int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    String file = isRawPlane() ? getPixelsFile() : null;
+    return mapPlane(file, getPlaneOffset(no), no, x, y, w, h, invertY);
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
@@ -1753,6 +1787,24 @@ public class ICSReader extends FormatReader {
 
   // -- Helper methods --
 
+  /** Returns the offset to the first byte of the given plane. */
+  private long getPlaneOffset(int no) {
+    return offset + no * (long) FormatTools.getPlaneSize(this);
+  }
+
+  /** Returns the file containing pixel data. */
+  private String getPixelsFile() {
+    return versionTwo ? currentIcsId : currentIdsId;
+  }
+
+  /**
+   * Returns true if planes are stored uncompressed with the layout expected
+   * by {@link #readPlane(RandomAccessInputStream, int, int, int, int, byte[])}.
+   */
+  private boolean isRawPlane() {
+    return !gzip && !(!isRGB() && channelLengths.size() == 1 && storedRGB);
+  }
+
   /*
    * String tokenizer for parsing metadata. Splits on any white-space
    * characters. Tabs and spaces are often used interchangeably in real-life ICS
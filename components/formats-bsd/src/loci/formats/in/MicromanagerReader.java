@@ -37,6 +37,8 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
 
 import loci.common.Constants;
@@ -96,6 +98,19 @@ public class MicromanagerReader extends FormatReader {
    */
   private static final String XML = "Acqusition.xml";
 
+  /**
+   * Header values that precede the index map offset in the TIFF header,
+   * and the index map itself, in files written by Micro-Manager.
+   */
+  private static final int INDEX_MAP_OFFSET_HEADER = 54773648;
+  private static final int INDEX_MAP_HEADER = 3453623;
+
+  /** Number of bytes in each index map entry. */
+  private static final int INDEX_MAP_ENTRY_SIZE = 20;
+
+  /** Maximum number of TIFF files kept open for indexed plane reading. */
+  private static final int MAX_OPEN_FILES = 16;
+
   // -- Fields --
 
   /** Helper reader for TIFF files. */
@@ -106,6 +121,9 @@ public class MicromanagerReader extends FormatReader {
 
   private boolean spim = false;
 
+  /** Open TIFF files, in least recently used order. */
+  private transient Map<String, OpenFile> openFiles;
+
   // -- Constructor --
 
   /** Constructs a new Micromanager reader. */
@@ -213,6 +231,9 @@ public class MicromanagerReader extends FormatReader {
       getImageCount(), no);
 
     if (file != null && new Location(file).exists()) {
+      if (openIndexedPlane(file, no, buf, x, y, w, h)) {
+        return buf;
+      }
       tiffReader.setId(file);
       int index = no % tiffReader.getImageCount();
       return tiffReader.openBytes(index, buf, x, y, w, h);
@@ -226,6 +247,12 @@ public class MicromanagerReader extends FormatReader {
   public void close(boolean fileOnly) throws IOException {
     super.close(fileOnly);
     if (tiffReader != null) tiffReader.close(fileOnly);
+    if (openFiles != null) {
+      for (OpenFile file : openFiles.values()) {
+        file.close();
+      }
+      openFiles = null;
+    }
     if (!fileOnly) {
       positions = null;
       start = 0;
@@ -493,6 +520,12 @@ public class MicromanagerReader extends FormatReader {
       }
       try (RandomAccessInputStream in = new RandomAccessInputStream(path)) {
         TiffParser parser = new TiffParser(in);
+        if (!parser.isBigTiff()) {
+          IndexMap indexMap = readIndexMap(in);
+          if (indexMap != null) {
+            p.indexMaps.put(path, indexMap);
+          }
+        }
         int nIFDs = parser.getMainIFDs().size();
         IFD firstIFD = parser.getFirstIFD();
         parser.fillInIFD(firstIFD);
@@ -1141,6 +1174,121 @@ public class MicromanagerReader extends FormatReader {
     }
   }
 
+  /**
+   * Read the index map from the header of a Micro-Manager TIFF file.
+   * The map records the IFD offset of each plane in the file, so that
+   * planes can be read without parsing the complete list of IFDs.
+   *
+   * @return the index map, or null if the file does not have a valid map
+   */
+  private IndexMap readIndexMap(RandomAccessInputStream in)
+    throws IOException
+  {
+    if (in.length() < 16) {
+      return null;
+    }
+    in.seek(8);
+    if (in.readInt() != INDEX_MAP_OFFSET_HEADER) {
+      return null;
+    }
+    long offset = in.readInt() & 0xffffffffL;
+    if (offset < 16 || offset + 8 > in.length()) {
+      return null;
+    }
+    in.seek(offset);
+    if (in.readInt() != INDEX_MAP_HEADER) {
+      return null;
+    }
+    int count = in.readInt();
+    if (count <= 0 ||
+      in.getFilePointer() + (long) count * INDEX_MAP_ENTRY_SIZE > in.length())
+    {
+      return null;
+    }
+    byte[] entries = new byte[count * INDEX_MAP_ENTRY_SIZE];
+    in.readFully(entries);
+
+    boolean little = in.isLittleEndian();
+    IndexMap map = new IndexMap();
+    for (int i=0; i<count; i++) {
+      int off = i * INDEX_MAP_ENTRY_SIZE;
+      int c = DataTools.bytesToInt(entries, off, little);
+      int z = DataTools.bytesToInt(entries, off + 4, little);
+      int t = DataTools.bytesToInt(entries, off + 8, little);
+      long ifd = DataTools.bytesToInt(entries, off + 16, little) & 0xffffffffL;
+      if (ifd == 0) {
+        // plane was not written
+        continue;
+      }
+      if (map.offsets.put(map.getKey(z, c, t), ifd) != null) {
+        // multiple positions are stored in this file
+        return null;
+      }
+    }
+    return map.offsets.size() > 0 ? map : null;
+  }
+
+  /**
+   * Read a plane using the index map of the given file.
+   *
+   * @return true if the plane was read, or false if the file's IFDs
+   *   must be parsed instead
+   */
+  private boolean openIndexedPlane(String file, int no, byte[] buf,
+    int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    Position p = positions.get(getSeries());
+    IndexMap map = p.indexMaps.get(file);
+    if (map == null) {
+      return false;
+    }
+    int[] zct = getZCTCoords(no);
+    Long offset = map.offsets.get(map.getKey(zct[0], zct[1], zct[2]));
+    if (offset == null) {
+      return false;
+    }
+
+    OpenFile open = getOpenFile(file);
+    IFD ifd = open.ifds.get(offset);
+    if (ifd == null) {
+      ifd = open.parser.getIFD(offset);
+      if (ifd == null || ifd.getImageWidth() != getSizeX() ||
+        ifd.getImageLength() != getSizeY() ||
+        ifd.getSamplesPerPixel() != 1 || ifd.getPixelType() != getPixelType())
+      {
+        LOGGER.debug("Ignoring invalid index map in {}", file);
+        p.indexMaps.remove(file);
+        return false;
+      }
+      open.ifds.put(offset, ifd);
+    }
+    open.parser.getSamples(ifd, buf, x, y, w, h);
+    return true;
+  }
+
+  /** Retrieve an open handle for the given file, opening it if needed. */
+  private OpenFile getOpenFile(String file) throws IOException {
+    if (openFiles == null) {
+      openFiles = new LinkedHashMap<String, OpenFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OpenFile> e) {
+          if (size() > MAX_OPEN_FILES) {
+            e.getValue().close();
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+    OpenFile open = openFiles.get(file);
+    if (open == null) {
+      open = new OpenFile(file);
+      openFiles.put(file, open);
+    }
+    return open;
+  }
+
   private String getPrefixMetadataName(String baseName) {
     int dot = baseName.indexOf('.');
     if (dot > 0) {
@@ -1213,6 +1361,8 @@ public class MicromanagerReader extends FormatReader {
     public String baseTiff;
     public Vector<String> tiffs;
     public HashMap<Index, String> fileNameMap = new HashMap<Index, String>();
+    public HashMap<String, IndexMap> indexMaps =
+      new HashMap<String, IndexMap>();
 
     public String metadataFile;
     public String xmlFile;
@@ -1278,4 +1428,32 @@ public class MicromanagerReader extends FormatReader {
     }
   }
 
+  /** IFD offsets of the planes in one TIFF file, keyed by ZCT index. */
+  class IndexMap {
+    public HashMap<Long, Long> offsets = new HashMap<Long, Long>();
+
+    public Long getKey(int z, int c, int t) {
+      return ((long) z << 42) | ((long) c << 21) | t;
+    }
+  }
+
+  /** An open TIFF file and the IFDs that have been read from it. */
+  class OpenFile {
+    public TiffParser parser;
+    public HashMap<Long, IFD> ifds = new HashMap<Long, IFD>();
+
+    public OpenFile(String file) throws IOException {
+      parser = new TiffParser(new RandomAccessInputStream(file));
+    }
+
+    public void close() {
+      try {
+        parser.getStream().close();
+      }
+      catch (IOException e) {
+        LOGGER.debug("Could not close TIFF file", e);
+      }
+    }
+  }
+
 }
@@ -39,17 +39,22 @@ import java.util.List;
 import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
+import loci.formats.ICompressedTileReader;
 import loci.formats.MetadataTools;
+import loci.formats.PlaneIterator;
+import loci.formats.RegionRequest;
 import loci.formats.SubResolutionFormatReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import loci.common.DataTools;
 import loci.common.RandomAccessInputStream;
+import loci.formats.codec.CompressionType;
 import loci.formats.codec.JPEG2000CodecOptions;
 import loci.formats.meta.MetadataStore;
 import loci.formats.tiff.IFD;
 import loci.formats.tiff.IFDList;
+import loci.formats.tiff.OnDemandLongArray;
 import loci.formats.tiff.PhotoInterp;
 import loci.formats.tiff.TiffCompression;
 import loci.formats.tiff.TiffParser;
@@ -60,7 +65,9 @@ import loci.formats.tiff.TiffParser;
  *
  * @author Melissa Linkert melissa at glencoesoftware.com
  */
-public class MinimalTiffReader extends SubResolutionFormatReader {
+public class MinimalTiffReader extends SubResolutionFormatReader
+  implements ICompressedTileReader
+{
 
   // -- Constants --
 
@@ -362,6 +369,41 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
     return buf;
   }
 
+  /* @see loci.formats.IFormatReader#openPlanes() */
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    FormatTools.assertId(currentId, true, 1);
+    if (tiffParser == null) {
+      initTiffParser();
+    }
+    long[] offsets = new long[getImageCount()];
+    for (int i=0; i<offsets.length; i++) {
+      IFD ifd = getCompressedTileIFD(i);
+      if (ifd == null) {
+        return super.openPlanes();
+      }
+      OnDemandLongArray stripOffsets = ifd.getOnDemandStripOffsets();
+      if (stripOffsets != null) {
+        stripOffsets.setStream(tiffParser.getStream());
+        offsets[i] = stripOffsets.get(0);
+      }
+      else {
+        long[] values = ifd.getStripOffsets();
+        offsets[i] = values == null || values.length == 0 ? 0 : values[0];
+      }
+    }
+    return new PlaneIterator(this, PlaneIterator.getFileOrder(offsets), true);
+  }
+
+  /* @see loci.formats.IFormatReader#openRegions(List) */
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    FormatTools.assertId(currentId, true, 1);
+    FormatTools.openRegions(this, requests, FormatTools.getPlaneOrder(this));
+  }
+
   /* @see loci.formats.IFormatReader#reopenFile() */
   @Override
   public void reopenFile() throws IOException {
@@ -437,6 +479,73 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
     return super.getOptimalTileHeight();
   }
 
+  // -- ICompressedTileReader API methods --
+
+  /* @see loci.formats.ICompressedTileReader#getTileCodec(int) */
+  @Override
+  public String getTileCodec(int no) throws FormatException, IOException {
+    FormatTools.assertId(currentId, true, 1);
+    IFD ifd = getCompressedTileIFD(no);
+    if (ifd == null || !ifd.isTiled()) {
+      return null;
+    }
+    if (tiffParser == null) {
+      initTiffParser();
+    }
+    int bytesPerPixel = FormatTools.getBytesPerPixel(getPixelType());
+    if (ifd.getBitsPerSample()[0] != bytesPerPixel * 8 ||
+      ifd.getSamplesPerPixel() != getRGBChannelCount() ||
+      !tiffParser.isCompressedTileCopyable(ifd))
+    {
+      return null;
+    }
+    switch (ifd.getCompression()) {
+      case JPEG:
+        return CompressionType.JPEG.getCompression();
+      case LZW:
+        return CompressionType.LZW.getCompression();
+      case DEFLATE:
+      case PROPRIETARY_DEFLATE:
+        return CompressionType.ZLIB.getCompression();
+      case JPEG_2000:
+        return CompressionType.J2K.getCompression();
+      case JPEG_2000_LOSSY:
+        return CompressionType.J2K_LOSSY.getCompression();
+      default:
+        return null;
+    }
+  }
+
+  /* @see loci.formats.ICompressedTileReader#getCompressedTileWidth(int) */
+  @Override
+  public int getCompressedTileWidth(int no)
+    throws FormatException, IOException
+  {
+    return (int) getCopyableIFD(no).getTileWidth();
+  }
+
+  /* @see loci.formats.ICompressedTileReader#getCompressedTileHeight(int) */
+  @Override
+  public int getCompressedTileHeight(int no)
+    throws FormatException, IOException
+  {
+    return (int) getCopyableIFD(no).getTileLength();
+  }
+
+  /* @see loci.formats.ICompressedTileReader#openCompressedBytes(int, int, int) */
+  @Override
+  public byte[] openCompressedBytes(int no, int x, int y)
+    throws FormatException, IOException
+  {
+    IFD ifd = getCopyableIFD(no);
+    if (x < 0 || x >= ifd.getTilesPerRow() ||
+      y < 0 || y >= ifd.getTilesPerColumn())
+    {
+      throw new FormatException("Invalid tile (" + x + ", " + y + ")");
+    }
+    return tiffParser.getCompressedTile(ifd, y, x);
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
@@ -689,6 +798,50 @@ public class MinimalTiffReader extends SubResolutionFormatReader {
     tiffParser.setCodecOptions(j2kCodecOptions);
   }
 
+  /**
+   * Returns true if stored tiles can be returned as-is by
+   * {@link #openCompressedBytes(int, int, int)} and planes delivered in
+   * file order by {@link #openPlanes()}.  Subclasses that override
+   * {@link #openBytes(int, byte[], int, int, int, int)} must return false,
+   * as the stored tiles will not match the pixels that they return.
+   */
+  protected boolean canReturnCompressedTiles() {
+    return true;
+  }
+
+  /**
+   * Returns the IFD from which the given plane of the current series and
+   * resolution is read, or null if stored tiles cannot be copied directly.
+   * This is also used to deliver planes in file order from
+   * {@link #openPlanes()}.
+   */
+  protected IFD getCompressedTileIFD(int no)
+    throws FormatException, IOException
+  {
+    FormatTools.checkPlaneNumber(this, no);
+    if (!canReturnCompressedTiles()) {
+      return null;
+    }
+    IFD firstIFD = ifds.get(0);
+    if ((firstIFD.getCompression() == TiffCompression.JPEG_2000
+        || firstIFD.getCompression() == TiffCompression.JPEG_2000_LOSSY)
+        && resolutionLevels != null) {
+      return null;
+    }
+    return seriesToIFD ? ifds.get(getSeries()) : ifds.get(no);
+  }
+
+  /**
+   * Returns the IFD for the given plane, throwing an exception if its
+   * tiles cannot be copied directly.
+   */
+  private IFD getCopyableIFD(int no) throws FormatException, IOException {
+    if (getTileCodec(no) == null) {
+      throw new FormatException(
+        "Compressed tiles are not available for plane #" + no);
+    }
+    return getCompressedTileIFD(no);
+  }
 
   /** Reinitialize the underlying TiffParser. */
   protected void initTiffParser() {
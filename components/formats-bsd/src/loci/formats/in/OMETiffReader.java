@@ -59,6 +59,8 @@ import loci.formats.Modulo;
 import loci.formats.SubResolutionFormatReader;
 import loci.formats.meta.MetadataStore;
 import loci.formats.ome.OMEXMLMetadata;
+import loci.formats.ome.OMEXMLStreamFilter;
+import loci.formats.ome.TiffDataIndex;
 import loci.formats.services.OMEXMLService;
 import loci.formats.services.OMEXMLServiceImpl;
 import loci.formats.tiff.IFD;
@@ -101,6 +103,9 @@ public class OMETiffReader extends SubResolutionFormatReader {
   private transient OMEXMLMetadata meta;
   private String metaFile;
 
+  /** TiffData elements from {@link #meta}, which may omit them. */
+  private transient TiffDataIndex tiffData;
+
   private String metadataFile;
 
   // -- Constructor --
@@ -139,7 +144,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
     if (service == null) setupService();
     OMEXMLMetadata meta;
     try {
-      meta = service.createOMEXMLMetadata(xml);
+      meta = parseOMEXML(xml, false);
       metaFile = new Location(id).getAbsolutePath();
     }
     catch (ServiceException se) {
@@ -181,7 +186,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
 
       try {
         String xml = readMetadataFile();
-        service.createOMEXMLMetadata(xml);
+        parseOMEXML(xml, false);
       } catch (ServiceException se) {
         LOGGER.debug("OME-XML parsing failed", se);
         return false;
@@ -229,7 +234,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
 
     try {
       if (service == null) setupService();
-      meta = service.createOMEXMLMetadata(comment);
+      meta = parseOMEXML(comment, true);
 
       try {
         metadataFile = meta.getBinaryOnlyMetadataFile();
@@ -472,11 +477,14 @@ public class OMETiffReader extends SubResolutionFormatReader {
     if (service == null) setupService();
     try {
       if (meta == null || !metaFile.equals(currentId)) {
-        meta = service.createOMEXMLMetadata(xml);
+        meta = parseOMEXML(xml, true);
         metaFile = currentId;
       }
+      else if (tiffData == null) {
+        tiffData = TiffDataIndex.fromMetadata(meta);
+      }
       if (companion) {
-        String firstTIFF = meta.getUUIDFileName(0, 0);
+        String firstTIFF = tiffData.getUUIDFileName(0, 0);
         firstIFD = getFirstIFD(new Location(dir, firstTIFF).getAbsolutePath());
         metadataFile = fileName;
       }
@@ -503,7 +511,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
         xml = readMetadataFile();
 
         try {
-          meta = service.createOMEXMLMetadata(xml);
+          meta = parseOMEXML(xml, true);
         }
         catch (ServiceException se) {
           throw new FormatException(se);
@@ -572,19 +580,11 @@ public class OMETiffReader extends SubResolutionFormatReader {
         OMETiffCoreMetadata m = (OMETiffCoreMetadata) (i < core.size() ? core.get(i, 0) : new OMETiffCoreMetadata(core.get(0, 0)));
         m.dimensionOrder = order;
 
-        info[i] = new OMETiffPlane[meta.getTiffDataCount(i)];
+        info[i] = new OMETiffPlane[tiffData.getTiffDataCount(i)];
         int next = 0;
-        for (int td=0; td<meta.getTiffDataCount(i); td++) {
-          String uuid = null;
-          try {
-            uuid = meta.getUUIDValue(i, td);
-          }
-          catch (NullPointerException e) { }
-          String filename = null;
-          try {
-            filename = meta.getUUIDFileName(i, td);
-          }
-          catch (NullPointerException e) { }
+        for (int td=0; td<tiffData.getTiffDataCount(i); td++) {
+          String uuid = tiffData.getUUID(i, td);
+          String filename = tiffData.getUUIDFileName(i, td);
           if ((uuid == null || !uuid.equals(currentUUID)) &&
             (filename == null || !currentId.endsWith(filename)))
           {
@@ -595,28 +595,25 @@ public class OMETiffReader extends SubResolutionFormatReader {
           if (i > maxSeries) {
             maxSeries = i;
           }
-          NonNegativeInteger ifd = meta.getTiffDataIFD(i, td);
-          NonNegativeInteger count = meta.getTiffDataPlaneCount(i, td);
-          NonNegativeInteger firstZ = meta.getTiffDataFirstZ(i, td);
-          NonNegativeInteger firstC = meta.getTiffDataFirstC(i, td);
-          NonNegativeInteger firstT = meta.getTiffDataFirstT(i, td);
-
-          int realCount = count == null ? 1 : count.getValue();
-          if (ifd == null && count == null) {
+          int ifd = tiffData.getIFD(i, td);
+          int count = tiffData.getPlaneCount(i, td);
+
+          int realCount = count < 0 ? 1 : count;
+          if (ifd < 0 && count < 0) {
             realCount = ifdCount;
           }
           for (int q=0; q<realCount; q++) {
             OMETiffPlane p = new OMETiffPlane();
             p.id = currentId;
             p.ifd = q;
-            if (ifd != null) {
-              p.ifd += ifd.getValue();
+            if (ifd >= 0) {
+              p.ifd += ifd;
             }
             p.reader = reader;
             info[i][next++] = p;
-            int z = firstZ == null ? 0 : firstZ.getValue();
-            int c = firstC == null ? 0 : firstC.getValue();
-            int t = firstT == null ? 0 : firstT.getValue();
+            int z = Math.max(0, tiffData.getFirstZ(i, td));
+            int c = Math.max(0, tiffData.getFirstC(i, td));
+            int t = Math.max(0, tiffData.getFirstT(i, td));
 
             if (q > 0) {
               int index = FormatTools.getIndex(order,
@@ -696,6 +693,14 @@ public class OMETiffReader extends SubResolutionFormatReader {
       meta.setRoot(root);
 
       service.convertMetadata(meta, metadataStore);
+      if (tiffData.isDetached()) {
+        int storeImage = 0;
+        for (int i=0; i<tiffData.getImageCount(); i++) {
+          if (!imagesToRemove.contains(i)) {
+            tiffData.populate(metadataStore, i, storeImage++);
+          }
+        }
+      }
       MetadataTools.populatePixels(metadataStore, this);
 
       addSubResolutions();
@@ -704,6 +709,11 @@ public class OMETiffReader extends SubResolutionFormatReader {
     }
 
     service.convertMetadata(meta, metadataStore);
+    if (tiffData.isDetached()) {
+      for (int i=0; i<tiffData.getImageCount(); i++) {
+        tiffData.populate(metadataStore, i, i);
+      }
+    }
 
     // determine series count from Image and Pixels elements
     int seriesCount = meta.getImageCount();
@@ -717,13 +727,9 @@ public class OMETiffReader extends SubResolutionFormatReader {
     Hashtable<String, String> files = new Hashtable<>();
     boolean needSearch = false;
     for (int i=0; i<seriesCount; i++) {
-      int tiffDataCount = meta.getTiffDataCount(i);
+      int tiffDataCount = tiffData.getTiffDataCount(i);
       for (int td=0; td<tiffDataCount; td++) {
-        String uuid = null;
-        try {
-          uuid = meta.getUUIDValue(i, td);
-        }
-        catch (NullPointerException e) { }
+        String uuid = tiffData.getUUID(i, td);
         String filename = null;
         if (uuid == null) {
           // no UUID means that TiffData element refers to this file
@@ -731,7 +737,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
           filename = id;
         }
         else {
-          filename = meta.getUUIDFileName(i, td);
+          filename = tiffData.getUUIDFileName(i, td);
           if (!new Location(dir, filename).exists()) filename = null;
           if (filename == null) {
             if (uuid.equals(currentUUID) || currentUUID == null) {
@@ -830,7 +836,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
       OMETiffPlane[] planes = new OMETiffPlane[num];
       for (int no=0; no<num; no++) planes[no] = new OMETiffPlane();
 
-      int tiffDataCount = meta.getTiffDataCount(i);
+      int tiffDataCount = tiffData.getTiffDataCount(i);
       Boolean zOneIndexed = null;
       Boolean cOneIndexed = null;
       Boolean tOneIndexed = null;
@@ -838,12 +844,9 @@ public class OMETiffReader extends SubResolutionFormatReader {
       // pre-scan TiffData indices to see if any of them are indexed from 1
 
       for (int td=0; td<tiffDataCount; td++) {
-        NonNegativeInteger firstC = meta.getTiffDataFirstC(i, td);
-        NonNegativeInteger firstT = meta.getTiffDataFirstT(i, td);
-        NonNegativeInteger firstZ = meta.getTiffDataFirstZ(i, td);
-        int c = firstC == null ? 0 : firstC.getValue();
-        int t = firstT == null ? 0 : firstT.getValue();
-        int z = firstZ == null ? 0 : firstZ.getValue();
+        int c = Math.max(0, tiffData.getFirstC(i, td));
+        int t = Math.max(0, tiffData.getFirstT(i, td));
+        int z = Math.max(0, tiffData.getFirstZ(i, td));
 
         if (c >= effSizeC && cOneIndexed == null) {
           cOneIndexed = true;
@@ -868,27 +871,13 @@ public class OMETiffReader extends SubResolutionFormatReader {
       for (int td=0; td<tiffDataCount; td++) {
         LOGGER.debug("    TiffData[{}] {", td);
         // extract TiffData parameters
-        String filename = null;
-        String uuid = null;
-        try {
-          filename = meta.getUUIDFileName(i, td);
-        } catch (NullPointerException e) {
-          LOGGER.debug("Ignoring null UUID object when retrieving filename.");
-        }
-        try {
-          uuid = meta.getUUIDValue(i, td);
-        } catch (NullPointerException e) {
-          LOGGER.debug("Ignoring null UUID object when retrieving value.");
-        }
-        NonNegativeInteger tdIFD = meta.getTiffDataIFD(i, td);
-        int ifd = tdIFD == null ? 0 : tdIFD.getValue();
-        NonNegativeInteger numPlanes = meta.getTiffDataPlaneCount(i, td);
-        NonNegativeInteger firstC = meta.getTiffDataFirstC(i, td);
-        NonNegativeInteger firstT = meta.getTiffDataFirstT(i, td);
-        NonNegativeInteger firstZ = meta.getTiffDataFirstZ(i, td);
-        int c = firstC == null ? 0 : firstC.getValue();
-        int t = firstT == null ? 0 : firstT.getValue();
-        int z = firstZ == null ? 0 : firstZ.getValue();
+        String filename = tiffData.getUUIDFileName(i, td);
+        String uuid = tiffData.getUUID(i, td);
+        int ifd = Math.max(0, tiffData.getIFD(i, td));
+        int numPlanes = tiffData.getPlaneCount(i, td);
+        int c = Math.max(0, tiffData.getFirstC(i, td));
+        int t = Math.max(0, tiffData.getFirstT(i, td));
+        int z = Math.max(0, tiffData.getFirstZ(i, td));
 
         // NB: some writers index FirstC, FirstZ and FirstT from 1
         if (cOneIndexed != null && cOneIndexed) c--;
@@ -903,7 +892,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
 
         int index = FormatTools.getIndex(order,
           sizeZ, effSizeC, sizeT, num, z, c, t);
-        int count = numPlanes == null ? 1 : numPlanes.getValue();
+        int count = numPlanes < 0 ? 1 : numPlanes;
         if (count == 0) {
           core.set(s, 0, null);
           break;
@@ -951,7 +940,7 @@ public class OMETiffReader extends SubResolutionFormatReader {
           LOGGER.trace("      Plane[{}]: file={}, IFD={}",
             new Object[] {no, planes[no].id, planes[no].ifd});
         }
-        if (numPlanes == null) {
+        if (numPlanes < 0) {
           // unknown number of planes; fill down
           for (int no=index+1; no<num; no++) {
             if (planes[no].certain) break;
@@ -1091,14 +1080,13 @@ public class OMETiffReader extends SubResolutionFormatReader {
         // hackish workaround for files exported by OMERO that have an
         // incorrect dimension order
         String uuidFileName = "";
-        try {
-          if (meta.getTiffDataCount(i) > 0) {
-            uuidFileName = meta.getUUIDFileName(i, 0);
-          }
+        if (tiffData.getTiffDataCount(i) > 0 &&
+          tiffData.getUUIDFileName(i, 0) != null)
+        {
+          uuidFileName = tiffData.getUUIDFileName(i, 0);
         }
-        catch (NullPointerException e) { }
         if (meta.getChannelCount(i) > 0 && meta.getChannelName(i, 0) == null &&
-          meta.getTiffDataCount(i) > 0 &&
+          tiffData.getTiffDataCount(i) > 0 &&
           uuidFileName.indexOf("__omero_export") != -1)
         {
           m.dimensionOrder = "XYZCT";
@@ -1291,6 +1279,27 @@ public class OMETiffReader extends SubResolutionFormatReader {
      return name;
   }
 
+  /**
+   * Parses OME-XML into metadata, streaming any TiffData elements into a
+   * {@link TiffDataIndex} instead of the DOM.  ROIs and original metadata
+   * are not parsed if the metadata level is MINIMUM.
+   *
+   * @param keepIndex true if the TiffData should be stored in
+   *   {@link #tiffData}
+   */
+  private OMEXMLMetadata parseOMEXML(String xml, boolean keepIndex)
+    throws ServiceException
+  {
+    OMEXMLStreamFilter filter = new OMEXMLStreamFilter();
+    filter.setSkipAnnotations(
+      getMetadataOptions().getMetadataLevel() == MetadataLevel.MINIMUM);
+    OMEXMLMetadata omexml = service.createOMEXMLMetadata(filter.filter(xml));
+    if (keepIndex) {
+      tiffData = filter.getTiffDataIndex(omexml);
+    }
+    return omexml;
+  }
+
   private void setupService() throws FormatException {
     try {
       ServiceFactory factory = new ServiceFactory();
@@ -51,6 +51,7 @@ import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
 import loci.formats.MissingLibraryException;
 import loci.formats.codec.CodecOptions;
+import loci.formats.codec.CodecPool;
 import loci.formats.codec.JPEG2000Codec;
 import loci.formats.codec.JPEGCodec;
 import loci.formats.codec.ZlibCodec;
@@ -170,6 +171,7 @@ public class OMEXMLReader extends FormatReader {
     }
 
     // TODO: Create a method uncompress to handle all compression methods
+    boolean pooled = false;
     if (compress.equals("bzip2")) {
       byte[] tempPixels = pixels;
       pixels = new byte[tempPixels.length - 2];
@@ -186,13 +188,18 @@ public class OMEXMLReader extends FormatReader {
       bzip = null;
     }
     else if (compress.equals("zlib")) {
-      pixels = new ZlibCodec().decompress(pixels, options);
+      byte[] decompressed = CodecPool.acquireBuffer(planeSize);
+      CodecPool.getCodec(ZlibCodec.class).decompress(
+        pixels, decompressed, options);
+      pixels = decompressed;
+      pooled = true;
     }
     else if (compress.equals("J2K")) {
-      pixels = new JPEG2000Codec().decompress(pixels, options);
+      pixels =
+        CodecPool.getCodec(JPEG2000Codec.class).decompress(pixels, options);
     }
     else if (compress.equals("JPEG")) {
-      pixels = new JPEGCodec().decompress(pixels, options);
+      pixels = CodecPool.getCodec(JPEGCodec.class).decompress(pixels, options);
     }
 
     for (int row=0; row<h; row++) {
@@ -200,6 +207,9 @@ public class OMEXMLReader extends FormatReader {
       System.arraycopy(pixels, off, buf, row * w * depth, w * depth);
     }
 
+    if (pooled) {
+      CodecPool.releaseBuffer(pixels);
+    }
     pixels = null;
 
     return buf;
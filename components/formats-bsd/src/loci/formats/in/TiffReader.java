@@ -120,6 +120,14 @@ public class TiffReader extends BaseTiffReader {
     }
   }
 
+  // -- Internal MinimalTiffReader API methods --
+
+  /* @see MinimalTiffReader#canReturnCompressedTiles() */
+  @Override
+  protected boolean canReturnCompressedTiles() {
+    return true;
+  }
+
   // -- Internal BaseTiffReader API methods --
 
   /* @see BaseTiffReader#initStandardMetadata() */
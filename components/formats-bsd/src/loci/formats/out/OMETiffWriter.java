@@ -35,10 +35,18 @@ package loci.formats.out;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import ome.xml.meta.OMEXMLMetadataRoot;
 import ome.xml.model.primitives.NonNegativeInteger;
@@ -58,6 +66,7 @@ import loci.formats.meta.MetadataRetrieve;
 import loci.formats.ome.OMEXMLMetadata;
 import loci.formats.services.OMEXMLService;
 import loci.formats.tiff.IFD;
+import loci.formats.tiff.TiffParser;
 import loci.formats.tiff.TiffSaver;
 import loci.formats.in.MetadataOptions;
 import loci.formats.in.DynamicMetadataOptions;
@@ -78,6 +87,18 @@ public class OMETiffWriter extends TiffWriter {
 
   public static final String COMPANION_KEY = "ometiff.companion";
 
+  /**
+   * Number of bytes to reserve for the OME-XML comment in the first IFD
+   * of each file.  If the final OME-XML fits, it is written in place
+   * instead of being appended to the file when the writer is closed.
+   */
+  public static final String COMMENT_RESERVE_KEY = "ometiff.comment_reserve";
+  public static final int COMMENT_RESERVE_DEFAULT = 0;
+
+  /** Maximum number of files whose comments are updated concurrently. */
+  private static final int COMMENT_THREADS =
+    Runtime.getRuntime().availableProcessors();
+
   // -- Fields --
 
   private String[][] imageLocations;
@@ -87,6 +108,12 @@ public class OMETiffWriter extends TiffWriter {
 
   private Map<String, String> uuids = new HashMap<String, String>();
 
+  /**
+   * Series, plane and resolution of the first IFD in each file for which
+   * comment space was reserved.
+   */
+  private Map<String, int[]> reservedComments = new HashMap<String, int[]>();
+
   // -- Constructor --
 
   public OMETiffWriter() {
@@ -112,39 +139,38 @@ public class OMETiffWriter extends TiffWriter {
           populateImage(omeMeta, series);
         }
 
+        // the OME-XML for each file differs only in the root UUID,
+        // so the metadata is serialized once and the UUID substituted
+        String placeholder = "urn:uuid:" + UUID.randomUUID().toString();
+        String xml = getOMEXML(placeholder);
+
         String companion = getCompanion();
-        String companionUUID = null;
         if (null != companion) {
-          String companionXML = getOMEXML(companion);
+          String companionUUID = "urn:uuid:" + getUUID(
+              new Location(companion).getName());
+          String companionXML = replaceUUID(xml, placeholder, companionUUID);
           PrintWriter out = new PrintWriter(companion, Constants.ENCODING);
           out.println(XMLTools.indentXML(companionXML, true));
           out.close();
-          companionUUID = "urn:uuid:" + getUUID(
-              new Location(companion).getName());
+          xml = getBinaryOnlyOMEXML(placeholder, companion, companionUUID);
+        }
+        xml = insertWarningComment(xml);
+        if (getMetadataOptions().isValidate()) {
+          service.validateOMEXML(xml);
         }
 
-        List<String> files = new ArrayList<String>();
+        Map<String, String> fileUUIDs = new LinkedHashMap<String, String>();
         for (String[] s : imageLocations) {
           for (String f : s) {
-            if (!files.contains(f) && f != null) {
-              files.add(f);
-
-              String xml = null;
-              if (null != companion) {
-                xml = getBinaryOnlyOMEXML(f, companion, companionUUID);
-              } else {
-                xml = getOMEXML(f);
-              }
-              xml = insertWarningComment(xml);
-              if (getMetadataOptions().isValidate()) {
-                service.validateOMEXML(xml);
-              }
-
-              // write OME-XML to the first IFD's comment
-              saveComment(f, xml);
+            if (f != null && !fileUUIDs.containsKey(f)) {
+              fileUUIDs.put(f,
+                "urn:uuid:" + getUUID(new Location(f).getName()));
             }
           }
         }
+
+        // write OME-XML to each file's first IFD comment
+        saveComments(fileUUIDs, xml, placeholder);
       }
     }
     catch (DependencyException de) {
@@ -188,6 +214,7 @@ public class OMETiffWriter extends TiffWriter {
         omeMeta = null;
         service = null;
         ifdCounts.clear();
+        reservedComments.clear();
       }
       else {
         for(String k : ifdCounts.keySet())
@@ -216,17 +243,60 @@ public class OMETiffWriter extends TiffWriter {
     throws FormatException, IOException
   {
     super.saveBytes(no, buf, ifd, x, y, w, h);
+    recordImageLocation(no);
+  }
 
-    int index = no;
-    while (imageLocations[series][index] != null) {
-      if (index < imageLocations[series].length - 1) {
-        index++;
-      }
-      else {
-        break;
-      }
+  // -- ICompressedTileWriter API methods --
+
+  /**
+   * @see loci.formats.ICompressedTileWriter#saveCompressedBytes(int, byte[],
+   *   int, int, int, int)
+   */
+  @Override
+  public void saveCompressedBytes(int no, byte[] buf, int x, int y, int w,
+    int h)
+    throws FormatException, IOException
+  {
+    saveCompressedBytes(no, buf, null, x, y, w, h);
+  }
+
+  // -- TiffWriter API methods --
+
+  /**
+   * @see TiffWriter#saveCompressedBytes(int, byte[], IFD, int, int, int, int)
+   */
+  @Override
+  public void saveCompressedBytes(int no, byte[] buf, IFD ifd,
+    int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    super.saveCompressedBytes(no, buf, ifd, x, y, w, h);
+    recordImageLocation(no);
+  }
+
+  /**
+   * @see TiffWriter#prepareToWriteImage(int, byte[], IFD, int, int, int, int)
+   */
+  @Override
+  protected int prepareToWriteImage(
+      int no, byte[] buf, IFD ifd, int x, int y, int w, int h)
+    throws IOException, FormatException
+  {
+    int reserve = getReservedCommentLength();
+    int[] plane = new int[] {getSeries(), no, getResolution()};
+    if (reserve > 0 && out.length() == 0) {
+      reservedComments.put(currentId, plane);
     }
-    imageLocations[series][index] = currentId;
+    int index = super.prepareToWriteImage(no, buf, ifd, x, y, w, h);
+    if (reserve > 0 &&
+      Arrays.equals(plane, reservedComments.get(currentId)))
+    {
+      // placeholder that is overwritten in place by saveComment
+      char[] padding = new char[reserve - 1];
+      Arrays.fill(padding, ' ');
+      ifd.putIFDValue(IFD.IMAGE_DESCRIPTION, new String(padding));
+    }
+    return index;
   }
 
   // -- FormatWriter API methods --
@@ -256,8 +326,35 @@ public class OMETiffWriter extends TiffWriter {
     return null;
   }
 
+  /**
+   * @return the number of bytes to reserve for the OME-XML comment
+   * @see #COMMENT_RESERVE_KEY
+   */
+  public int getReservedCommentLength() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return Math.max(0, ((DynamicMetadataOptions) options).getInteger(
+        COMMENT_RESERVE_KEY, COMMENT_RESERVE_DEFAULT));
+    }
+    return COMMENT_RESERVE_DEFAULT;
+  }
+
   // -- Helper methods --
 
+  /** Records that the given plane was written to the current file. */
+  private void recordImageLocation(int no) {
+    int index = no;
+    while (imageLocations[series][index] != null) {
+      if (index < imageLocations[series].length - 1) {
+        index++;
+      }
+      else {
+        break;
+      }
+    }
+    imageLocations[series][index] = currentId;
+  }
+
   /** Gets the UUID corresponding to the given filename. */
   private String getUUID(String filename) {
     String uuid = uuids.get(filename);
@@ -289,9 +386,21 @@ public class OMETiffWriter extends TiffWriter {
     return prefix + WARNING_COMMENT + suffix;
   }
 
-  private String getOMEXML(String file) throws FormatException, IOException {
-    // generate UUID and add to OME element
-    String uuid = "urn:uuid:" + getUUID(new Location(file).getName());
+  /** Replaces the root UUID in OME-XML generated by this writer. */
+  private String replaceUUID(String xml, String placeholder, String uuid) {
+    int index = xml.indexOf(placeholder);
+    if (index < 0) {
+      return xml;
+    }
+    StringBuilder sb =
+      new StringBuilder(xml.length() + uuid.length() - placeholder.length());
+    sb.append(xml, 0, index);
+    sb.append(uuid);
+    sb.append(xml, index + placeholder.length(), xml.length());
+    return sb.toString();
+  }
+
+  private String getOMEXML(String uuid) throws FormatException, IOException {
     omeMeta.setUUID(uuid);
 
     OMEXMLMetadataRoot root = (OMEXMLMetadataRoot) omeMeta.getRoot();
@@ -308,12 +417,11 @@ public class OMETiffWriter extends TiffWriter {
   }
 
   private String getBinaryOnlyOMEXML(
-      String file, String companion, String companionUUID) throws
+      String uuid, String companion, String companionUUID) throws
         FormatException, IOException, DependencyException, ServiceException {
     ServiceFactory factory = new ServiceFactory();
     OMEXMLService service = factory.getInstance(OMEXMLService.class);
     OMEXMLMetadata meta = service.createOMEXMLMetadata();
-    String uuid = "urn:uuid:" + getUUID(new Location(file).getName());
     meta.setUUID(uuid);
     meta.setBinaryOnlyMetadataFile(new Location(companion).getName());
     meta.setBinaryOnlyUUID(companionUUID);
@@ -322,16 +430,90 @@ public class OMETiffWriter extends TiffWriter {
     return service.getOMEXML(meta);
   }
 
-  private void saveComment(String file, String xml) throws IOException {
+  /**
+   * Writes the given OME-XML template to the first IFD comment of each file,
+   * using multiple threads if there are several files.
+   *
+   * @param fileUUIDs map of file path to root UUID
+   */
+  private void saveComments(Map<String, String> fileUUIDs, final String xml,
+    final String placeholder)
+    throws IOException
+  {
     if (out != null) out.close();
-    out = new RandomAccessOutputStream(file);
+
+    if (fileUUIDs.size() <= 1 || COMMENT_THREADS <= 1) {
+      for (Map.Entry<String, String> file : fileUUIDs.entrySet()) {
+        saveComment(file.getKey(),
+          replaceUUID(xml, placeholder, file.getValue()));
+      }
+      return;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    for (final Map.Entry<String, String> file : fileUUIDs.entrySet()) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          saveComment(file.getKey(),
+            replaceUUID(xml, placeholder, file.getValue()));
+          return null;
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.min(COMMENT_THREADS, tasks.size()), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "OMETiffWriter-Comment");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    try {
+      for (Future<Void> result : executor.invokeAll(tasks)) {
+        result.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing OME-XML comments", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause.getMessage(), cause);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  private void saveComment(String file, String xml) throws IOException {
+    RandomAccessOutputStream out = new RandomAccessOutputStream(file);
     RandomAccessInputStream in = null;
     try {
       TiffSaver saver = new TiffSaver(out, file);
       saver.setBigTiff(isBigTiff);
       in = new RandomAccessInputStream(file);
       saver.overwriteLastIFDOffset(in);
-      saver.overwriteComment(in, xml);
+      if (reservedComments.containsKey(file)) {
+        // the first IFD is known to immediately follow the header,
+        // so there is no need to walk the IFD chain again
+        int reserve = getReservedCommentLength();
+        if (xml.getBytes(Constants.ENCODING).length >= reserve) {
+          LOGGER.warn("OME-XML for {} exceeds the {} bytes reserved; " +
+            "appending to the end of the file", file, reserve);
+        }
+        long firstIFD = new TiffParser(in).getFirstOffset();
+        saver.overwriteIFDValue(in, firstIFD, IFD.IMAGE_DESCRIPTION, xml);
+      }
+      else {
+        saver.overwriteComment(in, xml);
+      }
     }
     catch (FormatException exc) {
       IOException io = new IOException("Unable to append OME-XML comment");
@@ -339,7 +521,7 @@ public class OMETiffWriter extends TiffWriter {
       throw io;
     }
     finally {
-      if (out != null) out.close();
+      out.close();
       if (in != null) in.close();
     }
   }
@@ -74,19 +74,7 @@ public class PyramidOMETiffWriter extends OMETiffWriter {
   public void saveBytes(int no, byte[] buf, IFD ifd, int x, int y, int w, int h)
     throws FormatException, IOException
   {
-    if (ifd == null) {
-      ifd = new IFD();
-    }
-    if (getResolution() > 0) {
-      ifd.put(IFD.NEW_SUBFILE_TYPE, 1);
-    }
-    else {
-      if (!ifd.containsKey(IFD.SUB_IFD)) {
-        ifd.put(IFD.SUB_IFD, (long) 0);
-      }
-    }
-
-    super.saveBytes(no, buf, ifd, x, y, w, h);
+    super.saveBytes(no, buf, makeResolutionIFD(ifd), x, y, w, h);
   }
 
   @Override
@@ -157,4 +145,35 @@ public class PyramidOMETiffWriter extends OMETiffWriter {
     }
   }
 
+  // -- TiffWriter API methods --
+
+  @Override
+  public void saveCompressedBytes(int no, byte[] buf, IFD ifd,
+    int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    super.saveCompressedBytes(no, buf, makeResolutionIFD(ifd), x, y, w, h);
+  }
+
+  // -- Helper methods --
+
+  /**
+   * Marks the given IFD as either a full resolution image with sub-IFDs,
+   * or as a reduced resolution image, depending upon the current resolution.
+   */
+  private IFD makeResolutionIFD(IFD ifd) {
+    if (ifd == null) {
+      ifd = new IFD();
+    }
+    if (getResolution() > 0) {
+      ifd.put(IFD.NEW_SUBFILE_TYPE, 1);
+    }
+    else {
+      if (!ifd.containsKey(IFD.SUB_IFD)) {
+        ifd.put(IFD.SUB_IFD, (long) 0);
+      }
+    }
+    return ifd;
+  }
+
 }
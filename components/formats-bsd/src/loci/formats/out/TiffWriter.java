@@ -38,6 +38,7 @@ import loci.common.Region;
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
 import loci.formats.FormatWriter;
+import loci.formats.ICompressedTileWriter;
 import loci.formats.ImageTools;
 import loci.formats.codec.CompressionType;
 import loci.formats.gui.AWTImageTools;
@@ -53,7 +54,7 @@ import ome.units.UNITS;
 /**
  * TiffWriter is the file format writer for TIFF files.
  */
-public class TiffWriter extends FormatWriter {
+public class TiffWriter extends FormatWriter implements ICompressedTileWriter {
 
   // -- Constants --
 
@@ -290,6 +291,64 @@ public class TiffWriter extends FormatWriter {
     }
   }
 
+  /**
+   * Saves a tile that has already been compressed to the specified series in
+   * the current file.  The tile size is taken from the given IFD if it
+   * defines one, and from {@link #getTileSizeX()} and
+   * {@link #getTileSizeY()} otherwise.
+   *
+   * @see loci.formats.ICompressedTileWriter#saveCompressedBytes(int, byte[],
+   *   int, int, int, int)
+   */
+  public void saveCompressedBytes(int no, byte[] buf, IFD ifd,
+    int x, int y, int w, int h)
+    throws IOException, FormatException
+  {
+    if (ifd == null) ifd = new IFD();
+    if (!ifd.containsKey(IFD.TILE_WIDTH) || !ifd.containsKey(IFD.TILE_LENGTH))
+    {
+      int currentTileSizeX = getTileSizeX();
+      int currentTileSizeY = getTileSizeY();
+      if (currentTileSizeX <= 0 || currentTileSizeY <= 0) {
+        throw new FormatException(
+          "Tiling must be enabled to save compressed tiles");
+      }
+      ifd.put(new Integer(IFD.TILE_WIDTH), new Long(currentTileSizeX));
+      ifd.put(new Integer(IFD.TILE_LENGTH), new Long(currentTileSizeY));
+    }
+    if (w > ifd.getTileWidth() || h > ifd.getTileLength() ||
+      x + w > getSizeX() || y + h > getSizeY())
+    {
+      throw new FormatException("Invalid tile (x=" + x + ", y=" + y +
+        ", w=" + w + ", h=" + h + ")");
+    }
+    if (!interleaved && getSamplesPerPixel() > 1) {
+      throw new FormatException(
+        "Compressed tiles can only be saved with interleaved samples");
+    }
+    MetadataRetrieve retrieve = getMetadataRetrieve();
+    int type = FormatTools.pixelTypeFromString(
+        retrieve.getPixelsType(series).toString());
+    int index;
+
+    // This operation is synchronized
+    synchronized (this) {
+      // This operation is synchronized against the TIFF saver.
+      synchronized (tiffSaver) {
+        index = prepareToWriteImage(no, buf, ifd, x, y, w, h);
+        if (index == -1) {
+          return;
+        }
+      }
+    }
+
+    boolean lastPlane = no == getPlaneCount() - 1;
+    boolean lastSeries = getSeries() == retrieve.getImageCount() - 1;
+    boolean lastResolution = getResolution() == getResolutionCount() - 1;
+    tiffSaver.writeCompressedImage(buf, ifd, index, type, x, y,
+      lastPlane && lastSeries && lastResolution, getSamplesPerPixel());
+  }
+
   /**
    * Performs the preparation for work prior to the usage of the TIFF saver.
    * This method is factored out from <code>saveBytes()</code> in an attempt to
@@ -451,6 +510,33 @@ public class TiffWriter extends FormatWriter {
     return getPlaneCount(series);
   }
 
+  // -- ICompressedTileWriter API methods --
+
+  /**
+   * @see loci.formats.ICompressedTileWriter#saveCompressedBytes(int, byte[],
+   *   int, int, int, int)
+   */
+  @Override
+  public void saveCompressedBytes(int no, byte[] buf, int x, int y, int w,
+    int h)
+    throws FormatException, IOException
+  {
+    IFD ifd = new IFD();
+    if (!sequential) {
+      try (RandomAccessInputStream stream = new RandomAccessInputStream(currentId)) {
+        TiffParser parser = new TiffParser(stream);
+        long[] ifdOffsets = parser.getIFDOffsets();
+        if (no < ifdOffsets.length) {
+          ifd = parser.getIFD(ifdOffsets[no]);
+        }
+        saveCompressedBytes(no, buf, ifd, x, y, w, h);
+      }
+    }
+    else {
+      saveCompressedBytes(no, buf, ifd, x, y, w, h);
+    }
+  }
+
   // -- IFormatWriter API methods --
 
   /**
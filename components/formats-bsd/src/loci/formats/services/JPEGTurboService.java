@@ -57,6 +57,22 @@ public interface JPEGTurboService extends Service {
 
   byte[] getTile(int xTile, int yTile) throws IOException;
 
+  /**
+   * Decode a region of the image at 1/scale of its full resolution.
+   * The region is specified in scaled coordinates.
+   *
+   * @param scale 1, 2, 4, or 8
+   */
+  byte[] getScaledTile(byte[] buf, int scale, int xCoordinate,
+    int yCoordinate, int width, int height)
+    throws IOException;
+
+  /**
+   * @return the size of the given full resolution dimension
+   *   when decoded at 1/scale
+   */
+  int getScaledDimension(int dimension, int scale);
+
   void close() throws IOException;
 
 }
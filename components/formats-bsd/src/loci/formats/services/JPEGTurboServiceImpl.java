@@ -34,6 +34,15 @@ package loci.formats.services;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -76,6 +85,10 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
 
   private static final int EOI = 0xffd9;
 
+  /** Number of threads used to decode the tiles covering a region. */
+  private static final int DECODE_THREADS =
+    Runtime.getRuntime().availableProcessors();
+
   // -- Fields --
 
   private transient Logger logger;
@@ -92,10 +105,21 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
   private int xTiles;
   private int yTiles;
 
-  private ArrayList<Long> restartMarkers = new ArrayList<Long>();
+  /**
+   * Offsets of each restart interval; only the first
+   * {@link #restartMarkerCount} entries are valid.
+   */
+  private long[] restartMarkers = new long[0];
+  private int restartMarkerCount = 0;
 
   private byte[] header;
 
+  /** Decompressors that are not currently in use. */
+  private transient ConcurrentLinkedQueue<TJDecompressor> decompressors =
+    new ConcurrentLinkedQueue<TJDecompressor>();
+
+  private transient ExecutorService decodeExecutor;
+
   private static boolean libraryLoaded = false;
 
   // -- Constructor --
@@ -113,21 +137,19 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
 
   @Override
   public void setRestartMarkers(long[] markers) {
-    restartMarkers.clear();
-    if (markers != null) {
-      for (long marker : markers) {
-        restartMarkers.add(marker);
-      }
+    if (markers == null) {
+      restartMarkers = new long[0];
+      restartMarkerCount = 0;
+    }
+    else {
+      restartMarkers = markers.clone();
+      restartMarkerCount = markers.length;
     }
   }
 
   @Override
   public long[] getRestartMarkers() {
-    long[] markers = new long[restartMarkers.size()];
-    for (int i=0; i<markers.length; i++) {
-      markers[i] = restartMarkers.get(i);
-    }
-    return markers;
+    return Arrays.copyOf(restartMarkers, restartMarkerCount);
   }
 
   @Override
@@ -159,15 +181,13 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
       else if (marker == SOS) {
         sos = end;
         inImage = true;
-        if (restartMarkers.size() == 0) {
-          restartMarkers.add(sos);
+        if (restartMarkerCount == 0) {
+          addRestartMarker(sos);
         }
         else {
-          long diff = sos - restartMarkers.get(0);
-          for (int i=0; i<restartMarkers.size(); i++) {
-            long original = restartMarkers.get(i);
-            original += diff;
-            restartMarkers.set(i, original);
+          long diff = sos - restartMarkers[0];
+          for (int i=0; i<restartMarkerCount; i++) {
+            restartMarkers[i] += diff;
           }
           break;
         }
@@ -179,8 +199,8 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
       }
     }
 
-    if (restartMarkers.size() == 1) {
-      in.seek(restartMarkers.get(0));
+    if (restartMarkerCount == 1) {
+      in.seek(restartMarkers[0]);
 
       byte[] buf = new byte[10 * 1024 * 1024];
       in.read(buf, 0, 4);
@@ -193,8 +213,9 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
         for (int i=0; i<n-1; i++) {
           marker = DataTools.bytesToShort(buf, i, 2, false) & 0xffff;
           if (marker >= RST0 && marker <= RST7) {
-            restartMarkers.add(in.getFilePointer() - n + i + 2);
-            LOGGER.debug("adding RST marker at {}", restartMarkers.get(restartMarkers.size() - 1));
+            addRestartMarker(in.getFilePointer() - n + i + 2);
+            LOGGER.debug("adding RST marker at {}",
+              restartMarkers[restartMarkerCount - 1]);
             i += restartInterval;
           }
         }
@@ -203,6 +224,7 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
 
         System.arraycopy(buf, n - 4, buf, 0, 4);
       }
+      restartMarkers = getRestartMarkers();
     }
 
     tileDim = restartInterval * 8;
@@ -217,7 +239,7 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
       yTiles++;
     }
 
-    if (restartInterval == 1 && restartMarkers.size() <= 1) {
+    if (restartInterval == 1 && restartMarkerCount <= 1) {
       // interval and markers are not present or invalid
       throw new IOException("Restart interval and markers invalid");
     }
@@ -228,6 +250,21 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
     int width, int height)
     throws IOException
   {
+    return getScaledTile(buf, 1, xCoordinate, yCoordinate, width, height);
+  }
+
+  @Override
+  public byte[] getScaledTile(byte[] buf, int scale, int xCoordinate,
+    int yCoordinate, int width, int height)
+    throws IOException
+  {
+    if (scale != 1 && scale != 2 && scale != 4 && scale != 8) {
+      throw new IllegalArgumentException("Unsupported scale: " + scale);
+    }
+    int dim = tileDim / scale;
+    int scaledWidth = getScaledDimension(imageWidth, scale);
+    int scaledHeight = getScaledDimension(imageHeight, scale);
+
     Region image = new Region(xCoordinate, yCoordinate, width, height);
 
     int bufX = 0;
@@ -235,18 +272,26 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
 
     int outputRowLen = width * 3;
 
+    // read the compressed data for each intersecting tile on this thread,
+    // then decode the tiles in parallel directly into the output buffer
+
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+    if (decompressors == null) {
+      decompressors = new ConcurrentLinkedQueue<TJDecompressor>();
+    }
+
     Region intersection = null;
     Region tileBoundary = new Region(0, 0, 0, 0);
-    byte[] tile = null;
     for (int row=0; row<yTiles; row++) {
-      tileBoundary.height = row < yTiles - 1 ? tileDim : imageHeight - (tileDim*row);
-      tileBoundary.y = row * tileDim;
+      tileBoundary.height =
+        row < yTiles - 1 ? dim : scaledHeight - (dim * row);
+      tileBoundary.y = row * dim;
       for (int col=0; col<xTiles; col++) {
-        tileBoundary.x = col * tileDim;
-        tileBoundary.width = col < xTiles - 1 ? tileDim : imageWidth - (tileDim*col);
+        tileBoundary.x = col * dim;
+        tileBoundary.width =
+          col < xTiles - 1 ? dim : scaledWidth - (dim * col);
         if (tileBoundary.intersects(image)) {
           intersection = image.intersection(tileBoundary);
-          tile = getTile(col, row);
 
           int rowLen =
             3 * (int) Math.min(tileBoundary.width, intersection.width);
@@ -257,13 +302,10 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
             intersectionX = image.x - tileBoundary.x;
           }
 
-          for (int trow=0; trow<intersection.height; trow++) {
-            int realRow = trow + intersection.y - tileBoundary.y;
-            int inputOffset =
-              3 * (realRow * tileDim + intersectionX);
-            System.arraycopy(tile, inputOffset, buf, outputOffset, rowLen);
-            outputOffset += outputRowLen;
-          }
+          int firstRow = intersection.y - tileBoundary.y;
+          tasks.add(new TileDecodeTask(getTileData(col, row), dim, buf,
+            outputOffset, outputRowLen, rowLen, 3 * intersectionX,
+            firstRow, intersection.height));
           bufX += rowLen;
         }
       }
@@ -276,11 +318,131 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
       }
     }
 
+    if (tasks.size() == 1) {
+      try {
+        tasks.get(0).call();
+      }
+      catch (IOException e) {
+        throw e;
+      }
+      catch (Exception e) {
+        throw new IOException(e.getMessage(), e);
+      }
+      return buf;
+    }
+
+    if (decodeExecutor == null) {
+      decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS,
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "JPEGTurbo-Decode");
+            t.setDaemon(true);
+            return t;
+          }
+        });
+    }
+
+    try {
+      for (Future<Void> result : decodeExecutor.invokeAll(tasks)) {
+        result.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while decoding tiles", e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause.getMessage(), cause);
+    }
+
     return buf;
   }
 
   @Override
   public byte[] getTile(int tileX, int tileY) throws IOException {
+    if (decompressors == null) {
+      decompressors = new ConcurrentLinkedQueue<TJDecompressor>();
+    }
+    byte[] tile = new byte[tileDim * tileDim * 3];
+    decodeTile(getTileData(tileX, tileY), tileDim, tile);
+    return tile;
+  }
+
+  @Override
+  public int getScaledDimension(int dimension, int scale) {
+    return (dimension + scale - 1) / scale;
+  }
+
+  @Override
+  public void close() throws IOException {
+    logger = null;
+    imageWidth = 0;
+    imageHeight = 0;
+    if (in != null) {
+      in.close();
+    }
+    in = null;
+    offset = 0;
+    restartMarkers = new long[0];
+    restartMarkerCount = 0;
+    restartInterval = 1;
+    sos = 0;
+    imageDimensions = 0;
+    tileDim = 0;
+    xTiles = 0;
+    yTiles = 0;
+    header = null;
+    if (decodeExecutor != null) {
+      decodeExecutor.shutdown();
+      decodeExecutor = null;
+    }
+    if (decompressors != null) {
+      TJDecompressor decoder = decompressors.poll();
+      while (decoder != null) {
+        try {
+          decoder.close();
+        }
+        catch (Exception e) {
+          LOGGER.debug("Could not close decompressor", e);
+        }
+        decoder = decompressors.poll();
+      }
+    }
+  }
+
+  // -- Helper methods --
+
+  private byte[] getFixedHeader() throws IOException {
+    in.seek(offset);
+
+    byte[] header = new byte[(int) (sos - offset)];
+    in.read(header);
+
+    int index = (int) (imageDimensions - offset);
+    DataTools.unpackBytes(tileDim, header, index, 2, false);
+    DataTools.unpackBytes(tileDim, header, index + 2, 2, false);
+
+    return header;
+  }
+
+  private void addRestartMarker(long marker) {
+    if (restartMarkerCount == restartMarkers.length) {
+      restartMarkers = Arrays.copyOf(restartMarkers,
+        Math.max(16, restartMarkers.length * 2));
+    }
+    restartMarkers[restartMarkerCount++] = marker;
+  }
+
+  /**
+   * Reads the restart intervals that make up the given tile, and returns
+   * them as a complete JPEG stream.
+   */
+  private byte[] getTileData(int tileX, int tileY) throws IOException {
     if (header == null) {
       header = getFixedHeader();
     }
@@ -291,15 +453,15 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
     for (int row=0; row<restartInterval; row++) {
       int end = start + 1;
 
-      long startOffset = restartMarkers.get(start);
+      long startOffset = restartMarkers[start];
       long endOffset = in.length();
-      if (end < restartMarkers.size()) {
-        endOffset = restartMarkers.get(end);
+      if (end < restartMarkerCount) {
+        endOffset = restartMarkers[end];
       }
 
       dataLength += (endOffset - startOffset);
       start += xTiles;
-      if (start >= restartMarkers.size()) {
+      if (start >= restartMarkerCount) {
         break;
       }
     }
@@ -316,10 +478,10 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
 
       long endOffset = in.length();
 
-      if (end < restartMarkers.size()) {
-        endOffset = restartMarkers.get(end);
+      if (end < restartMarkerCount) {
+        endOffset = restartMarkers[end];
       }
-      long startOffset = restartMarkers.get(start);
+      long startOffset = restartMarkers[start];
 
       in.seek(startOffset);
       int toRead = (int) (endOffset - startOffset - 2);
@@ -330,66 +492,105 @@ public class JPEGTurboServiceImpl implements JPEGTurboService {
       offset += 2;
       start += xTiles;
 
-      if (start >= restartMarkers.size()) {
+      if (start >= restartMarkerCount) {
         break;
       }
     }
 
     DataTools.unpackBytes(EOI, data, offset, 2, false);
+    return data;
+  }
 
-    // and here we actually decompress it...
+  /**
+   * Decodes a tile returned by {@link #getTileData(int, int)} into the
+   * given buffer, which must hold at least one full tile.  Decompressors
+   * are reused across calls and threads.
+   *
+   * @param dim the decoded tile width and height; values smaller than the
+   *   tile size use libjpeg-turbo's DCT scaling, which skips most of the
+   *   inverse transform instead of downsampling the decoded pixels
+   */
+  private void decodeTile(byte[] data, int dim, byte[] tile)
+    throws IOException
+  {
+    int pixelType = TJ.PF_RGB;
 
+    TJDecompressor decoder = decompressors.poll();
     try {
-      int pixelType = TJ.PF_RGB;
       int pixelSize = TJ.getPixelSize(pixelType);
-
-      TJDecompressor decoder = new TJDecompressor(data);
-      byte[] decompressed = decoder.decompress(tileDim, tileDim * pixelSize,
-        tileDim, pixelType, pixelType);
-      data = null;
-      decoder.close();
-      return decompressed;
+      if (decoder == null) {
+        decoder = new TJDecompressor();
+      }
+      decoder.setJPEGImage(data, data.length);
+      decoder.decompress(tile, dim, dim * pixelSize, dim,
+        pixelType, pixelType);
     }
     catch (Exception e) {
       IOException ioe = new IOException(e.getMessage());
       ioe.initCause(e);
       throw ioe;
     }
-  }
-
-  @Override
-  public void close() throws IOException {
-    logger = null;
-    imageWidth = 0;
-    imageHeight = 0;
-    if (in != null) {
-      in.close();
+    finally {
+      if (decoder != null) {
+        decompressors.add(decoder);
+      }
     }
-    in = null;
-    offset = 0;
-    restartMarkers.clear();
-    restartInterval = 1;
-    sos = 0;
-    imageDimensions = 0;
-    tileDim = 0;
-    xTiles = 0;
-    yTiles = 0;
-    header = null;
   }
 
-  // -- Helper methods --
-
-  private byte[] getFixedHeader() throws IOException {
-    in.seek(offset);
-
-    byte[] header = new byte[(int) (sos - offset)];
-    in.read(header);
+  // -- Helper classes --
+
+  /**
+   * Decodes one tile and copies the requested rows into the output buffer.
+   * Tasks for different tiles write to disjoint parts of the buffer.
+   */
+  private class TileDecodeTask implements Callable<Void> {
+    private final byte[] data;
+    private final int dim;
+    private final byte[] buf;
+    private final int outputOffset;
+    private final int outputRowLen;
+    private final int rowLen;
+    private final int inputX;
+    private final int firstRow;
+    private final int rows;
+
+    TileDecodeTask(byte[] data, int dim, byte[] buf, int outputOffset,
+      int outputRowLen, int rowLen, int inputX, int firstRow, int rows)
+    {
+      this.data = data;
+      this.dim = dim;
+      this.buf = buf;
+      this.outputOffset = outputOffset;
+      this.outputRowLen = outputRowLen;
+      this.rowLen = rowLen;
+      this.inputX = inputX;
+      this.firstRow = firstRow;
+      this.rows = rows;
+    }
 
-    int index = (int) (imageDimensions - offset);
-    DataTools.unpackBytes(tileDim, header, index, 2, false);
-    DataTools.unpackBytes(tileDim, header, index + 2, 2, false);
+    @Override
+    public Void call() throws IOException {
+      int tileRowLen = 3 * dim;
+
+      // a whole tile that exactly fills the output can be decoded in place
+      if (outputOffset == 0 && inputX == 0 && firstRow == 0 &&
+        rowLen == tileRowLen && outputRowLen == tileRowLen &&
+        rows == dim && buf.length >= tileRowLen * dim)
+      {
+        decodeTile(data, dim, buf);
+        return null;
+      }
 
-    return header;
+      byte[] tile = new byte[tileRowLen * dim];
+      decodeTile(data, dim, tile);
+      int output = outputOffset;
+      for (int trow=0; trow<rows; trow++) {
+        int inputOffset = (trow + firstRow) * tileRowLen + inputX;
+        System.arraycopy(tile, inputOffset, buf, output, rowLen);
+        output += outputRowLen;
+      }
+      return null;
+    }
   }
 
 }
@@ -47,6 +47,7 @@ import loci.common.Region;
 import loci.common.enumeration.EnumException;
 import loci.formats.FormatException;
 import loci.formats.ImageTools;
+import loci.formats.Instrumentation;
 import loci.formats.codec.CodecOptions;
 
 import org.slf4j.Logger;
@@ -732,84 +733,24 @@ public class TiffParser implements Closeable {
     int planarConfig = ifd.getPlanarConfiguration();
     TiffCompression compression = ifd.getCompression();
 
-    long numTileCols = ifd.getTilesPerRow();
-
     int pixel = ifd.getBytesPerSample()[0];
     int effectiveChannels = planarConfig == 2 ? 1 : samplesPerPixel;
 
-    if (ifd.get(IFD.STRIP_BYTE_COUNTS) instanceof OnDemandLongArray) {
-      OnDemandLongArray counts = (OnDemandLongArray) ifd.get(IFD.STRIP_BYTE_COUNTS);
-      if (counts != null) {
-        counts.setStream(in);
-      }
-    }
-    if (ifd.get(IFD.TILE_BYTE_COUNTS) instanceof OnDemandLongArray) {
-      OnDemandLongArray counts = (OnDemandLongArray) ifd.get(IFD.TILE_BYTE_COUNTS);
-      if (counts != null) {
-        counts.setStream(in);
-      }
-    }
-
-    long[] stripByteCounts = ifd.getStripByteCounts();
-    long[] rowsPerStrip = ifd.getRowsPerStrip();
-
-    int offsetIndex = (int) (row * numTileCols + col);
-    int countIndex = offsetIndex;
-    if (equalStrips) {
-      countIndex = 0;
-    }
-    if (stripByteCounts[countIndex] == (rowsPerStrip[0] * tileWidth) &&
-      pixel > 1)
-    {
-      stripByteCounts[countIndex] *= pixel;
-    }
-    else if (stripByteCounts[countIndex] < 0 && countIndex > 0) {
-      LOGGER.debug("byte count #{} was {}; correcting to {}", countIndex,
-        stripByteCounts[countIndex], stripByteCounts[countIndex - 1]);
-      stripByteCounts[countIndex] = stripByteCounts[countIndex - 1];
-    }
-
-    long stripOffset = 0;
-    long nStrips = 0;
-
-    if (ifd.getOnDemandStripOffsets() != null) {
-      OnDemandLongArray stripOffsets = ifd.getOnDemandStripOffsets();
-      stripOffsets.setStream(in);
-      stripOffset = stripOffsets.get(offsetIndex);
-      nStrips = stripOffsets.size();
-    }
-    else {
-      long[] stripOffsets = ifd.getStripOffsets();
-      stripOffset = stripOffsets[offsetIndex];
-      nStrips = stripOffsets.length;
-    }
+    long[] location = getTileLocation(ifd, row, col);
+    long stripOffset = location[0];
+    long byteCount = location[1];
+    long nStrips = location[2];
 
     int size = (int) (tileWidth * tileLength * pixel * effectiveChannels);
 
     if (buf == null) buf = new byte[size];
-    if (stripByteCounts[countIndex] == 0 || stripOffset >= in.length()) {
+    if (byteCount == 0 || stripOffset >= in.length()) {
       // make sure that the buffer is cleared before returning
       // the caller may be reusing the same buffer for multiple calls to getTile
       Arrays.fill(buf, (byte) 0);
       return buf;
     }
-    int tileSize = (int) stripByteCounts[countIndex];
-    if (jpegTable != null) {
-      tileSize += jpegTable.length - 2;
-    }
-    byte[] tile = new byte[tileSize];
-
-    LOGGER.debug("Reading tile Length {} Offset {}", tile.length, stripOffset);
-
-    if (jpegTable != null) {
-      System.arraycopy(jpegTable, 0, tile, 0, jpegTable.length - 2);
-      in.seek(stripOffset + 2);
-      in.read(tile, jpegTable.length - 2, tile.length - (jpegTable.length - 2));
-    }
-    else {
-      in.seek(stripOffset);
-      in.read(tile);
-    }
+    byte[] tile = readTile(stripOffset, (int) byteCount, jpegTable);
 
     // reverse bits in each byte if FillOrder == 2
 
@@ -855,6 +796,95 @@ public class TiffParser implements Closeable {
     return buf;
   }
 
+  /**
+   * Reads the stored bytes of the given tile or strip without decompressing
+   * them.  If the IFD has a JPEGTables tag, the tables are merged into the
+   * returned stream so that the result is a complete JPEG image.
+   *
+   * @param ifd the IFD containing the tile
+   * @param row the tile row (or strip index for untiled images)
+   * @param col the tile column (0 for untiled images)
+   * @return the compressed tile, or null if the tile is not present in
+   *   the file
+   * @see #isCompressedTileCopyable(IFD)
+   */
+  public byte[] getCompressedTile(IFD ifd, int row, int col)
+    throws FormatException, IOException
+  {
+    byte[] jpegTable = (byte[]) ifd.getIFDValue(IFD.JPEG_TABLES);
+    long[] location = getTileLocation(ifd, row, col);
+
+    // IFD.getStripByteCounts() over-estimates LZW byte counts, so the
+    // stored count is used directly to avoid copying trailing bytes
+    if (ifd.getCompression() == TiffCompression.LZW) {
+      long[] stored = ifd.getIFDLongArray(
+        ifd.isTiled() ? IFD.TILE_BYTE_COUNTS : IFD.STRIP_BYTE_COUNTS);
+      if (stored == null && ifd.isTiled()) {
+        stored = ifd.getIFDLongArray(IFD.STRIP_BYTE_COUNTS);
+      }
+      if (stored != null) {
+        int index = equalStrips ? 0 :
+          (int) (row * ifd.getTilesPerRow() + col);
+        location[1] = stored[index];
+      }
+    }
+
+    if (location[1] == 0 || location[0] >= in.length()) {
+      return null;
+    }
+    return readTile(location[0], (int) location[1], jpegTable);
+  }
+
+  /**
+   * Returns true if tiles from the given IFD can be copied to a new TIFF
+   * via {@link #getCompressedTile(IFD, int, int)} without changing how
+   * they would be decoded.  This excludes images that require horizontal
+   * differencing, bit reversal or planar reordering, and images whose
+   * photometric interpretation {@link TiffSaver} would not write unchanged:
+   * only BlackIsZero, 3 sample RGB and 8-bit palette images with a color
+   * map are copied, so WhiteIsZero, CMYK and YCbCr tiles are not.
+   */
+  public boolean isCompressedTileCopyable(IFD ifd) throws FormatException {
+    TiffCompression compression = ifd.getCompression();
+    if (compression == TiffCompression.UNCOMPRESSED ||
+      ifd.getIFDIntValue(IFD.PREDICTOR, 1) != 1 ||
+      ifd.getIFDIntValue(IFD.FILL_ORDER, 1) != 1)
+    {
+      return false;
+    }
+    int samples = ifd.getSamplesPerPixel();
+    if (samples > 1 && ifd.getPlanarConfiguration() != 1) {
+      return false;
+    }
+    switch (ifd.getPhotometricInterpretation()) {
+      case BLACK_IS_ZERO:
+        if (samples == 3) {
+          return false;
+        }
+        break;
+      case RGB:
+        if (samples != 3) {
+          return false;
+        }
+        break;
+      case RGB_PALETTE:
+        if (samples != 1 || ifd.getBitsPerSample()[0] != 8 ||
+          ifd.getIFDValue(IFD.COLOR_MAP) == null)
+        {
+          return false;
+        }
+        break;
+      default:
+        return false;
+    }
+    for (int bits : ifd.getBitsPerSample()) {
+      if (bits % 8 != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public byte[] getSamples(IFD ifd, byte[] buf)
     throws FormatException, IOException
   {
@@ -1422,4 +1452,96 @@ public class TiffParser implements Closeable {
 
     return new TiffIFDEntry(entryTag, entryType, valueCount, offset);
   }
+
+  // -- Helper methods --
+
+  /**
+   * Returns the file offset, byte count and total number of strips for
+   * the given tile, correcting byte counts known to be invalid.
+   */
+  private long[] getTileLocation(IFD ifd, int row, int col)
+    throws FormatException, IOException
+  {
+    long tileWidth = ifd.getTileWidth();
+    long numTileCols = ifd.getTilesPerRow();
+    int pixel = ifd.getBytesPerSample()[0];
+
+    if (ifd.get(IFD.STRIP_BYTE_COUNTS) instanceof OnDemandLongArray) {
+      OnDemandLongArray counts = (OnDemandLongArray) ifd.get(IFD.STRIP_BYTE_COUNTS);
+      if (counts != null) {
+        counts.setStream(in);
+      }
+    }
+    if (ifd.get(IFD.TILE_BYTE_COUNTS) instanceof OnDemandLongArray) {
+      OnDemandLongArray counts = (OnDemandLongArray) ifd.get(IFD.TILE_BYTE_COUNTS);
+      if (counts != null) {
+        counts.setStream(in);
+      }
+    }
+
+    long[] stripByteCounts = ifd.getStripByteCounts();
+    long[] rowsPerStrip = ifd.getRowsPerStrip();
+
+    int offsetIndex = (int) (row * numTileCols + col);
+    int countIndex = offsetIndex;
+    if (equalStrips) {
+      countIndex = 0;
+    }
+    if (stripByteCounts[countIndex] == (rowsPerStrip[0] * tileWidth) &&
+      pixel > 1)
+    {
+      stripByteCounts[countIndex] *= pixel;
+    }
+    else if (stripByteCounts[countIndex] < 0 && countIndex > 0) {
+      LOGGER.debug("byte count #{} was {}; correcting to {}", countIndex,
+        stripByteCounts[countIndex], stripByteCounts[countIndex - 1]);
+      stripByteCounts[countIndex] = stripByteCounts[countIndex - 1];
+    }
+
+    long stripOffset = 0;
+    long nStrips = 0;
+
+    if (ifd.getOnDemandStripOffsets() != null) {
+      OnDemandLongArray stripOffsets = ifd.getOnDemandStripOffsets();
+      stripOffsets.setStream(in);
+      stripOffset = stripOffsets.get(offsetIndex);
+      nStrips = stripOffsets.size();
+    }
+    else {
+      long[] stripOffsets = ifd.getStripOffsets();
+      stripOffset = stripOffsets[offsetIndex];
+      nStrips = stripOffsets.length;
+    }
+
+    return new long[] {stripOffset, stripByteCounts[countIndex], nStrips};
+  }
+
+  /**
+   * Reads the stored bytes of a tile, prepending any JPEG tables.
+   */
+  private byte[] readTile(long offset, int byteCount, byte[] jpegTable)
+    throws IOException
+  {
+    int tileSize = byteCount;
+    if (jpegTable != null) {
+      tileSize += jpegTable.length - 2;
+    }
+    byte[] tile = new byte[tileSize];
+
+    LOGGER.debug("Reading tile Length {} Offset {}", tile.length, offset);
+
+    long start = Instrumentation.start();
+    if (jpegTable != null) {
+      System.arraycopy(jpegTable, 0, tile, 0, jpegTable.length - 2);
+      in.seek(offset + 2);
+      in.read(tile, jpegTable.length - 2, tile.length - (jpegTable.length - 2));
+    }
+    else {
+      in.seek(offset);
+      in.read(tile);
+    }
+    Instrumentation.stop(TiffParser.class, "readTile", start, tile.length);
+    return tile;
+  }
+
 }
@@ -48,6 +48,7 @@ import loci.common.RandomAccessInputStream;
 import loci.common.RandomAccessOutputStream;
 import loci.formats.FormatException;
 import loci.formats.FormatTools;
+import loci.formats.Instrumentation;
 import loci.formats.codec.CodecOptions;
 
 import org.slf4j.Logger;
@@ -432,9 +433,64 @@ public class TiffSaver implements Closeable {
     }
 
     // This operation is synchronized
+    long start = Instrumentation.start();
+    long bytes = 0;
     synchronized (this) {
       writeImageIFD(ifd, no, strips, nChannels, last, x ,y);
     }
+    if (Instrumentation.isEnabled()) {
+      for (byte[] strip : strips) {
+        bytes += strip.length;
+      }
+    }
+    Instrumentation.stop(TiffSaver.class, "writeStrips", start, bytes);
+  }
+
+  /**
+   * Writes a single tile that has already been compressed using the
+   * compression recorded in the IFD.  No differencing or compression is
+   * applied to the data.
+   *
+   * @param buf The compressed tile, containing interleaved samples.
+   * @param ifd The Image File Directories. Mustn't be <code>null</code>
+   *            and must describe a tiled image.
+   * @param no  The image index within the current file, starting from 0.
+   * @param pixelType The type of pixels.
+   * @param x   The X-coordinate of the top-left corner of the tile.
+   * @param y   The Y-coordinate of the top-left corner of the tile.
+   * @param last Pass <code>true</code> if it is the last image,
+   *             <code>false</code> otherwise.
+   * @param nChannels The number of samples per pixel.
+   * @throws FormatException
+   * @throws IOException
+   */
+  public void writeCompressedImage(byte[] buf, IFD ifd, int no, int pixelType,
+      int x, int y, boolean last, int nChannels)
+  throws FormatException, IOException
+  {
+    LOGGER.debug("Attempting to write compressed tile.");
+    if (buf == null) {
+      throw new FormatException("Image data cannot be null");
+    }
+    if (ifd == null) {
+      throw new FormatException("IFD cannot be null");
+    }
+    if (!ifd.isTiled()) {
+      throw new FormatException("Compressed data can only be written to " +
+        "tiled images");
+    }
+    if (x % ifd.getTileWidth() != 0 || y % ifd.getTileLength() != 0) {
+      throw new FormatException("Tile position (" + x + ", " + y +
+        ") is not aligned to the tile grid");
+    }
+
+    long start = Instrumentation.start();
+    synchronized (this) {
+      makeValidIFD(ifd, pixelType, nChannels);
+      ifd.putIFDValue(IFD.PLANAR_CONFIGURATION, 1);
+      writeImageIFD(ifd, no, new byte[][] {buf}, nChannels, last, x, y);
+    }
+    Instrumentation.stop(TiffSaver.class, "writeStrips", start, buf.length);
   }
 
   /**
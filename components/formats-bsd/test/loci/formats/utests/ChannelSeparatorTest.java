@@ -0,0 +1,215 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+
+import loci.common.DataTools;
+import loci.formats.ChannelFiller;
+import loci.formats.ChannelSeparator;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageTools;
+import loci.formats.in.FakeReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests channel separation by {@link ChannelSeparator}, alone and on top of
+ * a {@link ChannelFiller}.
+ */
+public class ChannelSeparatorTest {
+
+  private IFormatReader reader;
+
+  private int sourceReads;
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @DataProvider(name = "rgb")
+  public Object[][] rgb() {
+    return new Object[][] {
+      {"test&sizeC=6&rgb=3&interleaved=true.fake"},
+      {"test&sizeC=6&rgb=3&interleaved=false.fake"},
+      {"test&sizeC=3&rgb=3&pixelType=uint16&interleaved=true.fake"},
+      {"test&sizeC=3&rgb=3&pixelType=uint16&interleaved=false.fake"},
+    };
+  }
+
+  @DataProvider(name = "indexed")
+  public Object[][] indexed() {
+    return new Object[][] {
+      {"test&indexed=true&sizeT=2&interleaved=true.fake"},
+      {"test&indexed=true&sizeT=2&interleaved=false.fake"},
+      {"test&indexed=true&sizeT=2&pixelType=uint16.fake"},
+      {"test&indexed=true&sizeC=3&rgb=3&interleaved=true.fake"},
+      {"test&indexed=true&sizeC=3&rgb=3&interleaved=false.fake"},
+      {"test&indexed=true&sizeC=3&rgb=3&pixelType=uint16.fake"},
+    };
+  }
+
+  @Test(dataProvider = "rgb")
+  public void testSeparate(String id) throws Exception {
+    IFormatReader source = new FakeReader();
+    source.setId(id);
+    reader = new ChannelSeparator(countingReader());
+    reader.setId(id);
+    checkChannels(source);
+    source.close();
+  }
+
+  @Test(dataProvider = "indexed")
+  public void testSeparateFilled(String id) throws Exception {
+    IFormatReader source = new ChannelFiller(new FakeReader());
+    source.setId(id);
+    reader = new ChannelSeparator(new ChannelFiller(countingReader()));
+    reader.setId(id);
+    assertEquals(reader.getSizeC(), source.getSizeC());
+    checkChannels(source);
+    source.close();
+  }
+
+  @Test(dataProvider = "indexed")
+  public void testFill(String id) throws Exception {
+    IFormatReader source = new FakeReader();
+    source.setId(id);
+    reader = new ChannelFiller(new FakeReader());
+    reader.setId(id);
+    int bpp = FormatTools.getBytesPerPixel(source.getPixelType());
+    assertEquals(reader.getRGBChannelCount(),
+      source.getRGBChannelCount() * 3);
+    for (int no=0; no<source.getImageCount(); no++) {
+      // every index of the plane is looked up in each color table channel
+      byte[] indices = source.openBytes(no);
+      byte[][] channels = new byte[3][];
+      if (bpp == 1) {
+        channels = ImageTools.indexedToRGB(source.get8BitLookupTable(),
+          indices);
+      }
+      else {
+        short[][] lut = ImageTools.indexedToRGB(source.get16BitLookupTable(),
+          indices, source.isLittleEndian());
+        for (int c=0; c<lut.length; c++) {
+          channels[c] = DataTools.shortsToBytes(lut[c],
+            source.isLittleEndian());
+        }
+      }
+      byte[] expected = new byte[indices.length * channels.length];
+      for (int i=0; i<indices.length / bpp; i++) {
+        for (int c=0; c<channels.length; c++) {
+          int offset = source.isInterleaved() ?
+            (i * channels.length + c) * bpp :
+            (c * indices.length / bpp + i) * bpp;
+          System.arraycopy(channels[c], i * bpp, expected, offset, bpp);
+        }
+      }
+      assertEquals(reader.openBytes(no), expected);
+    }
+    source.close();
+  }
+
+  @Test
+  public void testCachedPlanes() throws Exception {
+    String id = "test&sizeC=3&rgb=3&sizeT=3.fake";
+    reader = new ChannelSeparator(countingReader());
+    reader.setId(id);
+
+    // read the first channel of each plane, then the rest
+    for (int c=0; c<3; c++) {
+      for (int t=0; t<3; t++) {
+        reader.openBytes(reader.getIndex(0, c, t));
+      }
+    }
+    assertEquals(sourceReads, 3);
+
+    // regions are cached separately
+    reader.openBytes(0, 0, 0, 8, 8);
+    reader.openBytes(1, 0, 0, 8, 8);
+    assertEquals(sourceReads, 4);
+
+    reader.close();
+    reader.setId(id);
+    reader.openBytes(0);
+    assertEquals(sourceReads, 5);
+  }
+
+  // -- Helper methods --
+
+  /** Returns a reader that counts how many planes are read. */
+  private IFormatReader countingReader() {
+    sourceReads = 0;
+    return new FakeReader() {
+      @Override
+      public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+        throws FormatException, IOException
+      {
+        sourceReads++;
+        return super.openBytes(no, buf, x, y, w, h);
+      }
+    };
+  }
+
+  /**
+   * Checks that each separated channel matches the corresponding channel
+   * of the given unseparated reader.
+   */
+  private void checkChannels(IFormatReader source)
+    throws FormatException, IOException
+  {
+    int c = source.getRGBChannelCount();
+    int bpp = FormatTools.getBytesPerPixel(source.getPixelType());
+    assertEquals(reader.getImageCount(), source.getImageCount() * c);
+    for (int no=0; no<source.getImageCount(); no++) {
+      byte[] plane = source.openBytes(no);
+      int[] zct = source.getZCTCoords(no);
+      for (int channel=0; channel<c; channel++) {
+        byte[] expected = ImageTools.splitChannels(plane, channel, c, bpp,
+          false, source.isInterleaved());
+        int index = reader.getIndex(zct[0], zct[1] * c + channel, zct[2]);
+        assertEquals(reader.openBytes(index), expected);
+      }
+    }
+    assertEquals(sourceReads, source.getImageCount());
+  }
+
+}
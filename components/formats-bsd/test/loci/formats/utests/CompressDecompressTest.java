@@ -34,10 +34,18 @@ package loci.formats.utests;
 
 import com.google.common.hash.Hashing;
 
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
 import static org.testng.AssertJUnit.fail;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+
+import loci.formats.FormatException;
 import loci.formats.codec.CodecOptions;
+import loci.formats.codec.CodecPool;
+import loci.formats.codec.PassthroughCodec;
+import loci.formats.codec.ZlibCodec;
 import loci.formats.tiff.IFD;
 import loci.formats.tiff.TiffCompression;
 
@@ -156,4 +164,48 @@ public class CompressDecompressTest {
     assertCompression( TiffCompression.UNCOMPRESSED, false);
   }
 
+  /**
+   * Tests decompressing <code>Deflate</code> data into a caller buffer.
+   * @throws Exception Throw if an error occurred while decompressing.
+   */
+  @Test
+  public void testDecompressIntoBuffer() throws Exception {
+    byte[] plane = new byte[4096];
+    for (int i=0; i<plane.length; i++) {
+      plane[i] = (byte) (i / 7);
+    }
+    ZlibCodec codec = CodecPool.getCodec(ZlibCodec.class);
+    byte[] compressed = codec.compress(plane, null);
+
+    byte[] buf = new byte[plane.length + 16];
+    assertEquals(plane.length, codec.decompress(compressed, buf, null));
+    assertEquals(true, Arrays.equals(plane, Arrays.copyOf(buf, plane.length)));
+    assertEquals(true, Arrays.equals(plane, codec.decompress(compressed)));
+
+    PassthroughCodec passthrough = CodecPool.getCodec(PassthroughCodec.class);
+    assertEquals(plane.length, passthrough.decompress(plane, buf, null));
+
+    try {
+      codec.decompress(compressed, new byte[plane.length - 1], null);
+      fail("Expected FormatException for a short buffer");
+    }
+    catch (FormatException e) {
+    }
+  }
+
+  /**
+   * Tests that codecs and buffers are reused.
+   */
+  @Test
+  public void testCodecPool() throws Exception {
+    assertSame(CodecPool.getCodec(ZlibCodec.class),
+      CodecPool.getCodec(ZlibCodec.class));
+
+    byte[] buf = CodecPool.acquireBuffer(1234);
+    assertEquals(1234, buf.length);
+    CodecPool.releaseBuffer(buf);
+    assertSame(buf, CodecPool.acquireBuffer(1234));
+    CodecPool.clear();
+  }
+
 }
@@ -0,0 +1,422 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import loci.common.Constants;
+import loci.formats.in.DicomReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests reading tiled whole slide images from synthetic DICOM files.
+ */
+public class DicomReaderTest {
+
+  private static final String EXPLICIT_VR_LITTLE_ENDIAN =
+    "1.2.840.10008.1.2.1";
+  private static final String JPEG_BASELINE = "1.2.840.10008.1.2.4.50";
+
+  private static final int TILE_SIZE = 32;
+  private static final int SIZE_X = 80;
+  private static final int SIZE_Y = 48;
+
+  private File directory;
+  private DicomReader reader;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    // the reader looks for related files in sibling directories,
+    // and ignores files smaller than 1024 bytes
+    directory = File.createTempFile(DicomReaderTest.class.getName(), "");
+    directory.delete();
+    directory = new File(directory, "slide");
+    directory.mkdirs();
+    reader = new DicomReader();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    reader.close();
+    for (File f : directory.listFiles()) {
+      f.delete();
+    }
+    directory.delete();
+    directory.getParentFile().delete();
+  }
+
+  @Test
+  public void testUncompressedFrames() throws Exception {
+    File file = new File(directory, "slide_0.dcm");
+    writeSlide(file, EXPLICIT_VR_LITTLE_ENDIAN, 0, SIZE_X, SIZE_Y, 2, 1);
+    reader.setId(file.getAbsolutePath());
+
+    assertEquals(reader.getSeriesCount(), 1);
+    assertEquals(reader.getSizeX(), SIZE_X);
+    assertEquals(reader.getSizeY(), SIZE_Y);
+    assertEquals(reader.getImageCount(), 2);
+    assertEquals(reader.getOptimalTileWidth(), TILE_SIZE);
+    assertEquals(reader.getOptimalTileHeight(), TILE_SIZE);
+
+    for (int z=0; z<2; z++) {
+      assertEquals(reader.openBytes(z), expected(0, z, 0, 0, SIZE_X, SIZE_Y));
+      assertEquals(reader.openBytes(z, 20, 10, 40, 30),
+        expected(0, z, 20, 10, 40, 30));
+      assertEquals(reader.openBytes(z, 65, 41, 15, 7),
+        expected(0, z, 65, 41, 15, 7));
+    }
+  }
+
+  @Test
+  public void testJPEGFrames() throws Exception {
+    checkJPEGFrames(1);
+  }
+
+  @Test
+  public void testFragmentedJPEGFrames() throws Exception {
+    checkJPEGFrames(2);
+  }
+
+  @Test
+  public void testPyramid() throws Exception {
+    writeSlide(new File(directory, "slide_0.dcm"), EXPLICIT_VR_LITTLE_ENDIAN,
+      0, SIZE_X, SIZE_Y, 1, 1);
+    writeSlide(new File(directory, "slide_1.dcm"), EXPLICIT_VR_LITTLE_ENDIAN,
+      1, SIZE_X / 2, SIZE_Y / 2, 1, 1);
+    writeImage(new File(directory, "slide_2.dcm"), "LABEL", 40, 30, 3);
+
+    reader.setFlattenedResolutions(false);
+    reader.setId(new File(directory, "slide_1.dcm").getAbsolutePath());
+
+    assertEquals(reader.getSeriesCount(), 2);
+    assertEquals(reader.getResolutionCount(), 2);
+    assertEquals(reader.getSizeX(), SIZE_X);
+    assertEquals(reader.getSizeY(), SIZE_Y);
+    assertEquals(reader.openBytes(0, 3, 3, 60, 40),
+      expected(0, 0, 3, 3, 60, 40));
+    assertEquals(reader.getSeriesUsedFiles(false).length, 2);
+
+    reader.setResolution(1);
+    assertEquals(reader.getSizeX(), SIZE_X / 2);
+    assertEquals(reader.getSizeY(), SIZE_Y / 2);
+    assertEquals(reader.getOptimalTileWidth(), TILE_SIZE);
+    assertEquals(reader.openBytes(0), expected(1, 0, 0, 0, SIZE_X / 2, SIZE_Y / 2));
+
+    reader.setSeries(1);
+    assertEquals(reader.getResolutionCount(), 1);
+    assertEquals(reader.getSizeX(), 40);
+    assertEquals(reader.getSizeY(), 30);
+    assertEquals(reader.openBytes(0), expected(3, 0, 0, 0, 40, 30));
+    assertEquals(reader.getSeriesUsedFiles(false).length, 1);
+  }
+
+  @Test
+  public void testFlattenedPyramid() throws Exception {
+    writeSlide(new File(directory, "slide_0.dcm"), EXPLICIT_VR_LITTLE_ENDIAN,
+      0, SIZE_X, SIZE_Y, 1, 1);
+    writeSlide(new File(directory, "slide_1.dcm"), EXPLICIT_VR_LITTLE_ENDIAN,
+      1, SIZE_X / 2, SIZE_Y / 2, 1, 1);
+
+    reader.setFlattenedResolutions(true);
+    reader.setId(new File(directory, "slide_0.dcm").getAbsolutePath());
+
+    assertEquals(reader.getSeriesCount(), 2);
+    reader.setSeries(1);
+    assertEquals(reader.getSizeX(), SIZE_X / 2);
+    assertEquals(reader.openBytes(0, 20, 2, 18, 20),
+      expected(1, 0, 20, 2, 18, 20));
+  }
+
+  // -- Helper methods --
+
+  private void checkJPEGFrames(int fragmentsPerFrame) throws Exception {
+    File file = new File(directory, "slide_0.dcm");
+    byte[][] frames =
+      writeSlide(file, JPEG_BASELINE, 0, SIZE_X, SIZE_Y, 1, fragmentsPerFrame);
+    reader.setId(file.getAbsolutePath());
+
+    assertEquals(reader.getSizeX(), SIZE_X);
+    assertEquals(reader.getSizeY(), SIZE_Y);
+    assertEquals(reader.getImageCount(), 1);
+
+    // JPEG is lossy, so compare against ImageIO's decoding of each frame
+    int tilesX = (SIZE_X + TILE_SIZE - 1) / TILE_SIZE;
+    byte[] plane = new byte[SIZE_X * SIZE_Y];
+    for (int i=0; i<frames.length; i++) {
+      BufferedImage img = ImageIO.read(new ByteArrayInputStream(frames[i]));
+      assertNotNull(img);
+      byte[] tile =
+        ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+      int tileX = (i % tilesX) * TILE_SIZE;
+      int tileY = (i / tilesX) * TILE_SIZE;
+      for (int y=tileY; y<Math.min(tileY + TILE_SIZE, SIZE_Y); y++) {
+        int len = Math.min(TILE_SIZE, SIZE_X - tileX);
+        System.arraycopy(tile, (y - tileY) * TILE_SIZE,
+          plane, y * SIZE_X + tileX, len);
+      }
+    }
+
+    assertEquals(reader.openBytes(0), plane);
+    byte[] region = new byte[40 * 30];
+    for (int y=0; y<30; y++) {
+      System.arraycopy(plane, (y + 10) * SIZE_X + 20, region, y * 40, 40);
+    }
+    assertEquals(reader.openBytes(0, 20, 10, 40, 30), region);
+  }
+
+  private static int value(int level, int z, int x, int y) {
+    return (x * 3 + y * 7 + z * 50 + level * 100) & 0xff;
+  }
+
+  private static byte[] expected(int level, int z, int x, int y, int w, int h)
+  {
+    byte[] b = new byte[w * h];
+    for (int row=0; row<h; row++) {
+      for (int col=0; col<w; col++) {
+        b[row * w + col] = (byte) value(level, z, x + col, y + row);
+      }
+    }
+    return b;
+  }
+
+  /**
+   * Write a tiled (TILED_FULL) whole slide image.
+   *
+   * @return the stored bytes of each frame
+   */
+  private byte[][] writeSlide(File file, String transferSyntax, int level,
+    int sizeX, int sizeY, int planes, int fragmentsPerFrame)
+    throws IOException
+  {
+    int tilesX = (sizeX + TILE_SIZE - 1) / TILE_SIZE;
+    int tilesY = (sizeY + TILE_SIZE - 1) / TILE_SIZE;
+    boolean jpeg = transferSyntax.equals(JPEG_BASELINE);
+    byte[][] frames = new byte[tilesX * tilesY * planes][];
+    for (int z=0; z<planes; z++) {
+      for (int ty=0; ty<tilesY; ty++) {
+        for (int tx=0; tx<tilesX; tx++) {
+          // frames on the right and bottom edges are padded
+          byte[] tile = new byte[TILE_SIZE * TILE_SIZE];
+          for (int y=0; y<TILE_SIZE; y++) {
+            for (int x=0; x<TILE_SIZE; x++) {
+              int px = tx * TILE_SIZE + x;
+              int py = ty * TILE_SIZE + y;
+              if (px < sizeX && py < sizeY) {
+                tile[y * TILE_SIZE + x] = (byte) value(level, z, px, py);
+              }
+            }
+          }
+          int index = (z * tilesY + ty) * tilesX + tx;
+          frames[index] = jpeg ? compress(tile) : tile;
+        }
+      }
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeHeader(out, transferSyntax, "ORIGINAL\\PRIMARY\\VOLUME\\NONE",
+      level + 1, frames.length, TILE_SIZE, TILE_SIZE);
+    writeElement(out, 0x0048, 0x0006, "UL", toBytes(sizeX));
+    writeElement(out, 0x0048, 0x0007, "UL", toBytes(sizeY));
+    if (jpeg) {
+      writeEncapsulated(out, frames, fragmentsPerFrame);
+    }
+    else {
+      ByteArrayOutputStream pixels = new ByteArrayOutputStream();
+      for (byte[] frame : frames) {
+        pixels.write(frame);
+      }
+      writeElement(out, 0x7fe0, 0x0010, "OB", pixels.toByteArray());
+    }
+    write(file, out);
+    return frames;
+  }
+
+  /**
+   * Write an image that is not tiled, such as a slide label.
+   */
+  private void writeImage(File file, String type, int sizeX, int sizeY,
+    int level) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeHeader(out, EXPLICIT_VR_LITTLE_ENDIAN,
+      "ORIGINAL\\PRIMARY\\" + type + "\\NONE", level + 1, 1, sizeX, sizeY);
+    writeElement(out, 0x7fe0, 0x0010, "OB",
+      expected(level, 0, 0, 0, sizeX, sizeY));
+    write(file, out);
+  }
+
+  private void writeHeader(ByteArrayOutputStream out, String transferSyntax,
+    String imageType, int instance, int frames, int columns, int rows)
+    throws IOException
+  {
+    out.write(new byte[128]);
+    out.write("DICM".getBytes(Constants.ENCODING));
+    writeString(out, 0x0002, 0x0010, "UI", transferSyntax);
+    writeString(out, 0x0008, 0x0008, "CS", imageType);
+    writeString(out, 0x0008, 0x0022, "DA", "20200101");
+    writeString(out, 0x0008, 0x0032, "TM", "120000");
+    writeString(out, 0x0020, 0x000e, "UI", "1.2.826.0.1.3680043.2.1");
+    writeString(out, 0x0020, 0x0011, "IS", "1");
+    writeString(out, 0x0020, 0x0013, "IS", String.valueOf(instance));
+    writeString(out, 0x0020, 0x9311, "CS", "TILED_FULL");
+    writeElement(out, 0x0028, 0x0002, "US", toBytes((short) 1));
+    writeString(out, 0x0028, 0x0004, "CS", "MONOCHROME2");
+    writeString(out, 0x0028, 0x0008, "IS", String.valueOf(frames));
+    writeElement(out, 0x0028, 0x0010, "US", toBytes((short) rows));
+    writeElement(out, 0x0028, 0x0011, "US", toBytes((short) columns));
+    writeElement(out, 0x0028, 0x0100, "US", toBytes((short) 8));
+    writeElement(out, 0x0028, 0x0103, "US", toBytes((short) 0));
+  }
+
+  /**
+   * Write encapsulated pixel data, splitting each frame into the given
+   * number of fragments.  A basic offset table is only written if there
+   * is more than one fragment per frame.
+   */
+  private void writeEncapsulated(ByteArrayOutputStream out, byte[][] frames,
+    int fragmentsPerFrame) throws IOException
+  {
+    ByteArrayOutputStream items = new ByteArrayOutputStream();
+    ByteBuffer table = ByteBuffer.allocate(
+      fragmentsPerFrame > 1 ? frames.length * 4 : 0);
+    table.order(ByteOrder.LITTLE_ENDIAN);
+    for (byte[] frame : frames) {
+      if (table.hasRemaining()) {
+        table.putInt(items.size());
+      }
+      int fragmentSize = frame.length / fragmentsPerFrame;
+      for (int f=0; f<fragmentsPerFrame; f++) {
+        int end =
+          f == fragmentsPerFrame - 1 ? frame.length : (f + 1) * fragmentSize;
+        byte[] fragment = Arrays.copyOfRange(frame, f * fragmentSize, end);
+        if (fragment.length % 2 == 1) {
+          fragment = Arrays.copyOf(fragment, fragment.length + 1);
+        }
+        writeItem(items, 0xe000, fragment);
+      }
+    }
+
+    writeTag(out, 0x7fe0, 0x0010);
+    out.write("OB".getBytes(Constants.ENCODING));
+    out.write(new byte[2]);
+    out.write(toBytes(-1));
+    writeItem(out, 0xe000, table.array());
+    items.writeTo(out);
+    writeItem(out, 0xe0dd, new byte[0]);
+  }
+
+  private void writeItem(ByteArrayOutputStream out, int element, byte[] value)
+    throws IOException
+  {
+    writeTag(out, 0xfffe, element);
+    out.write(toBytes(value.length));
+    out.write(value);
+  }
+
+  private void writeString(ByteArrayOutputStream out, int group, int element,
+    String vr, String value) throws IOException
+  {
+    if (value.length() % 2 == 1) {
+      value += vr.equals("UI") ? "\0" : " ";
+    }
+    writeElement(out, group, element, vr, value.getBytes(Constants.ENCODING));
+  }
+
+  private void writeElement(ByteArrayOutputStream out, int group, int element,
+    String vr, byte[] value) throws IOException
+  {
+    writeTag(out, group, element);
+    out.write(vr.getBytes(Constants.ENCODING));
+    if (vr.equals("OB")) {
+      out.write(new byte[2]);
+      out.write(toBytes(value.length));
+    }
+    else {
+      out.write(toBytes((short) value.length));
+    }
+    out.write(value);
+  }
+
+  private void writeTag(ByteArrayOutputStream out, int group, int element)
+    throws IOException
+  {
+    out.write(toBytes((short) group));
+    out.write(toBytes((short) element));
+  }
+
+  private static byte[] toBytes(int value) {
+    ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    return b.putInt(value).array();
+  }
+
+  private static byte[] toBytes(short value) {
+    ByteBuffer b = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN);
+    return b.putShort(value).array();
+  }
+
+  private static byte[] compress(byte[] tile) throws IOException {
+    BufferedImage img =
+      new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+    byte[] data = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+    System.arraycopy(tile, 0, data, 0, tile.length);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(img, "jpeg", out);
+    return out.toByteArray();
+  }
+
+  private static void write(File file, ByteArrayOutputStream out)
+    throws IOException
+  {
+    try (FileOutputStream stream = new FileOutputStream(file)) {
+      out.writeTo(stream);
+    }
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2005 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import loci.formats.InstrumentedReader;
+import loci.formats.Instrumentation;
+import loci.formats.OperationStatistics;
+import loci.formats.codec.CodecOptions;
+import loci.formats.codec.ZlibCodec;
+import loci.formats.in.FakeReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests statistics collection via {@link Instrumentation}.
+ */
+public class InstrumentationTest {
+
+  private static final String ID =
+    "test&pixelType=uint8&sizeX=64&sizeY=32&sizeZ=2.fake";
+
+  private InstrumentedReader reader;
+
+  @BeforeMethod
+  public void setUp() {
+    Instrumentation.reset();
+    reader = new InstrumentedReader(new FakeReader());
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    reader.close();
+    Instrumentation.setEnabled(false);
+    Instrumentation.reset();
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    Instrumentation.setEnabled(false);
+    reader.setId(ID);
+    reader.openBytes(0);
+    assertTrue(Instrumentation.getStatistics().isEmpty());
+  }
+
+  @Test
+  public void testReader() throws Exception {
+    Instrumentation.setEnabled(true);
+    reader.setId(ID);
+    reader.openBytes(0);
+    reader.openBytes(1, 0, 0, 16, 16);
+
+    OperationStatistics setId =
+      Instrumentation.getStatistics("FakeReader", "setId");
+    assertNotNull(setId);
+    assertEquals(setId.getCount(), 1);
+
+    OperationStatistics openBytes =
+      Instrumentation.getStatistics("FakeReader", "openBytes");
+    assertNotNull(openBytes);
+    assertEquals(openBytes.getCount(), 2);
+    assertEquals(openBytes.getBytes(), 64 * 32 + 16 * 16);
+    assertTrue(openBytes.getMaxNanos() >= openBytes.getMeanNanos());
+    assertTrue(openBytes.getPercentileNanos(99) <= openBytes.getMaxNanos());
+  }
+
+  @Test
+  public void testCodec() throws Exception {
+    Instrumentation.setEnabled(true);
+    ZlibCodec codec = new ZlibCodec();
+    byte[] data = new byte[4096];
+    byte[] compressed = codec.compress(data, CodecOptions.getDefaultOptions());
+    codec.decompress(compressed, CodecOptions.getDefaultOptions());
+
+    OperationStatistics compress =
+      Instrumentation.getStatistics("ZlibCodec", "compress");
+    assertNotNull(compress);
+    assertEquals(compress.getBytes(), data.length);
+    OperationStatistics decompress =
+      Instrumentation.getStatistics("ZlibCodec", "decompress");
+    assertNotNull(decompress);
+    assertEquals(decompress.getBytes(), data.length);
+  }
+
+  @Test
+  public void testReset() {
+    Instrumentation.setEnabled(true);
+    Instrumentation.record("Test", "op", 1000, 1);
+    assertNotNull(Instrumentation.getStatistics("Test", "op"));
+    Instrumentation.reset();
+    assertNull(Instrumentation.getStatistics("Test", "op"));
+  }
+
+  @Test
+  public void testPercentiles() {
+    OperationStatistics stats = new OperationStatistics("Test", "op");
+    for (int i=0; i<99; i++) {
+      stats.record(1000, 0);
+    }
+    stats.record(1000000000L, 0);
+    assertEquals(stats.getCount(), 100);
+    assertEquals(stats.getMaxNanos(), 1000000000L);
+    assertTrue(stats.getPercentileNanos(50) <= 2000);
+    assertEquals(stats.getPercentileNanos(100), 1000000000L);
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import loci.common.ByteArrayHandle;
+import loci.common.RandomAccessInputStream;
+import loci.formats.services.JPEGTurboServiceImpl;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.NodeList;
+
+/**
+ * Tests region decoding of JPEG streams with restart markers via
+ * {@link JPEGTurboServiceImpl}.
+ */
+public class JPEGTurboServiceTest {
+
+  private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+
+  private static final int WIDTH = 160;
+  private static final int HEIGHT = 96;
+
+  /** Number of MCUs between restart markers. */
+  private static final int INTERVAL = 2;
+
+  private static final int TILE = INTERVAL * 8;
+
+  private BufferedImage image;
+  private JPEGTurboServiceImpl service;
+  private byte[] full;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+    for (int y=0; y<HEIGHT; y++) {
+      for (int x=0; x<WIDTH; x++) {
+        int r = x * 255 / WIDTH;
+        int g = y * 255 / HEIGHT;
+        int b = ((x / 8) + (y / 8)) % 2 == 0 ? 32 : 224;
+        image.setRGB(x, y, (r << 16) | (g << 8) | b);
+      }
+    }
+
+    service = new JPEGTurboServiceImpl();
+    service.initialize(new RandomAccessInputStream(
+      new ByteArrayHandle(writeJPEG(image))), WIDTH, HEIGHT);
+    full = service.getTile(new byte[WIDTH * HEIGHT * 3], 0, 0,
+      WIDTH, HEIGHT);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    service.close();
+  }
+
+  @DataProvider(name = "regions")
+  public Object[][] createRegions() {
+    return new Object[][] {
+      {0, 0, TILE, TILE},
+      {TILE, TILE, TILE, TILE},
+      {5, 3, 40, 30},
+      {TILE - 1, TILE - 1, 2, 2},
+      {WIDTH - 37, HEIGHT - 21, 37, 21},
+      {0, 40, WIDTH, 17},
+    };
+  }
+
+  @Test
+  public void testRestartMarkers() {
+    int segments = (WIDTH / TILE) * (HEIGHT / 8);
+    assertEquals(service.getRestartMarkers().length, segments);
+  }
+
+  @Test
+  public void testFullDecode() {
+    // compression is lossy, so only check that the decoded pixels
+    // are close to the original image
+    for (int y=0; y<HEIGHT; y++) {
+      for (int x=0; x<WIDTH; x++) {
+        int rgb = image.getRGB(x, y);
+        int index = (y * WIDTH + x) * 3;
+        for (int c=0; c<3; c++) {
+          int expected = (rgb >> (16 - 8 * c)) & 0xff;
+          int actual = full[index + c] & 0xff;
+          assertTrue(Math.abs(expected - actual) <= 16,
+            "pixel (" + x + ", " + y + "): " + expected + " != " + actual);
+        }
+      }
+    }
+  }
+
+  @Test(dataProvider = "regions")
+  public void testRegion(int x, int y, int w, int h) throws Exception {
+    byte[] region = service.getTile(new byte[w * h * 3], x, y, w, h);
+    for (int row=0; row<h; row++) {
+      for (int i=0; i<w*3; i++) {
+        assertEquals(region[row * w * 3 + i],
+          full[((y + row) * WIDTH + x) * 3 + i],
+          "row " + row + ", byte " + i);
+      }
+    }
+  }
+
+  @Test
+  public void testTile() throws Exception {
+    byte[] tile = service.getTile(1, 2);
+    for (int row=0; row<TILE; row++) {
+      for (int i=0; i<TILE*3; i++) {
+        assertEquals(tile[row * TILE * 3 + i],
+          full[((2 * TILE + row) * WIDTH + TILE) * 3 + i]);
+      }
+    }
+  }
+
+  /**
+   * Compresses the given image as a baseline JPEG without chroma
+   * subsampling, with a restart marker every {@link #INTERVAL} MCUs.
+   */
+  private static byte[] writeJPEG(BufferedImage img) throws Exception {
+    Iterator<ImageWriter> writers =
+      ImageIO.getImageWritersByFormatName("jpeg");
+    ImageWriter writer = writers.next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(0.95f);
+    IIOMetadata metadata = writer.getDefaultImageMetadata(
+      new ImageTypeSpecifier(img), param);
+
+    IIOMetadataNode root =
+      (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA);
+    NodeList components = root.getElementsByTagName("componentSpec");
+    for (int i=0; i<components.getLength(); i++) {
+      IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+      component.setAttribute("HsamplingFactor", "1");
+      component.setAttribute("VsamplingFactor", "1");
+    }
+    IIOMetadataNode markers =
+      (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+    IIOMetadataNode dri = new IIOMetadataNode("dri");
+    dri.setAttribute("interval", String.valueOf(INTERVAL));
+    markers.insertBefore(dri, root.getElementsByTagName("sos").item(0));
+    metadata.setFromTree(JPEG_METADATA, root);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ImageOutputStream out = ImageIO.createImageOutputStream(bytes);
+    try {
+      writer.setOutput(out);
+      writer.write(null, new IIOImage(img, null, metadata), param);
+    }
+    finally {
+      out.close();
+      writer.dispose();
+    }
+    return bytes.toByteArray();
+  }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2005 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import loci.formats.FormatReader;
+import loci.formats.IFormatReader;
+import loci.formats.Memoizer;
+import loci.formats.MetadataTools;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.FakeReader;
+import loci.formats.meta.IMetadata;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests lazy series initialization, as enabled by
+ * {@link DynamicMetadataOptions#SERIES_LAZY_KEY}.
+ */
+public class LazySeriesTest {
+
+  private static final String TEST_FILE =
+    "test&plates=1&plateRows=4&plateCols=6&fields=2&sizeX=32&sizeY=16.fake";
+
+  private static final int SERIES_COUNT = 48;
+
+  private File idDir;
+  private String id;
+  private FakeReader eager;
+  private IMetadata eagerStore;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    idDir = Files.createTempDirectory(
+      LazySeriesTest.class.getName() + ".").toFile();
+    File file = new File(idDir, TEST_FILE);
+    file.createNewFile();
+    id = file.getAbsolutePath();
+
+    eager = new FakeReader();
+    eagerStore = MetadataTools.createOMEXMLMetadata();
+    eager.setMetadataStore(eagerStore);
+    eager.setId(id);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    eager.close();
+    File[] children = idDir.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        child.delete();
+      }
+    }
+    idDir.delete();
+  }
+
+  @Test
+  public void testEager() throws Exception {
+    assertEquals(eager.getSeriesCount(), SERIES_COUNT);
+    for (int s=0; s<SERIES_COUNT; s++) {
+      assertTrue(eager.isSeriesInitialized(s));
+    }
+  }
+
+  @Test
+  public void testLazy() throws Exception {
+    FakeReader reader = new FakeReader();
+    IMetadata store = MetadataTools.createOMEXMLMetadata();
+    reader.setMetadataStore(store);
+    reader.setMetadataOptions(getOptions());
+    try {
+      reader.setId(id);
+      assertEquals(reader.getSeriesCount(), SERIES_COUNT);
+      assertEquals(store.getPlateCount(), 1);
+      assertEquals(store.getWellCount(0), 24);
+      assertTrue(reader.isSeriesInitialized(0));
+      for (int s=1; s<SERIES_COUNT; s++) {
+        assertFalse(reader.isSeriesInitialized(s));
+        assertEquals(reader.getCoreMetadataList().get(s).sizeX, 0);
+      }
+      assertSeries(reader, store, 0);
+
+      reader.setSeries(5);
+      assertEquals(reader.getSeries(), 5);
+      assertTrue(reader.isSeriesInitialized(5));
+      assertFalse(reader.isSeriesInitialized(6));
+      assertSeries(reader, store, 5);
+
+      reader.setCoreIndex(7);
+      assertTrue(reader.isSeriesInitialized(7));
+      assertSeries(reader, store, 7);
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testMemo() throws Exception {
+    Memoizer memoizer = new Memoizer(new FakeReader(), 0, idDir);
+    memoizer.setMetadataOptions(getOptions());
+    try {
+      memoizer.setId(id);
+      assertTrue(memoizer.isSavedToMemo());
+      memoizer.setSeries(3);
+      assertEquals(memoizer.getSizeX(), 32);
+    }
+    finally {
+      memoizer.close();
+    }
+
+    // the series initialized after the memo was saved are memoized on close
+    memoizer = new Memoizer(new FakeReader(), 0, idDir);
+    memoizer.setMetadataOptions(getOptions());
+    try {
+      memoizer.setId(id);
+      assertTrue(memoizer.isLoadedFromMemo());
+      FormatReader base = (FormatReader) memoizer.unwrap();
+      assertTrue(base.isSeriesInitialized(3));
+      assertFalse(base.isSeriesInitialized(4));
+      memoizer.setSeries(4);
+      assertEquals(memoizer.getSizeY(), 16);
+    }
+    finally {
+      memoizer.close();
+    }
+  }
+
+  @Test
+  public void testMemoUserStore() throws Exception {
+    Memoizer memoizer = new Memoizer(new FakeReader(), 0, idDir);
+    IMetadata store = MetadataTools.createOMEXMLMetadata();
+    memoizer.setMetadataStore(store);
+    memoizer.setMetadataOptions(getOptions());
+    try {
+      memoizer.setId(id);
+      assertTrue(memoizer.isSavedToMemo());
+      assertEquals(store.getPlateCount(), 1);
+      assertNotEquals(store.getImageName(3), eagerStore.getImageName(3));
+
+      // only the selected series is copied into the caller's store
+      memoizer.setSeries(3);
+      assertSeries(memoizer, store, 3);
+      assertNotEquals(store.getImageName(4), eagerStore.getImageName(4));
+    }
+    finally {
+      memoizer.close();
+    }
+
+    memoizer = new Memoizer(new FakeReader(), 0, idDir);
+    store = MetadataTools.createOMEXMLMetadata();
+    memoizer.setMetadataStore(store);
+    memoizer.setMetadataOptions(getOptions());
+    try {
+      memoizer.setId(id);
+      assertTrue(memoizer.isLoadedFromMemo());
+      memoizer.setSeries(3);
+      assertSeries(memoizer, store, 3);
+      memoizer.setCoreIndex(4);
+      assertSeries(memoizer, store, 4);
+    }
+    finally {
+      memoizer.close();
+    }
+  }
+
+  // -- Helper methods --
+
+  private DynamicMetadataOptions getOptions() {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setBoolean(DynamicMetadataOptions.SERIES_LAZY_KEY, true);
+    return options;
+  }
+
+  /** Checks that a series matches the same series of the eager reader. */
+  private void assertSeries(IFormatReader reader, IMetadata store, int s) {
+    eager.setSeries(s);
+    assertEquals(reader.getSizeX(), eager.getSizeX());
+    assertEquals(reader.getSizeY(), eager.getSizeY());
+    assertEquals(reader.getImageCount(), eager.getImageCount());
+    assertEquals(reader.getDimensionOrder(), eager.getDimensionOrder());
+    assertEquals(store.getImageName(s), eagerStore.getImageName(s));
+    assertEquals(store.getPixelsSizeX(s), eagerStore.getPixelsSizeX(s));
+    assertEquals(store.getPixelsDimensionOrder(s),
+      eagerStore.getPixelsDimensionOrder(s));
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import loci.common.ByteArrayHandle;
+import loci.common.Constants;
+import loci.common.Location;
+import loci.common.RandomAccessInputStream;
+import loci.formats.in.FitsReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests memory-mapped plane access via {@link loci.formats.IMappedReader}.
+ */
+public class MappedReaderTest {
+
+  private static final int SIZE_X = 32;
+  private static final int SIZE_Y = 24;
+  private static final int SIZE_Z = 3;
+  private static final int HEADER_SIZE = 2880;
+
+  private File file;
+  private FitsReader reader;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    file = File.createTempFile(MappedReaderTest.class.getName(), ".fits");
+    file.deleteOnExit();
+
+    StringBuilder header = new StringBuilder();
+    header.append(card("SIMPLE  =                    T"));
+    header.append(card("BITPIX  =                   16"));
+    header.append(card("NAXIS   =                    3"));
+    header.append(card("NAXIS1  =                   " + SIZE_X));
+    header.append(card("NAXIS2  =                   " + SIZE_Y));
+    header.append(card("NAXIS3  =                    " + SIZE_Z));
+    header.append(card("END"));
+    while (header.length() < HEADER_SIZE) {
+      header.append(' ');
+    }
+
+    ByteBuffer pixels = ByteBuffer.allocate(SIZE_X * SIZE_Y * SIZE_Z * 2);
+    pixels.order(ByteOrder.BIG_ENDIAN);
+    for (int i=0; i<SIZE_X * SIZE_Y * SIZE_Z; i++) {
+      pixels.putShort((short) (i + 1));
+    }
+
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(header.toString().getBytes(Constants.ENCODING));
+      out.write(pixels.array());
+    }
+
+    reader = new FitsReader();
+    reader.setId(file.getAbsolutePath());
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    reader.close();
+    file.delete();
+  }
+
+  @Test
+  public void testPlaneIsMapped() throws Exception {
+    for (int no=0; no<reader.getImageCount(); no++) {
+      assertTrue(reader.isPlaneMappable(no));
+      ByteBuffer buffer = reader.openPlaneBuffer(no);
+      assertTrue(buffer.isDirect());
+      assertTrue(buffer.isReadOnly());
+      assertEquals(buffer.order(), ByteOrder.BIG_ENDIAN);
+      assertEquals(toArray(buffer), reader.openBytes(no));
+    }
+  }
+
+  @Test
+  public void testFullWidthRegionIsMapped() throws Exception {
+    ByteBuffer buffer = reader.openPlaneBuffer(1, 0, 5, SIZE_X, 10);
+    assertTrue(buffer.isDirect());
+    assertEquals(toArray(buffer), reader.openBytes(1, 0, 5, SIZE_X, 10));
+  }
+
+  @Test
+  public void testPartialRegionIsCopied() throws Exception {
+    ByteBuffer buffer = reader.openPlaneBuffer(2, 3, 4, 10, 7);
+    assertFalse(buffer.isDirect());
+    assertTrue(buffer.isReadOnly());
+    assertEquals(buffer.order(), ByteOrder.BIG_ENDIAN);
+    assertEquals(toArray(buffer), reader.openBytes(2, 3, 4, 10, 7));
+  }
+
+  @Test
+  public void testInMemoryFileIsCopied() throws Exception {
+    String id = "mapped-reader-test.fits";
+    byte[] data = new byte[(int) file.length()];
+    try (RandomAccessInputStream s =
+      new RandomAccessInputStream(file.getAbsolutePath()))
+    {
+      s.readFully(data);
+    }
+    Location.mapFile(id, new ByteArrayHandle(data));
+    try (FitsReader memoryReader = new FitsReader()) {
+      memoryReader.setId(id);
+      assertFalse(memoryReader.isPlaneMappable(0));
+      ByteBuffer buffer = memoryReader.openPlaneBuffer(0);
+      assertFalse(buffer.isDirect());
+      assertEquals(toArray(buffer), memoryReader.openBytes(0));
+    }
+    finally {
+      Location.mapFile(id, null);
+    }
+  }
+
+  private static String card(String text) {
+    StringBuilder card = new StringBuilder(text);
+    while (card.length() < 80) {
+      card.append(' ');
+    }
+    return card.toString();
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] copy = new byte[buffer.remaining()];
+    buffer.duplicate().get(copy);
+    return copy;
+  }
+
+}
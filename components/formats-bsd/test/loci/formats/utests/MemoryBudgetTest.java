@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+
+import loci.formats.ChannelSeparator;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.MinMaxCalculator;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.FakeReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that readers and wrappers honour
+ * {@link DynamicMetadataOptions#MEMORY_BUDGET_KEY}.
+ */
+public class MemoryBudgetTest {
+
+  private static final long BUDGET = 64 * 1024;
+
+  private IFormatReader reader;
+
+  /** Height of the tallest region read from the wrapped reader. */
+  private int maxRows;
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @DataProvider(name = "rgb")
+  public Object[][] rgb() {
+    return new Object[][] {
+      {"test&sizeX=256&sizeY=256&sizeC=3&rgb=3&interleaved=true.fake"},
+      {"test&sizeX=256&sizeY=256&sizeC=3&rgb=3&interleaved=false.fake"},
+      {"test&sizeX=256&sizeY=256&sizeC=3&rgb=3&pixelType=uint16.fake"},
+    };
+  }
+
+  @Test
+  public void testNoBudget() throws Exception {
+    reader = new FakeReader();
+    assertEquals(FormatTools.getMemoryBudget(reader), Long.MAX_VALUE);
+    reader.setMetadataOptions(getOptions(0));
+    assertEquals(FormatTools.getMemoryBudget(reader), Long.MAX_VALUE);
+    reader.setMetadataOptions(getOptions(BUDGET));
+    assertEquals(FormatTools.getMemoryBudget(reader), BUDGET);
+  }
+
+  @Test
+  public void testOversizedPlane() throws Exception {
+    reader = new FakeReader();
+    reader.setMetadataOptions(getOptions(BUDGET));
+    reader.setId("test&sizeX=512&sizeY=512.fake");
+
+    try {
+      reader.openBytes(0);
+      throw new AssertionError("Plane larger than the budget was allocated");
+    }
+    catch (FormatException e) {
+      assertTrue(e.getMessage().contains("memory budget"), e.getMessage());
+    }
+
+    // tiles within the budget, and caller-supplied buffers, are allowed
+    assertEquals(reader.openBytes(0, 0, 0, 128, 128).length, 128 * 128);
+    byte[] buf = new byte[512 * 512];
+    assertEquals(reader.openBytes(0, buf), buf);
+  }
+
+  @Test(dataProvider = "rgb")
+  public void testSeparatorStrips(String id) throws Exception {
+    IFormatReader source = new ChannelSeparator(new FakeReader());
+    source.setId(id);
+    reader = new ChannelSeparator(countingReader());
+    reader.setMetadataOptions(getOptions(BUDGET));
+    reader.setId(id);
+
+    int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+    int planeSize = FormatTools.getPlaneSize(reader);
+    for (int no=0; no<reader.getImageCount(); no++) {
+      byte[] buf = new byte[planeSize];
+      reader.openBytes(no, buf);
+      assertEquals(buf, source.openBytes(no));
+    }
+    source.close();
+
+    long stripSize = (long) maxRows * reader.getSizeX() * bpp * 4;
+    assertTrue(maxRows < reader.getSizeY());
+    assertTrue(stripSize <= BUDGET, "Strip of " + stripSize + " bytes");
+  }
+
+  @Test
+  public void testMinMaxStrips() throws Exception {
+    String id = "test&sizeX=512&sizeY=512&pixelType=uint16&sizeT=3.fake";
+    MinMaxCalculator expected = new MinMaxCalculator(new FakeReader());
+    expected.setId(id);
+    expected.populateMinMax(1);
+
+    MinMaxCalculator calculator = new MinMaxCalculator(countingReader());
+    reader = calculator;
+    calculator.setMetadataOptions(getOptions(BUDGET));
+    calculator.setId(id);
+    calculator.populateMinMax(1);
+    assertTrue(maxRows < calculator.getSizeY());
+
+    for (int no=0; no<calculator.getImageCount(); no++) {
+      assertEquals(calculator.getPlaneMinimum(no),
+        expected.getPlaneMinimum(no));
+      assertEquals(calculator.getPlaneMaximum(no),
+        expected.getPlaneMaximum(no));
+    }
+    expected.close();
+  }
+
+  @Test
+  public void testThumbnail() throws Exception {
+    String id = "test&sizeX=1024&sizeY=1024&sizeC=3&rgb=3.fake";
+    IFormatReader source = new FakeReader();
+    source.setId(id);
+    reader = countingReader();
+    reader.setMetadataOptions(getOptions(BUDGET));
+    reader.setId(id);
+
+    assertEquals(reader.openThumbBytes(0), source.openThumbBytes(0));
+    assertTrue((long) maxRows * reader.getSizeX() * 3 <= BUDGET);
+    source.close();
+  }
+
+  // -- Helper methods --
+
+  private DynamicMetadataOptions getOptions(long budget) {
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setLong(DynamicMetadataOptions.MEMORY_BUDGET_KEY, budget);
+    return options;
+  }
+
+  /** Returns a reader that records the tallest region read. */
+  private IFormatReader countingReader() {
+    maxRows = 0;
+    return new FakeReader() {
+      @Override
+      public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+        throws FormatException, IOException
+      {
+        maxRows = Math.max(maxRows, h);
+        return super.openBytes(no, buf, x, y, w, h);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import loci.common.Constants;
+import loci.formats.in.MicromanagerReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests reading planes from synthetic Micro-Manager datasets.
+ */
+public class MicromanagerReaderTest {
+
+  private static final int SIZE_X = 8;
+  private static final int SIZE_Y = 4;
+  private static final int SIZE_Z = 2;
+  private static final int SIZE_T = 2;
+
+  private static final int INDEX_MAP_OFFSET_HEADER = 54773648;
+  private static final int INDEX_MAP_HEADER = 3453623;
+
+  private File directory;
+  private MicromanagerReader reader;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    directory = File.createTempFile(
+      MicromanagerReaderTest.class.getName(), "");
+    directory.delete();
+    directory.mkdirs();
+    reader = new MicromanagerReader();
+  }
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    reader.close();
+    for (File f : directory.listFiles()) {
+      f.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testIndexMap() throws Exception {
+    // the first file stores its planes in reverse order, which can only
+    // be read correctly using the index map
+    writeTIFF(new File(directory, "t0.tif"), 0, true);
+    // the second file has no index map
+    writeTIFF(new File(directory, "t1.tif"), 1, false);
+    File metadata = writeMetadata();
+
+    reader.setId(metadata.getAbsolutePath());
+    assertEquals(reader.getSizeX(), SIZE_X);
+    assertEquals(reader.getSizeY(), SIZE_Y);
+    assertEquals(reader.getImageCount(), SIZE_Z * SIZE_T);
+
+    // alternate between files
+    int[] order = {0, 2, 1, 3, 0, 3};
+    for (int no : order) {
+      byte[] plane = reader.openBytes(no);
+      byte[] expected = new byte[SIZE_X * SIZE_Y];
+      Arrays.fill(expected, (byte) (no + 1));
+      assertEquals(plane, expected);
+    }
+
+    byte[] region = reader.openBytes(1, 2, 1, 3, 2);
+    byte[] expected = new byte[6];
+    Arrays.fill(expected, (byte) 2);
+    assertEquals(region, expected);
+  }
+
+  private File writeMetadata() throws IOException {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n");
+    json.append("\"Summary\": {\n");
+    json.append("  \"Slices\": " + SIZE_Z + ",\n");
+    json.append("  \"Channels\": 1,\n");
+    json.append("  \"Frames\": " + SIZE_T + ",\n");
+    json.append("  \"Width\": " + SIZE_X + ",\n");
+    json.append("  \"Height\": " + SIZE_Y + ",\n");
+    json.append("  \"IJType\": 0,\n");
+    json.append("  \"ChNames\": [\"DAPI\"],\n");
+    json.append("  \"SlicesFirst\": true,\n");
+    json.append("  \"MicroManagerVersion\": \"1.4.22\",\n");
+    json.append("},\n");
+    for (int t=0; t<SIZE_T; t++) {
+      for (int z=0; z<SIZE_Z; z++) {
+        json.append("\"FrameKey-" + t + "-0-" + z + "\": {\n");
+        json.append("  \"FileName\": \"t" + t + ".tif\",\n");
+        json.append("  \"Exposure-ms\": 10,\n");
+        json.append("},\n");
+      }
+    }
+    json.append("}\n");
+
+    File file = new File(directory, "metadata.txt");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(json.toString().getBytes(Constants.ENCODING));
+    }
+    return file;
+  }
+
+  /**
+   * Write a little-endian TIFF with one 8-bit plane per Z section.
+   * Each pixel is set to the plane index plus one.
+   */
+  private void writeTIFF(File file, int t, boolean indexMap)
+    throws IOException
+  {
+    int planeSize = SIZE_X * SIZE_Y;
+    int ifdSize = 2 + 9 * 12 + 4;
+    int pixelsOffset = 16;
+    int ifdOffset = pixelsOffset + planeSize * SIZE_Z;
+    int mapOffset = ifdOffset + ifdSize * SIZE_Z;
+    ByteBuffer b = ByteBuffer.allocate(mapOffset + 8 + 20 * SIZE_Z);
+    b.order(ByteOrder.LITTLE_ENDIAN);
+
+    b.put((byte) 'I').put((byte) 'I').putShort((short) 42);
+    b.putInt(ifdOffset);
+    if (indexMap) {
+      b.putInt(INDEX_MAP_OFFSET_HEADER).putInt(mapOffset);
+    }
+
+    int[] ifdOffsets = new int[SIZE_Z];
+    for (int z=0; z<SIZE_Z; z++) {
+      // IFDs are stored in reverse Z order if there is an index map
+      int ifd = indexMap ? SIZE_Z - z - 1 : z;
+      int pixels = pixelsOffset + ifd * planeSize;
+      b.position(pixels);
+      for (int i=0; i<planeSize; i++) {
+        b.put((byte) (t * SIZE_Z + z + 1));
+      }
+
+      ifdOffsets[z] = ifdOffset + ifd * ifdSize;
+      b.position(ifdOffsets[z]);
+      b.putShort((short) 9);
+      putEntry(b, 256, SIZE_X);
+      putEntry(b, 257, SIZE_Y);
+      putEntry(b, 258, 8);
+      putEntry(b, 259, 1);
+      putEntry(b, 262, 1);
+      putEntry(b, 273, pixels);
+      putEntry(b, 277, 1);
+      putEntry(b, 278, SIZE_Y);
+      putEntry(b, 279, planeSize);
+      b.putInt(ifd < SIZE_Z - 1 ? ifdOffset + (ifd + 1) * ifdSize : 0);
+    }
+
+    if (indexMap) {
+      b.position(mapOffset);
+      b.putInt(INDEX_MAP_HEADER).putInt(SIZE_Z);
+      for (int z=0; z<SIZE_Z; z++) {
+        b.putInt(0).putInt(z).putInt(t).putInt(0).putInt(ifdOffsets[z]);
+      }
+    }
+
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(b.array());
+    }
+  }
+
+  private void putEntry(ByteBuffer b, int tag, int value) {
+    b.putShort((short) tag);
+    b.putShort((short) 4);
+    b.putInt(1);
+    b.putInt(value);
+  }
+
+}
@@ -199,6 +199,31 @@ public class MinMaxCalculatorTest {
     assertMinMax(-2.0, 2.0);
   }
 
+  @Test
+  public void testAddMinMax() throws Exception {
+    MinMaxCalculator copy =
+      new MinMaxCalculator(new MinMaxCalculatorTestReader());
+    try {
+      copy.setId(TEST_FILE);
+      minMaxCalculator.addMinMax(copy);
+      assertFalse(minMaxCalculator.isMinMaxPopulated());
+
+      copy.openBytes(0);
+      minMaxCalculator.addMinMax(copy);
+      assertMinMax(-2.0, 101.0);
+
+      // values that are already known are not replaced
+      copy.close();
+      copy.setId(TEST_FILE);
+      copy.openBytes(0);
+      minMaxCalculator.addMinMax(copy);
+      assertMinMax(-2.0, 101.0);
+    }
+    finally {
+      copy.close();
+    }
+  }
+
   /**
    * Checks that the min and max values for each core index do not change
    * when the resolutions are unflattened.
@@ -0,0 +1,235 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import loci.common.DataTools;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.Memoizer;
+import loci.formats.MinMaxCalculator;
+import loci.formats.in.FakeReader;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests bulk min/max computation via
+ * {@link MinMaxCalculator#populateMinMax(int)}.
+ */
+public class MinMaxPopulateTest {
+
+  @DataProvider(name = "images")
+  public Object[][] images() {
+    String[] types = {"int8", "uint8", "int16", "uint16", "int32", "uint32",
+      "float", "double"};
+    Object[][] images = new Object[types.length * 2 + 2][];
+    int next = 0;
+    for (String type : types) {
+      for (boolean little : new boolean[] {false, true}) {
+        images[next++] = new Object[] {"test&pixelType=" + type +
+          "&little=" + little + "&sizeZ=3&sizeC=2&sizeT=2.fake", 3};
+      }
+    }
+    images[next++] = new Object[] {"test&sizeC=3&rgb=3&sizeT=4.fake", 1};
+    images[next++] = new Object[] {
+      "test&sizeC=3&rgb=3&interleaved=true&sizeT=4.fake", 2};
+    return images;
+  }
+
+  @Test(dataProvider = "images")
+  public void testPopulate(String id, int threads) throws Exception {
+    MinMaxCalculator reader = new MinMaxCalculator(new FakeReader());
+    try {
+      reader.setId(id);
+      assertFalse(reader.isMinMaxPopulated());
+      reader.populateMinMax(threads);
+      assertTrue(reader.isMinMaxPopulated());
+
+      int numRGB = reader.getRGBChannelCount();
+      double[] chanMin = new double[reader.getSizeC()];
+      double[] chanMax = new double[reader.getSizeC()];
+      Arrays.fill(chanMin, Double.POSITIVE_INFINITY);
+      Arrays.fill(chanMax, Double.NEGATIVE_INFINITY);
+      for (int no=0; no<reader.getImageCount(); no++) {
+        byte[] plane = reader.getReader().openBytes(no);
+        Double[] planeMin = reader.getPlaneMinimum(no);
+        Double[] planeMax = reader.getPlaneMaximum(no);
+        int cBase = reader.getZCTCoords(no)[1] * numRGB;
+        for (int c=0; c<numRGB; c++) {
+          double[] expected = getMinMax(reader, plane, c);
+          assertEquals(planeMin[c].doubleValue(), expected[0]);
+          assertEquals(planeMax[c].doubleValue(), expected[1]);
+          chanMin[cBase + c] = Math.min(chanMin[cBase + c], expected[0]);
+          chanMax[cBase + c] = Math.max(chanMax[cBase + c], expected[1]);
+        }
+      }
+      for (int c=0; c<reader.getSizeC(); c++) {
+        assertEquals(reader.getChannelGlobalMinimum(c).doubleValue(),
+          chanMin[c]);
+        assertEquals(reader.getChannelGlobalMaximum(c).doubleValue(),
+          chanMax[c]);
+      }
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testPopulateAfterRead() throws Exception {
+    MinMaxCalculator reader = new MinMaxCalculator(new FakeReader());
+    try {
+      reader.setId("test&pixelType=uint16&sizeT=5.fake");
+      reader.openBytes(2);
+      Double[] min = reader.getPlaneMinimum(2);
+      reader.populateMinMax(2);
+      assertTrue(reader.isMinMaxPopulated());
+      assertEquals(reader.getPlaneMinimum(2), min);
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testSkipPopulatedPlanes() throws Exception {
+    CountingReader counter = new CountingReader();
+    MinMaxCalculator reader = new MinMaxCalculator(counter);
+    try {
+      reader.setId("test&pixelType=uint16&sizeT=5.fake");
+      reader.openBytes(1);
+      reader.openBytes(3);
+      counter.planes.clear();
+      reader.populateMinMax(1);
+      assertTrue(reader.isMinMaxPopulated());
+      assertEquals(counter.planes, Arrays.asList(0, 2, 4));
+
+      counter.planes.clear();
+      reader.populateMinMax(1);
+      assertTrue(counter.planes.isEmpty());
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testPersistInMemo() throws Exception {
+    File dir = Files.createTempDirectory(
+      MinMaxPopulateTest.class.getName()).toFile();
+    File file = new File(dir, "test&pixelType=int16&sizeT=4.fake");
+    file.createNewFile();
+    try {
+      Memoizer memoizer = new Memoizer(
+        new MinMaxCalculator(new FakeReader()), 0, dir);
+      memoizer.setId(file.getAbsolutePath());
+      assertFalse(memoizer.isLoadedFromMemo());
+      MinMaxCalculator minMax = (MinMaxCalculator) memoizer.getReader();
+      minMax.populateMinMax(2);
+      Double max = minMax.getChannelGlobalMaximum(0);
+      assertTrue(memoizer.saveMemo());
+      memoizer.close();
+
+      memoizer = new Memoizer(new MinMaxCalculator(new FakeReader()), 0, dir);
+      memoizer.setId(file.getAbsolutePath());
+      assertTrue(memoizer.isLoadedFromMemo());
+      minMax = (MinMaxCalculator) memoizer.getReader();
+      assertTrue(minMax.isMinMaxPopulated());
+      assertEquals(minMax.getChannelGlobalMaximum(0), max);
+      memoizer.close();
+    }
+    finally {
+      for (File f : dir.listFiles()) {
+        f.delete();
+      }
+      dir.delete();
+    }
+  }
+
+  /**
+   * Records the index of every plane that is read.
+   */
+  private static class CountingReader extends FakeReader {
+    List<Integer> planes = new ArrayList<Integer>();
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      planes.add(no);
+      return super.openBytes(no, buf, x, y, w, h);
+    }
+  }
+
+  /** Straightforward computation of a channel's min and max. */
+  private static double[] getMinMax(IFormatReader reader, byte[] plane,
+    int c)
+  {
+    int pixelType = reader.getPixelType();
+    int bpp = FormatTools.getBytesPerPixel(pixelType);
+    int numRGB = reader.getRGBChannelCount();
+    int pixels = plane.length / (bpp * numRGB);
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i=0; i<pixels; i++) {
+      int index = reader.isInterleaved() ? i * numRGB + c : c * pixels + i;
+      long bits = DataTools.bytesToLong(plane, index * bpp, bpp,
+        reader.isLittleEndian());
+      double v;
+      switch (pixelType) {
+        case FormatTools.INT8: v = (byte) bits; break;
+        case FormatTools.INT16: v = (short) bits; break;
+        case FormatTools.INT32: v = (int) bits; break;
+        case FormatTools.FLOAT: v = Float.intBitsToFloat((int) bits); break;
+        case FormatTools.DOUBLE: v = Double.longBitsToDouble(bits); break;
+        default: v = bits;
+      }
+      min = Math.min(min, v);
+      max = Math.max(max, v);
+    }
+    return new double[] {min, max};
+  }
+
+}
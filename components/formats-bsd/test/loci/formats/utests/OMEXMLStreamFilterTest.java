@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import loci.common.services.DependencyException;
+import loci.common.services.ServiceException;
+import loci.common.services.ServiceFactory;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.MetadataTools;
+import loci.formats.in.DefaultMetadataOptions;
+import loci.formats.in.MetadataLevel;
+import loci.formats.in.OMETiffReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.ome.OMEXMLMetadata;
+import loci.formats.ome.OMEXMLStreamFilter;
+import loci.formats.ome.TiffDataIndex;
+import loci.formats.out.OMETiffWriter;
+import loci.formats.services.OMEXMLService;
+
+import ome.xml.model.primitives.NonNegativeInteger;
+import ome.xml.model.primitives.PositiveInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests streaming TiffData and annotations out of OME-XML via
+ * {@link OMEXMLStreamFilter}.
+ */
+public class OMEXMLStreamFilterTest {
+
+  private static final int SIZE_Z = 3;
+  private static final int SIZE_C = 2;
+  private static final int SIZE_T = 2;
+
+  private OMEXMLService service;
+
+  @BeforeMethod
+  public void setUp() throws DependencyException {
+    service = new ServiceFactory().getInstance(OMEXMLService.class);
+  }
+
+  @Test
+  public void testTiffDataIndex() throws ServiceException {
+    OMEXMLMetadata original = createMetadata();
+    String xml = service.getOMEXML(original);
+
+    OMEXMLStreamFilter filter = new OMEXMLStreamFilter();
+    String filtered = filter.filter(xml);
+    assertFalse(filtered.contains("TiffData"));
+
+    OMEXMLMetadata parsed = service.createOMEXMLMetadata(filtered);
+    assertEquals(parsed.getImageCount(), 2);
+    assertEquals(parsed.getTiffDataCount(0), 0);
+
+    TiffDataIndex index = filter.getTiffDataIndex(parsed);
+    assertTrue(index.isDetached());
+    assertIndex(index, TiffDataIndex.fromMetadata(original));
+  }
+
+  @Test
+  public void testPopulate() throws ServiceException {
+    OMEXMLMetadata original = createMetadata();
+    OMEXMLStreamFilter filter = new OMEXMLStreamFilter();
+    OMEXMLMetadata parsed = service.createOMEXMLMetadata(
+      filter.filter(service.getOMEXML(original)));
+    TiffDataIndex index = filter.getTiffDataIndex(parsed);
+    for (int i=0; i<index.getImageCount(); i++) {
+      index.populate(parsed, i, i);
+    }
+    assertIndex(TiffDataIndex.fromMetadata(parsed),
+      TiffDataIndex.fromMetadata(original));
+  }
+
+  @Test
+  public void testSkipAnnotations() throws ServiceException {
+    OMEXMLMetadata original = createMetadata();
+    service.populateOriginalMetadata(original, "key", "value");
+    String xml = service.getOMEXML(original);
+
+    OMEXMLStreamFilter filter = new OMEXMLStreamFilter();
+    OMEXMLMetadata parsed =
+      service.createOMEXMLMetadata(filter.filter(xml));
+    assertEquals(service.getOriginalMetadata(parsed).get("key"), "value");
+
+    filter.setSkipAnnotations(true);
+    parsed = service.createOMEXMLMetadata(filter.filter(xml));
+    assertTrue(service.getOriginalMetadata(parsed).isEmpty());
+    assertEquals(filter.getTiffDataIndex(parsed).getTiffDataCount(0),
+      SIZE_Z * SIZE_C * SIZE_T);
+  }
+
+  @Test
+  public void testUnfilteredDocument() throws ServiceException {
+    String xml = "<Foo><TiffData IFD=\"0\"/></Foo>";
+    OMEXMLStreamFilter filter = new OMEXMLStreamFilter();
+    assertEquals(filter.filter(xml), xml);
+
+    OMEXMLMetadata original = createMetadata();
+    TiffDataIndex index = filter.getTiffDataIndex(original);
+    assertFalse(index.isDetached());
+    assertIndex(index, TiffDataIndex.fromMetadata(original));
+  }
+
+  @Test
+  public void testMalformedDocument() {
+    OMEXMLStreamFilter filter = new OMEXMLStreamFilter();
+    String xml = "<OME xmlns=\"" + namespace() +
+      "\"><Image>";
+    assertEquals(filter.filter(xml), xml);
+  }
+
+  @Test
+  public void testReadOMETiff()
+    throws DependencyException, FormatException, IOException, ServiceException
+  {
+    File file = File.createTempFile(getClass().getName(), ".ome.tiff");
+    file.deleteOnExit();
+
+    IMetadata meta = service.createOMEXMLMetadata();
+    MetadataTools.populateMetadata(meta, 0, null, false, "XYZCT",
+      FormatTools.getPixelTypeString(FormatTools.UINT8), 8, 8,
+      SIZE_Z, SIZE_C, SIZE_T, 1);
+    OMETiffWriter writer = new OMETiffWriter();
+    writer.setMetadataRetrieve(meta);
+    writer.setId(file.getAbsolutePath());
+    int planes = SIZE_Z * SIZE_C * SIZE_T;
+    for (int i=0; i<planes; i++) {
+      byte[] plane = new byte[64];
+      plane[0] = (byte) i;
+      writer.saveBytes(i, plane);
+    }
+    writer.close();
+
+    for (MetadataLevel level : MetadataLevel.values()) {
+      OMETiffReader reader = new OMETiffReader();
+      reader.setMetadataOptions(new DefaultMetadataOptions(level));
+      IMetadata store = service.createOMEXMLMetadata();
+      reader.setMetadataStore(store);
+      try {
+        reader.setId(file.getAbsolutePath());
+        assertEquals(reader.getImageCount(), planes);
+        assertEquals(reader.getSizeZ(), SIZE_Z);
+        assertEquals(reader.getSizeC(), SIZE_C);
+        assertEquals(reader.getSizeT(), SIZE_T);
+        for (int i=0; i<planes; i++) {
+          assertEquals(reader.openBytes(i)[0], (byte) i);
+        }
+        assertEquals(store.getTiffDataCount(0), planes);
+      }
+      finally {
+        reader.close();
+      }
+    }
+  }
+
+  // -- Helper methods --
+
+  private String namespace() {
+    return "http://www.openmicroscopy.org/Schemas/OME/" +
+      service.getLatestVersion();
+  }
+
+  private OMEXMLMetadata createMetadata() throws ServiceException {
+    OMEXMLMetadata meta = service.createOMEXMLMetadata();
+    for (int i=0; i<2; i++) {
+      MetadataTools.populateMetadata(meta, i, "image" + i, false, "XYZCT",
+        FormatTools.getPixelTypeString(FormatTools.UINT8), 8, 8,
+        SIZE_Z, SIZE_C, SIZE_T, 1);
+      int td = 0;
+      for (int t=0; t<SIZE_T; t++) {
+        for (int c=0; c<SIZE_C; c++) {
+          for (int z=0; z<SIZE_Z; z++, td++) {
+            meta.setTiffDataIFD(new NonNegativeInteger(td), i, td);
+            meta.setTiffDataPlaneCount(new NonNegativeInteger(1), i, td);
+            meta.setTiffDataFirstZ(new NonNegativeInteger(z), i, td);
+            meta.setTiffDataFirstC(new NonNegativeInteger(c), i, td);
+            meta.setTiffDataFirstT(new NonNegativeInteger(t), i, td);
+            if (i == 1) {
+              meta.setUUIDValue("urn:uuid:1234", i, td);
+              meta.setUUIDFileName("other.ome.tiff", i, td);
+            }
+          }
+        }
+      }
+    }
+    return meta;
+  }
+
+  private void assertIndex(TiffDataIndex actual, TiffDataIndex expected) {
+    assertEquals(actual.getImageCount(), expected.getImageCount());
+    for (int i=0; i<expected.getImageCount(); i++) {
+      assertEquals(actual.getTiffDataCount(i), expected.getTiffDataCount(i));
+      for (int td=0; td<expected.getTiffDataCount(i); td++) {
+        assertEquals(actual.getIFD(i, td), expected.getIFD(i, td));
+        assertEquals(actual.getPlaneCount(i, td),
+          expected.getPlaneCount(i, td));
+        assertEquals(actual.getFirstZ(i, td), expected.getFirstZ(i, td));
+        assertEquals(actual.getFirstC(i, td), expected.getFirstC(i, td));
+        assertEquals(actual.getFirstT(i, td), expected.getFirstT(i, td));
+        assertEquals(actual.getUUID(i, td), expected.getUUID(i, td));
+        assertEquals(actual.getUUIDFileName(i, td),
+          expected.getUUIDFileName(i, td));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import loci.formats.ChannelSeparator;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.PlaneIterator;
+import loci.formats.in.FakeReader;
+import loci.formats.in.TiffReader;
+import loci.formats.utests.out.WriterUtilities;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests sequential plane access via {@link PlaneIterator}.
+ */
+public class PlaneIteratorTest {
+
+  private static final String ID = "test&sizeZ=4&sizeC=3&sizeT=2.fake";
+
+  private IFormatReader reader;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    reader = new FakeReader();
+    reader.setId(ID);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    reader.close();
+  }
+
+  @DataProvider(name = "prefetch")
+  public Object[][] prefetch() {
+    return new Object[][] {{false}, {true}};
+  }
+
+  @Test
+  public void testDefaultOrder() throws Exception {
+    try (PlaneIterator planes = reader.openPlanes()) {
+      assertEquals(planes.getPlaneCount(), reader.getImageCount());
+      assertEquals(planes.getIndex(), -1);
+      int expected = 0;
+      while (planes.hasNext()) {
+        byte[] plane = planes.next();
+        assertEquals(planes.getIndex(), expected);
+        assertEquals(plane, reader.openBytes(expected));
+        expected++;
+      }
+      assertEquals(expected, reader.getImageCount());
+    }
+  }
+
+  @Test(dataProvider = "prefetch")
+  public void testCustomOrder(boolean prefetch) throws Exception {
+    int[] order = new int[reader.getImageCount()];
+    for (int i=0; i<order.length; i++) {
+      order[i] = order.length - i - 1;
+    }
+    byte[][] expected = new byte[order.length][];
+    for (int i=0; i<order.length; i++) {
+      expected[i] = reader.openBytes(i);
+    }
+
+    try (PlaneIterator planes = new PlaneIterator(reader, order, prefetch)) {
+      assertEquals(planes.isPrefetching(), prefetch);
+      for (int i=0; i<order.length; i++) {
+        assertTrue(planes.hasNext());
+        byte[] plane = planes.next();
+        assertEquals(planes.getIndex(), order[i]);
+        assertEquals(plane, expected[order[i]]);
+      }
+      assertFalse(planes.hasNext());
+    }
+  }
+
+  @Test(expectedExceptions = NoSuchElementException.class)
+  public void testNextAfterLastPlane() throws Exception {
+    int[] order = {2};
+    try (PlaneIterator planes = new PlaneIterator(reader, order, true)) {
+      planes.next();
+      planes.next();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidOrder() {
+    new PlaneIterator(reader, new int[] {reader.getImageCount()}, false);
+  }
+
+  @Test
+  public void testFileOrder() {
+    long[] offsets = {300, 100, 200, 100};
+    assertEquals(PlaneIterator.getFileOrder(offsets), new int[] {1, 3, 2, 0});
+  }
+
+  @Test
+  public void testPrefetchError() throws Exception {
+    PlaneIterator planes = new PlaneIterator(reader, null, true) {
+      @Override
+      protected byte[] readPlane(int no, byte[] buf)
+        throws FormatException, IOException
+      {
+        if (no == 1) {
+          throw new IOException("plane " + no);
+        }
+        return super.readPlane(no, buf);
+      }
+    };
+    try {
+      planes.next();
+      planes.next();
+      fail("Expected IOException");
+    }
+    catch (IOException e) {
+      assertEquals(e.getMessage(), "plane 1");
+    }
+    finally {
+      planes.close();
+    }
+  }
+
+  @Test
+  public void testWrapperWithSameImageCount() throws Exception {
+    reader.close();
+    reader = new ChannelSeparator(new FakeReader());
+    reader.setId(ID);
+    try (PlaneIterator planes = reader.openPlanes()) {
+      boolean[] seen = new boolean[reader.getImageCount()];
+      while (planes.hasNext()) {
+        byte[] plane = planes.next();
+        assertEquals(plane, reader.openBytes(planes.getIndex()));
+        seen[planes.getIndex()] = true;
+      }
+      boolean[] all = new boolean[seen.length];
+      Arrays.fill(all, true);
+      assertEquals(seen, all);
+    }
+  }
+
+  @Test
+  public void testWrapperWithDifferentImageCount() throws Exception {
+    reader.close();
+    reader = new ChannelSeparator(new FakeReader());
+    reader.setId("test&sizeC=3&rgb=3.fake");
+    assertEquals(reader.getImageCount(), 3);
+    try (PlaneIterator planes = reader.openPlanes()) {
+      assertEquals(planes.getPlaneCount(), 3);
+      for (int i=0; i<3; i++) {
+        assertEquals(planes.next(), reader.openBytes(i));
+        assertEquals(planes.getIndex(), i);
+      }
+    }
+  }
+
+  @Test
+  public void testTiffFileOrder() throws Exception {
+    File file = File.createTempFile(PlaneIteratorTest.class.getName(), ".tif");
+    file.deleteOnExit();
+    WriterUtilities.writeImage(file, 0, false, true, 1, 1, 3,
+      WriterUtilities.COMPRESSION_LZW, FormatTools.UINT8, false);
+
+    reader.close();
+    reader = new TiffReader();
+    reader.setId(file.getAbsolutePath());
+    byte[][] expected = new byte[reader.getImageCount()][];
+    for (int i=0; i<expected.length; i++) {
+      expected[i] = reader.openBytes(i);
+    }
+    try (PlaneIterator planes = reader.openPlanes()) {
+      assertTrue(planes.isPrefetching());
+      assertEquals(planes.getOrder(), new int[] {0, 1, 2});
+      while (planes.hasNext()) {
+        byte[] plane = planes.next();
+        assertEquals(plane, expected[planes.getIndex()]);
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import loci.formats.ChannelSeparator;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.RegionRequest;
+import loci.formats.in.FakeReader;
+import loci.formats.in.TiffReader;
+import loci.formats.utests.out.WriterUtilities;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests batched region access via
+ * {@link IFormatReader#openRegions(java.util.List)}.
+ */
+public class RegionRequestTest {
+
+  private static final String ID =
+    "test&sizeX=128&sizeY=96&sizeZ=2&sizeC=3&rgb=3&sizeT=2.fake";
+
+  private IFormatReader reader;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    reader = new FakeReader();
+    reader.setId(ID);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    reader.close();
+  }
+
+  @DataProvider(name = "interleaved")
+  public Object[][] interleaved() {
+    return new Object[][] {{false}, {true}};
+  }
+
+  @Test
+  public void testDefault() throws Exception {
+    List<RegionRequest> requests = createRequests(reader);
+    reader.openRegions(requests);
+    checkRequests(reader, requests);
+  }
+
+  @Test
+  public void testMergedRegions() throws Exception {
+    final int[] calls = new int[1];
+    reader.close();
+    reader = new FakeReader() {
+      @Override
+      public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+        throws FormatException, IOException
+      {
+        calls[0]++;
+        return super.openBytes(no, buf, x, y, w, h);
+      }
+    };
+    reader.setId(ID);
+
+    List<RegionRequest> requests = new ArrayList<RegionRequest>();
+    requests.add(new RegionRequest(1, 10, 10, 32, 32));
+    requests.add(new RegionRequest(1, 26, 20, 32, 32));
+    requests.add(new RegionRequest(1, 10, 42, 48, 8));
+    requests.add(new RegionRequest(2, 0, 0, 16, 16));
+    FormatTools.openRegions(reader, requests, null);
+    assertEquals(calls[0], 2);
+    checkRequests(reader, requests);
+  }
+
+  @Test
+  public void testPlaneOrder() throws Exception {
+    List<RegionRequest> requests = createRequests(reader);
+    int[] order = new int[reader.getImageCount()];
+    for (int i=0; i<order.length; i++) {
+      order[i] = order.length - i - 1;
+    }
+    FormatTools.openRegions(reader, requests, order);
+    checkRequests(reader, requests);
+  }
+
+  @Test
+  public void testSuppliedBuffer() throws Exception {
+    byte[] buf = new byte[FormatTools.getPlaneSize(reader, 8, 8)];
+    RegionRequest request = new RegionRequest(0, 4, 4, 8, 8, buf);
+    reader.openRegions(Arrays.asList(request));
+    assertEquals(request.getBuffer().length, buf.length);
+    assertEquals(buf, reader.openBytes(0, 4, 4, 8, 8));
+  }
+
+  @Test
+  public void testInvalidRequest() throws Exception {
+    RegionRequest valid = new RegionRequest(0, 0, 0, 8, 8);
+    RegionRequest invalid = new RegionRequest(0, 120, 0, 16, 8);
+    try {
+      FormatTools.openRegions(reader, Arrays.asList(valid, invalid), null);
+      fail("Expected FormatException");
+    }
+    catch (FormatException e) {
+      // nothing should have been read
+      byte[] empty = new byte[valid.getBuffer().length];
+      assertEquals(valid.getBuffer(), empty);
+    }
+  }
+
+  @Test
+  public void testWrapper() throws Exception {
+    reader.close();
+    reader = new ChannelSeparator(new FakeReader());
+    reader.setId(ID);
+    List<RegionRequest> requests = createRequests(reader);
+    reader.openRegions(requests);
+    checkRequests(reader, requests);
+  }
+
+  @Test(dataProvider = "interleaved")
+  public void testTiff(boolean interleaved) throws Exception {
+    File file = File.createTempFile(RegionRequestTest.class.getName(), ".tif");
+    file.deleteOnExit();
+    WriterUtilities.writeImage(file, 32, false, interleaved, 3, 1, 3,
+      WriterUtilities.COMPRESSION_LZW, FormatTools.UINT16, false);
+
+    reader.close();
+    reader = new TiffReader();
+    try {
+      reader.setId(file.getAbsolutePath());
+      List<RegionRequest> requests = createRequests(reader);
+      assertNull(requests.get(0).getBuffer());
+      reader.openRegions(requests);
+      checkRequests(reader, requests);
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  // -- Helper methods --
+
+  private static List<RegionRequest> createRequests(IFormatReader reader) {
+    int w = reader.getSizeX();
+    int h = reader.getSizeY();
+    int last = reader.getImageCount() - 1;
+    List<RegionRequest> requests = new ArrayList<RegionRequest>();
+    requests.add(new RegionRequest(last, 0, 0, w / 2, h / 2));
+    requests.add(new RegionRequest(0, w / 4, h / 4, w / 2, h / 2));
+    requests.add(new RegionRequest(0, 0, 0, w / 2, h / 2));
+    requests.add(new RegionRequest(0, w / 2, h / 2, w / 2, h / 2));
+    requests.add(new RegionRequest(last, w - 1, h - 1, 1, 1));
+    requests.add(new RegionRequest(last, 0, 0, w, h));
+    requests.add(new RegionRequest(0, 0, h - 8, w, 8));
+    return requests;
+  }
+
+  private static void checkRequests(IFormatReader reader,
+    List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    for (RegionRequest r : requests) {
+      byte[] expected = reader.openBytes(r.getPlane(), r.getX(), r.getY(),
+        r.getWidth(), r.getHeight());
+      assertEquals(r.getBuffer(), expected, r.toString());
+    }
+  }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import loci.common.DataTools;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ThumbnailGenerator;
+import loci.formats.in.FakeReader;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests AWT-free thumbnail generation via {@link ThumbnailGenerator}.
+ */
+public class ThumbnailGeneratorTest {
+
+  private IFormatReader reader;
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @DataProvider(name = "pixelTypes")
+  public Object[][] pixelTypes() {
+    return new Object[][] {
+      {"int8"}, {"uint8"}, {"int16"}, {"uint16"}, {"int32"}, {"uint32"},
+      {"float"}, {"double"}
+    };
+  }
+
+  @Test(dataProvider = "pixelTypes")
+  public void testThumbnailSize(String pixelType) throws Exception {
+    reader = new FakeReader();
+    reader.setId("test&pixelType=" + pixelType + "&sizeX=300&sizeY=200.fake");
+    byte[] thumb = reader.openThumbBytes(0);
+    int bpp = FormatTools.getBytesPerPixel(reader.getPixelType());
+    assertEquals(reader.getThumbSizeX(), 128);
+    assertEquals(reader.getThumbSizeY(), 85);
+    assertEquals(thumb.length, 128 * 85 * bpp);
+  }
+
+  @Test
+  public void testAreaAverage() throws Exception {
+    reader = new FakeReader();
+    reader.setId("test&sizeX=512&sizeY=256.fake");
+    byte[] plane = reader.openBytes(0);
+    byte[] thumb = new ThumbnailGenerator(reader).openThumbBytes(0);
+    assertEquals(thumb.length, 128 * 64);
+
+    for (int ty=0; ty<64; ty++) {
+      for (int tx=0; tx<128; tx++) {
+        int sum = 0;
+        for (int y=ty*4; y<(ty+1)*4; y++) {
+          for (int x=tx*4; x<(tx+1)*4; x++) {
+            sum += plane[y * 512 + x] & 0xff;
+          }
+        }
+        assertEquals(thumb[ty * 128 + tx] & 0xff, Math.round(sum / 16f));
+      }
+    }
+  }
+
+  @Test
+  public void testFloatNormalized() throws Exception {
+    reader = new FakeReader();
+    reader.setId("test&pixelType=float&sizeX=512&sizeY=256.fake");
+    boolean little = reader.isLittleEndian();
+    float[] plane = (float[])
+      DataTools.makeDataArray(reader.openBytes(0), 4, true, little);
+    float min = Float.MAX_VALUE;
+    float max = -Float.MAX_VALUE;
+    for (float v : plane) {
+      min = Math.min(min, v);
+      max = Math.max(max, v);
+    }
+    assertTrue(max > 1);
+
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(thumb.length, 128 * 64 * 4);
+    for (int ty=0; ty<64; ty++) {
+      for (int tx=0; tx<128; tx++) {
+        double sum = 0;
+        for (int y=ty*4; y<(ty+1)*4; y++) {
+          for (int x=tx*4; x<(tx+1)*4; x++) {
+            sum += (plane[y * 512 + x] - min) / (max - min);
+          }
+        }
+        float value = Float.intBitsToFloat(DataTools.bytesToInt(thumb,
+          (ty * 128 + tx) * 4, 4, little));
+        assertEquals(value, sum / 16, 1e-6);
+      }
+    }
+  }
+
+  @Test
+  public void testInt16Unsigned() throws Exception {
+    reader = new AlternatingSignReader();
+    reader.setId("test&pixelType=int16&sizeX=512&sizeY=256.fake");
+    boolean little = reader.isLittleEndian();
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(thumb.length, 128 * 64 * 2);
+    // -1 and 1 average to 0x8000 when treated as unsigned, not to 0
+    for (int i=0; i<thumb.length; i+=2) {
+      assertEquals(DataTools.bytesToShort(thumb, i, 2, little) & 0xffff,
+        0x8000);
+    }
+  }
+
+  @Test
+  public void testInterleavedRGB() throws Exception {
+    reader = new FakeReader();
+    reader.setId(
+      "test&sizeX=256&sizeY=256&sizeC=3&rgb=3&interleaved=true.fake");
+    assertTrue(reader.isInterleaved());
+    byte[] plane = reader.openBytes(0);
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(thumb.length, 128 * 128 * 3);
+
+    for (int c=0; c<3; c++) {
+      int sum = 0;
+      for (int y=0; y<2; y++) {
+        for (int x=0; x<2; x++) {
+          sum += plane[(y * 256 + x) * 3 + c] & 0xff;
+        }
+      }
+      assertEquals(thumb[c] & 0xff, Math.round(sum / 4f));
+    }
+  }
+
+  @Test
+  public void testSmallImage() throws Exception {
+    reader = new FakeReader();
+    reader.setId("test&pixelType=uint16&sizeX=64&sizeY=32.fake");
+    assertEquals(reader.openThumbBytes(0), reader.openBytes(0));
+  }
+
+  @Test
+  public void testSmallestResolution() throws Exception {
+    CountingReader counter = new CountingReader();
+    reader = counter;
+    reader.setId("pyramid&sizeX=4096&sizeY=2048&resolutions=5" +
+      "&resolutionScale=2.fake");
+    int smallest = reader.getSeriesCount() - 1;
+
+    byte[] thumb = reader.openThumbBytes(0);
+    assertEquals(reader.getCoreIndex(), 0);
+    assertEquals(counter.coreIndexes.size(), 1);
+    assertTrue(counter.coreIndexes.contains(smallest));
+
+    reader.setSeries(smallest);
+    assertEquals(thumb, reader.openThumbBytes(0));
+  }
+
+  @Test
+  public void testSeriesThumbnails() throws Exception {
+    reader = new FakeReader();
+    reader.setId("test&series=3&sizeX=300&sizeY=200.fake");
+    byte[][] thumbs = new ThumbnailGenerator(reader).openSeriesThumbBytes();
+    assertEquals(thumbs.length, 3);
+    assertEquals(reader.getSeries(), 0);
+    for (int s=0; s<thumbs.length; s++) {
+      reader.setSeries(s);
+      assertEquals(thumbs[s], reader.openThumbBytes(0));
+    }
+  }
+
+  @Test
+  public void testPyramidSeriesThumbnails() throws Exception {
+    CountingReader counter = new CountingReader();
+    reader = counter;
+    reader.setId("pyramid&sizeX=2048&sizeY=2048&resolutions=4" +
+      "&resolutionScale=2.fake");
+    byte[][] thumbs = new ThumbnailGenerator(reader).openSeriesThumbBytes();
+    assertEquals(thumbs.length, 4);
+    assertEquals(counter.coreIndexes.size(), 1);
+    assertTrue(counter.coreIndexes.contains(3));
+    for (int s=1; s<thumbs.length; s++) {
+      assertEquals(thumbs[s], thumbs[0]);
+    }
+  }
+
+  /**
+   * Returns 16-bit planes in which -1 and 1 alternate along each row.
+   */
+  private static class AlternatingSignReader extends FakeReader {
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      for (int i=0; i<w*h; i++) {
+        short value = (short) ((x + i % w) % 2 == 0 ? -1 : 1);
+        DataTools.unpackBytes(value, buf, i * 2, 2, isLittleEndian());
+      }
+      return buf;
+    }
+  }
+
+  /**
+   * Records the core index of every region that is read.
+   */
+  private static class CountingReader extends FakeReader {
+    Set<Integer> coreIndexes = new HashSet<Integer>();
+
+    @Override
+    public byte[] openBytes(int no, byte[] buf, int x, int y, int w, int h)
+      throws FormatException, IOException
+    {
+      coreIndexes.add(getCoreIndex());
+      return super.openBytes(no, buf, x, y, w, h);
+    }
+  }
+
+}
@@ -38,13 +38,22 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import loci.common.services.ServiceFactory;
 import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.MetadataTools;
 import loci.formats.in.TiffReader;
 import loci.formats.in.OMETiffReader;
 import loci.formats.in.DynamicMetadataOptions;
 import loci.formats.meta.IMetadata;
+import loci.formats.ome.OMEXMLMetadata;
 import loci.formats.out.OMETiffWriter;
+import loci.formats.services.OMEXMLService;
 import loci.formats.tiff.IFD;
+import loci.formats.tiff.TiffIFDEntry;
+import loci.formats.tiff.TiffParser;
 import ome.xml.model.enums.PixelType;
 import ome.xml.model.primitives.PositiveInteger;
 import org.testng.annotations.AfterMethod;
@@ -222,4 +231,104 @@ public class OMETiffWriterTest {
     cFile.deleteOnExit();
     wd.toFile().deleteOnExit();
   }
+
+  @Test
+  public void testMultipleFiles() throws Exception {
+    int sizeZ = 2;
+    int sizeT = 6;
+    OMEXMLService service =
+      new ServiceFactory().getInstance(OMEXMLService.class);
+    IMetadata meta = service.createOMEXMLMetadata();
+    MetadataTools.populateMetadata(meta, 0, null, false, "XYZCT",
+      FormatTools.getPixelTypeString(FormatTools.UINT8), 16, 16,
+      sizeZ, 1, sizeT, 1);
+
+    Path wd = Files.createTempDirectory(this.getClass().getName());
+    File[] files = new File[sizeT];
+    OMETiffWriter mwriter = new OMETiffWriter();
+    mwriter.setMetadataRetrieve(meta);
+    for (int t=0; t<sizeT; t++) {
+      files[t] = wd.resolve("test_T" + t + ".ome.tif").toFile();
+      files[t].deleteOnExit();
+      mwriter.changeOutputFile(files[t].getAbsolutePath());
+      for (int z=0; z<sizeZ; z++) {
+        byte[] img = new byte[16 * 16];
+        img[0] = (byte) (t * sizeZ + z);
+        mwriter.saveBytes(t * sizeZ + z, img);
+      }
+    }
+    mwriter.close();
+    wd.toFile().deleteOnExit();
+
+    Set<String> uuids = new HashSet<String>();
+    for (File f : files) {
+      TiffParser parser = new TiffParser(f.getAbsolutePath());
+      String xml = parser.getComment();
+      parser.getStream().close();
+      OMEXMLMetadata omexml = service.createOMEXMLMetadata(xml);
+      assertEquals(omexml.getTiffDataCount(0), sizeZ * sizeT);
+      String uuid = omexml.getUUID();
+      assertTrue(uuids.add(uuid));
+      boolean referenced = false;
+      for (int td=0; td<omexml.getTiffDataCount(0); td++) {
+        if (uuid.equals(omexml.getUUIDValue(0, td))) {
+          assertEquals(omexml.getUUIDFileName(0, td), f.getName());
+          referenced = true;
+        }
+      }
+      assertTrue(referenced);
+    }
+
+    OMETiffReader reader = new OMETiffReader();
+    reader.setId(files[sizeT - 1].getAbsolutePath());
+    assertEquals(reader.getUsedFiles().length, sizeT);
+    assertEquals(reader.getImageCount(), sizeZ * sizeT);
+    for (int i=0; i<reader.getImageCount(); i++) {
+      assertEquals(reader.openBytes(i)[0], (byte) i);
+    }
+    reader.close();
+  }
+
+  @DataProvider(name = "commentReserve")
+  public Object[][] createCommentReserve() {
+    return new Object[][] {{65536, true}, {16, false}};
+  }
+
+  @Test(dataProvider = "commentReserve")
+  public void testReservedComment(int reserve, boolean inPlace)
+    throws Exception
+  {
+    File tmp = File.createTempFile(this.getClass().getName(), ".ome.tif");
+    tmp.delete();
+    tmp.deleteOnExit();
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(OMETiffWriter.COMMENT_RESERVE_KEY, reserve);
+    int planeCount =
+      WriterUtilities.SIZE_Z * WriterUtilities.SIZE_C * WriterUtilities.SIZE_T;
+
+    OMETiffWriter rwriter = new OMETiffWriter();
+    rwriter.setMetadataOptions(options);
+    rwriter.setMetadataRetrieve(metadata);
+    rwriter.setId(tmp.getAbsolutePath());
+    byte[] img = new byte[WriterUtilities.SIZE_X * WriterUtilities.SIZE_Y];
+    for (int i = 0; i < planeCount; i++) {
+      rwriter.saveBytes(i, img);
+    }
+    long length = tmp.length();
+    rwriter.close();
+
+    TiffParser parser = new TiffParser(tmp.getAbsolutePath());
+    TiffIFDEntry entry = parser.getFirstIFDEntry(IFD.IMAGE_DESCRIPTION);
+    long firstStrip = parser.getFirstIFD().getStripOffsets()[0];
+    String comment = parser.getComment();
+    parser.getStream().close();
+    assertTrue(comment.startsWith("<?xml"));
+    assertEquals(entry.getValueOffset() < firstStrip, inPlace);
+    assertEquals(tmp.length() == length, inPlace);
+
+    OMETiffReader reader = new OMETiffReader();
+    reader.setId(tmp.getAbsolutePath());
+    assertEquals(reader.getImageCount(), planeCount);
+    reader.close();
+  }
 }
@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * BSD implementations of Bio-Formats readers and writers
+ * %%
+ * Copyright (C) 2005 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package loci.formats.utests.tiff;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+
+import loci.common.RandomAccessInputStream;
+import loci.formats.FormatTools;
+import loci.formats.in.BaseTiffReader;
+import loci.formats.in.TiffReader;
+import loci.formats.out.TiffWriter;
+import loci.formats.tiff.IFD;
+import loci.formats.tiff.PhotoInterp;
+import loci.formats.tiff.TiffSaver;
+import loci.formats.utests.out.WriterUtilities;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests copying compressed tiles between TIFF files via
+ * {@link loci.formats.ICompressedTileReader} and
+ * {@link loci.formats.ICompressedTileWriter}.
+ */
+public class CompressedTileCopyTest {
+
+  private static final int TILE_SIZE = 64;
+
+  private File source;
+  private File target;
+
+  @DataProvider(name = "codecs")
+  public Object[][] createCodecs() {
+    return new Object[][] {
+      {WriterUtilities.COMPRESSION_LZW, 1},
+      {WriterUtilities.COMPRESSION_LZW, 3},
+      {WriterUtilities.COMPRESSION_JPEG, 3},
+      {"zlib", 1},
+    };
+  }
+
+  @DataProvider(name = "photometric")
+  public Object[][] createPhotometric() {
+    return new Object[][] {
+      {WriterUtilities.COMPRESSION_LZW, 1, PhotoInterp.WHITE_IS_ZERO},
+      {WriterUtilities.COMPRESSION_LZW, 3, PhotoInterp.Y_CB_CR},
+      {WriterUtilities.COMPRESSION_JPEG, 3, PhotoInterp.Y_CB_CR},
+    };
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    source = File.createTempFile("CompressedTileCopyTest", ".tif");
+    target = File.createTempFile("CompressedTileCopyTest", ".tif");
+    source.deleteOnExit();
+    target.deleteOnExit();
+    target.delete();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    source.delete();
+    target.delete();
+  }
+
+  @Test(dataProvider = "codecs")
+  public void testCopyTiles(String compression, int rgbChannels)
+    throws Exception
+  {
+    WriterUtilities.writeImage(source, TILE_SIZE, false, true, rgbChannels,
+      1, 1, compression, FormatTools.UINT8, false);
+
+    TiffReader reader = new TiffReader();
+    TiffWriter writer = new TiffWriter();
+    try {
+      reader.setId(source.getAbsolutePath());
+      assertEquals(reader.getTileCodec(0), compression);
+      assertEquals(reader.getCompressedTileWidth(0), TILE_SIZE);
+      assertEquals(reader.getCompressedTileHeight(0), TILE_SIZE);
+
+      writer.setMetadataRetrieve(WriterUtilities.createMetadata(
+        FormatTools.getPixelTypeString(FormatTools.UINT8), rgbChannels, 1,
+        false, 1));
+      writer.setCompression(compression);
+      writer.setInterleaved(true);
+      writer.setTileSizeX(TILE_SIZE);
+      writer.setTileSizeY(TILE_SIZE);
+      writer.setId(target.getAbsolutePath());
+
+      int sizeX = reader.getSizeX();
+      int sizeY = reader.getSizeY();
+      for (int y=0; y*TILE_SIZE<sizeY; y++) {
+        for (int x=0; x*TILE_SIZE<sizeX; x++) {
+          byte[] tile = reader.openCompressedBytes(0, x, y);
+          assertNotNull(tile);
+          int w = Math.min(TILE_SIZE, sizeX - x * TILE_SIZE);
+          int h = Math.min(TILE_SIZE, sizeY - y * TILE_SIZE);
+          writer.saveCompressedBytes(0, tile, x * TILE_SIZE, y * TILE_SIZE,
+            w, h);
+        }
+      }
+      writer.close();
+
+      TiffReader copy = new TiffReader();
+      try {
+        copy.setId(target.getAbsolutePath());
+        assertEquals(copy.getTileCodec(0), compression);
+        assertEquals(copy.openBytes(0), reader.openBytes(0));
+        assertEquals(copy.openCompressedBytes(0, 1, 1),
+          reader.openCompressedBytes(0, 1, 1));
+      }
+      finally {
+        copy.close();
+      }
+    }
+    finally {
+      reader.close();
+      writer.close();
+    }
+  }
+
+  @Test(dataProvider = "photometric")
+  public void testPhotometric(String compression, int rgbChannels,
+    PhotoInterp photo)
+    throws Exception
+  {
+    WriterUtilities.writeImage(source, TILE_SIZE, false, true, rgbChannels,
+      1, 1, compression, FormatTools.UINT8, false);
+    RandomAccessInputStream in =
+      new RandomAccessInputStream(source.getAbsolutePath());
+    TiffSaver saver = new TiffSaver(source.getAbsolutePath());
+    try {
+      saver.overwriteIFDValue(in, 0, IFD.PHOTOMETRIC_INTERPRETATION,
+        photo.getCode());
+    }
+    finally {
+      in.close();
+      saver.close();
+    }
+
+    // TiffSaver would not write the same photometric interpretation
+    TiffReader reader = new TiffReader();
+    try {
+      reader.setId(source.getAbsolutePath());
+      assertNull(reader.getTileCodec(0));
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testUncompressed() throws Exception {
+    WriterUtilities.writeImage(source, TILE_SIZE, false, true, 1, 1, 1,
+      WriterUtilities.COMPRESSION_UNCOMPRESSED, FormatTools.UINT8, false);
+    TiffReader reader = new TiffReader();
+    try {
+      reader.setId(source.getAbsolutePath());
+      assertNull(reader.getTileCodec(0));
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testSubclass() throws Exception {
+    WriterUtilities.writeImage(source, TILE_SIZE, false, true, 1, 1, 1,
+      WriterUtilities.COMPRESSION_LZW, FormatTools.UINT8, false);
+    BaseTiffReader reader = new BaseTiffReader("Test TIFF", "tif") { };
+    try {
+      reader.setId(source.getAbsolutePath());
+      assertNull(reader.getTileCodec(0));
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+}
@@ -45,6 +45,7 @@ import loci.formats.IFormatReader;
 import loci.formats.MetadataTools;
 import loci.formats.codec.Codec;
 import loci.formats.codec.CodecOptions;
+import loci.formats.codec.CodecPool;
 import loci.formats.codec.JPEGCodec;
 import loci.formats.codec.LosslessJPEGCodec;
 import loci.formats.codec.JPEG2000Codec;
@@ -1062,15 +1063,15 @@ public class CellSensReader extends FormatReader {
           ets.read(buf);
           break;
         case JPEG:
-          Codec codec = new JPEGCodec();
+          Codec codec = CodecPool.getCodec(JPEGCodec.class);
           buf = codec.decompress(ets, options);
           break;
         case JPEG_2000:
-          codec = new JPEG2000Codec();
+          codec = CodecPool.getCodec(JPEG2000Codec.class);
           buf = codec.decompress(ets, options);
           break;
         case JPEG_LOSSLESS:
-          codec = new LosslessJPEGCodec();
+          codec = CodecPool.getCodec(LosslessJPEGCodec.class);
           buf = codec.decompress(ets, options);
           break;
         case PNG:
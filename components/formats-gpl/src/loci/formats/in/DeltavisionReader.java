@@ -26,6 +26,7 @@
 package loci.formats.in;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -39,7 +40,10 @@ import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
+import loci.formats.IMappedReader;
 import loci.formats.MetadataTools;
+import loci.formats.PlaneIterator;
+import loci.formats.RegionRequest;
 import loci.formats.meta.IMinMaxStore;
 import loci.formats.meta.MetadataStore;
 import loci.formats.tiff.TiffParser;
@@ -58,7 +62,9 @@ import ome.units.UNITS;
  *
  * @author Melissa Linkert melissa at glencoesoftware.com
  */
-public class DeltavisionReader extends FormatReader {
+public class DeltavisionReader extends FormatReader
+  implements IMappedReader
+{
 
   // -- Constants --
 
@@ -247,6 +253,27 @@ public class DeltavisionReader extends FormatReader {
     return buf;
   }
 
+  /* @see loci.formats.IFormatReader#openPlanes() */
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    FormatTools.assertId(currentId, true, 1);
+    long[] offsets = new long[getImageCount()];
+    for (int i=0; i<offsets.length; i++) {
+      int[] coords = getZCTCoords(i);
+      offsets[i] = getPlaneByteOffset(coords[0], coords[1], coords[2]);
+    }
+    return new PlaneIterator(this, PlaneIterator.getFileOrder(offsets), true);
+  }
+
+  /* @see loci.formats.IFormatReader#openRegions(List) */
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    FormatTools.assertId(currentId, true, 1);
+    FormatTools.openRegions(this, requests, FormatTools.getPlaneOrder(this));
+  }
+
   /* @see loci.formats.IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
@@ -283,6 +310,41 @@ public class DeltavisionReader extends FormatReader {
       this.truncatedFileFlag = truncatedFileFlag;
   }
 
+  // -- IMappedReader API methods --
+
+  /* @see loci.formats.IMappedReader#isPlaneMappable(int) */
+  @Override
+  public boolean isPlaneMappable(int no) {
+    int[] coords = getZCTCoords(no);
+    long offset = getPlaneByteOffset(coords[0], coords[1], coords[2]);
+    return isMappable(currentId, offset, FormatTools.getPlaneSize(this));
+  }
+
+  /* @see loci.formats.IMappedReader#isBottomUp() */
+  @Override
+  public boolean isBottomUp() {
+    return true;
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no)
+    throws FormatException, IOException
+  {
+    return openPlaneBuffer(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int, int, int, int, int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    FormatTools.checkPlaneNumber(this, no);
+    int[] coords = getZCTCoords(no);
+    long offset = getPlaneByteOffset(coords[0], coords[1], coords[2]);
+    return mapPlane(currentId, offset, no, x, y, w, h, true);
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
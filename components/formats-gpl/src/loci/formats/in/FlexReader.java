@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import loci.common.Constants;
 import loci.common.DataTools;
@@ -784,10 +785,11 @@ public class FlexReader extends FormatReader {
   /**
    * Parses XML metadata from the Flex file corresponding to the given well.
    * If the 'firstFile' flag is set, then the core metadata is also
-   * populated.
+   * populated.  The XML is read from the file's first IFD by
+   * {@link FileHeaderTask}.
    */
   private void parseFlexFile(int currentWell, int wellRow, int wellCol,
-    int field, boolean firstFile, MetadataStore store)
+    int field, boolean firstFile, MetadataStore store, String xml)
     throws FormatException, IOException
   {
     LOGGER.info("Parsing .flex file (well {}{}, field {})",
@@ -819,20 +821,6 @@ public class FlexReader extends FormatReader {
     // parse factors from XML
     LOGGER.debug("Parsing XML from {}", file.file);
 
-    int nOffsets = file.offsets != null ? file.offsets.length : 0;
-
-    IFD ifd = null;
-    if (nOffsets == 0) {
-      ifd = file.ifds.get(0);
-    }
-    else {
-      try (RandomAccessInputStream ras = new RandomAccessInputStream(file.file)) {
-        TiffParser parser = new TiffParser(ras);
-        ifd = parser.getFirstIFD();
-      }
-    }
-    String xml = XMLTools.sanitizeXML(ifd.getIFDStringValue(FLEX));
-
     final List<String> n = new ArrayList<String>();
     final List<String> f = new ArrayList<String>();
     DefaultHandler handler =
@@ -1218,31 +1206,31 @@ public class FlexReader extends FormatReader {
     Boolean firstCompressed = null;
     int firstIFDCount = 0;
     String firstBarcode = null;
-    for (String file : fileList) {
-      LOGGER.warn("parsing {}", file);
-      IFD firstIFD = null;
-      int ifdCount = 0;
-      try (RandomAccessInputStream s = new RandomAccessInputStream(file, 16)) {
-        TiffParser parser = new TiffParser(s);
-        firstIFD = parser.getFirstIFD();
-        ifdCount = parser.getIFDOffsets().length;
+
+    // the files are independent of each other, so they can be summarized
+    // concurrently; when they are read one at a time, each file is only
+    // summarized once the previous files have matched
+    boolean concurrent = getInitThreads() > 1;
+    List<FileSummary> summaries = null;
+    if (concurrent) {
+      List<FileSummaryTask> tasks = new ArrayList<FileSummaryTask>();
+      for (String file : fileList) {
+        tasks.add(new FileSummaryTask(file));
       }
-      boolean compressed =
-        firstIFD.getCompression() != TiffCompression.UNCOMPRESSED;
+      summaries = runInitTasks(tasks);
+    }
+
+    for (int i=0; i<fileList.length; i++) {
+      String file = fileList[i];
+      FileSummary summary = concurrent ?
+        summaries.get(i) : new FileSummaryTask(file).call();
+      boolean compressed = summary.compressed;
+      int ifdCount = summary.ifdCount;
+      String barcode = summary.barcode;
       if (firstCompressed == null) {
         firstCompressed = compressed;
         firstIFDCount = ifdCount;
       }
-      String xml = XMLTools.sanitizeXML(firstIFD.getIFDStringValue(FLEX));
-      int barcodeIndex = xml.indexOf("Barcode");
-      String barcode = "";
-      if (barcodeIndex >= 0) {
-        int start = xml.indexOf(">", barcodeIndex) + 1;
-        int end = xml.indexOf("<", barcodeIndex);
-        if (start > 0 && end > 0) {
-          barcode = xml.substring(start, end);
-        }
-      }
       if (firstBarcode == null) {
         firstBarcode = barcode;
       }
@@ -1291,11 +1279,9 @@ public class FlexReader extends FormatReader {
     wellCount = v.size();
     wellNumber = new int[wellCount][2];
 
-    RandomAccessInputStream s = null;
-    boolean firstFile = true;
-    boolean compressed = false;
-    int nOffsets = 1;
-
+    // list the files in the order in which they are parsed
+    List<FlexFile> ordered = new ArrayList<FlexFile>();
+    List<int[]> wells = new ArrayList<int[]>();
     int currentWell = 0;
     for (int row=0; row<nRows; row++) {
       for (int col=0; col<nCols; col++) {
@@ -1304,21 +1290,15 @@ public class FlexReader extends FormatReader {
           continue;
         }
 
-        nFiles = files.size();
-
         String[] sortedFiles = files.toArray(new String[files.size()]);
         Arrays.sort(sortedFiles);
-        files.clear();
-        for (String f : sortedFiles) {
-          files.add(f);
-        }
 
-        for (int field=0; field<nFiles; field++) {
+        for (int field=0; field<sortedFiles.length; field++) {
           FlexFile file = new FlexFile();
           file.row = row;
           file.column = col;
           file.field = field;
-          file.file = files.get(field);
+          file.file = sortedFiles[field];
 
           if (file.file == null) {
             continue;
@@ -1327,73 +1307,113 @@ public class FlexReader extends FormatReader {
           wellNumber[currentWell][0] = row;
           wellNumber[currentWell][1] = col;
 
-          s = new RandomAccessInputStream(getFileHandle(file.file));
-          TiffParser tp = new TiffParser(s);
-
-          if (compressed || firstFile) {
-            LOGGER.info("Parsing IFDs for well {}{}",
-              (char) (row + 'A'), col + 1);
-            IFD firstIFD = tp.getFirstIFD();
-            compressed =
-              firstIFD.getCompression() != TiffCompression.UNCOMPRESSED;
+          ordered.add(file);
+          wells.add(new int[] {currentWell, sortedFiles.length});
+        }
+        currentWell++;
+      }
+    }
 
-            if (compressed || firstIFD.getStripOffsets()[0] == 16 ||
-              firstIFD.getStripOffsets().length == 1)
-            {
-              tp.setDoCaching(false);
-              file.ifds = tp.getMainIFDs();
-              file.ifds.set(0, firstIFD);
-              if (firstIFD.getStripOffsets().length == 1) {
-                // used to ensure that image offsets are read, not calculated
-                compressed = true;
-              }
-            }
-            else {
-              // if the pixel data is uncompressed and the IFD is stored
-              // before the image, we can assume that
-              // the pixel data for image #0 is located immediately before
-              // IFD #1; as a result, we only need to parse the first IFD
-              file.offsets = tp.getIFDOffsets();
-              nOffsets = file.offsets.length;
-              file.ifds = new IFDList();
-              file.ifds.add(firstIFD);
-            }
+    // Reading the IFDs and XML of each file is independent of the other
+    // files, but whether the IFDs are parsed or estimated depends upon
+    // the files before it, and the XML must be parsed in order.
+    // Files are handled in chunks so that only a few XML strings are held
+    // in memory at once.
+    boolean firstFile = true;
+    boolean compressed = false;
+    int nOffsets = 1;
+    int chunkSize = Math.max(1, getInitThreads()) * 4;
+
+    for (int start=0; start<ordered.size(); start+=chunkSize) {
+      int end = Math.min(ordered.size(), start + chunkSize);
+      List<FileHeaderTask> headerTasks = new ArrayList<FileHeaderTask>();
+      for (int i=start; i<end; i++) {
+        headerTasks.add(new FileHeaderTask(ordered.get(i).file));
+      }
+      List<FileHeader> headers = runInitTasks(headerTasks);
+
+      // decide which files need their IFDs or IFD offsets to be read
+      List<IFDTask> ifdTasks = new ArrayList<IFDTask>();
+      IFDTask[] fileTasks = new IFDTask[headers.size()];
+      boolean parseIFDs = compressed || firstFile;
+      for (int i=0; i<headers.size(); i++) {
+        if (!parseIFDs) {
+          break;
+        }
+        IFD firstIFD = headers.get(i).firstIFD;
+        compressed =
+          firstIFD.getCompression() != TiffCompression.UNCOMPRESSED;
+        boolean allIFDs = compressed ||
+          firstIFD.getStripOffsets()[0] == 16 ||
+          firstIFD.getStripOffsets().length == 1;
+        if (firstIFD.getStripOffsets().length == 1) {
+          // used to ensure that image offsets are read, not calculated
+          compressed = true;
+        }
+        fileTasks[i] = new IFDTask(ordered.get(start + i).file, allIFDs);
+        ifdTasks.add(fileTasks[i]);
+        parseIFDs = compressed;
+      }
+      runInitTasks(ifdTasks);
+
+      for (int i=0; i<headers.size(); i++) {
+        FlexFile file = ordered.get(start + i);
+        FileHeader header = headers.get(i);
+        IFDTask task = fileTasks[i];
+        int[] well = wells.get(start + i);
+        nFiles = well[1];
+
+        if (task != null) {
+          LOGGER.info("Parsing IFDs for well {}{}",
+            (char) (file.row + 'A'), file.column + 1);
+          if (task.ifds != null) {
+            file.ifds = task.ifds;
+            file.ifds.set(0, header.firstIFD);
           }
           else {
-            // retrieve the offsets to each IFD, instead of parsing
-            // all of the IFDs
-            LOGGER.info("Retrieving IFD offsets for well {}{}",
-              (char) (row + 'A'), col + 1);
-            file.offsets = new long[nOffsets];
-
-            // Assume that all IFDs after the first are evenly spaced.
-            // TiffParser.getIFDOffsets() could be used instead, but is
-            // substantially slower.
-            file.offsets[0] = tp.getFirstOffset();
-            if (file.offsets.length > 1) {
-              s.seek(file.offsets[0]);
-              s.skipBytes(s.readShort() * TiffConstants.BYTES_PER_ENTRY);
-              file.offsets[1] = s.readInt();
-              int size = FormatTools.getPlaneSize(this) + 174;
-              for (int i=2; i<file.offsets.length; i++) {
-                file.offsets[i] = file.offsets[i - 1] + size;
-              }
+            // if the pixel data is uncompressed and the IFD is stored
+            // before the image, we can assume that
+            // the pixel data for image #0 is located immediately before
+            // IFD #1; as a result, we only need to parse the first IFD
+            file.offsets = task.offsets;
+            nOffsets = file.offsets.length;
+            file.ifds = new IFDList();
+            file.ifds.add(header.firstIFD);
+          }
+        }
+        else {
+          // retrieve the offsets to each IFD, instead of parsing
+          // all of the IFDs
+          LOGGER.info("Retrieving IFD offsets for well {}{}",
+            (char) (file.row + 'A'), file.column + 1);
+          file.offsets = new long[nOffsets];
+
+          // Assume that all IFDs after the first are evenly spaced.
+          // TiffParser.getIFDOffsets() could be used instead, but is
+          // substantially slower.
+          file.offsets[0] = header.firstOffset;
+          if (file.offsets.length > 1) {
+            file.offsets[1] = header.secondOffset;
+            int size = FormatTools.getPlaneSize(this) + 174;
+            for (int p=2; p<file.offsets.length; p++) {
+              file.offsets[p] = file.offsets[p - 1] + size;
             }
           }
-          flexFiles.add(file);
-
-          // setting a negative field index indicates that the field count
-          // should be taken from the XML
-          parseFlexFile(currentWell, row, col, nFiles == 1 ? -1 : field, firstFile, store);
-          s.close();
-          if (firstFile) firstFile = false;
         }
-        currentWell++;
+        flexFiles.add(file);
+
+        // setting a negative field index indicates that the field count
+        // should be taken from the XML
+        parseFlexFile(well[0], file.row, file.column,
+          nFiles == 1 ? -1 : file.field, firstFile, store, header.xml);
+        if (firstFile) firstFile = false;
       }
     }
   }
 
-  private IRandomAccess getFileHandle(String flexFile) throws IOException {
+  private static IRandomAccess getFileHandle(String flexFile)
+    throws IOException
+  {
     if (Location.getMappedFile(flexFile) != null) {
       return Location.getMappedFile(flexFile);
     }
@@ -1429,6 +1449,115 @@ public class FlexReader extends FormatReader {
 
   // -- Helper classes --
 
+  /** Properties of a .flex file used to decide which files to group. */
+  static class FileSummary {
+    public boolean compressed;
+    public int ifdCount;
+    public String barcode;
+  }
+
+  /** Reads the {@link FileSummary} of a single .flex file. */
+  static class FileSummaryTask implements Callable<FileSummary> {
+    private final String file;
+
+    FileSummaryTask(String file) {
+      this.file = file;
+    }
+
+    @Override
+    public FileSummary call() throws FormatException, IOException {
+      LOGGER.warn("parsing {}", file);
+      IFD firstIFD = null;
+      FileSummary summary = new FileSummary();
+      try (RandomAccessInputStream s = new RandomAccessInputStream(file, 16)) {
+        TiffParser parser = new TiffParser(s);
+        firstIFD = parser.getFirstIFD();
+        summary.ifdCount = parser.getIFDOffsets().length;
+      }
+      summary.compressed =
+        firstIFD.getCompression() != TiffCompression.UNCOMPRESSED;
+      String xml = XMLTools.sanitizeXML(firstIFD.getIFDStringValue(FLEX));
+      int barcodeIndex = xml.indexOf("Barcode");
+      summary.barcode = "";
+      if (barcodeIndex >= 0) {
+        int start = xml.indexOf(">", barcodeIndex) + 1;
+        int end = xml.indexOf("<", barcodeIndex);
+        if (start > 0 && end > 0) {
+          summary.barcode = xml.substring(start, end);
+        }
+      }
+      return summary;
+    }
+  }
+
+  /** The first IFD and XML of a .flex file. */
+  static class FileHeader {
+    public IFD firstIFD;
+    public long firstOffset;
+    public long secondOffset;
+    public String xml;
+  }
+
+  /** Reads the {@link FileHeader} of a single .flex file. */
+  static class FileHeaderTask implements Callable<FileHeader> {
+    private final String file;
+
+    FileHeaderTask(String file) {
+      this.file = file;
+    }
+
+    @Override
+    public FileHeader call() throws FormatException, IOException {
+      FileHeader header = new FileHeader();
+      try (RandomAccessInputStream s =
+        new RandomAccessInputStream(getFileHandle(file)))
+      {
+        TiffParser tp = new TiffParser(s);
+        header.firstIFD = tp.getFirstIFD();
+        header.firstOffset = tp.getFirstOffset();
+        s.seek(header.firstOffset);
+        s.skipBytes(s.readShort() * TiffConstants.BYTES_PER_ENTRY);
+        header.secondOffset = s.readInt();
+      }
+      header.xml =
+        XMLTools.sanitizeXML(header.firstIFD.getIFDStringValue(FLEX));
+      return header;
+    }
+  }
+
+  /**
+   * Reads either all of the IFDs or the offset to each IFD
+   * in a single .flex file.
+   */
+  static class IFDTask implements Callable<Void> {
+    private final String file;
+    private final boolean allIFDs;
+    public IFDList ifds;
+    public long[] offsets;
+
+    IFDTask(String file, boolean allIFDs) {
+      this.file = file;
+      this.allIFDs = allIFDs;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      try (RandomAccessInputStream s =
+        new RandomAccessInputStream(getFileHandle(file)))
+      {
+        TiffParser tp = new TiffParser(s);
+        if (allIFDs) {
+          tp.setDoCaching(false);
+          ifds = tp.getMainIFDs();
+        }
+        else {
+          offsets = tp.getIFDOffsets();
+        }
+      }
+      return null;
+    }
+  }
+
   class FlexFile {
     public int row;
     public int column;
@@ -41,9 +41,9 @@ import loci.common.Region;
 import loci.common.services.ServiceException;
 import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
-import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
+import loci.formats.SubResolutionFormatReader;
 import loci.formats.codec.JPEGTileDecoder;
 import loci.formats.meta.MetadataStore;
 import loci.formats.services.JPEGTurboService;
@@ -56,10 +56,25 @@ import ome.units.quantity.Length;
  *
  * @author Melissa Linkert melissa at glencoesoftware.com
  */
-public class HamamatsuVMSReader extends FormatReader {
+public class HamamatsuVMSReader extends SubResolutionFormatReader {
 
   // -- Constants --
 
+  /**
+   * MetadataOptions key for determining whether to report extra
+   * resolutions that are decoded at a reduced scale.
+   */
+  public static final String SYNTHETIC_RESOLUTIONS_KEY =
+    "hamamatsu.vms.synthetic_resolutions";
+
+  /**
+   * Default value of {@link #SYNTHETIC_RESOLUTIONS_KEY}
+   */
+  public static final boolean SYNTHETIC_RESOLUTIONS_DEFAULT = false;
+
+  /** Number of 1/2, 1/4 and 1/8 scale resolutions supported by DCT scaling. */
+  private static final int SYNTHETIC_RESOLUTION_COUNT = 3;
+
   private static final int MAX_JPEG_SIZE = 61440;
   private static final int MAX_SIZE = 2048;
 
@@ -91,6 +106,21 @@ public class HamamatsuVMSReader extends FormatReader {
     datasetDescription = "One .vms file plus several .jpg files";
   }
 
+  // -- HamamatsuVMSReader API methods --
+
+  /**
+   * @return true if MetadataOptions are set so that the full resolution
+   *  image is followed by resolutions decoded at 1/2, 1/4 and 1/8 scale
+   */
+  public boolean useSyntheticResolutions() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getBoolean(
+        SYNTHETIC_RESOLUTIONS_KEY, SYNTHETIC_RESOLUTIONS_DEFAULT);
+    }
+    return SYNTHETIC_RESOLUTIONS_DEFAULT;
+  }
+
   // -- IFormatReader API methods --
 
   /* @see loci.formats.IFormatReader#getOptimalTileWidth() */
@@ -131,11 +161,20 @@ public class HamamatsuVMSReader extends FormatReader {
   {
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
-    int startCol = x / MAX_JPEG_SIZE;
-    int startRow = y / MAX_JPEG_SIZE;
+    // synthetic resolutions of the full resolution image are decoded
+    // from the same JPEG tiles at 1/2, 1/4 or 1/8 scale
+    int[] index = core.flattenedIndexes(getCoreIndex());
+    int physical = index[0];
+    int scale = 1 << index[1];
+    int jpegSize = MAX_JPEG_SIZE / scale;
+    int fullSizeX = core.get(physical, 0).sizeX;
+    int fullSizeY = core.get(physical, 0).sizeY;
+
+    int startCol = x / jpegSize;
+    int startRow = y / jpegSize;
 
     String file = null;
-    switch (getCoreIndex()) {
+    switch (physical) {
       case 0:
         file = tileFiles[no][startRow][startCol];
         break;
@@ -147,7 +186,7 @@ public class HamamatsuVMSReader extends FormatReader {
         break;
     }
 
-    if (getSizeX() <= MAX_SIZE || getSizeY() <= MAX_SIZE) {
+    if (fullSizeX <= MAX_SIZE || fullSizeY <= MAX_SIZE) {
       JPEGReader reader = new JPEGReader();
       reader.setId(file);
       reader.openBytes(0, buf, x, y, w, h);
@@ -163,14 +202,18 @@ public class HamamatsuVMSReader extends FormatReader {
       Region image = new Region(x, y, w, h);
       for (int row=startRow; row<nRows; row++) {
         for (int col=startCol; col<nCols; col++) {
-          Region tile = new Region(col * MAX_JPEG_SIZE, row * MAX_JPEG_SIZE,
-            col == nCols - 1 ? getSizeX() % MAX_JPEG_SIZE : MAX_JPEG_SIZE,
-            row == nRows - 1 ? getSizeY() % MAX_JPEG_SIZE : MAX_JPEG_SIZE);
+          int jpegWidth = col == nCols - 1 ?
+            fullSizeX % MAX_JPEG_SIZE : MAX_JPEG_SIZE;
+          int jpegHeight = row == nRows - 1 ?
+            fullSizeY % MAX_JPEG_SIZE : MAX_JPEG_SIZE;
+          Region tile = new Region(col * jpegSize, row * jpegSize,
+            getScaledDimension(jpegWidth, scale),
+            getScaledDimension(jpegHeight, scale));
           if (!tile.intersects(image)) {
             continue;
           }
           file = tileFiles[no][row][col];
-          if (initializedSeries != getCoreIndex() || initializedPlane != no ||
+          if (initializedSeries != physical || initializedPlane != no ||
             !file.equals(initializedFile))
           {
             service.close();
@@ -182,23 +225,30 @@ public class HamamatsuVMSReader extends FormatReader {
             }
             // closing the service will close this file
             RandomAccessInputStream s = new RandomAccessInputStream(file);
-            service.initialize(s, tile.width, tile.height);
+            service.initialize(s, jpegWidth, jpegHeight);
             restartMarkers.put(file, service.getRestartMarkers());
 
-            initializedSeries = getCoreIndex();
+            initializedSeries = physical;
             initializedPlane = no;
             initializedFile = file;
           }
 
           Region intersection = tile.intersection(image);
 
-          int tileX = intersection.x % MAX_JPEG_SIZE;
-          int tileY = intersection.y % MAX_JPEG_SIZE;
+          int tileX = intersection.x % jpegSize;
+          int tileY = intersection.y % jpegSize;
 
           int rowLen = intersection.width * getRGBChannelCount();
           byte[] b = new byte[rowLen * intersection.height];
 
-          service.getTile(b, tileX, tileY, intersection.width, intersection.height);
+          if (scale > 1) {
+            service.getScaledTile(b, scale, tileX, tileY,
+              intersection.width, intersection.height);
+          }
+          else {
+            service.getTile(b, tileX, tileY,
+              intersection.width, intersection.height);
+          }
 
           for (int tileRow=0; tileRow<intersection.height; tileRow++) {
             int src = tileRow * rowLen;
@@ -348,9 +398,29 @@ public class HamamatsuVMSReader extends FormatReader {
       m.interleaved = m.sizeX > MAX_SIZE && m.sizeY > MAX_SIZE;
       m.thumbnail = i > 0;
       core.add(m);
+
+      if (i == 0 && m.interleaved && useSyntheticResolutions()) {
+        m.resolutionCount += SYNTHETIC_RESOLUTION_COUNT;
+        int lastWidth = dims[0];
+        int lastHeight = dims[1];
+        for (int r=1; r<=SYNTHETIC_RESOLUTION_COUNT; r++) {
+          int scale = 1 << r;
+          int jpegSize = MAX_JPEG_SIZE / scale;
+          CoreMetadata synthetic = new CoreMetadata(m);
+          synthetic.sizeX = (jpegSize * (nCols - 1)) +
+            getScaledDimension(lastWidth, scale);
+          synthetic.sizeY = (jpegSize * (nRows - 1)) +
+            getScaledDimension(lastHeight, scale);
+          synthetic.resolutionCount = 1;
+          synthetic.thumbnail = false;
+          core.add(0, synthetic);
+        }
+      }
     }
 
-    CoreMetadata ms0 = core.get(0);
+    CoreMetadata ms0 = core.get(0, 0);
+    int macroSeries = coreIndexToSeries(core.flattenedIndex(1, 0));
+    int mapSeries = coreIndexToSeries(core.flattenedIndex(2, 0));
 
     MetadataStore store = makeFilterMetadata();
     MetadataTools.populatePixels(store, this);
@@ -358,8 +428,8 @@ public class HamamatsuVMSReader extends FormatReader {
     String path = new Location(currentId).getAbsoluteFile().getName();
 
     store.setImageName(path + " full resolution", 0);
-    store.setImageName(path + " macro", 1);
-    store.setImageName(path + " map", 2);
+    store.setImageName(path + " macro", macroSeries);
+    store.setImageName(path + " map", mapSeries);
 
     if (getMetadataOptions().getMetadataLevel() != MetadataLevel.MINIMUM) {
       Length sizeX =
@@ -367,9 +437,9 @@ public class HamamatsuVMSReader extends FormatReader {
       Length sizeY =
         FormatTools.getPhysicalSizeY(physicalHeight / ms0.sizeY);
       Length macroSizeX =
-        FormatTools.getPhysicalSizeX(macroWidth / core.get(1).sizeX);
+        FormatTools.getPhysicalSizeX(macroWidth / core.get(1, 0).sizeX);
       Length macroSizeY =
-        FormatTools.getPhysicalSizeY(macroHeight / core.get(1).sizeY);
+        FormatTools.getPhysicalSizeY(macroHeight / core.get(1, 0).sizeY);
 
       if (sizeX != null) {
         store.setPixelsPhysicalSizeX(sizeX, 0);
@@ -377,11 +447,25 @@ public class HamamatsuVMSReader extends FormatReader {
       if (sizeY != null) {
         store.setPixelsPhysicalSizeY(sizeY, 0);
       }
+      if (hasFlattenedResolutions()) {
+        for (int r=1; r<core.size(0); r++) {
+          Length resolutionSizeX =
+            FormatTools.getPhysicalSizeX(physicalWidth / core.get(0, r).sizeX);
+          Length resolutionSizeY = FormatTools.getPhysicalSizeY(
+            physicalHeight / core.get(0, r).sizeY);
+          if (resolutionSizeX != null) {
+            store.setPixelsPhysicalSizeX(resolutionSizeX, r);
+          }
+          if (resolutionSizeY != null) {
+            store.setPixelsPhysicalSizeY(resolutionSizeY, r);
+          }
+        }
+      }
       if (macroSizeX != null) {
-        store.setPixelsPhysicalSizeX(macroSizeX, 1);
+        store.setPixelsPhysicalSizeX(macroSizeX, macroSeries);
       }
       if (macroSizeY != null) {
-        store.setPixelsPhysicalSizeY(macroSizeY, 1);
+        store.setPixelsPhysicalSizeY(macroSizeY, macroSeries);
       }
 
       String instrumentID = MetadataTools.createLSID("Instrument", 0);
@@ -395,4 +479,13 @@ public class HamamatsuVMSReader extends FormatReader {
     }
   }
 
+  // -- Helper methods --
+
+  /**
+   * @return the size of a full resolution dimension when decoded at 1/scale
+   */
+  private static int getScaledDimension(int dimension, int scale) {
+    return (dimension + scale - 1) / scale;
+  }
+
 }
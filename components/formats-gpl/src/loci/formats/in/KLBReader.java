@@ -50,7 +50,7 @@ import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
-import loci.formats.codec.CodecOptions;
+import loci.formats.codec.CodecPool;
 import loci.formats.codec.ZlibCodec;
 import loci.formats.meta.MetadataStore;
 
@@ -219,7 +219,7 @@ public class KLBReader extends FormatReader {
         in.seek((long) (headerSize + offset));
 
         //Read compressed block
-        byte[] block = new byte[(int) compressedBlockSize];
+        byte[] block = CodecPool.acquireBuffer((int) compressedBlockSize);
         in.read(block);
 
         //Decompress block
@@ -246,8 +246,11 @@ public class KLBReader extends FormatReader {
           }
         }
         else if (compressionType == COMPRESSION_ZLIB) {
-          CodecOptions options = new CodecOptions();
-          block = new ZlibCodec().decompress(block, options);
+          byte[] compressed = block;
+          block = CodecPool.acquireBuffer(blockSizeBytes);
+          CodecPool.getCodec(ZlibCodec.class).decompress(
+            compressed, block, null);
+          CodecPool.releaseBuffer(compressed);
         }
 
         try {
@@ -288,6 +291,7 @@ public class KLBReader extends FormatReader {
         catch(Exception e) {
           throw new FormatException("Exception caught while copying decompressed block data to output buffer : " + e);
         }
+        CodecPool.releaseBuffer(block);
       }
     }
 
@@ -56,6 +56,9 @@ import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.ImageTools;
 import loci.formats.MetadataTools;
+import loci.formats.PlaneIterator;
+import loci.formats.RegionRequest;
+import loci.formats.ReadPlanner;
 import loci.formats.meta.MetadataStore;
 import loci.formats.services.OMEXMLService;
 import ome.xml.model.enums.DetectorType;
@@ -345,12 +348,9 @@ public class LIFReader extends FormatReader {
     }
     else {
       in.skipBytes(bytesToSkip * getSizeY() * no);
-      in.skipBytes(y * (getSizeX() * bpp + bytesToSkip));
-      for (int row=0; row<h; row++) {
-        in.skipBytes(x * bpp);
-        in.read(buf, row * w * bpp, w * bpp);
-        in.skipBytes(bpp * (getSizeX() - w - x) + bytesToSkip);
-      }
+      long stride = (long) getSizeX() * bpp + bytesToSkip;
+      ReadPlanner.readRows(in, in.getFilePointer() + y * stride + x * bpp,
+        w * bpp, stride, h, buf, 0, w * bpp);
     }
 
     // color planes are stored in BGR order
@@ -360,9 +360,44 @@ public class LIFReader extends FormatReader {
 
     return buf;
   }
-  
+
+  /* @see loci.formats.IFormatReader#openPlanes() */
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    FormatTools.assertId(currentId, true, 1);
+    int index = getTileIndex(series);
+    if (index >= offsets.size()) {
+      return super.openPlanes();
+    }
+    long offset = offsets.get(index).longValue();
+    long planeSize = (long) getSizeX() * getSizeY() *
+      FormatTools.getBytesPerPixel(getPixelType()) * getRGBChannelCount();
+    long[] planeOffsets = new long[getImageCount()];
+    for (int i=0; i<planeOffsets.length; i++) {
+      planeOffsets[i] = getPlaneOffset(i, offset, planeSize);
+    }
+    return new PlaneIterator(this,
+      PlaneIterator.getFileOrder(planeOffsets), true);
+  }
+
+  /* @see loci.formats.IFormatReader#openRegions(List) */
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    FormatTools.assertId(currentId, true, 1);
+    FormatTools.openRegions(this, requests, FormatTools.getPlaneOrder(this));
+  }
+
   private void seekStartOfPlane(int no, long dataOffset, long planeSize)
     throws IOException
+  {
+    // seek instead of skipBytes to prevent dangerous int cast
+    in.seek(getPlaneOffset(no, dataOffset, planeSize));
+  }
+
+  private long getPlaneOffset(int no, long dataOffset, long planeSize)
+    throws IOException
   {
     int index = getTileIndex(series);
     long posInFile;
@@ -394,9 +429,7 @@ public class LIFReader extends FormatReader {
     else {
       posInFile = dataOffset + no * planeSize;
     }
-    
-    // seek instead of skipBytes to prevent dangerous int cast
-    in.seek(posInFile);
+    return posInFile;
   }
 
   /* @see loci.formats.IFormatReader#getSeriesUsedFiles(boolean) */
@@ -27,6 +27,7 @@ package loci.formats.in;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 import loci.common.DataTools;
 import loci.common.RandomAccessInputStream;
@@ -34,6 +35,7 @@ import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
+import loci.formats.IMappedReader;
 import loci.formats.MetadataTools;
 import loci.formats.meta.MetadataStore;
 import ome.units.quantity.Length;
@@ -45,7 +47,7 @@ import ome.units.UNITS;
  * Specifications available at
  * http://bio3d.colorado.edu/imod/doc/mrc_format.txt
  */
-public class MRCReader extends FormatReader {
+public class MRCReader extends FormatReader implements IMappedReader {
 
   // -- Constants --
 
@@ -120,7 +122,7 @@ public class MRCReader extends FormatReader {
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
     long planeSize = FormatTools.getPlaneSize(this);
-    long offset = HEADER_SIZE + extHeaderSize + no * planeSize;
+    long offset = getPlaneOffset(no);
 
     if (offset + planeSize <= in.length() && offset >= 0) {
       in.seek(offset);
@@ -150,6 +152,37 @@ public class MRCReader extends FormatReader {
     }
   }
 
+  // -- IMappedReader API methods --
+
+  /* @see loci.formats.IMappedReader#isPlaneMappable(int) */
+  @Override
+  public boolean isPlaneMappable(int no) {
+    return isMappable(currentId, getPlaneOffset(no),
+      FormatTools.getPlaneSize(this));
+  }
+
+  /* @see loci.formats.IMappedReader#isBottomUp() */
+  @Override
+  public boolean isBottomUp() {
+    return true;
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no)
+    throws FormatException, IOException
+  {
+    return openPlaneBuffer(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int, int, int, int, int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    return mapPlane(currentId, getPlaneOffset(no), no, x, y, w, h, true);
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
@@ -376,6 +409,12 @@ public class MRCReader extends FormatReader {
     }
   }
 
+  /** Returns the offset to the first byte of the given plane. */
+  private long getPlaneOffset(int no) {
+    return HEADER_SIZE + extHeaderSize +
+      no * (long) FormatTools.getPlaneSize(this);
+  }
+
   /**
    * Detect the correct endianness and set the stream accordingly.
    * New-style headers have a value that can be checked, but older
@@ -26,6 +26,9 @@
 package loci.formats.in;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 import loci.common.DataTools;
 import loci.common.DateTools;
@@ -58,6 +61,21 @@ public class NDPIReader extends BaseTiffReader {
 
   // -- Constants --
 
+  /**
+   * MetadataOptions key for determining whether to report extra
+   * resolutions that are decoded at a reduced scale.
+   */
+  public static final String SYNTHETIC_RESOLUTIONS_KEY =
+    "ndpi.synthetic_resolutions";
+
+  /**
+   * Default value of {@link #SYNTHETIC_RESOLUTIONS_KEY}
+   */
+  public static final boolean SYNTHETIC_RESOLUTIONS_DEFAULT = false;
+
+  /** Downsampling factors supported by libjpeg-turbo's DCT scaling. */
+  private static final int[] SYNTHETIC_SCALES = {2, 4, 8};
+
   private static final int MAX_SIZE = 2048;
 
   // Custom TIFF tags
@@ -105,6 +123,21 @@ public class NDPIReader extends BaseTiffReader {
 
   private JPEGTurboService service = new JPEGTurboServiceImpl();
 
+  /**
+   * Restart markers found by scanning IFDs that do not contain MARKER_TAG,
+   * indexed by IFD.  These are kept so that each IFD is scanned at most
+   * once, and are saved with the rest of the reader by Memoizer.
+   */
+  private HashMap<Integer, long[]> restartMarkers =
+    new HashMap<Integer, long[]>();
+
+  /**
+   * Physical pyramid level and downsampling factor for each core index,
+   * or null if no synthetic resolutions were added.
+   */
+  private int[] physicalIndex;
+  private int[] resolutionScale;
+
   private Double magnification;
   private String serialNumber;
   private String instrumentModel;
@@ -118,6 +151,21 @@ public class NDPIReader extends BaseTiffReader {
     canSeparateSeries = false;
   }
 
+  // -- NDPIReader API methods --
+
+  /**
+   * @return true if MetadataOptions are set so that each pyramid level
+   *  is followed by resolutions decoded at 1/2, 1/4 and 1/8 scale
+   */
+  public boolean useSyntheticResolutions() {
+    MetadataOptions options = getMetadataOptions();
+    if (options instanceof DynamicMetadataOptions) {
+      return ((DynamicMetadataOptions) options).getBoolean(
+        SYNTHETIC_RESOLUTIONS_KEY, SYNTHETIC_RESOLUTIONS_DEFAULT);
+    }
+    return SYNTHETIC_RESOLUTIONS_DEFAULT;
+  }
+
   // -- IFormatReader API methods --
 
   /* (non-Javadoc)
@@ -182,7 +230,9 @@ public class NDPIReader extends BaseTiffReader {
       }
     }
 
-    if (initializedSeries != getCoreIndex() || initializedPlane != no) {
+    // synthetic resolutions share the service with their physical level
+    int physical = getPhysicalIndex(getCoreIndex());
+    if (initializedSeries != physical || initializedPlane != no) {
       IFD ifd = ifds.get(ifdIndex);
 
       long offset = ifd.getStripOffsets()[0];
@@ -197,24 +247,35 @@ public class NDPIReader extends BaseTiffReader {
       try {
         service.close();
         long[] markers = ifd.getIFDLongArray(MARKER_TAG);
-        if (!use64Bit) {
+        if (markers != null && !use64Bit) {
           for (int i=0; i<markers.length; i++) {
             markers[i] = markers[i] & 0xffffffffL;
           }
         }
-        if (markers != null) {
-          service.setRestartMarkers(markers);
+        if (markers == null) {
+          markers = restartMarkers.get(ifdIndex);
+        }
+        service.setRestartMarkers(markers);
+        service.initialize(in,
+          (int) ifd.getImageWidth(), (int) ifd.getImageLength());
+        if (markers == null) {
+          restartMarkers.put(ifdIndex, service.getRestartMarkers());
         }
-        service.initialize(in, getSizeX(), getSizeY());
       }
       catch (ServiceException e) {
         throw new FormatException(e);
       }
 
-      initializedSeries = getCoreIndex();
+      initializedSeries = physical;
       initializedPlane = no;
     }
-    service.getTile(buf, x, y, w, h);
+    int scale = getResolutionScale(getCoreIndex());
+    if (scale > 1) {
+      service.getScaledTile(buf, scale, x, y, w, h);
+    }
+    else {
+      service.getTile(buf, x, y, w, h);
+    }
     return buf;
   }
 
@@ -224,7 +285,8 @@ public class NDPIReader extends BaseTiffReader {
     FormatTools.assertId(currentId, true, 1);
 
     int currentSeries = getSeries();
-    if (getCoreIndex() >= pyramidHeight) {
+    int resolutions = core.size(0);
+    if (getCoreIndex() >= resolutions) {
       return super.openThumbBytes(no);
     }
 
@@ -233,10 +295,10 @@ public class NDPIReader extends BaseTiffReader {
     int rgbCount = getRGBChannelCount();
 
     if (hasFlattenedResolutions()) {
-      setSeries(pyramidHeight - 1);
+      setSeries(resolutions - 1);
     }
     else {
-      setResolution(pyramidHeight - 1);
+      setResolution(resolutions - 1);
     }
 
     byte[] thumb = null;
@@ -272,6 +334,9 @@ public class NDPIReader extends BaseTiffReader {
   public void close(boolean fileOnly) throws IOException {
     if (!fileOnly) {
       service.close();
+      restartMarkers.clear();
+      physicalIndex = null;
+      resolutionScale = null;
       initializedSeries = -1;
       initializedPlane = -1;
       sizeZ = 1;
@@ -558,6 +623,10 @@ public class NDPIReader extends BaseTiffReader {
     }
     String captureModeDescription = getCaptureMode(captureMode);
 
+    if (useSyntheticResolutions()) {
+      insertSyntheticResolutions(pyramidHeight);
+    }
+
     addGlobalMeta("NDP.image version", first.get(VERSION));
     addGlobalMeta("Magnification", source_lens_value);
     addGlobalMeta("Slide center X (nm)", first.get(X_POSITION));
@@ -630,15 +699,17 @@ public class NDPIReader extends BaseTiffReader {
       store.setObjectiveSettingsID(objectiveID, i);
 
       if (i > 0) {
-        int ifdIndex = getIFDIndex(i, 0);
+        int coreIndex = seriesToCoreIndex(i);
+        int ifdIndex = getIFDIndex(coreIndex, 0);
         String creationDate = ifds.get(ifdIndex).getIFDTextValue(IFD.DATE_TIME);
         creationDate = DateTools.formatDate(creationDate, DATE_FORMATS, ".");
         if (creationDate != null) {
           store.setImageAcquisitionDate(new Timestamp(creationDate), i);
         }
 
-        double xResolution = ifds.get(ifdIndex).getXResolution();
-        double yResolution = ifds.get(ifdIndex).getYResolution();
+        int scale = getResolutionScale(coreIndex);
+        double xResolution = ifds.get(ifdIndex).getXResolution() * scale;
+        double yResolution = ifds.get(ifdIndex).getYResolution() * scale;
 
         Length sizeX = FormatTools.getPhysicalSizeX(xResolution);
         Length sizeY = FormatTools.getPhysicalSizeY(yResolution);
@@ -693,6 +764,7 @@ public class NDPIReader extends BaseTiffReader {
   // -- Helper methods --
 
   private int getIFDIndex(int seriesIndex, int zIndex) {
+    seriesIndex = getPhysicalIndex(seriesIndex);
     if (seriesIndex < pyramidHeight) {
       return zIndex * pyramidHeight + seriesIndex;
     }
@@ -700,6 +772,78 @@ public class NDPIReader extends BaseTiffReader {
     return sizeZ * pyramidHeight + (seriesIndex - pyramidHeight);
   }
 
+  /**
+   * @return the index of the physical series or resolution from which
+   *         the given core index is read
+   */
+  private int getPhysicalIndex(int coreIndex) {
+    if (physicalIndex == null || coreIndex >= physicalIndex.length) {
+      return coreIndex;
+    }
+    return physicalIndex[coreIndex];
+  }
+
+  /**
+   * @return the downsampling factor applied to the physical series or
+   *         resolution when reading the given core index
+   */
+  private int getResolutionScale(int coreIndex) {
+    if (resolutionScale == null || coreIndex >= resolutionScale.length) {
+      return 1;
+    }
+    return resolutionScale[coreIndex];
+  }
+
+  /**
+   * Insert synthetic resolutions after each of the first
+   * <code>levels</code> resolutions that are decoded by JPEGTurboService.
+   * Each synthetic resolution is decoded from its physical resolution at
+   * 1/2, 1/4 or 1/8 scale, and is only added if it is larger than the
+   * next physical resolution.
+   */
+  private void insertSyntheticResolutions(int levels) throws FormatException {
+    List<CoreMetadata> flat = core.getFlattenedList();
+    List<CoreMetadata> expanded = new ArrayList<CoreMetadata>();
+    List<int[]> mapping = new ArrayList<int[]>();
+
+    for (int i=0; i<flat.size(); i++) {
+      CoreMetadata ms = flat.get(i);
+      expanded.add(ms);
+      mapping.add(new int[] {i, 1});
+
+      if (i >= levels || useTiffParser(ifds.get(getIFDIndex(i, 0)))) {
+        continue;
+      }
+      int nextWidth = i < levels - 1 ? flat.get(i + 1).sizeX : 0;
+      for (int scale : SYNTHETIC_SCALES) {
+        int scaledWidth = service.getScaledDimension(ms.sizeX, scale);
+        if (scaledWidth <= nextWidth) {
+          break;
+        }
+        CoreMetadata synthetic = new CoreMetadata(ms);
+        synthetic.sizeX = scaledWidth;
+        synthetic.sizeY = service.getScaledDimension(ms.sizeY, scale);
+        synthetic.thumbnail = false;
+        synthetic.resolutionCount = 1;
+        expanded.add(synthetic);
+        mapping.add(new int[] {i, scale});
+      }
+    }
+
+    if (expanded.size() == flat.size()) {
+      return;
+    }
+    expanded.get(0).resolutionCount += expanded.size() - flat.size();
+    core.setFlattenedList(expanded);
+
+    physicalIndex = new int[mapping.size()];
+    resolutionScale = new int[mapping.size()];
+    for (int i=0; i<mapping.size(); i++) {
+      physicalIndex[i] = mapping.get(i)[0];
+      resolutionScale[i] = mapping.get(i)[1];
+    }
+  }
+
   /**
    * @return true if tiles can be read using TiffParser logic, or
    *         false if the JPEGTurboService needs to be used
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -45,6 +46,9 @@ import loci.formats.FormatException;
 import loci.formats.FormatTools;
 import loci.formats.ImageTools;
 import loci.formats.MetadataTools;
+import loci.formats.PlaneIterator;
+import loci.formats.RegionRequest;
+import loci.formats.ReadPlanner;
 import loci.formats.SubResolutionFormatReader;
 import loci.formats.codec.Codec;
 import loci.formats.codec.CodecOptions;
@@ -300,16 +304,10 @@ public class NativeND2Reader extends SubResolutionFormatReader {
       int rowLength = getSizeX() * pixel + scanlinePad * bpp;
       int destLength = w * pixel;
 
-      long skip = (long) rowLength * y;
-      in.seek(in.getFilePointer() + skip);
+      long start = in.getFilePointer() + (long) rowLength * y + x * pixel;
       byte[] pix = new byte[destLength * h];
-      long pre = (long) x * pixel;
-      long post = (long) pixel * (getSizeX() - w - x) + (scanlinePad * bpp);
-      for (int row=0; row<h; row++) {
-        in.seek(in.getFilePointer() + pre);
-        in.read(pix, row * destLength, destLength);
-        in.seek(in.getFilePointer() + post);
-      }
+      ReadPlanner.readRows(in, start, destLength, rowLength, h,
+        pix, 0, destLength);
 
       pix = ImageTools.splitChannels(pix, lastChannel, getEffectiveSizeC(),
         bpp, false, true);
@@ -323,6 +321,31 @@ public class NativeND2Reader extends SubResolutionFormatReader {
     return buf;
   }
 
+  /* @see loci.formats.IFormatReader#openPlanes() */
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    FormatTools.assertId(currentId, true, 1);
+    if (offsets == null || offsets[getSeries()] == null) {
+      return super.openPlanes();
+    }
+    long[] planeOffsets = new long[getImageCount()];
+    for (int i=0; i<planeOffsets.length; i++) {
+      int planeIndex = split ? i / getSizeC() : i;
+      planeOffsets[i] = offsets[getSeries()][planeIndex];
+    }
+    return new PlaneIterator(this,
+      PlaneIterator.getFileOrder(planeOffsets), true);
+  }
+
+  /* @see loci.formats.IFormatReader#openRegions(List) */
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    FormatTools.assertId(currentId, true, 1);
+    FormatTools.openRegions(this, requests, FormatTools.getPlaneOrder(this));
+  }
+
   /* @see loci.formats.IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
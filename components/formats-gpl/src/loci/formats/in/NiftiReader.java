@@ -27,6 +27,7 @@ package loci.formats.in;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import loci.common.Location;
 import loci.common.RandomAccessInputStream;
@@ -34,6 +35,7 @@ import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
+import loci.formats.IMappedReader;
 import loci.formats.MetadataTools;
 import loci.formats.meta.MetadataStore;
 
@@ -47,7 +49,7 @@ import ome.units.UNITS;
  *
  * @author Melissa Linkert melissa at glencoesoftware.com
  */
-public class NiftiReader extends FormatReader {
+public class NiftiReader extends FormatReader implements IMappedReader {
 
   // -- Constants --
 
@@ -146,8 +148,7 @@ public class NiftiReader extends FormatReader {
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
     pixelFile.seek(0);
-    long planeSize = FormatTools.getPlaneSize(this);
-    pixelFile.seek(pixelOffset + no * planeSize);
+    pixelFile.seek(getPlaneOffset(no));
     readPlane(pixelFile, x, y, w, h, buf);
 
     return buf;
@@ -196,6 +197,37 @@ public class NiftiReader extends FormatReader {
     }
   }
 
+  // -- IMappedReader API methods --
+
+  /* @see loci.formats.IMappedReader#isPlaneMappable(int) */
+  @Override
+  public boolean isPlaneMappable(int no) {
+    return isMappable(pixelsFilename, getPlaneOffset(no),
+      FormatTools.getPlaneSize(this));
+  }
+
+  /* @see loci.formats.IMappedReader#isBottomUp() */
+  @Override
+  public boolean isBottomUp() {
+    return false;
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no)
+    throws FormatException, IOException
+  {
+    return openPlaneBuffer(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int, int, int, int, int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    return mapPlane(pixelsFilename, getPlaneOffset(no), no, x, y, w, h, false);
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
@@ -312,6 +344,11 @@ public class NiftiReader extends FormatReader {
 
   // -- Helper methods --
 
+  /** Returns the offset to the first byte of the given plane. */
+  private long getPlaneOffset(int no) {
+    return pixelOffset + no * (long) FormatTools.getPlaneSize(this);
+  }
+
   private void populatePixelType(int dataType) throws FormatException {
     CoreMetadata m = core.get(0);
 
@@ -119,6 +119,31 @@ public class PyramidTiffReader extends BaseTiffReader {
     return super.getOptimalTileHeight();
   }
 
+  // -- ICompressedTileReader API methods --
+
+  /* @see loci.formats.ICompressedTileReader#openCompressedBytes(int, int, int) */
+  @Override
+  public byte[] openCompressedBytes(int no, int x, int y)
+    throws FormatException, IOException
+  {
+    if (tiffParser == null) {
+      initTiffParser();
+    }
+    tiffParser.setAssumeEqualStrips(equalStrips);
+    return super.openCompressedBytes(no, x, y);
+  }
+
+  // -- Internal MinimalTiffReader API methods --
+
+  /* @see loci.formats.in.MinimalTiffReader#getCompressedTileIFD(int) */
+  @Override
+  protected IFD getCompressedTileIFD(int no)
+    throws FormatException, IOException
+  {
+    FormatTools.checkPlaneNumber(this, no);
+    return ifds.get(getCoreIndex());
+  }
+
   // -- Internal BaseTiffReader API methods --
 
   /* @see loci.formats.in.BaseTiffReader#initStandardMetadata() */
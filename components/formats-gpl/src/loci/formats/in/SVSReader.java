@@ -249,6 +249,20 @@ public class SVSReader extends BaseTiffReader {
     return super.getOptimalTileHeight();
   }
 
+  // -- Internal MinimalTiffReader API methods --
+
+  /* @see loci.formats.in.MinimalTiffReader#getCompressedTileIFD(int) */
+  @Override
+  protected IFD getCompressedTileIFD(int no)
+    throws FormatException, IOException
+  {
+    FormatTools.checkPlaneNumber(this, no);
+    if (core.size() == 1) {
+      return ifds.get(no);
+    }
+    return ifds.get(((SVSCoreMetadata) getCurrentCore()).ifdIndex[no]);
+  }
+
   // -- Internal BaseTiffReader API methods --
 
   /* @see loci.formats.BaseTiffReader#initStandardMetadata() */
@@ -571,9 +571,17 @@ public class ScanrReader extends FormatReader {
 
     reader.close();
 
+    // if series are lazy, only the first series is populated here, and the
+    // others are populated by initSeries and initSeriesMetadata
+    boolean lazy = isSeriesLazy();
     int seriesCount = nWells * nPos;
     core.clear();
     for (int i=0; i<seriesCount; i++) {
+      if (lazy && i > 0) {
+        core.add(new CoreMetadata());
+        deferSeries(i);
+        continue;
+      }
       CoreMetadata ms = new CoreMetadata();
       core.add(ms);
       ms.sizeC = nChannels;
@@ -592,7 +600,11 @@ public class ScanrReader extends FormatReader {
     }
 
     MetadataStore store = makeFilterMetadata();
-    MetadataTools.populatePixels(store, this);
+    for (int i=0; i<seriesCount; i++) {
+      if (isSeriesInitialized(i)) {
+        MetadataTools.populatePixels(store, this, i, false, false);
+      }
+    }
 
     store.setPlateID(MetadataTools.createLSID("Plate", 0), 0);
     store.setPlateColumns(new PositiveInteger(wellColumns), 0);
@@ -601,13 +613,7 @@ public class ScanrReader extends FormatReader {
     String plateAcqID = MetadataTools.createLSID("PlateAcquisition", 0, 0);
     store.setPlateAcquisitionID(plateAcqID, 0, 0);
 
-    int nFields = 0;
-    if (foundPositions) {
-      nFields = fieldPositionX.length;
-    }
-    else {
-      nFields = fieldRows * fieldColumns;
-    }
+    int nFields = getFieldCount();
 
     PositiveInteger fieldCount = FormatTools.getMaxFieldCount(nFields);
     if (fieldCount != null) {
@@ -655,46 +661,14 @@ public class ScanrReader extends FormatReader {
       // populate LogicalChannel data
 
       for (int i=0; i<getSeriesCount(); i++) {
-        for (int c=0; c<getSizeC(); c++) {
-          store.setChannelName(channelNames.get(c), i, c);
-        }
-
-        Length x = FormatTools.getPhysicalSizeX(pixelSize);
-        Length y = FormatTools.getPhysicalSizeY(pixelSize);
-        if (x != null) {
-          store.setPixelsPhysicalSizeX(x, i);
-        }
-        if (y != null) {
-          store.setPixelsPhysicalSizeY(y, i);
-        }
-
         if (fieldPositionX != null && fieldPositionY != null) {
           int field = i % nFields;
           int well = i / nFields;
-          final Length posX = fieldPositionX[field];
-          final Length posY = fieldPositionY[field];
-          
-          store.setWellSamplePositionX(posX, 0, well, field);
-          store.setWellSamplePositionY(posY, 0, well, field);
-          for (int c=0; c<getSizeC(); c++) {
-            int image = getIndex(0, c, 0);
-            store.setPlaneTheZ(new NonNegativeInteger(0), i, image);
-            store.setPlaneTheC(new NonNegativeInteger(c), i, image);
-            store.setPlaneTheT(new NonNegativeInteger(0), i, image);
-            store.setPlanePositionX(fieldPositionX[field], i, image);
-            store.setPlanePositionY(fieldPositionY[field], i, image);
-
-            // exposure time is stored in milliseconds
-            // convert to seconds before populating MetadataStore
-            Double time = exposures.get(c);
-            if (time != null) {
-              time /= 1000;
-              store.setPlaneExposureTime(new Time(time, UNITS.SECOND), i, image);
-            }
-            if (deltaT != null) {
-              store.setPlaneDeltaT(new Time(deltaT, UNITS.SECOND), i, image);
-            }
-          }
+          store.setWellSamplePositionX(fieldPositionX[field], 0, well, field);
+          store.setWellSamplePositionY(fieldPositionY[field], 0, well, field);
+        }
+        if (isSeriesInitialized(i)) {
+          populateChannels(store, i);
         }
       }
 
@@ -707,6 +681,23 @@ public class ScanrReader extends FormatReader {
     }
   }
 
+  /* @see loci.formats.FormatReader#initSeries(int) */
+  @Override
+  protected void initSeries(int coreIndex)
+    throws FormatException, IOException
+  {
+    core.set(coreIndex, new CoreMetadata(core.get(0)));
+  }
+
+  /* @see loci.formats.FormatReader#initSeriesMetadata(int, MetadataStore) */
+  @Override
+  protected void initSeriesMetadata(int coreIndex, MetadataStore store) {
+    MetadataTools.populatePixels(store, this, coreIndex, false, false);
+    if (getMetadataOptions().getMetadataLevel() != MetadataLevel.MINIMUM) {
+      populateChannels(store, coreIndex);
+    }
+  }
+
   // -- Helper class --
 
   class ScanrHandler extends BaseHandler {
@@ -855,6 +846,56 @@ public class ScanrReader extends FormatReader {
 
   // -- Helper methods --
 
+  /** Returns the number of fields in each well. */
+  private int getFieldCount() {
+    if (foundPositions) {
+      return fieldPositionX.length;
+    }
+    return fieldRows * fieldColumns;
+  }
+
+  /**
+   * Populates the channel names, physical sizes and plane positions of the
+   * given series.
+   */
+  private void populateChannels(MetadataStore store, int i) {
+    for (int c=0; c<getSizeC(); c++) {
+      store.setChannelName(channelNames.get(c), i, c);
+    }
+
+    Length x = FormatTools.getPhysicalSizeX(pixelSize);
+    Length y = FormatTools.getPhysicalSizeY(pixelSize);
+    if (x != null) {
+      store.setPixelsPhysicalSizeX(x, i);
+    }
+    if (y != null) {
+      store.setPixelsPhysicalSizeY(y, i);
+    }
+
+    if (fieldPositionX != null && fieldPositionY != null) {
+      int field = i % getFieldCount();
+      for (int c=0; c<getSizeC(); c++) {
+        int image = getIndex(0, c, 0);
+        store.setPlaneTheZ(new NonNegativeInteger(0), i, image);
+        store.setPlaneTheC(new NonNegativeInteger(c), i, image);
+        store.setPlaneTheT(new NonNegativeInteger(0), i, image);
+        store.setPlanePositionX(fieldPositionX[field], i, image);
+        store.setPlanePositionY(fieldPositionY[field], i, image);
+
+        // exposure time is stored in milliseconds
+        // convert to seconds before populating MetadataStore
+        Double time = exposures.get(c);
+        if (time != null) {
+          time /= 1000;
+          store.setPlaneExposureTime(new Time(time, UNITS.SECOND), i, image);
+        }
+        if (deltaT != null) {
+          store.setPlaneDeltaT(new Time(deltaT, UNITS.SECOND), i, image);
+        }
+      }
+    }
+  }
+
   private String getBlock(int index, String axis) {
     String b = String.valueOf(index);
     while (b.length() < 5) b = "0" + b;
@@ -26,6 +26,7 @@
 package loci.formats.in;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import loci.common.DateTools;
 import loci.common.RandomAccessInputStream;
@@ -33,6 +34,7 @@ import loci.formats.CoreMetadata;
 import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
+import loci.formats.IMappedReader;
 import loci.formats.MetadataTools;
 import loci.formats.meta.MetadataStore;
 import ome.xml.model.primitives.Timestamp;
@@ -42,7 +44,7 @@ import ome.units.UNITS;
 /**
  * SpiderReader is the file format reader for SPIDER files.
  */
-public class SpiderReader extends FormatReader {
+public class SpiderReader extends FormatReader implements IMappedReader {
 
   // -- Constants --
 
@@ -101,12 +103,7 @@ public class SpiderReader extends FormatReader {
   {
     FormatTools.checkPlaneParameters(this, no, buf.length, x, y, w, h);
 
-    long header = headerSize;
-    if (oneHeaderPerSlice) {
-      header += (no + 1) * headerSize;
-    }
-
-    in.seek(header + no * FormatTools.getPlaneSize(this));
+    in.seek(getPlaneOffset(no));
     readPlane(in, x, y, w, h, buf);
 
     return buf;
@@ -122,6 +119,37 @@ public class SpiderReader extends FormatReader {
     }
   }
 
+  // -- IMappedReader API methods --
+
+  /* @see loci.formats.IMappedReader#isPlaneMappable(int) */
+  @Override
+  public boolean isPlaneMappable(int no) {
+    return isMappable(currentId, getPlaneOffset(no),
+      FormatTools.getPlaneSize(this));
+  }
+
+  /* @see loci.formats.IMappedReader#isBottomUp() */
+  @Override
+  public boolean isBottomUp() {
+    return false;
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no)
+    throws FormatException, IOException
+  {
+    return openPlaneBuffer(no, 0, 0, getSizeX(), getSizeY());
+  }
+
+  /* @see loci.formats.IMappedReader#openPlaneBuffer(int, int, int, int, int) */
+  @Override
+  public ByteBuffer openPlaneBuffer(int no, int x, int y, int w, int h)
+    throws FormatException, IOException
+  {
+    return mapPlane(currentId, getPlaneOffset(no), no, x, y, w, h, false);
+  }
+
   // -- Internal FormatReader API methods --
 
   /* @see loci.formats.FormatReader#initFile(String) */
@@ -286,4 +314,15 @@ public class SpiderReader extends FormatReader {
     }
   }
 
+  // -- Helper methods --
+
+  /** Returns the offset to the first byte of the given plane. */
+  private long getPlaneOffset(int no) {
+    long header = headerSize;
+    if (oneHeaderPerSlice) {
+      header += (no + 1) * headerSize;
+    }
+    return header + no * (long) FormatTools.getPlaneSize(this);
+  }
+
 }
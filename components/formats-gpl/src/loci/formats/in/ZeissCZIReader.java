@@ -35,6 +35,7 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import javax.xml.parsers.DocumentBuilder;
 
 import loci.common.ByteArrayHandle;
@@ -50,7 +51,10 @@ import loci.formats.FormatException;
 import loci.formats.FormatReader;
 import loci.formats.FormatTools;
 import loci.formats.MetadataTools;
+import loci.formats.PlaneIterator;
+import loci.formats.RegionRequest;
 import loci.formats.codec.CodecOptions;
+import loci.formats.codec.CodecPool;
 import loci.formats.codec.JPEGCodec;
 import loci.formats.codec.JPEGXRCodec;
 import loci.formats.codec.LZWCodec;
@@ -479,6 +483,38 @@ public class ZeissCZIReader extends FormatReader {
     return buf;
   }
 
+  /* @see loci.formats.IFormatReader#openPlanes() */
+  @Override
+  public PlaneIterator openPlanes() throws FormatException, IOException {
+    FormatTools.assertId(currentId, true, 1);
+    if (isThumbnailSeries()) {
+      return super.openPlanes();
+    }
+    long[] offsets = new long[getImageCount()];
+    Arrays.fill(offsets, Long.MAX_VALUE);
+    int currentIndex = getCoreIndex();
+    for (SubBlock plane : planes) {
+      if (plane.coreIndex == currentIndex && plane.planeIndex >= 0 &&
+        plane.planeIndex < offsets.length)
+      {
+        offsets[plane.planeIndex] =
+          Math.min(offsets[plane.planeIndex], plane.startingPosition);
+      }
+    }
+    return new PlaneIterator(this, PlaneIterator.getFileOrder(offsets), true);
+  }
+
+  /* @see loci.formats.IFormatReader#openRegions(List) */
+  @Override
+  public void openRegions(List<RegionRequest> requests)
+    throws FormatException, IOException
+  {
+    // every call to openBytes scans and decodes all subblocks that
+    // intersect the region, so nearby regions are best read together
+    FormatTools.assertId(currentId, true, 1);
+    FormatTools.openRegions(this, requests, FormatTools.getPlaneOrder(this));
+  }
+
   /* @see loci.formats.IFormatReader#close(boolean) */
   @Override
   public void close(boolean fileOnly) throws IOException {
@@ -3839,8 +3875,9 @@ public class ZeissCZIReader extends FormatReader {
         return buf;
       }
 
-      byte[] data = new byte[(int) dataSize];
+      byte[] data = CodecPool.acquireBuffer((int) dataSize);
       s.read(data);
+      byte[] compressed = data;
 
       int bytesPerPixel = FormatTools.getBytesPerPixel(getPixelType());
       CodecOptions options = new CodecOptions();
@@ -3852,10 +3889,10 @@ public class ZeissCZIReader extends FormatReader {
 
       switch (directoryEntry.compression) {
         case JPEG:
-          data = new JPEGCodec().decompress(data, options);
+          data = CodecPool.getCodec(JPEGCodec.class).decompress(data, options);
           break;
         case LZW:
-          data = new LZWCodec().decompress(data, options);
+          data = CodecPool.getCodec(LZWCodec.class).decompress(data, options);
           break;
         case JPEGXR:
           options.width = directoryEntry.dimensionEntries[0].storedSize;
@@ -3863,7 +3900,8 @@ public class ZeissCZIReader extends FormatReader {
           options.maxBytes = options.width * options.height *
             getRGBChannelCount() * bytesPerPixel;
           try {
-            data = new JPEGXRCodec().decompress(data, options);
+            data = CodecPool.getCodec(JPEGXRCodec.class).decompress(
+              data, options);
           }
           catch (FormatException e) {
             if (data.length == options.maxBytes) {
@@ -3896,6 +3934,9 @@ public class ZeissCZIReader extends FormatReader {
           data = decode12BitCamera(data, options.maxBytes);
           break;
       }
+      if (data != compressed) {
+        CodecPool.releaseBuffer(compressed);
+      }
       if (buf != null && buf.length >= data.length) {
         System.arraycopy(data, 0, buf, 0, data.length);
         return buf;
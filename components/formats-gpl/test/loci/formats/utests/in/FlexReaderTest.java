@@ -0,0 +1,283 @@
+/*
+ * #%L
+ * OME Bio-Formats package for reading and converting biological file formats.
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.formats.utests.in;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import loci.common.Constants;
+import loci.common.RandomAccessOutputStream;
+import loci.formats.FormatTools;
+import loci.formats.MetadataTools;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.FlexReader;
+import loci.formats.tiff.IFD;
+import loci.formats.tiff.IFDType;
+import ome.xml.meta.OMEXMLMetadata;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that {@link FlexReader} reads a plate of .flex files in the same
+ * way regardless of the number of initialization threads.
+ */
+public class FlexReaderTest {
+
+  private static final int WIDTH = 32;
+  private static final int HEIGHT = 16;
+
+  /** Wells in the plate, as {row, column}. */
+  private static final int[][] WELLS = {{0, 0}, {0, 1}, {1, 0}};
+  private static final int FIELDS = 2;
+
+  /** Number of entries in each IFD other than the first. */
+  private static final int ENTRIES = 14;
+
+  /** Size in bytes of each IFD other than the first. */
+  private static final int IFD_SIZE = 2 + ENTRIES * 12 + 4;
+
+  /** Two channels and two timepoints per field. */
+  private static final String[] IMAGE_NAMES =
+    {"Exp1Cam1", "Exp1Cam2", "Exp1Cam1", "Exp1Cam2"};
+
+  private File plate;
+  private File mismatch;
+  private FlexReader reader;
+
+  @BeforeClass
+  public void setUpFiles() throws Exception {
+    plate = createDirectory("plate");
+    mismatch = createDirectory("mismatch");
+    for (int well=0; well<WELLS.length; well++) {
+      for (int field=0; field<FIELDS; field++) {
+        writeFlex(plate, well, field, "P1");
+        if (well == 0) {
+          writeFlex(mismatch, well, field, field == 0 ? "P1" : "P2");
+        }
+      }
+    }
+  }
+
+  @AfterClass
+  public void tearDownFiles() {
+    deleteDirectory(plate);
+    deleteDirectory(mismatch);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @DataProvider(name = "threads")
+  public Object[][] threads() {
+    return new Object[][] {{1}, {4}};
+  }
+
+  @Test(dataProvider = "threads")
+  public void testPlate(int threads) throws Exception {
+    reader = openReader(new File(plate, fileName(0, 0)), threads);
+    assertEquals(reader.getSeriesCount(), WELLS.length * FIELDS);
+    for (int s=0; s<reader.getSeriesCount(); s++) {
+      reader.setSeries(s);
+      assertEquals(reader.getSizeX(), WIDTH);
+      assertEquals(reader.getSizeY(), HEIGHT);
+      assertEquals(reader.getSizeC(), 2);
+      assertEquals(reader.getSizeT(), 2);
+      assertEquals(reader.getPixelType(), FormatTools.UINT8);
+      for (int p=0; p<reader.getImageCount(); p++) {
+        byte[] plane = reader.openBytes(p);
+        byte[] expected = new byte[WIDTH * HEIGHT];
+        Arrays.fill(expected, value(s / FIELDS, s % FIELDS, p));
+        assertEquals(plane, expected, "series " + s + ", plane " + p);
+      }
+    }
+  }
+
+  @Test
+  public void testPlateMetadata() throws Exception {
+    reader = openReader(new File(plate, fileName(0, 0)), 1);
+    OMEXMLMetadata single = (OMEXMLMetadata) reader.getMetadataStore();
+    reader.close();
+    reader = openReader(new File(plate, fileName(0, 0)), 4);
+    OMEXMLMetadata concurrent =
+      (OMEXMLMetadata) reader.getMetadataStore();
+    assertEquals(concurrent.dumpXML(), single.dumpXML());
+  }
+
+  @Test(dataProvider = "threads")
+  public void testMismatchedBarcode(int threads) throws Exception {
+    reader = openReader(new File(mismatch, fileName(0, 0)), threads);
+    assertEquals(reader.getSeriesCount(), 1);
+    assertEquals(reader.getImageCount(), IMAGE_NAMES.length);
+  }
+
+  private FlexReader openReader(File file, int threads) throws Exception {
+    FlexReader flex = new FlexReader();
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setInteger(DynamicMetadataOptions.INIT_THREADS_KEY, threads);
+    flex.setMetadataOptions(options);
+    flex.setMetadataStore(MetadataTools.createOMEXMLMetadata());
+    flex.setId(file.getAbsolutePath());
+    return flex;
+  }
+
+  /** Returns the value of every pixel in the given plane. */
+  private static byte value(int well, int field, int plane) {
+    return (byte) ((well * FIELDS + field) * 16 + plane + 1);
+  }
+
+  /** Returns the name of the file for the given well and field. */
+  private static String fileName(int well, int field) {
+    return String.format("%03d%03d%03d.flex",
+      WELLS[well][0] + 1, WELLS[well][1] + 1, field + 1);
+  }
+
+  /**
+   * Writes a .flex file for the given well and field.  As in files written
+   * by the acquisition software, the pixel data for each plane is stored
+   * immediately before the next IFD, and every IFD after the first is
+   * {@link #IFD_SIZE} bytes long.  The XML metadata is in the first IFD.
+   */
+  private static void writeFlex(File dir, int well, int field,
+    String barcode)
+    throws Exception
+  {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<Root><Plate><Barcode>");
+    xml.append(barcode);
+    xml.append("</Barcode></Plate><Arrays>");
+    for (String name : IMAGE_NAMES) {
+      xml.append("<Array Name=\"");
+      xml.append(name);
+      xml.append("\" Factor=\"1\"/>");
+    }
+    xml.append("</Arrays></Root>");
+    byte[] xmlBytes = (xml.toString() + "\0").getBytes(Constants.ENCODING);
+
+    File file = new File(dir, fileName(well, field));
+    RandomAccessOutputStream out =
+      new RandomAccessOutputStream(file.getAbsolutePath());
+    try {
+      out.order(true);
+      out.writeBytes("II");
+      out.writeShort(42);
+      out.writeInt(8);
+
+      int planeSize = WIDTH * HEIGHT;
+      int ifdOffset = 8;
+      for (int p=0; p<IMAGE_NAMES.length; p++) {
+        boolean first = p == 0;
+        int entries = first ? ENTRIES + 1 : ENTRIES;
+        int xmlOffset = ifdOffset + 2 + entries * 12 + 4;
+        int dataOffset =
+          first ? xmlOffset + xmlBytes.length : ifdOffset + IFD_SIZE;
+        int nextOffset = p == IMAGE_NAMES.length - 1 ? 0 :
+          dataOffset + planeSize;
+
+        out.seek(ifdOffset);
+        out.writeShort(entries);
+        writeEntry(out, IFD.IMAGE_WIDTH, WIDTH, 0);
+        writeEntry(out, IFD.IMAGE_LENGTH, HEIGHT, 0);
+        writeEntry(out, IFD.BITS_PER_SAMPLE, 8, 0);
+        writeEntry(out, IFD.COMPRESSION, 1, 0);
+        writeEntry(out, IFD.PHOTOMETRIC_INTERPRETATION, 1, 0);
+        writeEntry(out, IFD.FILL_ORDER, 1, 0);
+        writeEntry(out, IFD.STRIP_OFFSETS,
+          dataOffset, dataOffset + planeSize / 2);
+        writeEntry(out, IFD.ORIENTATION, 1, 0);
+        writeEntry(out, IFD.SAMPLES_PER_PIXEL, 1, 0);
+        writeEntry(out, IFD.ROWS_PER_STRIP, HEIGHT / 2, 0);
+        writeEntry(out, IFD.STRIP_BYTE_COUNTS, planeSize / 2, planeSize / 2);
+        writeEntry(out, IFD.PLANAR_CONFIGURATION, 1, 0);
+        writeEntry(out, IFD.RESOLUTION_UNIT, 1, 0);
+        writeEntry(out, IFD.PAGE_NUMBER, p, IMAGE_NAMES.length);
+        if (first) {
+          out.writeShort(FlexReader.FLEX);
+          out.writeShort(IFDType.ASCII.getCode());
+          out.writeInt(xmlBytes.length);
+          out.writeInt(xmlOffset);
+        }
+        out.writeInt(nextOffset);
+        if (first) {
+          out.write(xmlBytes);
+        }
+
+        byte[] plane = new byte[planeSize];
+        Arrays.fill(plane, value(well, field, p));
+        out.write(plane);
+        ifdOffset = nextOffset;
+      }
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes an IFD entry with one SHORT value, or two for the strip offsets,
+   * strip byte counts and page number.
+   */
+  private static void writeEntry(RandomAccessOutputStream out, int tag,
+    int value, int secondValue)
+    throws IOException
+  {
+    boolean pair = tag == IFD.STRIP_OFFSETS ||
+      tag == IFD.STRIP_BYTE_COUNTS || tag == IFD.PAGE_NUMBER;
+    out.writeShort(tag);
+    out.writeShort(IFDType.SHORT.getCode());
+    out.writeInt(pair ? 2 : 1);
+    out.writeShort(value);
+    out.writeShort(pair ? secondValue : 0);
+  }
+
+  private static File createDirectory(String name) throws Exception {
+    File dir = File.createTempFile("FlexReaderTest-" + name, "");
+    dir.delete();
+    dir.mkdir();
+    return dir;
+  }
+
+  private static void deleteDirectory(File dir) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        f.delete();
+      }
+    }
+    dir.delete();
+  }
+
+}
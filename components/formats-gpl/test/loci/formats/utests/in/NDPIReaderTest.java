@@ -0,0 +1,312 @@
+/*
+ * #%L
+ * OME Bio-Formats package for reading and converting biological file formats.
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the 
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public 
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.formats.utests.in;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import loci.common.ByteArrayHandle;
+import loci.common.RandomAccessInputStream;
+import loci.common.RandomAccessOutputStream;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.NDPIReader;
+import loci.formats.services.JPEGTurboServiceImpl;
+import loci.formats.tiff.IFD;
+import loci.formats.tiff.PhotoInterp;
+import loci.formats.tiff.TiffCompression;
+import loci.formats.tiff.TiffSaver;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.w3c.dom.NodeList;
+
+/**
+ * Tests the synthetic resolutions that {@link NDPIReader} adds when
+ * {@link NDPIReader#SYNTHETIC_RESOLUTIONS_KEY} is set.
+ */
+public class NDPIReaderTest {
+
+  private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+
+  private static final int SOURCE_LENS = 65421;
+  private static final int MARKER_TAG = 65426;
+
+  /** Size of the full resolution, which is read with libjpeg-turbo. */
+  private static final int WIDTH = 2560;
+  private static final int HEIGHT = 2304;
+
+  /** Size of the second physical resolution, which is not JPEG. */
+  private static final int SMALL_WIDTH = 256;
+  private static final int SMALL_HEIGHT = 230;
+
+  /** Number of MCUs between restart markers. */
+  private static final int INTERVAL = 32;
+
+  private File file;
+  private NDPIReader reader;
+
+  @BeforeClass
+  public void setUpFile() throws Exception {
+    file = File.createTempFile("NDPIReaderTest", ".ndpi");
+    file.deleteOnExit();
+    writeNDPI(file.getAbsolutePath());
+  }
+
+  @AfterClass
+  public void tearDownFile() {
+    file.delete();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testPhysicalResolutions() throws Exception {
+    reader = openReader(false);
+    assertEquals(reader.getSeriesCount(), 2);
+    assertEquals(reader.getResolutionCount(), 2);
+    reader.setResolution(1);
+    assertEquals(reader.getSizeX(), SMALL_WIDTH);
+    assertEquals(reader.getSizeY(), SMALL_HEIGHT);
+  }
+
+  @Test
+  public void testSyntheticResolutions() throws Exception {
+    reader = openReader(true);
+    assertEquals(reader.getSeriesCount(), 2);
+    // 1/2, 1/4 and 1/8 scale are all larger than the next physical level
+    int[][] sizes = {
+      {WIDTH, HEIGHT}, {1280, 1152}, {640, 576}, {320, 288},
+      {SMALL_WIDTH, SMALL_HEIGHT}
+    };
+    assertEquals(reader.getResolutionCount(), sizes.length);
+    for (int r=0; r<sizes.length; r++) {
+      reader.setResolution(r);
+      assertEquals(reader.getSizeX(), sizes[r][0], "resolution " + r);
+      assertEquals(reader.getSizeY(), sizes[r][1], "resolution " + r);
+      assertEquals(reader.getRGBChannelCount(), 3);
+      if (r > 0 && r < sizes.length - 1) {
+        assertFalse(reader.isThumbnailSeries(), "resolution " + r);
+      }
+    }
+
+    reader.setSeries(1);
+    assertEquals(reader.getResolutionCount(), 1);
+    assertTrue(reader.isThumbnailSeries());
+  }
+
+  @Test
+  public void testSyntheticPixels() throws Exception {
+    reader = openReader(true);
+    int x = 300, y = 200, size = 64;
+    byte[] full = reader.openBytes(0, x, y, size, size);
+    for (int r=1; r<=3; r++) {
+      int scale = 1 << r;
+      reader.setResolution(r);
+      int w = size / scale;
+      byte[] scaled = reader.openBytes(0, x / scale, y / scale, w, w);
+      // each scaled pixel should be close to the mean of the
+      // full resolution pixels that it covers
+      for (int sy=0; sy<w; sy++) {
+        for (int sx=0; sx<w; sx++) {
+          for (int c=0; c<3; c++) {
+            int sum = 0;
+            for (int dy=0; dy<scale; dy++) {
+              for (int dx=0; dx<scale; dx++) {
+                int index = ((sy * scale + dy) * size + sx * scale + dx) * 3;
+                sum += full[index + c] & 0xff;
+              }
+            }
+            int expected = sum / (scale * scale);
+            int actual = scaled[(sy * w + sx) * 3 + c] & 0xff;
+            assertTrue(Math.abs(expected - actual) <= 8, "resolution " + r +
+              " pixel (" + sx + ", " + sy + "): " + expected + " != " + actual);
+          }
+        }
+      }
+    }
+  }
+
+  private NDPIReader openReader(boolean synthetic) throws Exception {
+    NDPIReader ndpi = new NDPIReader();
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setBoolean(NDPIReader.SYNTHETIC_RESOLUTIONS_KEY, synthetic);
+    ndpi.setMetadataOptions(options);
+    ndpi.setFlattenedResolutions(false);
+    ndpi.setId(file.getAbsolutePath());
+    return ndpi;
+  }
+
+  /**
+   * Writes a minimal NDPI file: a JPEG full resolution with restart
+   * markers, an uncompressed second resolution and an uncompressed
+   * macro image.
+   */
+  private static void writeNDPI(String path) throws Exception {
+    BufferedImage image =
+      new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+    for (int y=0; y<HEIGHT; y++) {
+      for (int x=0; x<WIDTH; x++) {
+        int r = x * 255 / WIDTH;
+        int g = y * 255 / HEIGHT;
+        image.setRGB(x, y, (r << 16) | (g << 8) | 128);
+      }
+    }
+    byte[] jpeg = writeJPEG(image);
+    image = null;
+
+    JPEGTurboServiceImpl service = new JPEGTurboServiceImpl();
+    service.initialize(new RandomAccessInputStream(new ByteArrayHandle(jpeg)),
+      WIDTH, HEIGHT);
+    long[] markers = service.getRestartMarkers();
+    service.close();
+
+    byte[] small = new byte[SMALL_WIDTH * SMALL_HEIGHT * 3];
+    byte[] macro = new byte[64 * 32 * 3];
+
+    RandomAccessOutputStream out = new RandomAccessOutputStream(path);
+    TiffSaver saver = new TiffSaver(out, path);
+    try {
+      saver.setLittleEndian(true);
+      saver.writeHeader();
+
+      long jpegOffset = out.getFilePointer();
+      out.write(jpeg);
+      long smallOffset = out.getFilePointer();
+      out.write(small);
+      long macroOffset = out.getFilePointer();
+      out.write(macro);
+
+      IFD full = makeIFD(WIDTH, HEIGHT, jpegOffset, jpeg.length, 20f);
+      full.put(IFD.COMPRESSION, TiffCompression.JPEG.getCode());
+      full.put(IFD.PHOTOMETRIC_INTERPRETATION, PhotoInterp.Y_CB_CR.getCode());
+      full.put(MARKER_TAG, markers);
+
+      IFD[] ifds = {
+        full,
+        makeIFD(SMALL_WIDTH, SMALL_HEIGHT, smallOffset, small.length, 20f),
+        makeIFD(64, 32, macroOffset, macro.length, -1f),
+      };
+
+      // each IFD's offset is stored in the header or in the previous IFD
+      long pointer = 4;
+      for (IFD ifd : ifds) {
+        long offset = out.getFilePointer();
+        out.seek(pointer);
+        out.writeInt((int) offset);
+        out.seek(offset);
+        saver.writeIFD(ifd, 0);
+        pointer = offset + 2 + 12 * ifd.size();
+      }
+    }
+    finally {
+      saver.close();
+      out.close();
+    }
+  }
+
+  private static IFD makeIFD(int width, int height, long offset,
+    long byteCount, float lens)
+  {
+    IFD ifd = new IFD();
+    ifd.put(IFD.IMAGE_WIDTH, (long) width);
+    ifd.put(IFD.IMAGE_LENGTH, (long) height);
+    ifd.put(IFD.BITS_PER_SAMPLE, new int[] {8, 8, 8});
+    ifd.put(IFD.COMPRESSION, TiffCompression.UNCOMPRESSED.getCode());
+    ifd.put(IFD.PHOTOMETRIC_INTERPRETATION, PhotoInterp.RGB.getCode());
+    ifd.put(IFD.STRIP_OFFSETS, new long[] {offset});
+    ifd.put(IFD.SAMPLES_PER_PIXEL, 3);
+    ifd.put(IFD.ROWS_PER_STRIP, new long[] {height});
+    ifd.put(IFD.STRIP_BYTE_COUNTS, new long[] {byteCount});
+    ifd.put(IFD.PLANAR_CONFIGURATION, 1);
+    ifd.put(SOURCE_LENS, lens);
+    return ifd;
+  }
+
+  /**
+   * Compresses the given image as a baseline JPEG without chroma
+   * subsampling, with a restart marker every {@link #INTERVAL} MCUs.
+   */
+  private static byte[] writeJPEG(BufferedImage img) throws Exception {
+    Iterator<ImageWriter> writers =
+      ImageIO.getImageWritersByFormatName("jpeg");
+    ImageWriter writer = writers.next();
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(0.95f);
+    IIOMetadata metadata = writer.getDefaultImageMetadata(
+      new ImageTypeSpecifier(img), param);
+
+    IIOMetadataNode root =
+      (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA);
+    NodeList components = root.getElementsByTagName("componentSpec");
+    for (int i=0; i<components.getLength(); i++) {
+      IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+      component.setAttribute("HsamplingFactor", "1");
+      component.setAttribute("VsamplingFactor", "1");
+    }
+    IIOMetadataNode markers =
+      (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+    IIOMetadataNode dri = new IIOMetadataNode("dri");
+    dri.setAttribute("interval", String.valueOf(INTERVAL));
+    markers.insertBefore(dri, root.getElementsByTagName("sos").item(0));
+    metadata.setFromTree(JPEG_METADATA, root);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ImageOutputStream out = ImageIO.createImageOutputStream(bytes);
+    try {
+      writer.setOutput(out);
+      writer.write(null, new IIOImage(img, null, metadata), param);
+    }
+    finally {
+      out.close();
+      writer.dispose();
+    }
+    return bytes.toByteArray();
+  }
+
+}
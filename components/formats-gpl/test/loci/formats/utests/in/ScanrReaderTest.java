@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * OME Bio-Formats package for reading and converting biological file formats.
+ * %%
+ * Copyright (C) 2020 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.formats.utests.in;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import loci.common.Constants;
+import loci.common.DataTools;
+import loci.formats.FormatTools;
+import loci.formats.MetadataTools;
+import loci.formats.in.DynamicMetadataOptions;
+import loci.formats.in.ScanrReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.out.TiffWriter;
+import ome.xml.meta.OMEXMLMetadataRoot;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that {@link ScanrReader} reads a plate in the same way whether or
+ * not its series are initialized lazily.
+ */
+public class ScanrReaderTest {
+
+  private static final int WIDTH = 32;
+  private static final int HEIGHT = 16;
+
+  private static final String[] WELLS = {"A1", "A2", "B1"};
+  private static final int FIELDS = 2;
+  private static final String[] CHANNELS = {"DAPI", "GFP"};
+  private static final double[][] POSITIONS = {{1.5, 2.5}, {101.5, 2.5}};
+
+  private File dir;
+  private String xml;
+  private ScanrReader eager;
+  private IMetadata eagerStore;
+  private ScanrReader reader;
+
+  @BeforeClass
+  public void setUpFiles() throws Exception {
+    dir = File.createTempFile("ScanrReaderTest", "");
+    dir.delete();
+    File data = new File(dir, "data");
+    data.mkdirs();
+    xml = new File(dir, "experiment_descriptor.xml").getAbsolutePath();
+    Files.write(Paths.get(xml), createXML().getBytes(Constants.ENCODING));
+    for (int w=0; w<WELLS.length; w++) {
+      for (int f=0; f<FIELDS; f++) {
+        for (int c=0; c<CHANNELS.length; c++) {
+          String name = String.format("--W%05d--P%05d--Z00000--T00000--%s.tif",
+            w + 1, f + 1, CHANNELS[c]);
+          writeTIFF(new File(data, name), value(w * FIELDS + f, c));
+        }
+      }
+    }
+
+    eager = new ScanrReader();
+    eagerStore = MetadataTools.createOMEXMLMetadata();
+    eager.setMetadataStore(eagerStore);
+    eager.setId(xml);
+  }
+
+  @AfterClass
+  public void tearDownFiles() throws Exception {
+    eager.close();
+    File data = new File(dir, "data");
+    for (File f : data.listFiles()) {
+      f.delete();
+    }
+    data.delete();
+    new File(xml).delete();
+    dir.delete();
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    if (reader != null) {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testEager() throws Exception {
+    assertEquals(eager.getSeriesCount(), WELLS.length * FIELDS);
+    assertEquals(eagerStore.getWellCount(0), WELLS.length);
+    for (int s=0; s<eager.getSeriesCount(); s++) {
+      assertTrue(eager.isSeriesInitialized(s));
+      eager.setSeries(s);
+      assertEquals(eager.getSizeC(), CHANNELS.length);
+      for (int c=0; c<CHANNELS.length; c++) {
+        assertEquals(eagerStore.getChannelName(s, c), CHANNELS[c]);
+        byte[] plane = eager.openBytes(eager.getIndex(0, c, 0));
+        assertEquals(DataTools.bytesToShort(plane, 0, eager.isLittleEndian()),
+          value(s, c));
+      }
+      assertEquals(eagerStore.getPlanePositionX(s, 0).value().doubleValue(),
+        POSITIONS[s % FIELDS][0]);
+    }
+  }
+
+  @Test
+  public void testLazy() throws Exception {
+    reader = new ScanrReader();
+    IMetadata store = MetadataTools.createOMEXMLMetadata();
+    reader.setMetadataStore(store);
+    DynamicMetadataOptions options = new DynamicMetadataOptions();
+    options.setBoolean(DynamicMetadataOptions.SERIES_LAZY_KEY, true);
+    reader.setMetadataOptions(options);
+    reader.setId(xml);
+
+    // the plate layout is populated, but only the first series
+    assertEquals(reader.getSeriesCount(), eager.getSeriesCount());
+    assertEquals(store.getWellCount(0), WELLS.length);
+    assertEquals(store.getWellSampleCount(0, 1), FIELDS);
+    assertTrue(reader.isSeriesInitialized(0));
+    assertSeries(reader, store, 0);
+    OMEXMLMetadataRoot root = (OMEXMLMetadataRoot) store.getRoot();
+    for (int s=1; s<reader.getSeriesCount(); s++) {
+      assertFalse(reader.isSeriesInitialized(s));
+      assertEquals(reader.getCoreMetadataList().get(s).sizeX, 0);
+      assertEquals(store.getImageName(s), eagerStore.getImageName(s));
+      assertNull(root.getImage(s).getPixels());
+    }
+
+    reader.setSeries(3);
+    assertTrue(reader.isSeriesInitialized(3));
+    assertFalse(reader.isSeriesInitialized(2));
+    assertSeries(reader, store, 3);
+    assertEquals(store.getImageName(3), eagerStore.getImageName(3));
+
+    for (int s=0; s<reader.getSeriesCount(); s++) {
+      reader.setSeries(s);
+      assertSeries(reader, store, s);
+    }
+  }
+
+  // -- Helper methods --
+
+  /** Checks that a series matches the same series of the eager reader. */
+  private void assertSeries(ScanrReader lazy, IMetadata store, int s)
+    throws Exception
+  {
+    eager.setSeries(s);
+    assertEquals(lazy.getSizeX(), eager.getSizeX());
+    assertEquals(lazy.getSizeY(), eager.getSizeY());
+    assertEquals(lazy.getSizeC(), eager.getSizeC());
+    assertEquals(lazy.getImageCount(), eager.getImageCount());
+    assertEquals(lazy.getPixelType(), eager.getPixelType());
+    assertEquals(lazy.getDimensionOrder(), eager.getDimensionOrder());
+    assertEquals(store.getPixelsSizeX(s), eagerStore.getPixelsSizeX(s));
+    assertEquals(store.getPixelsPhysicalSizeX(s),
+      eagerStore.getPixelsPhysicalSizeX(s));
+    for (int c=0; c<lazy.getSizeC(); c++) {
+      assertEquals(store.getChannelName(s, c), eagerStore.getChannelName(s, c));
+      assertEquals(store.getPlanePositionX(s, c),
+        eagerStore.getPlanePositionX(s, c));
+      assertEquals(store.getPlaneExposureTime(s, c),
+        eagerStore.getPlaneExposureTime(s, c));
+    }
+    for (int p=0; p<lazy.getImageCount(); p++) {
+      assertEquals(lazy.openBytes(p), eager.openBytes(p));
+    }
+  }
+
+  /** Returns the value of every pixel in the given channel. */
+  private static short value(int series, int channel) {
+    return (short) (series * 16 + channel + 1);
+  }
+
+  private static String createXML() {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<LVData>");
+    for (String channel : CHANNELS) {
+      xml.append("<Cluster>");
+      appendValue(xml, "name", channel);
+      appendValue(xml, "exposure time", "250");
+      appendValue(xml, "idle", "0");
+      xml.append("</Cluster>");
+    }
+    appendValue(xml, "rows/well", "1");
+    appendValue(xml, "columns/well", String.valueOf(FIELDS));
+    appendValue(xml, "# slices", "1");
+    appendValue(xml, "timeloop real", "1");
+    appendValue(xml, "conversion factor um/pixel", "0.5");
+    appendValue(xml, "plate name", "ScanrReaderTest");
+
+    xml.append("<Array><Name>well selection table + cDNA</Name>");
+    for (int w=0; w<WELLS.length; w++) {
+      xml.append("<Val>" + (w + 1) + "</Val>");
+      xml.append("<Val>" + WELLS[w] + "</Val>");
+    }
+    xml.append("</Array>");
+
+    // every value after the subposition list is a position
+    xml.append("<Array><Name>subposition list</Name>");
+    xml.append("<Dimsize>" + FIELDS + "</Dimsize>");
+    for (double[] position : POSITIONS) {
+      xml.append("<Val>" + position[0] + "</Val>");
+      xml.append("<Val>" + position[1] + "</Val>");
+    }
+    xml.append("</Array>");
+    xml.append("</LVData>");
+    return xml.toString();
+  }
+
+  private static void appendValue(StringBuilder xml, String name,
+    String value)
+  {
+    xml.append("<String><Name>" + name + "</Name><Val>" + value + "</Val>");
+    xml.append("</String>");
+  }
+
+  private static void writeTIFF(File file, short value) throws Exception {
+    IMetadata meta = MetadataTools.createOMEXMLMetadata();
+    MetadataTools.populateMetadata(meta, 0, null, false, "XYCZT",
+      FormatTools.getPixelTypeString(FormatTools.UINT16),
+      WIDTH, HEIGHT, 1, 1, 1, 1);
+    byte[] plane = new byte[WIDTH * HEIGHT * 2];
+    for (int i=0; i<plane.length; i+=2) {
+      DataTools.unpackBytes(value, plane, i, 2, false);
+    }
+    TiffWriter writer = new TiffWriter();
+    writer.setMetadataRetrieve(meta);
+    writer.setId(file.getAbsolutePath());
+    try {
+      writer.saveBytes(0, plane);
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+}
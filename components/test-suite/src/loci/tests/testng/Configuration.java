@@ -56,16 +56,24 @@ import ome.units.quantity.Length;
 import ome.units.quantity.Time;
 import ome.units.UNITS;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  */
 public class Configuration {
 
   // -- Constants --
 
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(Configuration.class);
+
   public static final int TILE_SIZE = 512;
 
   private static final String ACCESS_TIME = "access_ms";
   private static final String MEMORY = "mem_mb";
+  private static final String PERFORMANCE_TOLERANCE = "performance_tolerance";
+  private static final String PERFORMANCE_ERROR = "performance_error";
   private static final String TEST = "test";
   private static final String HAS_VALID_XML = "hasValidXML";
   private static final String READER = "reader";
@@ -185,6 +193,32 @@ public class Configuration {
     return Integer.parseInt(memory);
   }
 
+  /**
+   * @return the stored per-operation performance baseline,
+   *   or null if there is none
+   */
+  public PerformanceMetrics getPerformanceMetrics() {
+    return PerformanceMetrics.fromTable(globalTable);
+  }
+
+  /**
+   * @return the reason the performance baseline could not be measured when
+   *   this configuration was generated, or null if it was measured
+   */
+  public String getPerformanceError() {
+    return globalTable.get(PERFORMANCE_ERROR);
+  }
+
+  /**
+   * @return the fraction by which performance may be worse than the stored
+   *   baseline, or the given default if no tolerance is configured
+   */
+  public double getPerformanceTolerance(double defaultTolerance) {
+    String tolerance = globalTable.get(PERFORMANCE_TOLERANCE);
+    if (tolerance == null) return defaultTolerance;
+    return Double.parseDouble(tolerance);
+  }
+
   public boolean doTest() {
     return new Boolean(globalTable.get(TEST)).booleanValue();
   }
@@ -579,6 +613,15 @@ public class Configuration {
 
     globalTable.put(ACCESS_TIME, String.valueOf(t1 - t0));
 
+    try {
+      PerformanceMetrics.measure(reader.getCurrentFile()).toTable(globalTable);
+    }
+    catch (FormatException | IOException e) {
+      LOGGER.warn("Could not measure performance of {}",
+        reader.getCurrentFile(), e);
+      globalTable.put(PERFORMANCE_ERROR, String.valueOf(e.getMessage()));
+    }
+
     ini.add(globalTable);
 
     for (int series=0; series<seriesCount; series++) {
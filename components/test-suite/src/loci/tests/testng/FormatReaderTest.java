@@ -123,6 +123,8 @@ public class FormatReaderTest {
   private String omexmlDir = System.getProperty("testng.omexmlDirectory");
   private String cacheDir  = System.getProperty("testng.cacheDirectory");
   private String fileList = System.getProperty("testng.file-list");
+  private String performanceReport =
+    TestTools.getProperty("testng.performanceReport");
 
   /**
    * Multiplier for use adjusting timing values. Slower machines take longer to
@@ -1684,6 +1686,63 @@ public class FormatReaderTest {
     result(testName, success, msg);
   }
 
+  /**
+   * Compares setId time, first plane and tile latency, full-read throughput
+   * and peak heap usage against the baseline stored in the configuration.
+   * Fails if the baseline could not be measured when the configuration was
+   * generated.
+   * If the "testng.performanceReport" property is set, every comparison is
+   * appended to the named tab-separated file.
+   */
+  @Test(groups = {"performance"})
+  public void testPerformanceRegression() {
+    if (config == null) throw new SkipException("No config tree");
+    String testName = "testPerformanceRegression";
+    if (!initFile()) result(testName, false, "initFile");
+    boolean success = true;
+    String msg = null;
+    try {
+      PerformanceMetrics baseline = config.getPerformanceMetrics();
+      if (config.getPerformanceError() != null) {
+        success = false;
+        msg = "baseline not measured: " + config.getPerformanceError();
+      }
+      else if (baseline == null) {
+        msg = "no configuration";
+      }
+      else {
+        String file = reader.getCurrentFile();
+        PerformanceMetrics actual = PerformanceMetrics.measure(file);
+        double tolerance = config.getPerformanceTolerance(
+          PerformanceMetrics.DEFAULT_TOLERANCE);
+        List<PerformanceMetrics.Result> results =
+          actual.compare(baseline, tolerance, timeMultiplier);
+
+        if (performanceReport != null) {
+          PerformanceMetrics.writeReport(new File(performanceReport),
+            file, config.getReader(), results);
+        }
+
+        for (PerformanceMetrics.Result r : results) {
+          if (!r.isPassed()) {
+            success = false;
+            msg = msg == null ? r.toString() : msg + "; " + r;
+          }
+        }
+      }
+    }
+    catch (Throwable t) {
+      if (TestTools.isOutOfMemory(t)) {
+        result(testName, true, "Image too large");
+        return;
+      }
+      LOGGER.info("", t);
+      success = false;
+      msg = t.getMessage();
+    }
+    result(testName, success, msg);
+  }
+
   @Test(groups = {"all", "type", "automated"})
   public void testRequiredDirectories() {
     if (!initFile()) return;
@@ -0,0 +1,449 @@
+/*
+ * #%L
+ * OME Bio-Formats manual and automated test suite.
+ * %%
+ * Copyright (C) 2006 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.tests.testng;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import loci.common.Constants;
+import loci.common.IniTable;
+import loci.formats.FormatException;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.ImageReader;
+
+/**
+ * Timing and memory measurements for reading a single dataset, which can be
+ * stored in a {@link Configuration} and used as a baseline for later runs.
+ *
+ * Each measurement is -1 if it was not made, e.g. because the dataset's
+ * planes are too large to read into memory.  The peak heap measurement is
+ * JVM-wide, so it is only made when the suite runs in a single thread
+ * (see {@link TestTools#getThreadCount()}).
+ */
+public class PerformanceMetrics {
+
+  // -- Constants --
+
+  public static final String SET_ID_TIME = "setId_ms";
+  public static final String FIRST_PLANE_TIME = "first_plane_ms";
+  public static final String TILE_TIME = "tile_ms_p";
+  public static final String THROUGHPUT = "read_mb_per_s";
+  public static final String PEAK_MEMORY = "peak_mem_mb";
+
+  /** Percentiles of the tile read times that are recorded. */
+  public static final int[] TILE_PERCENTILES = {50, 90, 99};
+
+  /**
+   * Default fraction by which a measurement may be worse than its baseline
+   * before it is considered to be a regression.
+   */
+  public static final double DEFAULT_TOLERANCE = 0.5;
+
+  /** Additional time allowed for each timing measurement, in ms. */
+  private static final double TIME_SLACK = 20;
+
+  /** Additional memory allowed for the peak heap measurement, in MB. */
+  private static final long MEMORY_SLACK = 20;
+
+  /** Maximum number of tiles read when measuring tile times. */
+  private static final int MAX_TILES = 256;
+
+  /** Maximum number of bytes read when measuring throughput. */
+  private static final long MAX_READ_BYTES = 256L * 1024 * 1024;
+
+  private static final String[] REPORT_COLUMNS = {
+    "file", "reader", "metric", "baseline", "actual", "limit", "status"
+  };
+
+  // -- Fields --
+
+  private double setIdTime = -1;
+  private double firstPlaneTime = -1;
+  private double[] tileTimes = new double[TILE_PERCENTILES.length];
+  private double throughput = -1;
+  private long peakMemory = -1;
+
+  // -- Constructor --
+
+  public PerformanceMetrics() {
+    Arrays.fill(tileTimes, -1);
+  }
+
+  // -- PerformanceMetrics API methods --
+
+  /**
+   * Measures the performance of a new reader for the given file.
+   * Only the first series is read.
+   */
+  public static PerformanceMetrics measure(String id)
+    throws FormatException, IOException
+  {
+    PerformanceMetrics metrics = new PerformanceMetrics();
+
+    // heap pool peaks include allocations made by any other test
+    // instances running concurrently, so are meaningless unless
+    // this is the only thread reading data
+    boolean measureMemory = TestTools.getThreadCount() <= 1;
+    List<MemoryPoolMXBean> pools = getHeapPools();
+    long m0 = 0;
+    if (measureMemory) {
+      System.gc();
+      m0 = getUsedMemory(pools);
+      for (MemoryPoolMXBean pool : pools) {
+        pool.resetPeakUsage();
+      }
+    }
+
+    try (IFormatReader reader = new ImageReader()) {
+      long t0 = System.nanoTime();
+      reader.setId(id);
+      metrics.setIdTime = millis(t0);
+
+      long planeSize = FormatTools.getPlaneSize(reader);
+      boolean canOpenImages =
+        planeSize > 0 && TestTools.canFitInMemory(planeSize);
+
+      if (canOpenImages) {
+        t0 = System.nanoTime();
+        byte[] buf = reader.openBytes(0);
+        metrics.firstPlaneTime = millis(t0);
+
+        // read planes until all have been read, or enough bytes
+        // have been read to give a stable throughput
+        long bytes = 0;
+        int planes = 0;
+        t0 = System.nanoTime();
+        while (planes < reader.getImageCount() && bytes < MAX_READ_BYTES) {
+          reader.openBytes(planes++, buf);
+          bytes += buf.length;
+        }
+        double seconds = Math.max(millis(t0), 0.001) / 1000;
+        metrics.throughput = (bytes / (1024.0 * 1024.0)) / seconds;
+      }
+
+      metrics.measureTiles(reader);
+    }
+
+    if (measureMemory) {
+      long peak = 0;
+      for (MemoryPoolMXBean pool : pools) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+      metrics.peakMemory = Math.max(0, peak - m0) >> 20;
+    }
+    return metrics;
+  }
+
+  /**
+   * Reads the measurements stored in the given table.
+   *
+   * @return the measurements, or null if the table does not contain any
+   */
+  public static PerformanceMetrics fromTable(IniTable table) {
+    PerformanceMetrics metrics = new PerformanceMetrics();
+    boolean found = false;
+    if (table.containsKey(SET_ID_TIME)) {
+      metrics.setIdTime = Double.parseDouble(table.get(SET_ID_TIME));
+      found = true;
+    }
+    if (table.containsKey(FIRST_PLANE_TIME)) {
+      metrics.firstPlaneTime = Double.parseDouble(table.get(FIRST_PLANE_TIME));
+      found = true;
+    }
+    for (int i=0; i<TILE_PERCENTILES.length; i++) {
+      String key = TILE_TIME + TILE_PERCENTILES[i];
+      if (table.containsKey(key)) {
+        metrics.tileTimes[i] = Double.parseDouble(table.get(key));
+        found = true;
+      }
+    }
+    if (table.containsKey(THROUGHPUT)) {
+      metrics.throughput = Double.parseDouble(table.get(THROUGHPUT));
+      found = true;
+    }
+    if (table.containsKey(PEAK_MEMORY)) {
+      metrics.peakMemory = Long.parseLong(table.get(PEAK_MEMORY));
+      found = true;
+    }
+    return found ? metrics : null;
+  }
+
+  /** Stores the measurements that were made in the given table. */
+  public void toTable(IniTable table) {
+    put(table, SET_ID_TIME, setIdTime);
+    put(table, FIRST_PLANE_TIME, firstPlaneTime);
+    for (int i=0; i<TILE_PERCENTILES.length; i++) {
+      put(table, TILE_TIME + TILE_PERCENTILES[i], tileTimes[i]);
+    }
+    put(table, THROUGHPUT, throughput);
+    if (peakMemory >= 0) {
+      table.put(PEAK_MEMORY, String.valueOf(peakMemory));
+    }
+  }
+
+  /**
+   * Compares these measurements against the given baseline.  Measurements
+   * that are missing from either are not compared.
+   *
+   * @param baseline the stored measurements
+   * @param tolerance the fraction by which each measurement may be worse
+   *   than the baseline
+   * @param timeMultiplier factor by which baseline times are scaled to
+   *   account for the speed of the current machine
+   * @return one result for each compared measurement
+   */
+  public List<Result> compare(PerformanceMetrics baseline, double tolerance,
+    float timeMultiplier)
+  {
+    List<Result> results = new ArrayList<Result>();
+    compareTime(results, SET_ID_TIME, baseline.setIdTime, setIdTime,
+      tolerance, timeMultiplier);
+    compareTime(results, FIRST_PLANE_TIME, baseline.firstPlaneTime,
+      firstPlaneTime, tolerance, timeMultiplier);
+    for (int i=0; i<TILE_PERCENTILES.length; i++) {
+      compareTime(results, TILE_TIME + TILE_PERCENTILES[i],
+        baseline.tileTimes[i], tileTimes[i], tolerance, timeMultiplier);
+    }
+    if (baseline.throughput > 0 && throughput >= 0) {
+      double limit = baseline.throughput / (timeMultiplier * (1 + tolerance));
+      results.add(new Result(THROUGHPUT, baseline.throughput, throughput,
+        limit, throughput >= limit));
+    }
+    if (baseline.peakMemory >= 0 && peakMemory >= 0) {
+      double limit = baseline.peakMemory * (1 + tolerance) + MEMORY_SLACK;
+      results.add(new Result(PEAK_MEMORY, baseline.peakMemory, peakMemory,
+        limit, peakMemory <= limit));
+    }
+    return results;
+  }
+
+  /**
+   * Appends the given comparison results to a tab-separated report file,
+   * writing a header line first if the file is new.  Reports from several
+   * test threads may share a file.
+   */
+  public static synchronized void writeReport(File report, String file,
+    String reader, List<Result> results) throws IOException
+  {
+    boolean header = !report.exists() || report.length() == 0;
+    try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+      new FileOutputStream(report, true), Constants.ENCODING)))
+    {
+      if (header) {
+        out.println(join(REPORT_COLUMNS));
+      }
+      for (Result r : results) {
+        out.println(join(new String[] {file, reader, r.getMetric(),
+          format(r.getBaseline()), format(r.getActual()),
+          format(r.getLimit()), r.isPassed() ? "pass" : "fail"}));
+      }
+    }
+  }
+
+  public double getSetIdTime() {
+    return setIdTime;
+  }
+
+  public double getFirstPlaneTime() {
+    return firstPlaneTime;
+  }
+
+  /** @param percentile one of {@link #TILE_PERCENTILES} */
+  public double getTileTime(int percentile) {
+    for (int i=0; i<TILE_PERCENTILES.length; i++) {
+      if (TILE_PERCENTILES[i] == percentile) return tileTimes[i];
+    }
+    throw new IllegalArgumentException("Invalid percentile: " + percentile);
+  }
+
+  /** Returns the full-read throughput, in MB per second. */
+  public double getThroughput() {
+    return throughput;
+  }
+
+  /** Returns the peak heap growth, in MB. */
+  public long getPeakMemory() {
+    return peakMemory;
+  }
+
+  // -- Helper methods --
+
+  /** Times reads of the first plane's tiles, in row-major order. */
+  private void measureTiles(IFormatReader reader)
+    throws FormatException, IOException
+  {
+    int sizeX = reader.getSizeX();
+    int sizeY = reader.getSizeY();
+    int tileWidth = Math.min(reader.getOptimalTileWidth(), sizeX);
+    int tileHeight = Math.min(reader.getOptimalTileHeight(), sizeY);
+    long tileSize = (long) tileWidth * tileHeight *
+      reader.getRGBChannelCount() *
+      FormatTools.getBytesPerPixel(reader.getPixelType());
+    if (tileSize <= 0 || !TestTools.canFitInMemory(tileSize)) {
+      return;
+    }
+
+    byte[] buf = new byte[(int) tileSize];
+    double[] times = new double[MAX_TILES];
+    int count = 0;
+    for (int y=0; y<sizeY && count<MAX_TILES; y+=tileHeight) {
+      for (int x=0; x<sizeX && count<MAX_TILES; x+=tileWidth) {
+        int w = Math.min(tileWidth, sizeX - x);
+        int h = Math.min(tileHeight, sizeY - y);
+        long t0 = System.nanoTime();
+        reader.openBytes(0, buf, x, y, w, h);
+        times[count++] = millis(t0);
+      }
+    }
+    tileTimes = percentiles(Arrays.copyOf(times, count), TILE_PERCENTILES);
+  }
+
+  /** Computes the given percentiles of the values, by nearest rank. */
+  static double[] percentiles(double[] values, int[] percentiles) {
+    double[] rtn = new double[percentiles.length];
+    if (values.length == 0) {
+      Arrays.fill(rtn, -1);
+      return rtn;
+    }
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    for (int i=0; i<percentiles.length; i++) {
+      int rank = (int) Math.ceil(percentiles[i] / 100.0 * sorted.length);
+      rtn[i] = sorted[Math.max(rank, 1) - 1];
+    }
+    return rtn;
+  }
+
+  private static void compareTime(List<Result> results, String metric,
+    double baseline, double actual, double tolerance, float timeMultiplier)
+  {
+    if (baseline < 0 || actual < 0) return;
+    double limit = timeMultiplier * baseline * (1 + tolerance) + TIME_SLACK;
+    results.add(new Result(metric, baseline, actual, limit, actual <= limit));
+  }
+
+  private static List<MemoryPoolMXBean> getHeapPools() {
+    List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        pools.add(pool);
+      }
+    }
+    return pools;
+  }
+
+  private static long getUsedMemory(List<MemoryPoolMXBean> pools) {
+    long used = 0;
+    for (MemoryPoolMXBean pool : pools) {
+      used += pool.getUsage().getUsed();
+    }
+    return used;
+  }
+
+  private static double millis(long start) {
+    return (System.nanoTime() - start) / 1000000.0;
+  }
+
+  private static void put(IniTable table, String key, double value) {
+    if (value >= 0) {
+      table.put(key, format(value));
+    }
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  private static String join(String[] values) {
+    StringBuilder sb = new StringBuilder();
+    for (int i=0; i<values.length; i++) {
+      if (i > 0) sb.append('\t');
+      sb.append(values[i]);
+    }
+    return sb.toString();
+  }
+
+  // -- Helper classes --
+
+  /** The comparison of one measurement against its baseline. */
+  public static class Result {
+    private final String metric;
+    private final double baseline;
+    private final double actual;
+    private final double limit;
+    private final boolean passed;
+
+    public Result(String metric, double baseline, double actual,
+      double limit, boolean passed)
+    {
+      this.metric = metric;
+      this.baseline = baseline;
+      this.actual = actual;
+      this.limit = limit;
+      this.passed = passed;
+    }
+
+    public String getMetric() {
+      return metric;
+    }
+
+    public double getBaseline() {
+      return baseline;
+    }
+
+    public double getActual() {
+      return actual;
+    }
+
+    /** Returns the worst acceptable value for this measurement. */
+    public double getLimit() {
+      return limit;
+    }
+
+    public boolean isPassed() {
+      return passed;
+    }
+
+    @Override
+    public String toString() {
+      return metric + ": got " + format(actual) + ", expected " +
+        (metric.equals(THROUGHPUT) ? ">= " : "<= ") + format(limit) +
+        " (baseline " + format(baseline) + ")";
+    }
+  }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * #%L
+ * OME Bio-Formats manual and automated test suite.
+ * %%
+ * Copyright (C) 2006 - 2017 Open Microscopy Environment:
+ *   - Board of Regents of the University of Wisconsin-Madison
+ *   - Glencoe Software, Inc.
+ *   - University of Dundee
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-2.0.html>.
+ * #L%
+ */
+
+package loci.tests.testng;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import loci.common.IniTable;
+import loci.common.Location;
+import loci.formats.FormatTools;
+import loci.formats.IFormatReader;
+import loci.formats.MetadataTools;
+import loci.formats.in.TiffReader;
+import loci.formats.meta.IMetadata;
+import loci.formats.out.TiffWriter;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class PerformanceMetricsTest {
+
+  private static final String TEST_FILE =
+    "test&sizeX=512&sizeY=512&sizeZ=4&tileSizeX=128&tileSizeY=128.fake";
+
+  @BeforeMethod
+  public void setUp() {
+    Location.mapId(TEST_FILE, TEST_FILE);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    Location.mapId(TEST_FILE, null);
+  }
+
+  @Test
+  public void testMeasure() throws Exception {
+    PerformanceMetrics metrics = PerformanceMetrics.measure(TEST_FILE);
+    assertTrue(metrics.getSetIdTime() >= 0);
+    assertTrue(metrics.getFirstPlaneTime() >= 0);
+    assertTrue(metrics.getThroughput() > 0);
+    assertTrue(metrics.getPeakMemory() >= 0);
+    for (int p : PerformanceMetrics.TILE_PERCENTILES) {
+      assertTrue(metrics.getTileTime(p) >= 0);
+    }
+    assertTrue(metrics.getTileTime(50) <= metrics.getTileTime(99));
+  }
+
+  @Test
+  public void testMeasureMultipleThreads() throws Exception {
+    String threadCount = System.getProperty("testng.threadCount");
+    System.setProperty("testng.threadCount", "4");
+    try {
+      PerformanceMetrics metrics = PerformanceMetrics.measure(TEST_FILE);
+      assertTrue(metrics.getSetIdTime() >= 0);
+      assertEquals(metrics.getPeakMemory(), -1);
+    }
+    finally {
+      if (threadCount == null) {
+        System.clearProperty("testng.threadCount");
+      }
+      else {
+        System.setProperty("testng.threadCount", threadCount);
+      }
+    }
+  }
+
+  @Test
+  public void testTable() throws Exception {
+    IniTable empty = new IniTable();
+    assertNull(PerformanceMetrics.fromTable(empty));
+
+    PerformanceMetrics metrics = PerformanceMetrics.measure(TEST_FILE);
+    IniTable table = new IniTable();
+    metrics.toTable(table);
+    assertTrue(table.containsKey(PerformanceMetrics.SET_ID_TIME));
+    assertTrue(table.containsKey(PerformanceMetrics.TILE_TIME + 90));
+
+    PerformanceMetrics stored = PerformanceMetrics.fromTable(table);
+    assertNotNull(stored);
+    assertEquals(stored.getPeakMemory(), metrics.getPeakMemory());
+    assertEquals(stored.getSetIdTime(), metrics.getSetIdTime(), 0.001);
+    assertEquals(stored.getTileTime(99), metrics.getTileTime(99), 0.001);
+  }
+
+  @Test
+  public void testCompare() {
+    IniTable table = new IniTable();
+    table.put(PerformanceMetrics.SET_ID_TIME, "100");
+    table.put(PerformanceMetrics.THROUGHPUT, "50");
+    table.put(PerformanceMetrics.PEAK_MEMORY, "100");
+    PerformanceMetrics baseline = PerformanceMetrics.fromTable(table);
+
+    // within tolerance
+    table.put(PerformanceMetrics.SET_ID_TIME, "160");
+    table.put(PerformanceMetrics.THROUGHPUT, "40");
+    table.put(PerformanceMetrics.PEAK_MEMORY, "150");
+    List<PerformanceMetrics.Result> results =
+      PerformanceMetrics.fromTable(table).compare(baseline, 0.5, 1);
+    assertEquals(results.size(), 3);
+    for (PerformanceMetrics.Result r : results) {
+      assertTrue(r.isPassed(), r.toString());
+    }
+
+    // too slow, and too much memory
+    table.put(PerformanceMetrics.SET_ID_TIME, "200");
+    table.put(PerformanceMetrics.THROUGHPUT, "30");
+    table.put(PerformanceMetrics.PEAK_MEMORY, "200");
+    results = PerformanceMetrics.fromTable(table).compare(baseline, 0.5, 1);
+    assertEquals(results.size(), 3);
+    for (PerformanceMetrics.Result r : results) {
+      assertFalse(r.isPassed(), r.toString());
+    }
+
+    // times are scaled by the multiplier
+    results = PerformanceMetrics.fromTable(table).compare(baseline, 0.5, 2);
+    assertTrue(results.get(0).isPassed());
+    assertTrue(results.get(1).isPassed());
+  }
+
+  @Test
+  public void testUnmeasuredConfiguration() throws Exception {
+    File tiff = File.createTempFile("performance", ".tif");
+    File configFile = File.createTempFile("performance", ".bfconfig");
+    tiff.delete();
+    IMetadata meta = MetadataTools.createOMEXMLMetadata();
+    MetadataTools.populateMetadata(meta, 0, null, false, "XYZCT",
+      FormatTools.getPixelTypeString(FormatTools.UINT8), 64, 64, 1, 1, 1, 1);
+    try (TiffWriter writer = new TiffWriter()) {
+      writer.setMetadataRetrieve(meta);
+      writer.setId(tiff.getAbsolutePath());
+      writer.saveBytes(0, new byte[64 * 64]);
+    }
+
+    IFormatReader reader = new TiffReader();
+    reader.setMetadataStore(MetadataTools.createOMEXMLMetadata());
+    reader.setId(tiff.getAbsolutePath());
+    try {
+      // a new reader cannot read the emptied file, so it cannot be measured
+      try (RandomAccessFile file = new RandomAccessFile(tiff, "rw")) {
+        file.setLength(0);
+      }
+      new Configuration(reader, configFile.getAbsolutePath()).saveToFile();
+
+      Configuration config = new Configuration(tiff.getAbsolutePath(),
+        configFile.getAbsolutePath());
+      assertNull(config.getPerformanceMetrics());
+      assertNotNull(config.getPerformanceError());
+    }
+    finally {
+      reader.close();
+      tiff.delete();
+      configFile.delete();
+    }
+  }
+
+  @Test
+  public void testPercentiles() {
+    double[] values = {5, 1, 4, 2, 3, 6, 8, 7, 10, 9};
+    double[] p = PerformanceMetrics.percentiles(values, new int[] {50, 90, 99});
+    assertEquals(p[0], 5.0);
+    assertEquals(p[1], 9.0);
+    assertEquals(p[2], 10.0);
+
+    p = PerformanceMetrics.percentiles(new double[0], new int[] {50});
+    assertEquals(p[0], -1.0);
+  }
+
+  @Test
+  public void testWriteReport() throws Exception {
+    File report = File.createTempFile("performance", ".tsv");
+    report.delete();
+    try {
+      IniTable table = new IniTable();
+      table.put(PerformanceMetrics.SET_ID_TIME, "100");
+      PerformanceMetrics baseline = PerformanceMetrics.fromTable(table);
+      List<PerformanceMetrics.Result> results =
+        baseline.compare(baseline, 0.5, 1);
+      PerformanceMetrics.writeReport(report, "a.tif", "TiffReader", results);
+      PerformanceMetrics.writeReport(report, "b.tif", "TiffReader", results);
+
+      List<String> lines =
+        Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+      assertEquals(lines.size(), 3);
+      assertEquals(lines.get(0),
+        "file\treader\tmetric\tbaseline\tactual\tlimit\tstatus");
+      assertEquals(lines.get(2),
+        "b.tif\tTiffReader\tsetId_ms\t100.000\t100.000\t170.000\tpass");
+    }
+    finally {
+      report.delete();
+    }
+  }
+
+}